@@ -3,7 +3,9 @@ package Project_ITSS.AddProduct.Controller;
 
 import Project_ITSS.AddProduct.Exception.AddProductException;
 import Project_ITSS.AddProduct.Repository.DetailProductRepository_AddProduct;
+import Project_ITSS.AddProduct.Entity.ImportReport;
 import Project_ITSS.AddProduct.Service.LoggerService_AddProduct;
+import Project_ITSS.AddProduct.Service.ProductImportService_AddProduct;
 import Project_ITSS.AddProduct.Service.ProductService_Addproduct;
 import Project_ITSS.AddProduct.Entity.Book;
 import Project_ITSS.AddProduct.Entity.CD;
@@ -16,7 +18,9 @@ import Project_ITSS.AddProduct.Entity.Product;
 import Project_ITSS.UpdateProduct.Service.LoggerService_UpdateProduct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -32,6 +36,8 @@ public class AddProductController {
    private ProductService_Addproduct productService;
    @Autowired
    private LoggerService_AddProduct loggerService;
+   @Autowired
+   private ProductImportService_AddProduct importService;
 
    // Khi người dùng muốn Add hoặc Update một product, hàm này sẽ trả về các giao diện để điền thông tin
     // Vì chưa có FE nên đoạn này để tạm như ở dưới
@@ -94,4 +100,27 @@ public class AddProductController {
        return json;
    }
 
+   // Import nhiều product từ file CSV (dòng đầu là header) hoặc NDJSON (mỗi dòng một product)
+   @PostMapping("/adding/import")
+   public ImportReport importProducts(@RequestParam("file") MultipartFile file,
+                                      @RequestParam(value = "format", required = false) String format){
+       if(file.isEmpty()){
+           throw new AddProductException("The import file is empty");
+       }
+       if(format == null){
+           String filename = file.getOriginalFilename();
+           format = (filename != null && filename.toLowerCase().endsWith(".csv"))
+                   ? ProductImportService_AddProduct.FORMAT_CSV
+                   : ProductImportService_AddProduct.FORMAT_NDJSON;
+       }
+       if(!format.equals(ProductImportService_AddProduct.FORMAT_CSV) && !format.equals(ProductImportService_AddProduct.FORMAT_NDJSON)){
+           throw new AddProductException("The import format must be csv or ndjson");
+       }
+       try{
+           return importService.importProducts(file.getInputStream(), format);
+       }catch (IOException e){
+           throw new AddProductException("The import file could not be read");
+       }
+   }
+
 }
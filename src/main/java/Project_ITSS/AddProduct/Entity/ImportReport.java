@@ -0,0 +1,39 @@
+package Project_ITSS.AddProduct.Entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Kết quả của một lần import product hàng loạt: số dòng thành công/thất bại, lỗi theo từng dòng và tốc độ xử lý
+@Getter
+@Setter
+@NoArgsConstructor
+public class ImportReport {
+    private int total_rows;
+    private int imported;
+    private int failed;
+    private long elapsed_ms;
+    private double rows_per_second;
+    private List<RowError> errors = new ArrayList<>();
+
+    public void addError(int line, String message){
+        errors.add(new RowError(line, message));
+        failed++;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class RowError {
+        private int line;
+        private String message;
+
+        public RowError(int line, String message){
+            this.line = line;
+            this.message = message;
+        }
+    }
+}
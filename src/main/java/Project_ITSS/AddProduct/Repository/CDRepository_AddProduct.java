@@ -8,39 +8,47 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
 @Repository
-public class CDRepository_AddProduct implements  DetailProductRepository_AddProduct{
+public class CDRepository_AddProduct implements DetailProductRepository_AddProduct {
+
+    private static final String INSERT_SQL = "INSERT INTO CD " +
+            "(Product_id, Track_list, genre, record_label, artists, release_date) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
     public void insertProductInfo(Product product){
-         CD cd = (CD)product;
+        jdbcTemplate.update(INSERT_SQL, toArgs(product));
+    }
+
+    @Override
+    public void insertProductInfoBatch(List<Product> products){
+        List<Object[]> batchArgs = new ArrayList<>(products.size());
+        for(Product product : products){
+            batchArgs.add(toArgs(product));
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, batchArgs);
+    }
+
+    private Object[] toArgs(Product product){
+        CD cd = (CD)product;
         String importDateStr = cd.getReleaseDate(); // ví dụ "2023-05-30"
-        LocalDate localDate = LocalDate.parse(importDateStr);
-        java.sql.Date sqlDate = java.sql.Date.valueOf(localDate);
-         jdbcTemplate.update(
-                 "INSERT INTO CD (" +
-                 "    Product_id," +
-                 "    Track_list," +
-                 "    genre," +
-                 "    recordLabel," +
-                 "    artists," +
-                 "    releaseDate" +
-                 ") VALUES (" +
-                 "    ?, ?, ?, ?, ?, ?" + ")",
-                 cd.getProduct_id(),
-                 cd.getTrackList(),
-                 cd.getGenre(),
-                 cd.getRecordLabel(),
-                 cd.getArtists(),
-                 sqlDate);
+        java.sql.Date sqlDate = java.sql.Date.valueOf(LocalDate.parse(importDateStr));
+        return new Object[]{
+                cd.getProduct_id(),
+                cd.getTrackList(),
+                cd.getGenre(),
+                cd.getRecordLabel(),
+                cd.getArtists(),
+                sqlDate};
     }
 
     @Override
     public String getType() {
         return "cd";
     }
-
-
 }
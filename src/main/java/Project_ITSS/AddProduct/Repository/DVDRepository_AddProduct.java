@@ -8,33 +8,48 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
 @Repository
-public class DVDRepository_AddProduct implements DetailProductRepository_AddProduct{
+public class DVDRepository_AddProduct implements DetailProductRepository_AddProduct {
+
+    private static final String INSERT_SQL = "INSERT INTO DVD " +
+            "(Product_id, title, release_Date, DVD_type, genre, studio, director) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
     public void insertProductInfo(Product product){
+        jdbcTemplate.update(INSERT_SQL, toArgs(product));
+    }
+
+    @Override
+    public void insertProductInfoBatch(List<Product> products){
+        List<Object[]> batchArgs = new ArrayList<>(products.size());
+        for(Product product : products){
+            batchArgs.add(toArgs(product));
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, batchArgs);
+    }
+
+    private Object[] toArgs(Product product){
         DVD dvd = (DVD)product;
         String importDateStr = dvd.getReleaseDate(); // ví dụ "2023-05-30"
-        LocalDate localDate = LocalDate.parse(importDateStr);
-        java.sql.Date sqlDate = java.sql.Date.valueOf(localDate);
-        System.out.println(sqlDate);
-        jdbcTemplate.update("INSERT INTO DVD " +
-                "(Product_id, title, release_Date, DVD_type, genre, studio, director) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?)" ,
+        java.sql.Date sqlDate = java.sql.Date.valueOf(LocalDate.parse(importDateStr));
+        return new Object[]{
                 dvd.getProduct_id(),
                 dvd.getTitle(),
                 sqlDate,
                 dvd.getDVD_type(),
                 dvd.getGenre(),
                 dvd.getStudio(),
-                dvd.getDirectors());
+                dvd.getDirectors()};
     }
 
     @Override
     public String getType() {
         return "dvd";
     }
-
 }
@@ -5,9 +5,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface DetailProductRepository_AddProduct {
     @Autowired
     public  void insertProductInfo(Product product);
+    // Thêm chi tiết của nhiều product cùng loại bằng một JDBC batch
+    public void insertProductInfoBatch(List<Product> products);
     public String getType();
 }
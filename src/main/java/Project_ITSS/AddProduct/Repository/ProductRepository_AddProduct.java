@@ -10,7 +10,9 @@ import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.time.LocalDate;
+import java.util.List;
 
 @Repository
 public class ProductRepository_AddProduct {
@@ -72,4 +74,41 @@ public class ProductRepository_AddProduct {
                 product.getQuantity(),
                 product.getProduct_id());
     }
-}
\ No newline at end of file
+
+    /**
+     * Thêm nhiều product bằng một JDBC batch, product_id sinh ra được gán lại cho từng product theo đúng thứ tự
+     */
+    public void insertProductInfoBatch(List<Product> products) {
+        String sql = "INSERT INTO product " +
+                "(title, price, weight, rush_order_supported, image_url, barcode, import_date, introduction, quantity, type) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        jdbcTemplate.execute((java.sql.Connection con) -> {
+            try (PreparedStatement ps = con.prepareStatement(sql, new String[]{"product_id"})) {
+                for (Product product : products) {
+                    ps.setString(1, product.getTitle());
+                    ps.setInt(2, product.getPrice());
+                    ps.setFloat(3, product.getWeight());
+                    ps.setBoolean(4, product.isRush_order_supported());
+                    ps.setString(5, product.getImage_url());
+                    ps.setString(6, product.getBarcode());
+                    ps.setDate(7, java.sql.Date.valueOf(LocalDate.parse(product.getImport_date())));
+                    ps.setString(8, product.getIntroduction());
+                    ps.setInt(9, product.getQuantity());
+                    ps.setString(10, product.getType());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int index = 0;
+                    while (keys.next()) {
+                        products.get(index++).setProduct_id(keys.getLong(1));
+                    }
+                    if (index != products.size()) {
+                        throw new AddProductException("Expected " + products.size() + " generated ids but got " + index);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -1,17 +1,26 @@
 package Project_ITSS.AddProduct.Service;
 
 import Project_ITSS.AddProduct.Entity.Product;
-import Project_ITSS.AddProduct.Repository.LoggerRepository_AddProduct;
+import Project_ITSS.AuditLog.Service.AuditLogService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class LoggerService_AddProduct {
     @Autowired
-    LoggerRepository_AddProduct loggerRepository;
+    AuditLogService auditLogService;
 
     public void saveLogger(Product product){
-        loggerRepository.saveLogger("add product","added product with id: " + product.getProduct_id());
+        auditLogService.log("add product","added product with id: " + product.getProduct_id());
+    }
+
+    // Một dòng log cho cả chunk import thay vì một dòng cho mỗi product
+    public void saveImportLogger(List<Product> products){
+        if(products.isEmpty()) return;
+        auditLogService.log("import product","imported " + products.size() + " products with ids from "
+                + products.get(0).getProduct_id() + " to " + products.get(products.size() - 1).getProduct_id());
     }
 
 
@@ -0,0 +1,277 @@
+package Project_ITSS.AddProduct.Service;
+
+import Project_ITSS.AddProduct.Entity.Book;
+import Project_ITSS.AddProduct.Entity.CD;
+import Project_ITSS.AddProduct.Entity.DVD;
+import Project_ITSS.AddProduct.Entity.ImportReport;
+import Project_ITSS.AddProduct.Entity.Product;
+import Project_ITSS.AddProduct.Exception.AddProductException;
+import Project_ITSS.AddProduct.Repository.DetailProductRepository_AddProduct;
+import Project_ITSS.AddProduct.Repository.ProductRepository_AddProduct;
+import Project_ITSS.ViewProduct2.Event.ProductChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Import product hàng loạt từ file CSV hoặc NDJSON.
+ * File được đọc từng bản ghi (NDJSON: một dòng; CSV: giá trị trong ngoặc kép có thể chứa xuống dòng),
+ * các bản ghi hợp lệ được gom thành từng chunk và ghi bằng JDBC batch trong một transaction.
+ * Nếu một chunk lỗi, các dòng của chunk đó được ghi lại từng dòng để tìm đúng dòng gây lỗi.
+ */
+@Service
+public class ProductImportService_AddProduct {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductImportService_AddProduct.class);
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    @Autowired
+    private ProductRepository_AddProduct productRepository;
+    @Autowired
+    private LoggerService_AddProduct loggerService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${product.import.chunk-size:500}")
+    private int chunkSize;
+
+    private final Map<String, DetailProductRepository_AddProduct> repositoryMap;
+
+    @Autowired
+    public ProductImportService_AddProduct(List<DetailProductRepository_AddProduct> repositories) {
+        repositoryMap = new HashMap<>();
+        for (DetailProductRepository_AddProduct repo : repositories) {
+            repositoryMap.put(repo.getType(), repo);
+        }
+    }
+
+    public ImportReport importProducts(InputStream input, String format) throws IOException {
+        ImportReport report = new ImportReport();
+        long start = System.nanoTime();
+        List<ParsedRow> chunk = new ArrayList<>(chunkSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String[] header = null;
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                // Lỗi của bản ghi được báo theo dòng bắt đầu bản ghi
+                int recordLine = lineNumber;
+                String record = line;
+                if (FORMAT_CSV.equals(format) && hasOddQuotes(line)) {
+                    // Ngoặc kép chưa đóng: xuống dòng nằm trong giá trị, đọc tiếp tới khi đóng hoặc hết file
+                    StringBuilder quoted = new StringBuilder(line);
+                    boolean open = true;
+                    while (open && (line = reader.readLine()) != null) {
+                        lineNumber++;
+                        quoted.append('\n').append(line);
+                        open = hasOddQuotes(line) != open;
+                    }
+                    record = quoted.toString();
+                }
+                if (FORMAT_CSV.equals(format) && header == null) {
+                    header = parseCsvRecord(record).toArray(new String[0]);
+                    continue;
+                }
+                report.setTotal_rows(report.getTotal_rows() + 1);
+                try {
+                    Product product = FORMAT_CSV.equals(format)
+                            ? parseCsvRow(header, record)
+                            : objectMapper.readValue(record, Product.class);
+                    validate(product);
+                    chunk.add(new ParsedRow(recordLine, product));
+                } catch (Exception e) {
+                    report.addError(recordLine, rootMessage(e));
+                }
+                if (chunk.size() >= chunkSize) {
+                    flushChunk(chunk, report);
+                }
+            }
+        }
+        flushChunk(chunk, report);
+
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        report.setElapsed_ms(elapsed);
+        report.setRows_per_second(elapsed > 0 ? report.getTotal_rows() * 1000.0 / elapsed : report.getTotal_rows());
+        logger.info("Imported {}/{} products in {} ms", report.getImported(), report.getTotal_rows(), elapsed);
+        return report;
+    }
+
+    private void flushChunk(List<ParsedRow> chunk, ImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<Product> products = new ArrayList<>(chunk.size());
+        for (ParsedRow row : chunk) {
+            products.add(row.product);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertChunk(products));
+            report.setImported(report.getImported() + products.size());
+            loggerService.saveImportLogger(products);
+        } catch (RuntimeException e) {
+            logger.warn("Import chunk of {} rows failed, retrying row by row: {}", chunk.size(), rootMessage(e));
+            for (ParsedRow row : chunk) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insertChunk(List.of(row.product)));
+                    report.setImported(report.getImported() + 1);
+                    loggerService.saveLogger(row.product);
+                } catch (RuntimeException ex) {
+                    report.addError(row.line, rootMessage(ex));
+                }
+            }
+        }
+        chunk.clear();
+    }
+
+    // Ghi product trước để lấy product_id, sau đó ghi chi tiết theo từng loại bằng một batch cho mỗi loại
+    private void insertChunk(List<Product> products) {
+        productRepository.insertProductInfoBatch(products);
+        Map<String, List<Product>> byType = new LinkedHashMap<>();
+        for (Product product : products) {
+            byType.computeIfAbsent(product.getType(), type -> new ArrayList<>()).add(product);
+        }
+        for (Map.Entry<String, List<Product>> entry : byType.entrySet()) {
+            repositoryMap.get(entry.getKey()).insertProductInfoBatch(entry.getValue());
+        }
+        // Một event cho cả chunk: listener đọc lại/đánh chỉ mục cả chunk một lần sau commit
+        List<Long> product_ids = new ArrayList<>();
+        for (Product product : products) {
+            product_ids.add((long) product.getProduct_id());
+        }
+        eventPublisher.publishEvent(new ProductChangedEvent(product_ids));
+    }
+
+    private void validate(Product product) {
+        if (product.getTitle() == null || product.getTitle().isBlank()) {
+            throw new AddProductException("The title is required");
+        }
+        if (product.getType() == null || !repositoryMap.containsKey(product.getType())) {
+            throw new AddProductException("The product type is invalid");
+        }
+        if (product.getPrice() < 0 || product.getQuantity() < 0 || product.getWeight() < 0) {
+            throw new AddProductException("Price, quantity and weight must not be negative");
+        }
+        parseDate("import_date", product.getImport_date());
+        if (product instanceof Book book) {
+            parseDate("publication_date", book.getPublication_date());
+        } else if (product instanceof CD cd) {
+            parseDate("releaseDate", cd.getReleaseDate());
+        } else if (product instanceof DVD dvd) {
+            parseDate("releaseDate", dvd.getReleaseDate());
+        }
+    }
+
+    private void parseDate(String field, String value) {
+        if (value == null) {
+            throw new AddProductException(field + " is required");
+        }
+        try {
+            LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new AddProductException(field + " must be in yyyy-MM-dd format");
+        }
+    }
+
+    private Product parseCsvRow(String[] header, String record) {
+        List<String> values = parseCsvRecord(record);
+        if (values.size() > header.length) {
+            throw new AddProductException("The row has more columns than the header");
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            if (!values.get(i).isEmpty()) {
+                fields.put(header[i].trim(), values.get(i));
+            }
+        }
+        return objectMapper.convertValue(fields, Product.class);
+    }
+
+    // Tách một bản ghi CSV, hỗ trợ giá trị trong dấu ngoặc kép (có thể chứa dấu phẩy, xuống dòng) và "" để biểu diễn dấu ngoặc kép
+    private List<String> parseCsvRecord(String record) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new AddProductException("Unterminated quoted value");
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    // "" trong giá trị có hai dấu ngoặc kép nên số lẻ nghĩa là một giá trị trong ngoặc kép chưa được đóng
+    private static boolean hasOddQuotes(String line) {
+        int quotes = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes % 2 == 1;
+    }
+
+    private String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+    }
+
+    private static class ParsedRow {
+        private final int line;
+        private final Product product;
+
+        private ParsedRow(int line, Product product) {
+            this.line = line;
+            this.product = product;
+        }
+    }
+}
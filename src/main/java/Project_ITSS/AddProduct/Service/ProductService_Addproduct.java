@@ -4,7 +4,9 @@ import Project_ITSS.AddProduct.Entity.Product;
 import Project_ITSS.AddProduct.Exception.AddProductException;
 import Project_ITSS.AddProduct.Repository.DetailProductRepository_AddProduct;
 import Project_ITSS.AddProduct.Repository.ProductRepository_AddProduct;
+import Project_ITSS.ViewProduct2.Event.ProductChangedEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
@@ -15,6 +17,8 @@ import java.util.Map;
 public class ProductService_Addproduct {
      @Autowired
      private ProductRepository_AddProduct productRepository;
+     @Autowired
+     private ApplicationEventPublisher eventPublisher;
 
      private final Map<String, DetailProductRepository_AddProduct> repositoryMap;
      @Autowired
@@ -36,6 +40,8 @@ public class ProductService_Addproduct {
           } catch(Exception e){
                throw new AddProductException("The product detail falied to be added");
           }
+          // Báo cho cache của ViewProduct2 biết danh sách product đã thay đổi
+          eventPublisher.publishEvent(new ProductChangedEvent(product.getProduct_id()));
 
      }
 
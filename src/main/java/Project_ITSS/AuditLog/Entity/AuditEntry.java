@@ -0,0 +1,27 @@
+package Project_ITSS.AuditLog.Entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+// Một dòng audit log chờ được ghi vào bảng Logger, recorded_at là ngày lúc hành động xảy ra.
+// entry_id được sinh khi ghi log, dùng để bỏ qua entry đã được ghi khi replay spill file
+@Getter
+@Setter
+@NoArgsConstructor
+public class AuditEntry {
+    private String entry_id;
+    private String action_name;
+    private String note;
+    private LocalDate recorded_at;
+
+    public AuditEntry(String action_name, String note, LocalDate recorded_at) {
+        this.entry_id = UUID.randomUUID().toString();
+        this.action_name = action_name;
+        this.note = note;
+        this.recorded_at = recorded_at;
+    }
+}
@@ -0,0 +1,24 @@
+package Project_ITSS.AuditLog.Repository;
+
+import Project_ITSS.AuditLog.Entity.AuditEntry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+public class AuditLogRepository {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Entry đã có trong bảng (cùng entry_id) được bỏ qua, nên ghi lại một batch đã ghi được một phần là an toàn
+    public void saveBatch(List<AuditEntry> entries) {
+        List<Object[]> batchArgs = new ArrayList<>(entries.size());
+        for (AuditEntry entry : entries) {
+            batchArgs.add(new Object[]{entry.getEntry_id(), entry.getAction_name(), java.sql.Date.valueOf(entry.getRecorded_at()), entry.getNote()});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO Logger (entry_id,action_name,recorded_at,note) VALUES (?,?,?,?) ON CONFLICT DO NOTHING", batchArgs);
+    }
+}
@@ -0,0 +1,250 @@
+package Project_ITSS.AuditLog.Service;
+
+import Project_ITSS.AuditLog.Entity.AuditEntry;
+import Project_ITSS.AuditLog.Repository.AuditLogRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ghi audit log bất đồng bộ: request thread chỉ đưa entry vào hàng đợi có giới hạn,
+ * một thread nền gom entry thành batch (theo số lượng hoặc theo thời gian) rồi ghi vào bảng Logger.
+ * Khi hàng đợi đầy quá lâu hoặc DB lỗi, entry được ghi tạm ra spill file và được ghi lại vào DB sau.
+ * Batch lỗi giữa chừng được spill cả batch; các entry đã được ghi trước đó bị bỏ qua khi replay nhờ entry_id.
+ */
+@Service
+public class AuditLogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogService.class);
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${audit.queue-capacity:10000}")
+    private int queueCapacity;
+    @Value("${audit.batch-size:200}")
+    private int batchSize;
+    @Value("${audit.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+    @Value("${audit.enqueue-timeout-ms:50}")
+    private long enqueueTimeoutMs;
+    @Value("${audit.spill-file:audit-spill.ndjson}")
+    private String spillFile;
+
+    private BlockingQueue<AuditEntry> queue;
+    private Path spillPath;
+    private final Object spillLock = new Object();
+    private volatile boolean running;
+    private Thread writer;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        spillPath = Paths.get(spillFile);
+        running = true;
+        writer = new Thread(this::runWriter, "audit-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Đưa một entry vào hàng đợi. Nếu hàng đợi vẫn đầy sau enqueue-timeout thì ghi thẳng ra spill file,
+     * request chỉ bị chậm tối đa một khoảng timeout chứ không bị chặn vô hạn.
+     * Gọi trong transaction thì entry chỉ được đưa vào hàng đợi sau khi transaction commit,
+     * hành động bị rollback không để lại audit log.
+     */
+    public void log(String action_name, String note) {
+        AuditEntry entry = new AuditEntry(action_name, note, LocalDate.now());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(entry);
+                }
+            });
+            return;
+        }
+        enqueue(entry);
+    }
+
+    private void enqueue(AuditEntry entry) {
+        try {
+            if (running && queue.offer(entry, enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.warn("Audit queue is full, spilling entry to {}", spillPath);
+        spill(List.of(entry));
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private void runWriter() {
+        replaySpillFile();
+        List<AuditEntry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                AuditEntry first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                }
+            } catch (InterruptedException e) {
+                // Được đánh thức khi shutdown, vòng lặp sẽ drain nốt phần còn lại
+            }
+            if (!batch.isEmpty()) {
+                if (write(batch)) {
+                    replaySpillFile();
+                } else {
+                    spill(batch);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private boolean write(List<AuditEntry> batch) {
+        try {
+            auditLogRepository.saveBatch(batch);
+            return true;
+        } catch (Exception e) {
+            logger.warn("Failed to write {} audit entries, spilling to {}: {}", batch.size(), spillPath, e.getMessage());
+            return false;
+        }
+    }
+
+    private void spill(List<AuditEntry> entries) {
+        synchronized (spillLock) {
+            try (BufferedWriter out = Files.newBufferedWriter(spillPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (AuditEntry entry : entries) {
+                    out.write(objectMapper.writeValueAsString(entry));
+                    out.newLine();
+                }
+            } catch (IOException e) {
+                logger.error("Failed to spill {} audit entries, they are lost", entries.size(), e);
+            }
+        }
+    }
+
+    /**
+     * Ghi lại các entry trong spill file vào DB. File được đổi tên trước khi đọc để các lần spill mới
+     * không bị trộn vào; nếu DB vẫn lỗi thì phần chưa ghi được được nối lại vào spill file.
+     */
+    private void replaySpillFile() {
+        Path replayPath = spillPath.resolveSibling(spillPath.getFileName() + ".replay");
+        synchronized (spillLock) {
+            try {
+                if (Files.exists(spillPath)) {
+                    if (Files.exists(replayPath)) {
+                        // Lần replay trước bị dừng giữa chừng, gộp spill file mới vào file đang chờ replay
+                        Files.write(replayPath, Files.readAllBytes(spillPath), StandardOpenOption.APPEND);
+                        Files.delete(spillPath);
+                    } else {
+                        Files.move(spillPath, replayPath, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to move audit spill file for replay: {}", e.getMessage());
+                return;
+            }
+            if (!Files.exists(replayPath)) {
+                return;
+            }
+        }
+        List<AuditEntry> batch = new ArrayList<>(batchSize);
+        List<AuditEntry> remaining = new ArrayList<>();
+        int replayed = 0;
+        try (BufferedReader in = Files.newBufferedReader(replayPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                AuditEntry entry = objectMapper.readValue(line, AuditEntry.class);
+                if (!remaining.isEmpty()) {
+                    remaining.add(entry);
+                    continue;
+                }
+                batch.add(entry);
+                if (batch.size() >= batchSize) {
+                    if (write(batch)) {
+                        replayed += batch.size();
+                    } else {
+                        remaining.addAll(batch);
+                    }
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                if (write(batch)) {
+                    replayed += batch.size();
+                } else {
+                    remaining.addAll(batch);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to read audit spill file {}", replayPath, e);
+            return;
+        }
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+        }
+        try {
+            Files.deleteIfExists(replayPath);
+        } catch (IOException e) {
+            logger.warn("Failed to delete {}: {}", replayPath, e.getMessage());
+        }
+        if (replayed > 0) {
+            logger.info("Replayed {} audit entries from spill file", replayed);
+        }
+    }
+
+    /**
+     * Dừng nhận entry mới và đợi writer ghi hết hàng đợi, phần không kịp ghi được chuyển ra spill file
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<AuditEntry> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        if (!leftover.isEmpty()) {
+            spill(leftover);
+        }
+    }
+}
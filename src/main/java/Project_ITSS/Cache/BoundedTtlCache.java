@@ -0,0 +1,148 @@
+package Project_ITSS.Cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache giới hạn số phần tử (LRU) và thời gian sống (TTL), có đếm hit/miss/eviction
+ */
+public class BoundedTtlCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    // Tăng sau mỗi lần invalidate, giá trị nạp từ trước đó có thể đã cũ nên không được lưu
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BoundedTtlCache(int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        // accessOrder = true để phần tử ít được dùng nhất luôn nằm ở đầu
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Lấy giá trị trong cache, nếu không có hoặc đã hết hạn thì gọi loader rồi lưu lại.
+     * Loader chạy ngoài lock để một truy vấn chậm không chặn các lần đọc khác;
+     * nếu cache bị invalidate trong lúc loader chạy thì giá trị vẫn được trả về nhưng không được lưu.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long loadGeneration = getGeneration();
+        V value = loader.apply(key);
+        if (value != null) {
+            put(key, value, loadGeneration);
+        }
+        return value;
+    }
+
+    /**
+     * Lấy giá trị nếu còn hạn, trả về null (và tính là miss) nếu không có
+     */
+    public V getIfPresent(K key) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    hits.incrementAndGet();
+                    return entry.value;
+                }
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Lưu giá trị đã nạp khi generation là loadGeneration (lấy bằng getGeneration() trước khi nạp),
+     * bỏ qua nếu đã có invalidate xảy ra trong lúc nạp. Trả về true nếu đã lưu
+     */
+    public synchronized boolean put(K key, V value, long loadGeneration) {
+        if (generation != loadGeneration) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    /**
+     * Chỉ lưu nếu key chưa có hoặc đã hết hạn, trả về true nếu đã lưu
+     */
+    public boolean putIfAbsent(K key, V value) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                return false;
+            }
+            put(key, value);
+            return true;
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+        generation++;
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        generation++;
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package Project_ITSS.IdGenerator.Repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class IdSequenceRepository {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Lấy giá trị tiếp theo của sequence. Sequence được tạo với INCREMENT BY bằng kích thước block,
+     * nên mỗi giá trị trả về là id đầu tiên của một block mà không node nào khác nhận được.
+     */
+    public long nextBlockStart(String sequence){
+        return jdbcTemplate.queryForObject("SELECT nextval(?::regclass)", Long.class, sequence);
+    }
+}
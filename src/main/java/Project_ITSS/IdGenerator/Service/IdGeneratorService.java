@@ -0,0 +1,79 @@
+package Project_ITSS.IdGenerator.Service;
+
+import Project_ITSS.IdGenerator.Repository.IdSequenceRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sinh id duy nhất trên nhiều node và qua các lần khởi động lại.
+ * Mỗi node lấy một block BLOCK_SIZE id từ sequence của Postgres rồi phát dần từ bộ nhớ,
+ * việc phát id trong một block chỉ là một phép getAndIncrement không cần lock.
+ * Dùng sequence thay vì Snowflake để id vẫn nhỏ (vừa kiểu int của order_id và an toàn với số của JavaScript).
+ * order_id_seq được đẩy vượt qua các order_id cũ một lần trong migration V16__align_order_id_seq.sql.
+ */
+@Service
+public class IdGeneratorService {
+
+    // Phải bằng INCREMENT BY của các sequence trong V1__baseline.sql
+    public static final int BLOCK_SIZE = 50;
+
+    public static final String ORDER_SEQUENCE = "order_id_seq";
+    public static final String PAYMENT_TXN_REF_SEQUENCE = "payment_txn_ref_seq";
+
+    @Autowired
+    private IdSequenceRepository sequenceRepository;
+
+    private final ConcurrentMap<String, BlockAllocator> allocators = new ConcurrentHashMap<>();
+
+    public int nextOrderId() {
+        return Math.toIntExact(nextId(ORDER_SEQUENCE));
+    }
+
+    public String nextPaymentTxnRef() {
+        return String.valueOf(nextId(PAYMENT_TXN_REF_SEQUENCE));
+    }
+
+    public long nextId(String sequence) {
+        return allocators.computeIfAbsent(sequence, BlockAllocator::new).next();
+    }
+
+    private final class BlockAllocator {
+        private final String sequence;
+        private volatile Block current = new Block(0, 0);
+
+        private BlockAllocator(String sequence) {
+            this.sequence = sequence;
+        }
+
+        long next() {
+            while (true) {
+                Block block = current;
+                long id = block.next.getAndIncrement();
+                if (id < block.end) {
+                    return id;
+                }
+                // Block đã hết, chỉ một thread lấy block mới, các thread khác đợi rồi thử lại
+                synchronized (this) {
+                    if (current == block) {
+                        long start = sequenceRepository.nextBlockStart(sequence);
+                        current = new Block(start, start + BLOCK_SIZE);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package Project_ITSS.Mail.Entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Một email nằm trong bảng mail_outbox, status: pending -> sending -> sent, hoặc dead khi đã thử quá số lần cho phép
+@Getter
+@Setter
+@NoArgsConstructor
+public class OutboxMail {
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_SENDING = "sending";
+    public static final String STATUS_SENT = "sent";
+    public static final String STATUS_DEAD = "dead";
+
+    private long mail_id;
+    private String to_email;
+    private String subject;
+    private String content;
+    private String status;
+    private int attempts;
+    private String last_error;
+}
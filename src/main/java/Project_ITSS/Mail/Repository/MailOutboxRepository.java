@@ -0,0 +1,78 @@
+package Project_ITSS.Mail.Repository;
+
+import Project_ITSS.Mail.Entity.OutboxMail;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public class MailOutboxRepository {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final RowMapper<OutboxMail> ROW_MAPPER = (rs, rowNum) -> {
+        OutboxMail mail = new OutboxMail();
+        mail.setMail_id(rs.getLong("mail_id"));
+        mail.setTo_email(rs.getString("to_email"));
+        mail.setSubject(rs.getString("subject"));
+        mail.setContent(rs.getString("content"));
+        mail.setStatus(rs.getString("status"));
+        mail.setAttempts(rs.getInt("attempts"));
+        mail.setLast_error(rs.getString("last_error"));
+        return mail;
+    };
+
+    public void enqueue(String to_email, String subject, String content) {
+        jdbcTemplate.update("INSERT INTO mail_outbox (to_email, subject, content, status, attempts, next_attempt_at, created_at) " +
+                        "VALUES (?, ?, ?, 'pending', 0, now(), now())",
+                to_email, subject, content);
+    }
+
+    /**
+     * Nhận tối đa limit email đến hạn gửi và chuyển sang trạng thái sending trong cùng một câu lệnh.
+     * SKIP LOCKED giúp nhiều instance có thể cùng lấy việc mà không nhận trùng email.
+     * Email đã nhận được đánh dấu bằng một claim_id mới rồi đọc lại (H2 không có UPDATE ... RETURNING).
+     */
+    public List<OutboxMail> claimDue(int limit) {
+        String claim_id = UUID.randomUUID().toString();
+        int claimed = jdbcTemplate.update(
+                "UPDATE mail_outbox SET status = 'sending', locked_at = now(), claim_id = ? " +
+                "WHERE mail_id IN (" +
+                "    SELECT mail_id FROM mail_outbox " +
+                "    WHERE status = 'pending' AND next_attempt_at <= now() " +
+                "    ORDER BY next_attempt_at LIMIT ? FOR UPDATE SKIP LOCKED" +
+                ")",
+                claim_id, limit);
+        if (claimed == 0) {
+            return List.of();
+        }
+        return jdbcTemplate.query("SELECT * FROM mail_outbox WHERE claim_id = ? AND status = 'sending' ORDER BY next_attempt_at",
+                ROW_MAPPER, claim_id);
+    }
+
+    public void markSent(long mail_id) {
+        jdbcTemplate.update("UPDATE mail_outbox SET status = 'sent', attempts = attempts + 1, sent_at = now(), last_error = NULL " +
+                "WHERE mail_id = ?", mail_id);
+    }
+
+    public void markRetry(long mail_id, long delayMillis, String error) {
+        jdbcTemplate.update("UPDATE mail_outbox SET status = 'pending', attempts = attempts + 1, last_error = ?, " +
+                        "next_attempt_at = now() + CAST(? AS BIGINT) * INTERVAL '0.001' SECOND WHERE mail_id = ?",
+                error, delayMillis, mail_id);
+    }
+
+    public void markDead(long mail_id, String error) {
+        jdbcTemplate.update("UPDATE mail_outbox SET status = 'dead', attempts = attempts + 1, last_error = ? WHERE mail_id = ?",
+                error, mail_id);
+    }
+
+    // Trả lại các email bị kẹt ở trạng thái sending (ví dụ instance bị tắt giữa chừng)
+    public int releaseStuck(long olderThanMillis) {
+        return jdbcTemplate.update("UPDATE mail_outbox SET status = 'pending' " +
+                "WHERE status = 'sending' AND locked_at < now() - CAST(? AS BIGINT) * INTERVAL '0.001' SECOND", olderThanMillis);
+    }
+}
@@ -0,0 +1,172 @@
+package Project_ITSS.Mail.Service;
+
+import Project_ITSS.Mail.Entity.OutboxMail;
+import Project_ITSS.Mail.Repository.MailOutboxRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gửi email qua bảng outbox: caller chỉ ghi email vào mail_outbox rồi trả về ngay,
+ * một thread nền lấy các email đến hạn và gửi trên virtual thread.
+ * Email gửi lỗi được thử lại với thời gian chờ tăng theo cấp số nhân, quá số lần thì chuyển sang dead.
+ */
+@Service
+public class MailOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MailOutboxService.class);
+
+    @Autowired
+    private MailOutboxRepository outboxRepository;
+    @Autowired
+    private JavaMailSender javaMailSender;
+
+    @Value("${mail.outbox.poll-interval-ms:2000}")
+    private long pollIntervalMs;
+    @Value("${mail.outbox.batch-size:50}")
+    private int batchSize;
+    @Value("${mail.outbox.max-concurrency:8}")
+    private int maxConcurrency;
+    @Value("${mail.outbox.max-attempts:6}")
+    private int maxAttempts;
+    @Value("${mail.outbox.initial-backoff-ms:30000}")
+    private long initialBackoffMs;
+    @Value("${mail.outbox.max-backoff-ms:3600000}")
+    private long maxBackoffMs;
+    @Value("${mail.outbox.stuck-timeout-ms:600000}")
+    private long stuckTimeoutMs;
+
+    private ExecutorService senders;
+    private Semaphore permits;
+    private final Object wakeUp = new Object();
+    private volatile boolean running;
+    private Thread dispatcher;
+
+    @PostConstruct
+    public void start() {
+        senders = Executors.newVirtualThreadPerTaskExecutor();
+        permits = new Semaphore(maxConcurrency);
+        running = true;
+        dispatcher = new Thread(this::runDispatcher, "mail-outbox-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Ghi email vào outbox và đánh thức dispatcher, không chờ SMTP
+     */
+    public void enqueue(String to_email, String subject, String content) {
+        outboxRepository.enqueue(to_email, subject, content);
+        synchronized (wakeUp) {
+            wakeUp.notifyAll();
+        }
+    }
+
+    private void runDispatcher() {
+        long lastStuckCheck = 0;
+        while (running) {
+            try {
+                if (System.currentTimeMillis() - lastStuckCheck > stuckTimeoutMs) {
+                    int released = outboxRepository.releaseStuck(stuckTimeoutMs);
+                    if (released > 0) {
+                        logger.warn("Released {} mails stuck in sending state", released);
+                    }
+                    lastStuckCheck = System.currentTimeMillis();
+                }
+                int claimable = Math.min(batchSize, permits.availablePermits());
+                List<OutboxMail> mails = claimable > 0 ? outboxRepository.claimDue(claimable) : List.of();
+                for (OutboxMail mail : mails) {
+                    permits.acquire();
+                    senders.submit(() -> {
+                        try {
+                            send(mail);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                }
+                // Lấy được đủ batch thì có thể vẫn còn email đến hạn, lấy tiếp ngay
+                if (mails.size() < batchSize || claimable < batchSize) {
+                    synchronized (wakeUp) {
+                        wakeUp.wait(pollIntervalMs);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Mail outbox dispatcher error: {}", e.getMessage());
+                sleepQuietly(pollIntervalMs);
+            }
+        }
+    }
+
+    private void send(OutboxMail mail) {
+        try {
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setTo(mail.getTo_email());
+            message.setSubject(mail.getSubject());
+            message.setText(mail.getContent());
+            javaMailSender.send(message);
+            outboxRepository.markSent(mail.getMail_id());
+            logger.info("Mail {} sent to {}", mail.getMail_id(), mail.getTo_email());
+        } catch (Exception e) {
+            int attempts = mail.getAttempts() + 1;
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            try {
+                if (attempts >= maxAttempts) {
+                    outboxRepository.markDead(mail.getMail_id(), error);
+                    logger.error("Mail {} to {} moved to dead letter after {} attempts: {}",
+                            mail.getMail_id(), mail.getTo_email(), attempts, error);
+                } else {
+                    long delay = backoff(attempts);
+                    outboxRepository.markRetry(mail.getMail_id(), delay, error);
+                    logger.warn("Mail {} to {} failed (attempt {}), retrying in {} ms: {}",
+                            mail.getMail_id(), mail.getTo_email(), attempts, delay, error);
+                }
+            } catch (Exception ex) {
+                // Email vẫn ở trạng thái sending, sẽ được trả lại sau stuck-timeout
+                logger.error("Failed to record result of mail {}: {}", mail.getMail_id(), ex.getMessage());
+            }
+        }
+    }
+
+    // initial * 2^(attempts - 1), có giới hạn trên
+    private long backoff(int attempts) {
+        int shift = Math.min(attempts - 1, 30);
+        return Math.min(initialBackoffMs << shift, maxBackoffMs);
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        senders.shutdown();
+        try {
+            // Email đang gửi dở sẽ được trả lại pending sau stuck-timeout nếu không kịp xong
+            senders.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package Project_ITSS.PlaceOrder.Controller;
 
+import Project_ITSS.PlaceOrder.Entity.BulkCancellationRequest;
+import Project_ITSS.PlaceOrder.Entity.CancellationJob;
+import Project_ITSS.PlaceOrder.Entity.OrderRefund;
+import Project_ITSS.PlaceOrder.Service.BulkCancellationService;
 import Project_ITSS.PlaceOrder.Service.OrderCancellationService;
 import Project_ITSS.PlaceOrder.Command.CommandResult;
 import Project_ITSS.PlaceOrder.Exception.OrderNotFoundException;
@@ -24,10 +28,13 @@ public class CancelOrderController {
     private static final Logger logger = LoggerFactory.getLogger(CancelOrderController.class);
     
     private final OrderCancellationService cancellationService;
+    private final BulkCancellationService bulkCancellationService;
     
     @Autowired
-    public CancelOrderController(OrderCancellationService cancellationService) {
+    public CancelOrderController(OrderCancellationService cancellationService,
+                                 BulkCancellationService bulkCancellationService) {
         this.cancellationService = cancellationService;
+        this.bulkCancellationService = bulkCancellationService;
     }
 
     /**
@@ -42,8 +49,9 @@ public class CancelOrderController {
             CommandResult result = cancellationService.cancelOrder(orderId, request);
             
             if (result.isSuccess()) {
-                logger.info("Order cancellation successful for order: {}", orderId);
-                return ResponseEntity.ok(result.getData());
+                // Refund chạy nền, client theo dõi kết quả qua /cancel/status
+                logger.info("Order cancellation accepted for order: {}", orderId);
+                return ResponseEntity.accepted().body(result.getData());
             } else {
                 logger.warn("Order cancellation failed for order: {} - {}", orderId, result.getMessage());
                 return ResponseEntity.badRequest().body(result.getMessage());
@@ -64,6 +72,61 @@ public class CancelOrderController {
         }
     }
 
+    /**
+     * Refund status of a cancelled order: refund_pending, refunded, refund_failed or refund_unknown (needs reconciliation)
+     */
+    @GetMapping("/cancel/status")
+    public ResponseEntity<?> getCancellationStatus(@RequestParam("order_id") long orderId) {
+        OrderRefund refund = cancellationService.getRefundStatus(orderId);
+        if (refund == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body("No cancellation found for order: " + orderId);
+        }
+        return ResponseEntity.ok(refund);
+    }
+
+    /**
+     * Bulk cancel: a list of order_ids, or a filter over pending orders (payment_method, order_id_from, order_id_to).
+     * Refunds run in the background, progress is read from /cancel/bulk/{jobId}
+     */
+    @PostMapping("/cancel/bulk")
+    public ResponseEntity<?> cancelOrders(@RequestBody BulkCancellationRequest bulkRequest,
+                                          HttpServletRequest request) {
+        try {
+            CancellationJob job = bulkCancellationService.submit(bulkRequest, request);
+            return ResponseEntity.accepted().body(job);
+        } catch (OrderCancellationException e) {
+            logger.warn("Bulk cancellation rejected: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Unexpected error creating bulk cancellation job: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Internal error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Bulk cancellation job with the number of orders in each item status
+     */
+    @GetMapping("/cancel/bulk/{jobId}")
+    public ResponseEntity<?> getBulkCancellation(@PathVariable("jobId") long jobId) {
+        CancellationJob job = bulkCancellationService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body("No bulk cancellation job: " + jobId);
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    /**
+     * Per-order results of a bulk cancellation job, optionally only those in one status
+     */
+    @GetMapping("/cancel/bulk/{jobId}/items")
+    public ResponseEntity<?> getBulkCancellationItems(@PathVariable("jobId") long jobId,
+                                                      @RequestParam(value = "status", required = false) String status) {
+        return ResponseEntity.ok(bulkCancellationService.getItems(jobId, status));
+    }
+
     /**
      * Test endpoint
      */
@@ -0,0 +1,81 @@
+package Project_ITSS.PlaceOrder.Controller;
+
+import Project_ITSS.PlaceOrder.Entity.CartSession;
+import Project_ITSS.PlaceOrder.Exception.PlaceOrderException;
+import Project_ITSS.PlaceOrder.Service.CartService_PlaceOrder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.function.Supplier;
+
+@Getter
+@Setter
+@NoArgsConstructor
+class CartItemDTO {
+    private int product_id;
+    private int quantity;
+}
+
+
+// Cart phía server, mỗi thay đổi trả về cart cùng tổng tiền mới
+@RestController
+@RequestMapping("/cart")
+@CrossOrigin(origins = "http://localhost:3000")
+public class CartController {
+    @Autowired
+    private CartService_PlaceOrder cartService;
+
+    @PostMapping
+    public CartSession createCart() {
+        return cartService.createCart();
+    }
+
+    @GetMapping("/{cart_id}")
+    public ResponseEntity<?> getCart(@PathVariable("cart_id") String cart_id) {
+        CartSession cart = cartService.getCart(cart_id);
+        if (cart == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Cart not found: " + cart_id);
+        }
+        return ResponseEntity.ok(cart);
+    }
+
+    // Thêm product vào cart, nếu đã có thì cộng thêm số lượng
+    @PostMapping("/{cart_id}/items")
+    public ResponseEntity<?> addItem(@PathVariable("cart_id") String cart_id, @RequestBody CartItemDTO item) {
+        return respond(() -> cartService.addItem(cart_id, item.getProduct_id(), item.getQuantity()));
+    }
+
+    @PutMapping("/{cart_id}/items/{product_id}")
+    public ResponseEntity<?> updateQuantity(@PathVariable("cart_id") String cart_id,
+                                            @PathVariable("product_id") int product_id,
+                                            @RequestParam("quantity") int quantity) {
+        return respond(() -> cartService.updateQuantity(cart_id, product_id, quantity));
+    }
+
+    @DeleteMapping("/{cart_id}/items/{product_id}")
+    public ResponseEntity<?> removeItem(@PathVariable("cart_id") String cart_id,
+                                        @PathVariable("product_id") int product_id) {
+        return respond(() -> cartService.removeItem(cart_id, product_id));
+    }
+
+    @DeleteMapping("/{cart_id}")
+    public ResponseEntity<?> deleteCart(@PathVariable("cart_id") String cart_id) {
+        if (!cartService.deleteCart(cart_id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Cart not found: " + cart_id);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private ResponseEntity<?> respond(Supplier<CartSession> change) {
+        try {
+            return ResponseEntity.ok(change.get());
+        } catch (PlaceOrderException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package Project_ITSS.PlaceOrder.Controller;
 
+import Project_ITSS.IdGenerator.Service.IdGeneratorService;
 import Project_ITSS.PlaceOrder.Entity.*;
 import Project_ITSS.PlaceOrder.Exception.PlaceOrderException;
 import Project_ITSS.PlaceOrder.Repository.OrderRepository_PlaceOrder;
 import Project_ITSS.PlaceOrder.Repository.ProductRepository_PlaceOrder;
+import Project_ITSS.PlaceOrder.Service.CartService_PlaceOrder;
 import Project_ITSS.PlaceOrder.Service.NonDBService_PlaceOrder;
 import Project_ITSS.PlaceOrder.Service.OrderService_PlaceOrder;
+import Project_ITSS.PlaceOrder.Service.PricingService_PlaceOrder;
 import Project_ITSS.PlaceOrder.Service.ProductService_PlaceOrder;
+import Project_ITSS.PlaceOrder.Service.StockReservationService_PlaceOrder;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.NoArgsConstructor;
@@ -41,6 +45,14 @@ public class PlaceOrderController {
     private NonDBService_PlaceOrder nonDBService;
     @Autowired
     private OrderRepository_PlaceOrder orderRepository;
+    @Autowired
+    private StockReservationService_PlaceOrder reservationService;
+    @Autowired
+    private IdGeneratorService idGenerator;
+    @Autowired
+    private CartService_PlaceOrder cartService;
+    @Autowired
+    private PricingService_PlaceOrder pricingService;
 
     @GetMapping("/test")
     public void JustForFun(){
@@ -56,8 +68,9 @@ public class PlaceOrderController {
             if (order == null) {
                 return ResponseEntity.status(404).body("Order not found");
             }
-            if (!"pending".equalsIgnoreCase(order.getStatus())) {
-                return ResponseEntity.status(400).body("Order status must be 'pending' to approve. Current status: " + order.getStatus());
+            // Order needs_review được duyệt sau khi người quản lý đã kiểm tra số tiền thanh toán
+            if (!"pending".equalsIgnoreCase(order.getStatus()) && !OrderService_PlaceOrder.STATUS_NEEDS_REVIEW.equalsIgnoreCase(order.getStatus())) {
+                return ResponseEntity.status(400).body("Order status must be 'pending' or '" + OrderService_PlaceOrder.STATUS_NEEDS_REVIEW + "' to approve. Current status: " + order.getStatus());
             }
             orderRepository.updateOrderStatusToApprove(orderId);
             return ResponseEntity.ok("Order " + orderId + " has been approved.");
@@ -70,38 +83,79 @@ public class PlaceOrderController {
     @PostMapping("/placeorder")
     // Yêu cầu việc đặt hàng và kiểm tra số lượng sản phẩm trong cart liệu có phù hợp
     public Map<String, Object> RequestToPlaceOrder(@RequestBody Cart cart){
-        // Kiểm tra số lựong product trong cart có đủ để bán không
-        Map<String, Object> json = new HashMap<>();
         if(cart == null){
             throw new PlaceOrderException("The cart is null");
         }
-        for(CartItem cartItem : cart.getProducts()){
-            Product product = cartItem.getProduct();
-            int quantity = cartItem.getQuantity();
-            System.out.println(product.getProduct_id());
-            if(product == null){
-                throw new PlaceOrderException("Product is null");
-            }
-            boolean result = productService.checkProductValidity(quantity,product.getProduct_id());
-            if(!result){
-                System.out.println("Falied");
-                json.put("message","Inadequate");
-                return json;
-            }
-        }
         Order order = new Order();    // Tạo một entity là order
-        order.createOrder(cart);   
+        order.createOrder(cart);      // Điền thông tin các thuộc tính cho order, dựa trên thông tin của cart
+        return placeOrder(cart, order);
+    }
+
+
+    @PostMapping("/placeorder/cart/{cart_id}")
+    // Đặt hàng từ cart phía server, tổng tiền lấy từ cart thay vì tính lại
+    public Map<String, Object> RequestToPlaceOrderFromCart(@PathVariable("cart_id") String cart_id){
+        CartSession cartSession = cartService.getCart(cart_id);
+        if(cartSession == null || cartSession.isEmpty()){
+            throw new PlaceOrderException("The cart is empty or does not exist");
+        }
+        Order order = new Order();
+        order.createOrder(cartSession);
+        return placeOrder(cartSession.toCart(), order);
+    }
+
+
+    private Map<String, Object> placeOrder(Cart cart, Order order){
+        // Kiểm tra số lựong product trong cart có đủ để bán không
+        Map<String, Object> json = new HashMap<>();
+        // Kiểm tra cả cart trong một lần truy vấn, báo lại tất cả các product không đủ hàng
+        CartValidationResult validation = productService.checkCartValidity(cart);
+        if(!validation.isValid()){
+            json.put("message","Inadequate");
+            json.put("inadequate_products",validation.getInadequateProducts());
+            return json;
+        }
+        order.setOrder_id(idGenerator.nextOrderId());   // Mã order duy nhất trên mọi node
+        // Giữ hàng cho cart dưới order_id vừa cấp, nếu trong lúc đó có người khác đã mua hết thì báo lại như trên
+        StockReservation reservation = reservationService.reserve(cart, validation, order.getOrder_id());
+        if(reservation == null){
+            json.put("message","Inadequate");
+            json.put("inadequate_products",validation.getInadequateProducts());
+            return json;
+        }
+        order.setReservation_id(reservation.getReservation_id());
+        // PayOrder hiện chỉ thanh toán qua VNPay, thanh toán của order dùng order_id làm vnp_TxnRef
+        order.setPayment_method(PaymentMethod.VNPAY.name());
+        // Giá lấy từ bảng giá phía server, không dùng giá trong cart client gửi lên.
+        // Định giá sau cùng để price stamp ràng buộc cả order_id, lượt giữ hàng và phương thức thanh toán
+        try{
+            pricingService.priceOrder(order);
+        }catch (RuntimeException e){
+            reservationService.release(reservation.getReservation_id(), reservation.getRelease_token());
+            throw e;
+        }
         json.put("order",order);
-        json.put("message","Successfully");   // Điền thông tin các thuộc tính cho order, dựa trên thông tin của cart
+        json.put("release_token",reservation.getRelease_token());
+        json.put("message","Successfully");
         return json;                 // trả về entity order
     }
 
 
+    // Trả lại hàng đã giữ khi thanh toán thất bại hoặc người dùng huỷ việc đặt hàng, cần release_token trả về từ /placeorder
+    @PostMapping("/reservation/{id}/release")
+    public Map<String, Object> releaseReservation(@PathVariable("id") long reservation_id, @RequestParam("token") String release_token){
+        Map<String, Object> json = new HashMap<>();
+        json.put("released", reservationService.release(reservation_id, release_token));
+        return json;
+    }
+
+
     @PostMapping("/recalculate")
     public Map<String, Object> recalculate(@RequestBody FeeInfoDTO feeInfoDTO) {
         // Phí = 50k + 10k mỗi kg
         String province = feeInfoDTO.getProvince();
         Order order = feeInfoDTO.getOrder();
+        pricingService.ensurePriced(order);     // Chỉ định giá lại khi price stamp đã hết hạn, order bị sửa thì bị từ chối
         System.out.println(province);
         System.out.println(order.getTotal_after_VAT());
         int[] deliveryfees = orderService.CalculateDeliveryFee(province,order);
@@ -136,8 +190,14 @@ public class PlaceOrderController {
         Map<String, Object> json = new HashMap<>();
         DeliveryInformation deliveryInformation = orderInfoDTO.getDeliveryInformation();
         Order order = orderInfoDTO.getOrder();
-        System.out.println(deliveryInformation.getDelivery_fee());
-        System.out.println(order.getTotal_after_VAT());
+        // Khách đã thanh toán nên order không bị từ chối: stamp hết hạn hoặc không hợp lệ (order bị sửa sau khi định giá)
+        // thì định giá lại rồi so với số tiền đã thực trả, stamp không hợp lệ thì order luôn được lưu ở needs_review
+        PricingService_PlaceOrder.StampStatus stampStatus = pricingService.verifyStamp(order);
+        Integer stamped_total_after_VAT = stampStatus == PricingService_PlaceOrder.StampStatus.INVALID ? null : order.getTotal_after_VAT();
+        if(stampStatus != PricingService_PlaceOrder.StampStatus.VALID){
+            pricingService.priceOrder(order);
+        }
+        orderService.reviewPayment(order,deliveryInformation,stamped_total_after_VAT);
         orderService.saveOrder(order,deliveryInformation);      //   Lưu lại thông tin order trong database
         nonDBService.SendSuccessEmail(deliveryInformation.getEmail(),"Thông báo về việc đặt hàng","Bạn đã đật hàng thành công. Mã đơn hàng của bạn là:" + order.getOrder_id());  // Gửi email thông báo
         json.put("status",1);
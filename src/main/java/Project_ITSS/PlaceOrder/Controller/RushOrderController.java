@@ -1,6 +1,8 @@
 package Project_ITSS.PlaceOrder.Controller;
 
+import Project_ITSS.PlaceOrder.Delivery.RushSlotScheduler;
 import Project_ITSS.PlaceOrder.Entity.*;
+import Project_ITSS.PlaceOrder.Exception.PlaceOrderException;
 import Project_ITSS.PlaceOrder.Service.NonDBService_PlaceOrder;
 import Project_ITSS.PlaceOrder.Service.OrderService_PlaceOrder;
 import Project_ITSS.PlaceOrder.Service.ProductService_PlaceOrder;
@@ -40,6 +42,8 @@ public class RushOrderController {
     private OrderService_PlaceOrder orderService;
     @Autowired
     private ProductService_PlaceOrder productService;
+    @Autowired
+    private RushSlotScheduler rushSlotScheduler;
 
 
     @GetMapping("/rush_check/product/{id}")
@@ -51,6 +55,35 @@ public class RushOrderController {
     public boolean check_rush_order_products(){
         return productService.checkProducsRush();
     }
+
+    // Kiểm tra cả cart một lần, trả về các product không hỗ trợ rush order
+    @PostMapping("/rush_check/cart")
+    public Map<String, Object> check_rush_order_cart(@RequestBody Cart cart){
+        List<Integer> unsupported = productService.checkCartRush(cart);
+        Map<String, Object> json = new HashMap<>();
+        json.put("eligible",unsupported.isEmpty());
+        json.put("unsupported_products",unsupported);
+        return json;
+    }
+    // Các khung giờ giao hàng nhanh của tỉnh và số chỗ còn trống
+    @GetMapping("/rush/slots")
+    public List<RushSlot> get_rush_slots(@RequestParam("province") String province){
+        return rushSlotScheduler.getAvailability(province);
+    }
+
+    // Xếp rush order đã lưu (orderId) vào khung giờ sớm nhất còn chỗ của tỉnh nhận hàng đã lưu cùng order, destination client gửi lên bị bỏ qua
+    @PostMapping("/rush/schedule")
+    public Map<String, Object> schedule_rush_order(@RequestBody DeliveryInfo deliveryInfo){
+        Map<String, Object> json = new HashMap<>();
+        try{
+            json.put("slot",orderService.saveRushOrder(deliveryInfo));
+            json.put("message","Successfully");
+        }catch (PlaceOrderException e){
+            json.put("message",e.getMessage());
+        }
+        return json;
+    }
+
     // 2. Kiểm tra tính hợp lệ điểm đến
 //    @PostMapping("/check-validity")
 //    @ResponseBody
@@ -0,0 +1,33 @@
+package Project_ITSS.PlaceOrder.Delivery;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Biểu phí giao hàng của một tỉnh/thành phố
+ */
+@Getter
+@AllArgsConstructor
+public class DeliveryRate {
+    // Phí cho phần cân nặng cơ bản
+    private final int baseFee;
+    // Cân nặng (kg) được tính trong phí cơ bản
+    private final double baseWeight;
+    // Mỗi bậc cân nặng vượt quá (kg) và phí cho một bậc
+    private final double stepWeight;
+    private final int stepFee;
+    // Phụ phí cho mỗi orderline giao hàng nhanh
+    private final int rushSurcharge;
+    // Khoản hỗ trợ trừ vào tổng phí giao hàng thường (nội thành)
+    private final int normalFeeSubsidy;
+
+    /**
+     * Phí giao hàng của một orderline, số bậc vượt cân được tính trực tiếp bằng ceil thay cho vòng lặp
+     */
+    public int feeFor(double weight, boolean rush) {
+        double excess = weight - baseWeight - stepWeight;
+        int steps = excess > 0 ? (int) Math.ceil(excess / stepWeight) : 0;
+        int fee = baseFee + steps * stepFee;
+        return rush ? fee + rushSurcharge : fee;
+    }
+}
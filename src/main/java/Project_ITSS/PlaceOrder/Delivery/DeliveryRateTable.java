@@ -0,0 +1,12 @@
+package Project_ITSS.PlaceOrder.Delivery;
+
+/**
+ * Bảng phí giao hàng theo tỉnh/thành phố, có thể thay bằng một implementation khác (ví dụ đọc từ DB)
+ */
+public interface DeliveryRateTable {
+
+    /**
+     * Lấy biểu phí của tỉnh, trả về biểu phí mặc định nếu tỉnh không có biểu phí riêng
+     */
+    DeliveryRate getRate(String province);
+}
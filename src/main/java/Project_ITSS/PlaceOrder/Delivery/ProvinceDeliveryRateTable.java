@@ -0,0 +1,29 @@
+package Project_ITSS.PlaceOrder.Delivery;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Bảng phí mặc định: HaNoi và HoChiMinhCity được tính theo biểu phí nội thành,
+ * các tỉnh còn lại dùng biểu phí chung
+ */
+@Component
+public class ProvinceDeliveryRateTable implements DeliveryRateTable {
+
+    private static final DeliveryRate DEFAULT_RATE = new DeliveryRate(30000, 0.5, 0.5, 2500, 10000, 0);
+    private static final DeliveryRate INNER_CITY_RATE = new DeliveryRate(22000, 3, 0.5, 2500, 10000, 25000);
+
+    private final Map<String, DeliveryRate> rates = Map.of(
+            "HaNoi", INNER_CITY_RATE,
+            "HoChiMinhCity", INNER_CITY_RATE
+    );
+
+    @Override
+    public DeliveryRate getRate(String province) {
+        if (province == null) {
+            return DEFAULT_RATE;
+        }
+        return rates.getOrDefault(province, DEFAULT_RATE);
+    }
+}
@@ -0,0 +1,125 @@
+package Project_ITSS.PlaceOrder.Delivery;
+
+import Project_ITSS.PlaceOrder.Repository.ProductRepository_PlaceOrder;
+import Project_ITSS.ViewProduct2.Event.ProductChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tập các product hỗ trợ rush order, lưu dạng BitSet theo product_id nên kiểm tra rush không cần truy vấn database.
+ * BitSet được thay cả bản (copy-on-write) một lần cho mỗi ProductChangedEvent, người đọc không cần khoá.
+ * Được nạp lại toàn bộ sau mỗi refresh-seconds để thấy cả thay đổi từ node khác.
+ */
+@Component
+public class RushEligibilityIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(RushEligibilityIndex.class);
+
+    @Autowired
+    private ProductRepository_PlaceOrder productRepository;
+
+    @Value("${rush.index.refresh-seconds:300}")
+    private long refreshSeconds;
+
+    private volatile BitSet eligible = new BitSet();
+    // Tăng sau mỗi thay đổi lẻ, lần nạp lại toàn bộ bắt đầu trước thay đổi đó thì bỏ kết quả
+    private long modifications;
+    private ScheduledExecutorService refresher;
+
+    @PostConstruct
+    public void start() {
+        rebuild();
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rush-index-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::rebuild, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    public boolean isEligible(int product_id) {
+        return product_id >= 0 && eligible.get(product_id);
+    }
+
+    public boolean anyEligible() {
+        return !eligible.isEmpty();
+    }
+
+    // Các product trong danh sách không hỗ trợ rush order (hoặc không tồn tại)
+    public List<Integer> ineligible(Collection<Integer> product_ids) {
+        BitSet snapshot = eligible;
+        List<Integer> result = new ArrayList<>();
+        for (int product_id : product_ids) {
+            if (product_id < 0 || !snapshot.get(product_id)) {
+                result.add(product_id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Đọc lại các product thay đổi trong một commit bằng một truy vấn và thay BitSet một lần cho cả nhóm
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        List<Integer> product_ids = new ArrayList<>();
+        for (long product_id : event.getProductIds()) {
+            product_ids.add((int) product_id);
+        }
+        try {
+            Set<Integer> rush = productRepository.findRushOrderSupported(product_ids);
+            synchronized (this) {
+                BitSet copy = (BitSet) eligible.clone();
+                for (int product_id : product_ids) {
+                    copy.set(product_id, rush.contains(product_id));
+                }
+                eligible = copy;
+                modifications++;
+            }
+        } catch (Exception e) {
+            // Lần nạp lại toàn bộ tiếp theo sẽ sửa lại
+            logger.error("Failed to update rush eligibility of products {}: {}", product_ids, e.getMessage());
+        }
+    }
+
+    private void rebuild() {
+        try {
+            long startedAt;
+            synchronized (this) {
+                startedAt = modifications;
+            }
+            BitSet rebuilt = new BitSet();
+            for (int product_id : productRepository.getRushProductIds()) {
+                rebuilt.set(product_id);
+            }
+            synchronized (this) {
+                if (modifications == startedAt) {
+                    eligible = rebuilt;
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to rebuild rush eligibility index: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+}
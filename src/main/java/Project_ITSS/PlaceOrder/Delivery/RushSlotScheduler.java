@@ -0,0 +1,254 @@
+package Project_ITSS.PlaceOrder.Delivery;
+
+import Project_ITSS.PlaceOrder.Entity.RushSlot;
+import Project_ITSS.PlaceOrder.Exception.PlaceOrderException;
+import Project_ITSS.PlaceOrder.Repository.RushSlotRepository_PlaceOrder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Xếp rush order vào khung giờ giao hàng sớm nhất còn chỗ của tỉnh nhận hàng.
+ * Chỉ các tỉnh trong rush.slot.provinces có khung giờ, tỉnh khác (kể cả chuỗi bất kỳ gửi tới /rush/slots) không tạo bộ đếm nào.
+ * Mỗi tỉnh có các khung giờ slot-minutes phút trong giờ làm việc, mỗi khung có capacity chỗ
+ * (rush.slot.capacity, ghi đè theo tỉnh bằng rush.slot.capacity.<tỉnh>, 0 là không giao nhanh).
+ * Số chỗ đã đặt được giữ trong bộ đếm AtomicInteger nên xem chỗ trống không cần truy vấn database;
+ * database (rush_slot) vẫn là nơi quyết định cuối cùng khi đặt và được đọc lại sau mỗi refresh-seconds để thấy lượt đặt của node khác.
+ */
+@Component
+public class RushSlotScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RushSlotScheduler.class);
+
+    @Autowired
+    private RushSlotRepository_PlaceOrder slotRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private Environment environment;
+
+    @Value("${rush.slot.open-hour:8}")
+    private int openHour;
+    @Value("${rush.slot.close-hour:20}")
+    private int closeHour;
+    @Value("${rush.slot.slot-minutes:120}")
+    private int slotMinutes;
+    @Value("${rush.slot.horizon-days:2}")
+    private int horizonDays;
+    @Value("${rush.slot.lead-minutes:60}")
+    private int leadMinutes;
+    @Value("${rush.slot.capacity:20}")
+    private int defaultCapacity;
+    @Value("${rush.slot.refresh-seconds:30}")
+    private long refreshSeconds;
+    @Value("${rush.slot.provinces:HaNoi,HoChiMinhCity}")
+    private String[] provinces;
+
+    private final Map<String, NavigableMap<LocalDateTime, Slot>> slotsByProvince = new ConcurrentHashMap<>();
+    private final Map<String, Integer> capacities = new ConcurrentHashMap<>();
+    private ScheduledExecutorService refresher;
+
+    @PostConstruct
+    public void start() {
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rush-slot-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, 0, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Các khung giờ có thể đặt của tỉnh, từ sớm nhất, chỉ đọc bộ đếm trong bộ nhớ.
+     * Tỉnh không giao nhanh trả về danh sách rỗng
+     */
+    public List<RushSlot> getAvailability(String province) {
+        List<RushSlot> result = new ArrayList<>();
+        for (Slot slot : upcomingSlots(province)) {
+            RushSlot view = new RushSlot();
+            view.setProvince(province);
+            view.setSlot_start(slot.start);
+            view.setSlot_end(slot.start.plusMinutes(slotMinutes));
+            view.setCapacity(slot.capacity);
+            view.setAvailable(Math.max(0, slot.capacity - slot.booked.get()));
+            result.add(view);
+        }
+        return result;
+    }
+
+    /**
+     * Xếp order vào khung giờ sớm nhất còn chỗ của tỉnh nhận hàng đã lưu cùng order. Order đã được xếp trước đó thì trả về khung giờ cũ.
+     * Order phải đã được lưu và có ít nhất một orderline rush, tỉnh do client gửi lên không được dùng.
+     * Chỗ được giữ trong bộ nhớ bằng compare-and-set trước, rồi mới ghi vào database trong một transaction.
+     */
+    public RushSlot assign(long order_id) {
+        String province = slotRepository.findDeliveryProvince(order_id);
+        if (province == null) {
+            throw new PlaceOrderException("Unknown order id: " + order_id);
+        }
+        if (province.isBlank()) {
+            throw new PlaceOrderException("Province is required for rush delivery");
+        }
+        if (!slotRepository.hasRushOrderline(order_id)) {
+            throw new PlaceOrderException("Order " + order_id + " has no rush orderline");
+        }
+        RushSlot existing = slotRepository.findBooking(order_id);
+        if (existing != null) {
+            return withEnd(existing);
+        }
+        for (Slot slot : upcomingSlots(province)) {
+            if (!slot.tryReserve()) {
+                continue;
+            }
+            Boolean booked;
+            try {
+                booked = transactionTemplate.execute(status -> {
+                    if (!slotRepository.tryBook(province, slot.start, slot.capacity)) {
+                        return false;
+                    }
+                    slotRepository.saveBooking(order_id, province, slot.start);
+                    slotRepository.updateRushDeliveryTime(order_id, slot.start + " - " + slot.start.plusMinutes(slotMinutes));
+                    return true;
+                });
+            } catch (DuplicateKeyException e) {
+                // Một request khác vừa xếp chính order này
+                slot.booked.decrementAndGet();
+                RushSlot concurrent = slotRepository.findBooking(order_id);
+                if (concurrent != null) {
+                    return withEnd(concurrent);
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                slot.booked.decrementAndGet();
+                throw e;
+            }
+            if (Boolean.TRUE.equals(booked)) {
+                RushSlot result = new RushSlot();
+                result.setProvince(province);
+                result.setSlot_start(slot.start);
+                result.setCapacity(slot.capacity);
+                return withEnd(result);
+            }
+            // Node khác đã lấy hết chỗ của khung này
+            slot.booked.set(slot.capacity);
+        }
+        throw new PlaceOrderException("No rush delivery slot available for " + province);
+    }
+
+    // Các khung giờ từ now + lead-minutes đến hết horizon-days ngày, tạo bộ đếm cho khung chưa có
+    private List<Slot> upcomingSlots(String province) {
+        int capacity = capacityOf(province);
+        if (capacity <= 0) {
+            return List.of();
+        }
+        NavigableMap<LocalDateTime, Slot> slots = slotsByProvince.computeIfAbsent(province, key -> new ConcurrentSkipListMap<>());
+        LocalDateTime earliest = LocalDateTime.now().plusMinutes(leadMinutes);
+        List<Slot> result = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (int day = 0; day <= horizonDays; day++) {
+            LocalDateTime start = today.plusDays(day).atTime(LocalTime.of(openHour, 0));
+            LocalDateTime close = today.plusDays(day).atTime(LocalTime.of(closeHour, 0));
+            for (; !start.plusMinutes(slotMinutes).isAfter(close); start = start.plusMinutes(slotMinutes)) {
+                if (start.isBefore(earliest)) {
+                    continue;
+                }
+                result.add(slots.computeIfAbsent(start, key -> new Slot(key, capacity)));
+            }
+        }
+        return result;
+    }
+
+    // Tỉnh không có trong rush.slot.provinces có capacity 0 và không được thêm vào capacities
+    private int capacityOf(String province) {
+        if (!isRushProvince(province)) {
+            return 0;
+        }
+        return capacities.computeIfAbsent(province,
+                key -> environment.getProperty("rush.slot.capacity." + key, Integer.class, defaultCapacity));
+    }
+
+    private boolean isRushProvince(String province) {
+        for (String known : provinces) {
+            if (known.trim().equals(province)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private RushSlot withEnd(RushSlot slot) {
+        slot.setSlot_end(slot.getSlot_start().plusMinutes(slotMinutes));
+        return slot;
+    }
+
+    // Đồng bộ bộ đếm với database và bỏ các khung giờ đã qua
+    private void refresh() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            for (RushSlot stored : slotRepository.findUpcoming(now)) {
+                if (!isRushProvince(stored.getProvince())) {
+                    continue;
+                }
+                NavigableMap<LocalDateTime, Slot> slots = slotsByProvince.computeIfAbsent(stored.getProvince(), key -> new ConcurrentSkipListMap<>());
+                Slot slot = slots.computeIfAbsent(stored.getSlot_start(), key -> new Slot(key, stored.getCapacity()));
+                slot.capacity = stored.getCapacity();
+                slot.booked.set(stored.getCapacity() - stored.getAvailable());
+            }
+            for (NavigableMap<LocalDateTime, Slot> slots : slotsByProvince.values()) {
+                slots.headMap(now).clear();
+            }
+        } catch (Exception e) {
+            logger.error("Failed to refresh rush delivery slots: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private static final class Slot {
+        private final LocalDateTime start;
+        // Capacity đã lưu trong database được ưu tiên hơn cấu hình hiện tại
+        private volatile int capacity;
+        private final AtomicInteger booked = new AtomicInteger();
+
+        private Slot(LocalDateTime start, int capacity) {
+            this.start = start;
+            this.capacity = capacity;
+        }
+
+        private boolean tryReserve() {
+            while (true) {
+                int current = booked.get();
+                if (current >= capacity) {
+                    return false;
+                }
+                if (booked.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
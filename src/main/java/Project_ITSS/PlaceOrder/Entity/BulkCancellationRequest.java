@@ -0,0 +1,19 @@
+package Project_ITSS.PlaceOrder.Entity;
+
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// Yêu cầu huỷ hàng loạt: danh sách order_ids, hoặc bộ lọc (payment_method, khoảng order_id) trên các order pending
+@Getter
+@Setter
+@NoArgsConstructor
+public class BulkCancellationRequest {
+    private List<Integer> order_ids;
+    private String payment_method;
+    private Integer order_id_from;
+    private Integer order_id_to;
+}
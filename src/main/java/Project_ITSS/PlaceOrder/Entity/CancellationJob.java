@@ -0,0 +1,29 @@
+package Project_ITSS.PlaceOrder.Entity;
+
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Một job huỷ hàng loạt (bảng cancellation_job), progress là số order theo từng trạng thái item
+@Getter
+@Setter
+@NoArgsConstructor
+public class CancellationJob {
+    public static final String RUNNING = "running";
+    public static final String COMPLETED = "completed";
+    public static final String FAILED = "failed";
+
+    private long job_id;
+    private String status;
+    private String requested_ip;
+    private int total;
+    private String lease_id;
+    private int attempts;
+    private String created_at;
+    private String finished_at;
+    private Map<String, Integer> progress = new LinkedHashMap<>();
+}
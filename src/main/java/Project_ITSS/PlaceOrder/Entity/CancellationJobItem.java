@@ -0,0 +1,26 @@
+package Project_ITSS.PlaceOrder.Entity;
+
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Kết quả huỷ một order trong job (bảng cancellation_job_item)
+@Getter
+@Setter
+@NoArgsConstructor
+public class CancellationJobItem {
+    public static final String QUEUED = "queued";
+    public static final String CLAIMED = "claimed";
+    public static final String DISPATCHED = "dispatched";
+    public static final String REFUNDED = "refunded";
+    public static final String REFUND_FAILED = "refund_failed";
+    public static final String SKIPPED = "skipped";
+    public static final String NEEDS_REVIEW = "needs_review";
+
+    private long job_id;
+    private int order_id;
+    private String status;
+    private String message;
+    private String updated_at;
+}
@@ -0,0 +1,158 @@
+package Project_ITSS.PlaceOrder.Entity;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Cart được giữ phía server. Tổng tiền trước VAT được cộng trừ theo từng dòng mỗi khi cart thay đổi,
+ * tổng sau VAT suy ra từ đó (Order.totalAfterVAT) nên không phải tính lại cả cart.
+ * Không tự đồng bộ: CartService_PlaceOrder khoá trên chính object này khi đọc hoặc sửa.
+ * Các thay đổi chưa ghi xuống database được giữ lại để làm lại trên bản mới nếu lần ghi bị xung đột version.
+ */
+@Getter
+public class CartSession {
+    private final String cart_id;
+    @JsonIgnore
+    private final Map<Integer, CartItem> itemsByProduct = new LinkedHashMap<>();
+    private int total_before_VAT;
+    private int total_after_VAT;
+    private final int VAT = Order.VAT_RATE;
+    private long version;
+    @JsonIgnore
+    private long last_access;
+    // Đã bị đẩy khỏi bộ nhớ, thay đổi phải làm trên bản được nạp lại
+    @JsonIgnore
+    private boolean evicted;
+    // version của bản đã lưu trong database, -1 nếu cart chưa được lưu lần nào
+    @JsonIgnore
+    private long stored_version = -1;
+    // version sau thay đổi -> thay đổi, của các thay đổi chưa được lưu
+    @JsonIgnore
+    private final NavigableMap<Long, Consumer<CartSession>> unsaved = new TreeMap<>();
+
+    public CartSession(String cart_id) {
+        this.cart_id = cart_id;
+        this.last_access = System.currentTimeMillis();
+    }
+
+    // Nạp lại cart đã lưu, tổng tiền lấy từ bản ghi chứ không tính lại
+    public CartSession(String cart_id, long version, int total_before_VAT, int total_after_VAT, List<CartItem> items) {
+        this(cart_id);
+        this.version = version;
+        this.total_before_VAT = total_before_VAT;
+        this.total_after_VAT = total_after_VAT;
+        this.stored_version = version;
+        for (CartItem item : items) {
+            itemsByProduct.put(item.getProduct().getProduct_id(), item);
+        }
+    }
+
+    public List<CartItem> getItems() {
+        return new ArrayList<>(itemsByProduct.values());
+    }
+
+    public int getQuantity(int product_id) {
+        CartItem item = itemsByProduct.get(product_id);
+        return item != null ? item.getQuantity() : 0;
+    }
+
+    /**
+     * Đặt số lượng của một product trong cart, quantity <= 0 là bỏ product khỏi cart.
+     * Giá dùng cho dòng này là giá của product truyền vào.
+     */
+    public void setQuantity(Product product, int quantity) {
+        CartItem previous = quantity > 0
+                ? itemsByProduct.put(product.getProduct_id(), new CartItem(product, quantity))
+                : itemsByProduct.remove(product.getProduct_id());
+        if (previous != null) {
+            total_before_VAT -= lineBeforeVAT(previous);
+        }
+        if (quantity > 0) {
+            total_before_VAT += lineBeforeVAT(itemsByProduct.get(product.getProduct_id()));
+        }
+        changed();
+    }
+
+    public boolean remove(int product_id) {
+        CartItem previous = itemsByProduct.remove(product_id);
+        if (previous == null) {
+            return false;
+        }
+        total_before_VAT -= lineBeforeVAT(previous);
+        changed();
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return itemsByProduct.isEmpty();
+    }
+
+    public int size() {
+        return itemsByProduct.size();
+    }
+
+    public void touch() {
+        last_access = System.currentTimeMillis();
+    }
+
+    public void evict() {
+        evicted = true;
+    }
+
+    // Ghi nhận thay đổi vừa làm (đã tăng version) để có thể làm lại khi lần ghi bị xung đột
+    public void recordChange(Consumer<CartSession> change) {
+        unsaved.put(version, change);
+    }
+
+    // Bản có version đã được lưu, các thay đổi tới version đó không cần giữ nữa
+    public void markStored(long version) {
+        stored_version = Math.max(stored_version, version);
+        unsaved.headMap(version, true).clear();
+    }
+
+    // Lấy ra các thay đổi chưa được lưu theo thứ tự đã làm
+    public List<Consumer<CartSession>> takeUnsaved() {
+        List<Consumer<CartSession>> changes = new ArrayList<>(unsaved.values());
+        unsaved.clear();
+        return changes;
+    }
+
+    public void moveUnsavedTo(CartSession other) {
+        other.unsaved.putAll(unsaved);
+        unsaved.clear();
+    }
+
+    // Bản sao để ghi xuống database hoặc trả về client mà không giữ khoá, không mang theo các thay đổi chưa lưu
+    public CartSession copy() {
+        CartSession copy = new CartSession(cart_id, version, total_before_VAT, total_after_VAT, getItems());
+        copy.last_access = last_access;
+        copy.stored_version = stored_version;
+        return copy;
+    }
+
+    // Cart theo dạng mà /placeorder vẫn nhận
+    public Cart toCart() {
+        Cart cart = new Cart();
+        cart.addProducts(getItems());
+        return cart;
+    }
+
+    private void changed() {
+        total_after_VAT = Math.toIntExact(Order.totalAfterVAT(total_before_VAT));
+        version++;
+        touch();
+    }
+
+    private int lineBeforeVAT(CartItem item) {
+        return item.getQuantity() * item.getProduct().getPrice();
+    }
+}
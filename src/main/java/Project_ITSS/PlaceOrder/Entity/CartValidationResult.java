@@ -0,0 +1,40 @@
+package Project_ITSS.PlaceOrder.Entity;
+
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Kết quả kiểm tra toàn bộ cart trong một lần, liệt kê tất cả các product không đủ hàng
+@Getter
+@Setter
+@NoArgsConstructor
+public class CartValidationResult {
+    private List<ShortItem> inadequateProducts = new ArrayList<>();
+
+    public boolean isValid(){
+        return inadequateProducts.isEmpty();
+    }
+
+    public void addInadequateProduct(int product_id,int requested,int available){
+        inadequateProducts.add(new ShortItem(product_id,requested,available));
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class ShortItem {
+        private int product_id;
+        private int requested;
+        private int available;
+
+        public ShortItem(int product_id,int requested,int available){
+            this.product_id = product_id;
+            this.requested = requested;
+            this.available = available;
+        }
+    }
+}
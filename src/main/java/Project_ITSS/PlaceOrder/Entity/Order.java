@@ -12,13 +12,20 @@ import java.util.List;
 @Setter
 @NoArgsConstructor
 public class Order {
-    private static int globalOrderId = 1;
     private int order_id;
     private int Total_before_VAT;
     private int Total_after_VAT;
     private String status;
     private Long delivery_id;
-    private final int VAT = 10;
+    // Lượt giữ hàng được tạo lúc /placeorder, được xác nhận khi order được lưu
+    private Long reservation_id;
+    // PaymentMethod.name(), quyết định strategy dùng khi huỷ/hoàn tiền
+    private String payment_method;
+    // Thuế VAT (%) áp dụng cho mọi order
+    public static final int VAT_RATE = 10;
+    private final int VAT = VAT_RATE;
+    // Do PricingService_PlaceOrder cấp khi định giá, còn hợp lệ thì không cần định giá lại
+    private String price_stamp;
     List<Orderline> orderlineList = new ArrayList<>();
 
 
@@ -27,12 +34,29 @@ public class Order {
             Product product = Cartproduct.getProduct();
             int quantity = Cartproduct.getQuantity();
             this.Total_before_VAT += quantity * product.getPrice();
-            this.Total_after_VAT += (quantity * product.getPrice()) + ((quantity * product.getPrice()) * this.VAT)/100;
             Orderline orderline = new Orderline();
             this.setStatus("pending");
             orderline.createOrderline(product.getProduct_id(),quantity,product.getPrice());
             orderlineList.add(orderline);
         }
+        this.Total_after_VAT = Math.toIntExact(totalAfterVAT(this.Total_before_VAT));
+    }
+
+    // Tạo order từ cart phía server: tổng tiền lấy từ tổng đã được cộng dồn trên cart, chỉ cần tạo orderline
+    public void createOrder(CartSession cart){
+        for(CartItem cartItem : cart.getItems()){
+            Orderline orderline = new Orderline();
+            orderline.createOrderline(cartItem.getProduct().getProduct_id(),cartItem.getQuantity(),cartItem.getProduct().getPrice());
+            orderlineList.add(orderline);
+        }
+        this.Total_before_VAT = cart.getTotal_before_VAT();
+        this.Total_after_VAT = cart.getTotal_after_VAT();
+        this.setStatus("pending");
+    }
+
+    // VAT tính một lần trên tổng tiền, làm tròn đến đơn vị tiền gần nhất
+    public static long totalAfterVAT(long total_before_VAT){
+        return total_before_VAT + (total_before_VAT * VAT_RATE + 50) / 100;
     }
 
     public List<Orderline> getOrderLineList(){
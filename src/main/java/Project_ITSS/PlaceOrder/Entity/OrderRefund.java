@@ -0,0 +1,29 @@
+package Project_ITSS.PlaceOrder.Entity;
+
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Trạng thái hoàn tiền của một order bị huỷ (bảng order_refund)
+@Getter
+@Setter
+@NoArgsConstructor
+public class OrderRefund {
+    public static final String PENDING = "refund_pending";
+    public static final String REFUNDED = "refunded";
+    public static final String FAILED = "refund_failed";
+    // Không có kết quả trong pending-timeout (node dừng giữa lời gọi cổng thanh toán): phải đối soát, không được huỷ lại
+    public static final String UNKNOWN = "refund_unknown";
+
+    private int order_id;
+    private String status;
+    private String previous_order_status;
+    private String payment_method;
+    private double amount;
+    private String refund_method;
+    private String transaction_id;
+    private String message;
+    private String created_at;
+    private String updated_at;
+}
@@ -0,0 +1,33 @@
+package Project_ITSS.PlaceOrder.Entity;
+
+// Phương thức thanh toán được lưu cùng order (cột "Order".payment_method lưu name())
+public enum PaymentMethod {
+    VNPAY("VNPay"),
+    CREDIT_CARD("CreditCard");
+
+    private final String displayName;
+
+    PaymentMethod(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Nhận cả name() ("CREDIT_CARD") lẫn tên hiển thị ("CreditCard"), không phân biệt hoa thường.
+     * Trả về null nếu không khớp, ví dụ order cũ chưa có payment_method.
+     */
+    public static PaymentMethod fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (PaymentMethod method : values()) {
+            if (method.name().equalsIgnoreCase(name) || method.displayName.equalsIgnoreCase(name)) {
+                return method;
+            }
+        }
+        return null;
+    }
+}
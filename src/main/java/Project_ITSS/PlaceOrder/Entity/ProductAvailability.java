@@ -0,0 +1,18 @@
+package Project_ITSS.PlaceOrder.Entity;
+
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Ảnh chụp các thông tin cần cho việc đặt hàng của một product (số lượng, giá, cân nặng, rush)
+@Getter
+@Setter
+@NoArgsConstructor
+public class ProductAvailability {
+    private int product_id;
+    private int quantity;
+    private int price;
+    private double weight;
+    private boolean rush_order_supported;
+}
@@ -0,0 +1,20 @@
+package Project_ITSS.PlaceOrder.Entity;
+
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Một khung giờ giao hàng nhanh của một tỉnh và số chỗ còn trống
+@Getter
+@Setter
+@NoArgsConstructor
+public class RushSlot {
+    private String province;
+    private LocalDateTime slot_start;
+    private LocalDateTime slot_end;
+    private int capacity;
+    private int available;
+}
@@ -0,0 +1,12 @@
+package Project_ITSS.PlaceOrder.Entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Lượt giữ hàng vừa tạo ở /placeorder, release_token được trả cho client để huỷ lượt giữ hàng của chính mình
+@Getter
+@AllArgsConstructor
+public class StockReservation {
+    private final long reservation_id;
+    private final String release_token;
+}
@@ -1,32 +1,67 @@
 package Project_ITSS.PlaceOrder.Factory;
 
+import Project_ITSS.Cache.BoundedTtlCache;
 import Project_ITSS.PlaceOrder.Entity.Order;
+import Project_ITSS.PlaceOrder.Entity.PaymentMethod;
 import Project_ITSS.PlaceOrder.Repository.IOrderRepository;
 import Project_ITSS.PlaceOrder.Strategy.PaymentStrategy;
-import Project_ITSS.PlaceOrder.Strategy.VNPayPaymentStrategy;
-import Project_ITSS.PlaceOrder.Strategy.CreditCardPaymentStrategy;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Factory class to select the appropriate payment strategy
  * Implements Factory Pattern along with Strategy Pattern
+ *
+ * Strategy được chọn theo payment_method lưu trên order qua EnumMap, không cần duyệt danh sách strategy.
+ * Phương thức thanh toán của các order vừa tra được giữ trong cache nên getStrategy(orderId) thường không chạm database.
  */
 @Service
 public class PaymentStrategyFactory {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(PaymentStrategyFactory.class);
-    
+
     @Autowired
     private List<PaymentStrategy> paymentStrategies;
 
     @Autowired
     private IOrderRepository orderRepository;
-    
+
+    @Value("${payment.strategy.cache.max-entries:10000}")
+    private int cacheMaxEntries;
+    @Value("${payment.strategy.cache.ttl-seconds:3600}")
+    private long cacheTtlSeconds;
+
+    private final Map<PaymentMethod, PaymentStrategy> strategiesByMethod = new EnumMap<>(PaymentMethod.class);
+    private final Map<String, PaymentStrategy> strategiesByName = new HashMap<>();
+    private BoundedTtlCache<Long, PaymentMethod> orderPaymentMethods;
+
+    @PostConstruct
+    public void init() {
+        for (PaymentStrategy strategy : paymentStrategies) {
+            PaymentStrategy previous = strategiesByMethod.put(strategy.getPaymentMethod(), strategy);
+            if (previous != null) {
+                throw new IllegalStateException("Two strategies for " + strategy.getPaymentMethod() + ": "
+                    + previous.getPaymentMethodName() + ", " + strategy.getPaymentMethodName());
+            }
+            strategiesByName.put(strategy.getPaymentMethodName().toLowerCase(Locale.ROOT), strategy);
+        }
+        if (!strategiesByMethod.containsKey(PaymentMethod.VNPAY)) {
+            throw new IllegalStateException("No VNPay strategy available");
+        }
+        orderPaymentMethods = new BoundedTtlCache<>(cacheMaxEntries, TimeUnit.SECONDS.toMillis(cacheTtlSeconds));
+    }
+
     /**
      * Get the appropriate payment strategy based on order
      */
@@ -34,49 +69,73 @@ public class PaymentStrategyFactory {
         if (order == null) {
             throw new IllegalArgumentException("Order cannot be null");
         }
-        
-        // Try to find strategy that can handle this order
-        for (PaymentStrategy strategy : paymentStrategies) {
-            if (strategy.canHandleOrder(order.getOrder_id())) {
-                logger.info("Selected payment strategy: {} for order: {}", 
-                    strategy.getPaymentMethodName(), order.getOrder_id());
-                return strategy;
-            }
+
+        PaymentMethod method = PaymentMethod.fromName(order.getPayment_method());
+        if (method == null) {
+            method = legacyPaymentMethod(order.getOrder_id());
         }
-        
-        // Default to VNPay if no strategy can handle
-        logger.warn("No specific strategy found for order: {}, defaulting to VNPay", order.getOrder_id());
-        return paymentStrategies.stream()
-            .filter(strategy -> strategy instanceof VNPayPaymentStrategy)
-            .findFirst()
-            .orElseThrow(() -> new IllegalStateException("No VNPay strategy available"));
+        orderPaymentMethods.put((long) order.getOrder_id(), method);
+        return strategiesByMethod.get(method);
     }
-    
+
     /**
      * Get the appropriate payment strategy based on order ID
      */
     public PaymentStrategy getStrategy(long orderId) {
+        PaymentMethod cached = orderPaymentMethods.getIfPresent(orderId);
+        if (cached != null) {
+            return strategiesByMethod.get(cached);
+        }
         Order order = orderRepository.findById(orderId);
         if (order == null) {
             throw new IllegalArgumentException("Order not found: " + orderId);
         }
         return getStrategy(order);
     }
-    
+
+    /**
+     * Get strategy by payment method
+     */
+    public PaymentStrategy getStrategy(PaymentMethod method) {
+        PaymentStrategy strategy = strategiesByMethod.get(method);
+        if (strategy == null) {
+            throw new IllegalArgumentException("Strategy not found: " + method);
+        }
+        return strategy;
+    }
+
     /**
      * Get all available payment strategies
      */
     public List<PaymentStrategy> getAllStrategies() {
         return paymentStrategies;
     }
-    
+
     /**
      * Get strategy by name
      */
     public PaymentStrategy getStrategyByName(String strategyName) {
-        return paymentStrategies.stream()
-            .filter(strategy -> strategy.getPaymentMethodName().equalsIgnoreCase(strategyName))
-            .findFirst()
-            .orElseThrow(() -> new IllegalArgumentException("Strategy not found: " + strategyName));
+        PaymentStrategy strategy = strategyName != null ? strategiesByName.get(strategyName.toLowerCase(Locale.ROOT)) : null;
+        if (strategy == null) {
+            PaymentMethod method = PaymentMethod.fromName(strategyName);
+            strategy = method != null ? strategiesByMethod.get(method) : null;
+        }
+        if (strategy == null) {
+            throw new IllegalArgumentException("Strategy not found: " + strategyName);
+        }
+        return strategy;
+    }
+
+    /**
+     * Order tạo trước khi có cột payment_method: dùng lại quy tắc canHandleOrder cũ, mặc định là VNPay
+     */
+    private PaymentMethod legacyPaymentMethod(long orderId) {
+        for (PaymentStrategy strategy : paymentStrategies) {
+            if (strategy.canHandleOrder(orderId)) {
+                return strategy.getPaymentMethod();
+            }
+        }
+        logger.warn("No specific strategy found for order: {}, defaulting to VNPay", orderId);
+        return PaymentMethod.VNPAY;
     }
-} 
\ No newline at end of file
+}
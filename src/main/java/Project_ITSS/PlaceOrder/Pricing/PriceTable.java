@@ -0,0 +1,97 @@
+package Project_ITSS.PlaceOrder.Pricing;
+
+import Project_ITSS.Cache.BoundedTtlCache;
+import Project_ITSS.PlaceOrder.Entity.ProductAvailability;
+import Project_ITSS.PlaceOrder.Repository.ProductRepository_PlaceOrder;
+import Project_ITSS.ViewProduct2.Event.ProductChangedEvent;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bảng giá product trong bộ nhớ, có version. Mỗi lần một product thay đổi (ProductChangedEvent) giá của nó bị xoá
+ * và version tăng lên, nên price stamp tạo từ version cũ không còn hợp lệ.
+ * Giá chưa có trong bảng được nạp bằng một truy vấn cho cả lô. Thay đổi trên node khác chỉ được thấy sau ttl-seconds.
+ */
+@Component
+public class PriceTable {
+
+    @Autowired
+    private ProductRepository_PlaceOrder productRepository;
+
+    @Value("${pricing.table.max-entries:10000}")
+    private int maxEntries;
+    @Value("${pricing.table.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private BoundedTtlCache<Integer, Long> prices;
+    private long version;
+
+    @PostConstruct
+    public void init() {
+        prices = new BoundedTtlCache<>(maxEntries, TimeUnit.SECONDS.toMillis(ttlSeconds));
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Giá hiện tại của các product cùng version của bảng giá lúc bắt đầu đọc.
+     * Product không tồn tại thì không có trong kết quả.
+     */
+    public Snapshot getPrices(Collection<Integer> product_ids) {
+        long readVersion = getVersion();
+        Map<Integer, Long> result = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer product_id : product_ids) {
+            Long price = prices.getIfPresent(product_id);
+            if (price != null) {
+                result.put(product_id, price);
+            } else {
+                missing.add(product_id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<Integer, ProductAvailability> loaded = productRepository.getProductAvailability(missing);
+            synchronized (this) {
+                // Product vừa thay đổi trong lúc truy vấn thì không lưu lại giá có thể đã cũ
+                boolean unchanged = version == readVersion;
+                for (ProductAvailability product : loaded.values()) {
+                    result.put(product.getProduct_id(), (long) product.getPrice());
+                    if (unchanged) {
+                        prices.put(product.getProduct_id(), (long) product.getPrice());
+                    }
+                }
+            }
+        }
+        return new Snapshot(readVersion, result);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        for (long product_id : event.getProductIds()) {
+            prices.invalidate((int) product_id);
+        }
+        version++;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+        private final long version;
+        private final Map<Integer, Long> prices;
+    }
+}
@@ -0,0 +1,221 @@
+package Project_ITSS.PlaceOrder.Repository;
+
+import Project_ITSS.PlaceOrder.Entity.BulkCancellationRequest;
+import Project_ITSS.PlaceOrder.Entity.CancellationJob;
+import Project_ITSS.PlaceOrder.Entity.CancellationJobItem;
+import Project_ITSS.PlaceOrder.Entity.Order;
+import Project_ITSS.PlaceOrder.Entity.OrderRefund;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class CancellationJobRepository_PlaceOrder {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final BeanPropertyRowMapper<CancellationJob> JOB_MAPPER = new BeanPropertyRowMapper<>(CancellationJob.class);
+    private static final BeanPropertyRowMapper<CancellationJobItem> ITEM_MAPPER = new BeanPropertyRowMapper<>(CancellationJobItem.class);
+    private static final BeanPropertyRowMapper<Order> ORDER_MAPPER = new BeanPropertyRowMapper<>(Order.class);
+
+    // Order huỷ được: đang pending và đã có giao dịch thanh toán để hoàn tiền
+    private static final String CANCELLABLE = "o.status = 'pending' AND EXISTS (SELECT 1 FROM vnpay_transactions t WHERE t.order_id = CAST(o.order_id AS VARCHAR))";
+
+    // Chọn các order pending theo bộ lọc của request huỷ hàng loạt, nhiều nhất limit order
+    public List<Integer> findCancellableOrderIds(BulkCancellationRequest filter, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT o.order_id FROM \"Order\" o WHERE ").append(CANCELLABLE);
+        List<Object> args = new ArrayList<>();
+        if (filter.getPayment_method() != null) {
+            sql.append(" AND o.payment_method = ?");
+            args.add(filter.getPayment_method());
+        }
+        if (filter.getOrder_id_from() != null) {
+            sql.append(" AND o.order_id >= ?");
+            args.add(filter.getOrder_id_from());
+        }
+        if (filter.getOrder_id_to() != null) {
+            sql.append(" AND o.order_id <= ?");
+            args.add(filter.getOrder_id_to());
+        }
+        sql.append(" ORDER BY o.order_id LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.queryForList(sql.toString(), Integer.class, args.toArray());
+    }
+
+    // Điều kiện fencing: job vẫn running và vẫn thuộc lease của node đang ghi
+    private static final String HOLDS_LEASE = "EXISTS (SELECT 1 FROM cancellation_job j WHERE j.job_id = cancellation_job_item.job_id AND j.lease_id = ? AND j.status = 'running')";
+
+    // Tạo job (thuộc lease_id) cùng toàn bộ item ở trạng thái queued
+    public long createJob(String requested_ip, Collection<Integer> order_ids, String lease_id) {
+        Long job_id = jdbcTemplate.queryForObject(
+                "INSERT INTO cancellation_job (status, requested_ip, total, created_at, locked_at, lease_id, attempts) " +
+                "VALUES (?, ?, ?, now(), now(), ?, 1) RETURNING job_id",
+                Long.class, CancellationJob.RUNNING, requested_ip, order_ids.size(), lease_id);
+        List<Object[]> rows = new ArrayList<>(order_ids.size());
+        for (Integer order_id : order_ids) {
+            rows.add(new Object[]{job_id, order_id, CancellationJobItem.QUEUED});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO cancellation_job_item (job_id, order_id, status, updated_at) VALUES (?, ?, ?, now())", rows);
+        return job_id;
+    }
+
+    public List<Integer> findQueuedOrderIds(long job_id, int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT order_id FROM cancellation_job_item WHERE job_id = ? AND status = ? ORDER BY order_id LIMIT ?",
+                Integer.class, job_id, CancellationJobItem.QUEUED, limit);
+    }
+
+    /**
+     * Chuyển cả lô order đang huỷ được sang refund_pending trong một câu lệnh và trả về các order đã chuyển.
+     * Order đã bị huỷ, đổi trạng thái hoặc chưa có giao dịch thì không nằm trong kết quả.
+     */
+    public List<Order> claimOrders(List<Integer> order_ids) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "UPDATE \"Order\" o SET status = ? WHERE o.order_id = ANY(?) AND " + CANCELLABLE + " RETURNING o.*");
+            ps.setString(1, OrderRefund.PENDING);
+            ps.setArray(2, con.createArrayOf("integer", order_ids.toArray()));
+            return ps;
+        }, ORDER_MAPPER);
+    }
+
+    // Order đã được một item claimed của job chuyển sang refund_pending nhưng chưa gửi đi hoàn tiền
+    public List<Order> findClaimedOrders(long job_id) {
+        return jdbcTemplate.query(
+                "SELECT o.* FROM \"Order\" o JOIN cancellation_job_item i ON i.order_id = o.order_id " +
+                "WHERE i.job_id = ? AND i.status = ? ORDER BY o.order_id",
+                ORDER_MAPPER, job_id, CancellationJobItem.CLAIMED);
+    }
+
+    // Ghi kết quả của item, false nếu node không còn giữ lease của job
+    public boolean markItem(long job_id, String lease_id, int order_id, String status, String message) {
+        return jdbcTemplate.update("UPDATE cancellation_job_item SET status = ?, message = ?, updated_at = now() " +
+                        "WHERE job_id = ? AND order_id = ? AND " + HOLDS_LEASE,
+                status, message, job_id, order_id, lease_id) == 1;
+    }
+
+    // claimed -> dispatched ngay trước lời gọi cổng thanh toán, false nếu item không còn claimed hoặc node đã mất lease
+    public boolean markDispatched(long job_id, String lease_id, int order_id) {
+        return jdbcTemplate.update("UPDATE cancellation_job_item SET status = ?, message = NULL, updated_at = now() " +
+                        "WHERE job_id = ? AND order_id = ? AND status = ? AND " + HOLDS_LEASE,
+                CancellationJobItem.DISPATCHED, job_id, order_id, CancellationJobItem.CLAIMED, lease_id) == 1;
+    }
+
+    // Trả về số item đã cập nhật, ít hơn order_ids.size() nếu node đã mất lease
+    public int markItems(long job_id, String lease_id, List<Integer> order_ids, String status, String message) {
+        if (order_ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "UPDATE cancellation_job_item SET status = ?, message = ?, updated_at = now() " +
+                    "WHERE job_id = ? AND order_id = ANY(?) AND " + HOLDS_LEASE);
+            ps.setString(1, status);
+            ps.setString(2, message);
+            ps.setLong(3, job_id);
+            ps.setArray(4, con.createArrayOf("integer", order_ids.toArray()));
+            ps.setString(5, lease_id);
+            return ps;
+        });
+    }
+
+    /**
+     * Item đã gửi tới cổng thanh toán nhưng node dừng trước khi có kết quả: không gửi lại để tránh hoàn tiền hai lần,
+     * chuyển sang needs_review để đối soát với cổng thanh toán.
+     */
+    public int markDispatchedForReview(long job_id, String lease_id, String message) {
+        return jdbcTemplate.update(
+                "UPDATE cancellation_job_item SET status = ?, message = ?, updated_at = now() WHERE job_id = ? AND status = ? AND " + HOLDS_LEASE,
+                CancellationJobItem.NEEDS_REVIEW, message, job_id, CancellationJobItem.DISPATCHED, lease_id);
+    }
+
+    /**
+     * Heartbeat của các job đang chạy trên node này (job_id -> lease_id)
+     * @return các job mà node đã mất lease (job đã được node khác nhận hoặc đã kết thúc)
+     */
+    public List<Long> touch(Map<Long, String> leases) {
+        List<Long> lost = new ArrayList<>();
+        if (leases.isEmpty()) {
+            return lost;
+        }
+        List<Map.Entry<Long, String>> entries = new ArrayList<>(leases.entrySet());
+        List<Object[]> rows = new ArrayList<>(entries.size());
+        for (Map.Entry<Long, String> entry : entries) {
+            rows.add(new Object[]{entry.getKey(), entry.getValue(), CancellationJob.RUNNING});
+        }
+        int[] updated = jdbcTemplate.batchUpdate("UPDATE cancellation_job SET locked_at = now() WHERE job_id = ? AND lease_id = ? AND status = ?", rows);
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                lost.add(entries.get(i).getKey());
+            }
+        }
+        return lost;
+    }
+
+    public boolean finish(long job_id, String lease_id) {
+        return jdbcTemplate.update("UPDATE cancellation_job SET status = ?, finished_at = now() WHERE job_id = ? AND lease_id = ? AND status = ?",
+                CancellationJob.COMPLETED, job_id, lease_id, CancellationJob.RUNNING) == 1;
+    }
+
+    /**
+     * Nhận các job running không còn heartbeat (node chạy nó đã dừng) với lease_id mới của node này,
+     * mỗi lần nhận tính là một lần chạy. Job đã chạy maxAttempts lần không được nhận nữa (xem failExhausted).
+     */
+    public List<CancellationJob> claimStale(long olderThanMillis, int maxAttempts, int limit, String lease_id) {
+        return jdbcTemplate.query(
+                "UPDATE cancellation_job SET locked_at = now(), attempts = attempts + 1, lease_id = ? " +
+                "WHERE job_id IN (" +
+                "    SELECT job_id FROM cancellation_job " +
+                "    WHERE status = ? AND attempts < ? AND locked_at < now() - ? * INTERVAL '1 millisecond' " +
+                "    ORDER BY job_id LIMIT ? FOR UPDATE SKIP LOCKED" +
+                ") RETURNING *",
+                JOB_MAPPER, lease_id, CancellationJob.RUNNING, maxAttempts, olderThanMillis, limit);
+    }
+
+    /**
+     * Job running hết heartbeat đã chạy maxAttempts lần chuyển sang failed. Item chưa kết thúc của job failed:
+     * dispatched -> needs_review (có thể đã hoàn tiền), queued/claimed -> skipped (order claimed được PendingRefundSweeper trả lại).
+     * @return số job vừa chuyển sang failed
+     */
+    public int failExhausted(long olderThanMillis, int maxAttempts, String message) {
+        int failed = jdbcTemplate.update("UPDATE cancellation_job SET status = ?, finished_at = now() " +
+                        "WHERE status = ? AND attempts >= ? AND locked_at < now() - ? * INTERVAL '1 millisecond'",
+                CancellationJob.FAILED, CancellationJob.RUNNING, maxAttempts, olderThanMillis);
+        jdbcTemplate.update("UPDATE cancellation_job_item SET status = CASE WHEN status = ? THEN ? ELSE ? END, message = ?, updated_at = now() " +
+                        "WHERE status IN (?, ?, ?) AND job_id IN (SELECT job_id FROM cancellation_job WHERE status = ?)",
+                CancellationJobItem.DISPATCHED, CancellationJobItem.NEEDS_REVIEW, CancellationJobItem.SKIPPED, message,
+                CancellationJobItem.QUEUED, CancellationJobItem.CLAIMED, CancellationJobItem.DISPATCHED, CancellationJob.FAILED);
+        return failed;
+    }
+
+    public CancellationJob findJob(long job_id) {
+        List<CancellationJob> jobs = jdbcTemplate.query("SELECT * FROM cancellation_job WHERE job_id = ?", JOB_MAPPER, job_id);
+        if (jobs.isEmpty()) {
+            return null;
+        }
+        CancellationJob job = jobs.get(0);
+        Map<String, Integer> progress = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT status, COUNT(*) AS n FROM cancellation_job_item WHERE job_id = ? GROUP BY status ORDER BY status",
+                rs -> {
+                    progress.put(rs.getString("status"), rs.getInt("n"));
+                }, job_id);
+        job.setProgress(progress);
+        return job;
+    }
+
+    public List<CancellationJobItem> findItems(long job_id, String status) {
+        if (status == null) {
+            return jdbcTemplate.query("SELECT * FROM cancellation_job_item WHERE job_id = ? ORDER BY order_id", ITEM_MAPPER, job_id);
+        }
+        return jdbcTemplate.query("SELECT * FROM cancellation_job_item WHERE job_id = ? AND status = ? ORDER BY order_id",
+                ITEM_MAPPER, job_id, status);
+    }
+}
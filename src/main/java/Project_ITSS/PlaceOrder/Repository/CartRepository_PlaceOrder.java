@@ -0,0 +1,120 @@
+package Project_ITSS.PlaceOrder.Repository;
+
+import Project_ITSS.PlaceOrder.Entity.CartItem;
+import Project_ITSS.PlaceOrder.Entity.CartSession;
+import Project_ITSS.PlaceOrder.Entity.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+public class CartRepository_PlaceOrder {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public CartSession findById(String cart_id) {
+        List<CartSession> carts = jdbcTemplate.query(
+                "SELECT version, total_before_vat, total_after_vat FROM cart WHERE cart_id = ? AND deleted_at IS NULL",
+                (rs, rowNum) -> new CartSession(cart_id, rs.getLong("version"), rs.getInt("total_before_vat"),
+                        rs.getInt("total_after_vat"), findItems(cart_id)),
+                cart_id);
+        return carts.isEmpty() ? null : carts.get(0);
+    }
+
+    // price lấy từ cart_item (giá lúc thêm vào cart), các thông tin khác lấy từ product
+    private List<CartItem> findItems(String cart_id) {
+        return jdbcTemplate.query(
+                "SELECT ci.quantity, ci.price, p.product_id, p.title, p.weight, p.rush_order_supported, p.image_url " +
+                "FROM cart_item ci JOIN product p ON p.product_id = ci.product_id WHERE ci.cart_id = ? ORDER BY ci.position",
+                (rs, rowNum) -> {
+                    Product product = new Product();
+                    product.setProduct_id(rs.getInt("product_id"));
+                    product.setTitle(rs.getString("title"));
+                    product.setPrice(rs.getInt("price"));
+                    product.setWeight(rs.getFloat("weight"));
+                    product.setRush_order_supported(rs.getBoolean("rush_order_supported"));
+                    product.setImage_url(rs.getString("image_url"));
+                    return new CartItem(product, rs.getInt("quantity"));
+                },
+                cart_id);
+    }
+
+    /**
+     * Ghi một lô cart bằng JDBC batch, compare-and-set trên version: cart chưa lưu lần nào được insert,
+     * cart đã lưu chỉ được ghi khi bản trong database vẫn là stored_version và chưa bị xoá.
+     * Items của các cart đã ghi được thay toàn bộ.
+     * @return cart_id của các cart không ghi được vì node khác đã ghi hoặc xoá trước
+     */
+    public List<String> saveAll(List<CartSession> carts) {
+        List<CartSession> inserted = new ArrayList<>();
+        List<CartSession> updated = new ArrayList<>();
+        for (CartSession cart : carts) {
+            (cart.getStored_version() < 0 ? inserted : updated).add(cart);
+        }
+        List<Object[]> insertRows = new ArrayList<>(inserted.size());
+        for (CartSession cart : inserted) {
+            insertRows.add(new Object[]{cart.getCart_id(), cart.getVersion(), cart.getTotal_before_VAT(), cart.getTotal_after_VAT()});
+        }
+        List<Object[]> updateRows = new ArrayList<>(updated.size());
+        for (CartSession cart : updated) {
+            updateRows.add(new Object[]{cart.getVersion(), cart.getTotal_before_VAT(), cart.getTotal_after_VAT(),
+                    cart.getCart_id(), cart.getStored_version()});
+        }
+        int[] insertCounts = jdbcTemplate.batchUpdate(
+                "INSERT INTO cart (cart_id, version, total_before_vat, total_after_vat, updated_at) VALUES (?, ?, ?, ?, now()) " +
+                "ON CONFLICT DO NOTHING",
+                insertRows);
+        int[] updateCounts = jdbcTemplate.batchUpdate(
+                "UPDATE cart SET version = ?, total_before_vat = ?, total_after_vat = ?, updated_at = now() " +
+                "WHERE cart_id = ? AND version = ? AND deleted_at IS NULL",
+                updateRows);
+
+        List<String> saved = new ArrayList<>();
+        List<String> conflicts = new ArrayList<>();
+        List<Object[]> itemRows = new ArrayList<>();
+        for (int i = 0; i < inserted.size() + updated.size(); i++) {
+            CartSession cart = i < inserted.size() ? inserted.get(i) : updated.get(i - inserted.size());
+            int count = i < inserted.size() ? insertCounts[i] : updateCounts[i - inserted.size()];
+            if (count == 0) {
+                conflicts.add(cart.getCart_id());
+                continue;
+            }
+            saved.add(cart.getCart_id());
+            int position = 0;
+            for (CartItem item : cart.getItems()) {
+                itemRows.add(new Object[]{cart.getCart_id(), item.getProduct().getProduct_id(), item.getQuantity(),
+                        item.getProduct().getPrice(), position++});
+            }
+        }
+        if (saved.isEmpty()) {
+            return conflicts;
+        }
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement("DELETE FROM cart_item WHERE cart_id = ANY(?)");
+            ps.setArray(1, con.createArrayOf("varchar", saved.toArray()));
+            return ps;
+        });
+        jdbcTemplate.batchUpdate("INSERT INTO cart_item (cart_id, product_id, quantity, price, position) VALUES (?, ?, ?, ?, ?)", itemRows);
+        return conflicts;
+    }
+
+    /**
+     * Xoá cart bằng tombstone: bản ghi (kể cả cart chưa kịp lưu) được đánh dấu deleted_at để flush muộn không tạo lại được.
+     * Gọi trong transaction.
+     */
+    public void delete(String cart_id) {
+        jdbcTemplate.update("INSERT INTO cart (cart_id, version, total_before_vat, total_after_vat, updated_at, deleted_at) " +
+                "VALUES (?, 0, 0, 0, now(), now()) ON CONFLICT DO NOTHING", cart_id);
+        jdbcTemplate.update("UPDATE cart SET deleted_at = now(), updated_at = now() WHERE cart_id = ? AND deleted_at IS NULL", cart_id);
+        jdbcTemplate.update("DELETE FROM cart_item WHERE cart_id = ?", cart_id);
+    }
+
+    // Xoá các cart (và tombstone) không được dùng tới trong retentionDays ngày
+    public int deleteIdle(int retentionDays) {
+        return jdbcTemplate.update("DELETE FROM cart WHERE updated_at < now() - ? * INTERVAL '1 day'", retentionDays);
+    }
+}
@@ -5,8 +5,12 @@ import Project_ITSS.PlaceOrder.Entity.Order;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
+import java.sql.PreparedStatement;
+
 @Repository
 public class OrderRepository_PlaceOrder {
     @Autowired
@@ -14,27 +18,32 @@ public class OrderRepository_PlaceOrder {
 
     public void saveOrder(Order order, DeliveryInformation dI){
         // Insert vào DeliveryInformation và lấy delivery_id vừa tạo
-        String sqlDelivery = "INSERT INTO DeliveryInformation (Name, Phone, Email, Address, Province, Shipping_message, shipping_fee) VALUES (?, ?, ?, ?, ?, ?, ?) RETURNING delivery_id";
-        Long deliveryId = jdbcTemplate.queryForObject(sqlDelivery, new Object[]{
-            dI.getName(),
-            dI.getPhone(),
-            dI.getEmail(),
-            dI.getAddress(),
-            dI.getProvince(),
-            dI.getDelivery_message(),
-            dI.getDelivery_fee()
-        }, Long.class);
+        String sqlDelivery = "INSERT INTO DeliveryInformation (Name, Phone, Email, Address, Province, Shipping_message, shipping_fee) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sqlDelivery, new String[]{"delivery_id"});
+            ps.setString(1, dI.getName());
+            ps.setString(2, dI.getPhone());
+            ps.setString(3, dI.getEmail());
+            ps.setString(4, dI.getAddress());
+            ps.setString(5, dI.getProvince());
+            ps.setString(6, dI.getDelivery_message());
+            ps.setInt(7, dI.getDelivery_fee());
+            return ps;
+        }, keyHolder);
+        Long deliveryId = keyHolder.getKey().longValue();
 
         order.setDelivery_id(deliveryId);
 
         // Insert vào Order, có delivery_id
-        jdbcTemplate.update("INSERT INTO \"Order\" (order_id, delivery_id, Total_before_VAT, Total_after_VAT, status, VAT) VALUES (?,?,?,?,?,?)",
+        jdbcTemplate.update("INSERT INTO \"Order\" (order_id, delivery_id, Total_before_VAT, Total_after_VAT, status, VAT, payment_method) VALUES (?,?,?,?,?,?,?)",
             order.getOrder_id(),
             order.getDelivery_id(),
             order.getTotal_before_VAT(),
             order.getTotal_after_VAT(),
             order.getStatus(),
-            order.getVAT());
+            order.getVAT(),
+            order.getPayment_method());
     }
 
     public Order getOrderById(long order_id){
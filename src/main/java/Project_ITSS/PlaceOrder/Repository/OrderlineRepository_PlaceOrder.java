@@ -1,14 +1,17 @@
 package Project_ITSS.PlaceOrder.Repository;
 
 import Project_ITSS.PlaceOrder.Entity.Orderline;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Repository
 public class OrderlineRepository_PlaceOrder {
+    @Autowired
     private JdbcTemplate jdbcTemplate;
 
     public Orderline getOrderlinebyId(int odrline_id){
@@ -21,4 +24,23 @@ public class OrderlineRepository_PlaceOrder {
         return jdbcTemplate.query(sql,new Object[]{order_id},new BeanPropertyRowMapper<>(Orderline.class));
     }
 
+    // Lưu tất cả orderline của một order bằng một JDBC batch
+    public void saveOrderlines(List<Orderline> orderlines){
+        if(orderlines.isEmpty()) return;
+        List<Object[]> batchArgs = new ArrayList<>(orderlines.size());
+        for(Orderline orderline : orderlines){
+            batchArgs.add(new Object[]{
+                    orderline.getOrder_id(),
+                    orderline.getProduct_id(),
+                    orderline.getStatus(),
+                    orderline.isRush_order_using(),
+                    orderline.getQuantity(),
+                    orderline.getTotal_fee(),
+                    orderline.getDelivery_time(),
+                    orderline.getInstructions()});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO OrderLines (order_id, product_id, status, rush_order_using, quantity, total_fee, delivery_time, instructions) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)", batchArgs);
+    }
+
 }
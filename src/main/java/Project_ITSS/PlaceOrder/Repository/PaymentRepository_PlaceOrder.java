@@ -0,0 +1,30 @@
+package Project_ITSS.PlaceOrder.Repository;
+
+import Project_ITSS.PlaceOrder.Entity.PaymentMethod;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Đọc các giao dịch VNPay đã ghi nhận cho order. Thanh toán của một order dùng order_id làm vnp_TxnRef
+ * nên cột vnpay_transactions.order_id chính là order_id (dạng chuỗi).
+ */
+@Repository
+public class PaymentRepository_PlaceOrder {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Tổng số tiền (VND) của các giao dịch thành công, null nếu chưa có giao dịch thành công nào
+    public Long getPaidAmount(int order_id) {
+        return jdbcTemplate.queryForObject(
+                "SELECT SUM(amount) FROM vnpay_transactions WHERE order_id = ? AND response_code = '00'",
+                Long.class, String.valueOf(order_id));
+    }
+
+    // Order đã có giao dịch VNPay (kể cả giao dịch thất bại) thì được thanh toán qua VNPay, null nếu chưa có giao dịch nào
+    public PaymentMethod findPaymentMethod(int order_id) {
+        Integer transactions = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM vnpay_transactions WHERE order_id = ?", Integer.class, String.valueOf(order_id));
+        return transactions != null && transactions > 0 ? PaymentMethod.VNPAY : null;
+    }
+}
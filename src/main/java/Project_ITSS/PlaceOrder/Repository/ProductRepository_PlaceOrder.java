@@ -2,11 +2,22 @@ package Project_ITSS.PlaceOrder.Repository;
 
 //import Project_ITSS.demo.Entity.Product;
 import Project_ITSS.PlaceOrder.Entity.Product;
+import Project_ITSS.PlaceOrder.Entity.ProductAvailability;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Repository
 public class ProductRepository_PlaceOrder {
 
@@ -22,6 +33,53 @@ public class ProductRepository_PlaceOrder {
         }
     }
 
+    // Lấy số lượng, giá, cân nặng và rush của nhiều product chỉ trong một lần truy vấn
+    public Map<Integer, ProductAvailability> getProductAvailability(Collection<Integer> product_ids){
+        Map<Integer, ProductAvailability> result = new HashMap<>();
+        if(product_ids == null || product_ids.isEmpty()){
+            return result;
+        }
+        String sql = "SELECT product_id, quantity, price, weight, rush_order_supported FROM product WHERE product_id = ANY(?)";
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("integer", product_ids.toArray()));
+            return ps;
+        }, rs -> {
+            ProductAvailability availability = new ProductAvailability();
+            availability.setProduct_id(rs.getInt("product_id"));
+            availability.setQuantity(rs.getInt("quantity"));
+            availability.setPrice(rs.getInt("price"));
+            availability.setWeight(rs.getDouble("weight"));
+            availability.setRush_order_supported(rs.getBoolean("rush_order_supported"));
+            result.put(availability.getProduct_id(), availability);
+        });
+        return result;
+    }
+
+    /**
+     * Trừ kho cho nhiều product bằng một JDBC batch, mỗi lệnh chỉ trừ khi còn đủ hàng.
+     * Trả về danh sách product_id không đủ hàng (lệnh update không ảnh hưởng dòng nào).
+     */
+    public List<Integer> decrementStock(Map<Integer, Integer> quantities){
+        List<Integer> product_ids = new ArrayList<>(quantities.keySet());
+        // Luôn khoá các dòng theo cùng một thứ tự để tránh deadlock giữa các order chạy đồng thời
+        Collections.sort(product_ids);
+        List<Object[]> batchArgs = new ArrayList<>(product_ids.size());
+        for(int product_id : product_ids){
+            int quantity = quantities.get(product_id);
+            batchArgs.add(new Object[]{quantity, product_id, quantity});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(
+                "UPDATE product SET quantity = quantity - ? WHERE product_id = ? AND quantity >= ?", batchArgs);
+        List<Integer> inadequate = new ArrayList<>();
+        for(int i = 0; i < updated.length; i++){
+            if(updated[i] == 0){
+                inadequate.add(product_ids.get(i));
+            }
+        }
+        return inadequate;
+    }
+
     public int getProductPrice(int product_id){
         return jdbcTemplate.queryForObject("SELECT price FROM Product WHERE product_id = ?",new Object[]{product_id}, Integer.class);
     }
@@ -36,10 +94,28 @@ public class ProductRepository_PlaceOrder {
     }
 
     public boolean checkRushOrder(int product_id){
-        String sql = "SELECT rush_order_supported FROM product WHERE product_id = $1";
+        String sql = "SELECT rush_order_supported FROM product WHERE product_id = ?";
         return jdbcTemplate.queryForObject(sql,new Object[]{product_id}, Boolean.class);
     }
 
+    // Product có hỗ trợ rush order không, null nếu product không tồn tại
+    // Các product trong danh sách hỗ trợ rush order, product không tồn tại (đã xoá) không có trong kết quả
+    public Set<Integer> findRushOrderSupported(Collection<Integer> product_ids){
+        Set<Integer> result = new HashSet<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT product_id FROM product WHERE product_id = ANY(?) AND rush_order_supported = true");
+            ps.setArray(1, con.createArrayOf("integer", product_ids.toArray()));
+            return ps;
+        }, rs -> {
+            result.add(rs.getInt("product_id"));
+        });
+        return result;
+    }
+
+    public List<Integer> getRushProductIds(){
+        return jdbcTemplate.queryForList("SELECT product_id FROM product WHERE rush_order_supported = true", Integer.class);
+    }
+
     public boolean checkProductsRush(){
         String sql = """
         SELECT CASE
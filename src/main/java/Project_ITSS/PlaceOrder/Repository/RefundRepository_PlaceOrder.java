@@ -0,0 +1,105 @@
+package Project_ITSS.PlaceOrder.Repository;
+
+import Project_ITSS.PlaceOrder.Entity.Order;
+import Project_ITSS.PlaceOrder.Entity.OrderRefund;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+public class RefundRepository_PlaceOrder {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO order_refund (order_id, status, previous_order_status, payment_method, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, now(), now()) ON CONFLICT DO NOTHING";
+    // Chỉ lượt đã refund_failed được mở lại; refund_unknown phải đối soát trước
+    private static final String RESTART_SQL =
+            "UPDATE order_refund SET status = ?, previous_order_status = ?, payment_method = ?, message = NULL, updated_at = now() " +
+            "WHERE order_id = ? AND status = ?";
+
+    /**
+     * Chuyển order sang refund_pending. Chỉ thành công nếu order chưa có lượt hoàn tiền nào,
+     * hoặc lượt trước đã refund_failed (cho phép huỷ lại), nên hai request huỷ đồng thời không thể cùng hoàn tiền.
+     */
+    public boolean tryStart(long order_id, String previous_order_status, String payment_method) {
+        return jdbcTemplate.update(INSERT_SQL, order_id, OrderRefund.PENDING, previous_order_status, payment_method) == 1
+                || jdbcTemplate.update(RESTART_SQL, OrderRefund.PENDING, previous_order_status, payment_method, order_id, OrderRefund.FAILED) == 1;
+    }
+
+    /**
+     * tryStart cho cả lô order (một batch insert, một batch mở lại), phần tử thứ i là true nếu order thứ i đã bắt đầu hoàn tiền
+     */
+    public boolean[] tryStartAll(List<Order> orders, String previous_order_status, List<String> payment_methods) {
+        List<Object[]> rows = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            rows.add(new Object[]{orders.get(i).getOrder_id(), OrderRefund.PENDING, previous_order_status, payment_methods.get(i)});
+        }
+        int[] inserted = jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        boolean[] started = new boolean[inserted.length];
+        List<Integer> existing = new ArrayList<>();
+        List<Object[]> restartRows = new ArrayList<>();
+        for (int i = 0; i < inserted.length; i++) {
+            started[i] = inserted[i] == 1;
+            if (!started[i]) {
+                existing.add(i);
+                restartRows.add(new Object[]{OrderRefund.PENDING, previous_order_status, payment_methods.get(i),
+                        orders.get(i).getOrder_id(), OrderRefund.FAILED});
+            }
+        }
+        if (restartRows.isEmpty()) {
+            return started;
+        }
+        int[] restarted = jdbcTemplate.batchUpdate(RESTART_SQL, restartRows);
+        for (int i = 0; i < restarted.length; i++) {
+            started[existing.get(i)] = restarted[i] == 1;
+        }
+        return started;
+    }
+
+    /**
+     * Ghi kết quả hoàn tiền cho lượt đang refund_pending, hoặc đã bị PendingRefundSweeper chuyển sang refund_unknown
+     * (kết quả về muộn vẫn là kết quả thật của cổng thanh toán). Trả về false nếu lượt đó đã có kết quả.
+     */
+    public boolean complete(long order_id, String status, double amount, String refund_method, String transaction_id, String message) {
+        return jdbcTemplate.update("UPDATE order_refund SET status = ?, amount = ?, refund_method = ?, transaction_id = ?, message = ?, updated_at = now() " +
+                        "WHERE order_id = ? AND status IN (?, ?)",
+                status, amount, refund_method, transaction_id, message, order_id, OrderRefund.PENDING, OrderRefund.UNKNOWN) == 1;
+    }
+
+    // Các lượt hoàn tiền nằm ở refund_pending quá olderThanMinutes phút, cũ nhất trước
+    public List<OrderRefund> findStalePending(int olderThanMinutes, int limit) {
+        return jdbcTemplate.query("SELECT * FROM order_refund WHERE status = ? AND updated_at < now() - CAST(? AS INT) * INTERVAL '1' MINUTE " +
+                        "ORDER BY updated_at LIMIT ?",
+                refundRowMapper(), OrderRefund.PENDING, olderThanMinutes, limit);
+    }
+
+    /**
+     * Chuyển lượt hoàn tiền còn refund_pending quá olderThanMinutes phút sang refund_unknown. tryStart không mở lại
+     * refund_unknown nên order không thể bị hoàn tiền lần hai trước khi đối soát với cổng thanh toán.
+     * Trả về false nếu kết quả hoàn tiền vừa được ghi hoặc lượt đó vừa được cập nhật.
+     */
+    public boolean timeOut(long order_id, int olderThanMinutes, String message) {
+        return jdbcTemplate.update("UPDATE order_refund SET status = ?, message = ?, updated_at = now() " +
+                        "WHERE order_id = ? AND status = ? AND updated_at < now() - CAST(? AS INT) * INTERVAL '1' MINUTE",
+                OrderRefund.UNKNOWN, message, order_id, OrderRefund.PENDING, olderThanMinutes) == 1;
+    }
+
+    public OrderRefund findByOrderId(long order_id) {
+        List<OrderRefund> refunds = jdbcTemplate.query("SELECT * FROM order_refund WHERE order_id = ?",
+                refundRowMapper(), order_id);
+        return refunds.isEmpty() ? null : refunds.get(0);
+    }
+
+    // amount còn NULL khi lượt hoàn tiền chưa có kết quả
+    private static BeanPropertyRowMapper<OrderRefund> refundRowMapper() {
+        BeanPropertyRowMapper<OrderRefund> rowMapper = new BeanPropertyRowMapper<>(OrderRefund.class);
+        rowMapper.setPrimitivesDefaultedForNullValue(true);
+        return rowMapper;
+    }
+}
@@ -0,0 +1,79 @@
+package Project_ITSS.PlaceOrder.Repository;
+
+import Project_ITSS.PlaceOrder.Entity.RushSlot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public class RushSlotRepository_PlaceOrder {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Lấy một chỗ trong khung giờ: tạo dòng nếu chưa có, nếu đã có thì chỉ tăng booked khi còn chỗ.
+     * Trả về false nếu khung giờ đã đầy.
+     */
+    public boolean tryBook(String province, LocalDateTime slot_start, int capacity) {
+        return jdbcTemplate.update(
+                "INSERT INTO rush_slot (province, slot_start, capacity, booked) VALUES (?, ?, ?, 1) " +
+                "ON CONFLICT (province, slot_start) DO UPDATE SET booked = rush_slot.booked + 1 " +
+                "WHERE rush_slot.booked < rush_slot.capacity",
+                province, Timestamp.valueOf(slot_start), capacity) == 1;
+    }
+
+    // Tỉnh nhận hàng đã lưu cùng order (chuỗi rỗng nếu order chưa có delivery info), null nếu order không tồn tại
+    public String findDeliveryProvince(long order_id) {
+        List<String> provinces = jdbcTemplate.queryForList(
+                "SELECT COALESCE(d.province, '') FROM \"Order\" o LEFT JOIN deliveryinformation d ON d.delivery_id = o.delivery_id WHERE o.order_id = ?",
+                String.class, order_id);
+        return provinces.isEmpty() ? null : provinces.get(0);
+    }
+
+    public boolean hasRushOrderline(long order_id) {
+        Integer rushLines = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM orderlines WHERE order_id = ? AND rush_order_using = true", Integer.class, order_id);
+        return rushLines != null && rushLines > 0;
+    }
+
+    public void saveBooking(long order_id, String province, LocalDateTime slot_start) {
+        jdbcTemplate.update("INSERT INTO rush_slot_booking (order_id, province, slot_start, created_at) VALUES (?, ?, ?, now())",
+                order_id, province, Timestamp.valueOf(slot_start));
+    }
+
+    public RushSlot findBooking(long order_id) {
+        List<RushSlot> bookings = jdbcTemplate.query(
+                "SELECT province, slot_start FROM rush_slot_booking WHERE order_id = ?",
+                (rs, rowNum) -> {
+                    RushSlot slot = new RushSlot();
+                    slot.setProvince(rs.getString("province"));
+                    slot.setSlot_start(rs.getTimestamp("slot_start").toLocalDateTime());
+                    return slot;
+                }, order_id);
+        return bookings.isEmpty() ? null : bookings.get(0);
+    }
+
+    // Ghi khung giờ giao vào các orderline rush của order
+    public void updateRushDeliveryTime(long order_id, String delivery_time) {
+        jdbcTemplate.update("UPDATE orderlines SET delivery_time = ? WHERE order_id = ? AND rush_order_using = true",
+                delivery_time, order_id);
+    }
+
+    // Số chỗ đã đặt của các khung giờ chưa bắt đầu, dùng để đồng bộ bộ đếm trong bộ nhớ
+    public List<RushSlot> findUpcoming(LocalDateTime from) {
+        return jdbcTemplate.query(
+                "SELECT province, slot_start, capacity, booked FROM rush_slot WHERE slot_start >= ?",
+                (rs, rowNum) -> {
+                    RushSlot slot = new RushSlot();
+                    slot.setProvince(rs.getString("province"));
+                    slot.setSlot_start(rs.getTimestamp("slot_start").toLocalDateTime());
+                    slot.setCapacity(rs.getInt("capacity"));
+                    slot.setAvailable(rs.getInt("capacity") - rs.getInt("booked"));
+                    return slot;
+                }, Timestamp.valueOf(from));
+    }
+}
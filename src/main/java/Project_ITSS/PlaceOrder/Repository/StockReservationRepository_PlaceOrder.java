@@ -0,0 +1,99 @@
+package Project_ITSS.PlaceOrder.Repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bảng stock_reservation lưu các lượt giữ hàng (status: held, committed, released) cùng order_id được cấp ở /placeorder,
+ * stock_reservation_item lưu số lượng đã giữ của từng product.
+ * Lúc giữ hàng thì quantity của product đã bị trừ, release sẽ cộng trả lại.
+ */
+@Repository
+public class StockReservationRepository_PlaceOrder {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public long createReservation(int order_id, String release_token, int holdMinutes, Map<Integer, Integer> quantities){
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "INSERT INTO stock_reservation (status, order_id, release_token, created_at, expires_at) " +
+                    "VALUES ('held', ?, ?, now(), now() + CAST(? AS INT) * INTERVAL '1' MINUTE)",
+                    new String[]{"reservation_id"});
+            ps.setInt(1, order_id);
+            ps.setString(2, release_token);
+            ps.setInt(3, holdMinutes);
+            return ps;
+        }, keyHolder);
+        long reservation_id = keyHolder.getKey().longValue();
+        List<Object[]> batchArgs = new ArrayList<>(quantities.size());
+        for(Map.Entry<Integer, Integer> entry : quantities.entrySet()){
+            batchArgs.add(new Object[]{reservation_id, entry.getKey(), entry.getValue()});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO stock_reservation_item (reservation_id, product_id, quantity) VALUES (?, ?, ?)", batchArgs);
+        return reservation_id;
+    }
+
+    // order_id đã được cấp ở /placeorder hay chưa (mỗi order_id được cấp đều có đúng một lượt giữ hàng)
+    public boolean isOrderIdIssued(int order_id){
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_reservation WHERE order_id = ?", Integer.class, order_id) > 0;
+    }
+
+    // Chuyển trạng thái chỉ khi lượt giữ hàng vẫn đang held, trả về false nếu đã hết hạn/đã được xử lý
+    public boolean changeStatus(long reservation_id, String from, String to){
+        return jdbcTemplate.update("UPDATE stock_reservation SET status = ? WHERE reservation_id = ? AND status = ?",
+                to, reservation_id, from) == 1;
+    }
+
+    // Như changeStatus nhưng chỉ với lượt giữ hàng của order_id này
+    public boolean changeStatusForOrder(long reservation_id, int order_id, String from, String to){
+        return jdbcTemplate.update("UPDATE stock_reservation SET status = ? WHERE reservation_id = ? AND order_id = ? AND status = ?",
+                to, reservation_id, order_id, from) == 1;
+    }
+
+    // Như changeStatus nhưng chỉ khi release_token khớp (client đã tạo lượt giữ hàng)
+    public boolean changeStatusWithToken(long reservation_id, String release_token, String from, String to){
+        return jdbcTemplate.update("UPDATE stock_reservation SET status = ? WHERE reservation_id = ? AND release_token = ? AND status = ?",
+                to, reservation_id, release_token, from) == 1;
+    }
+
+    // Số lượng đã giữ của từng product trong lượt giữ hàng
+    public Map<Integer, Integer> getItems(long reservation_id){
+        Map<Integer, Integer> items = new HashMap<>();
+        jdbcTemplate.query("SELECT product_id, quantity FROM stock_reservation_item WHERE reservation_id = ?",
+                rs -> {
+                    items.put(rs.getInt("product_id"), rs.getInt("quantity"));
+                }, reservation_id);
+        return items;
+    }
+
+    public void restoreStock(long reservation_id){
+        restoreStock(getItems(reservation_id));
+    }
+
+    // Cộng trả lại kho, khoá các dòng product theo cùng thứ tự với decrementStock để tránh deadlock
+    public void restoreStock(Map<Integer, Integer> quantities){
+        List<Integer> product_ids = new ArrayList<>(quantities.keySet());
+        Collections.sort(product_ids);
+        List<Object[]> batchArgs = new ArrayList<>(product_ids.size());
+        for(int product_id : product_ids){
+            batchArgs.add(new Object[]{quantities.get(product_id), product_id});
+        }
+        jdbcTemplate.batchUpdate("UPDATE product SET quantity = quantity + ? WHERE product_id = ?", batchArgs);
+    }
+
+    public List<Long> getExpiredReservations(int limit){
+        return jdbcTemplate.queryForList("SELECT reservation_id FROM stock_reservation " +
+                "WHERE status = 'held' AND expires_at < now() ORDER BY expires_at LIMIT ?", Long.class, limit);
+    }
+}
@@ -0,0 +1,339 @@
+package Project_ITSS.PlaceOrder.Service;
+
+import Project_ITSS.PlaceOrder.Entity.BulkCancellationRequest;
+import Project_ITSS.PlaceOrder.Entity.CancellationJob;
+import Project_ITSS.PlaceOrder.Entity.CancellationJobItem;
+import Project_ITSS.PlaceOrder.Entity.Order;
+import Project_ITSS.PlaceOrder.Entity.PaymentMethod;
+import Project_ITSS.PlaceOrder.Exception.OrderCancellationException;
+import Project_ITSS.PlaceOrder.Factory.PaymentStrategyFactory;
+import Project_ITSS.PlaceOrder.Repository.CancellationJobRepository_PlaceOrder;
+import Project_ITSS.PlaceOrder.Repository.RefundRepository_PlaceOrder;
+import Project_ITSS.PlaceOrder.Strategy.PaymentStrategy;
+import Project_ITSS.PlaceOrder.Strategy.PaymentStrategy.RefundResult;
+import Project_ITSS.vnpay.common.config.VNPayConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Huỷ hàng loạt order và hoàn tiền song song.
+ *
+ * Mỗi job chạy trên một virtual thread: lấy từng lô item queued, chuyển cả lô order sang refund_pending bằng một câu UPDATE,
+ * rồi gửi từng order đi hoàn tiền qua PaymentStrategy. Số lời gọi đồng thời tới mỗi cổng thanh toán bị giới hạn bằng semaphore.
+ * Trạng thái từng order nằm trong cancellation_job_item nên job dừng giữa chừng (node khởi động lại) được nhận lại khi hết heartbeat.
+ * Mỗi lần nhận job có lease_id riêng, mọi thao tác ghi đều kèm lease_id: node cũ đã mất job (ví dụ bị treo quá stale-after-ms)
+ * không ghi đè được item của node mới và dừng job ngay khi phát hiện. Job được nhận quá max-attempts lần thì chuyển sang failed.
+ */
+@Service
+public class BulkCancellationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkCancellationService.class);
+
+    // Bulk chỉ huỷ order pending, giống OrderValidationService
+    private static final String PREVIOUS_STATUS = "pending";
+
+    private final CancellationJobRepository_PlaceOrder jobRepository;
+    private final RefundRepository_PlaceOrder refundRepository;
+    private final OrderStatusService statusService;
+    private final RefundService refundService;
+    private final OrderCancellationService cancellationService;
+    private final PaymentStrategyFactory paymentStrategyFactory;
+    private final VNPayConfig vnPayConfig;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${bulk.cancel.batch-size:100}")
+    private int batchSize;
+    @Value("${bulk.cancel.max-orders:5000}")
+    private int maxOrders;
+    @Value("${bulk.cancel.concurrency.vnpay:8}")
+    private int vnpayConcurrency;
+    @Value("${bulk.cancel.concurrency.credit-card:4}")
+    private int creditCardConcurrency;
+    @Value("${bulk.cancel.stale-after-ms:60000}")
+    private long staleAfterMs;
+    @Value("${bulk.cancel.max-attempts:3}")
+    private int maxAttempts;
+
+    private final Map<PaymentMethod, Semaphore> gatewayPermits = new EnumMap<>(PaymentMethod.class);
+    // job_id -> lease_id của các job đang chạy trên node này
+    private final Map<Long, String> activeJobs = new ConcurrentHashMap<>();
+    private ExecutorService jobs;
+    private ScheduledExecutorService heartbeat;
+
+    @Autowired
+    public BulkCancellationService(
+        CancellationJobRepository_PlaceOrder jobRepository,
+        RefundRepository_PlaceOrder refundRepository,
+        OrderStatusService statusService,
+        RefundService refundService,
+        OrderCancellationService cancellationService,
+        PaymentStrategyFactory paymentStrategyFactory,
+        VNPayConfig vnPayConfig,
+        TransactionTemplate transactionTemplate
+    ) {
+        this.jobRepository = jobRepository;
+        this.refundRepository = refundRepository;
+        this.statusService = statusService;
+        this.refundService = refundService;
+        this.cancellationService = cancellationService;
+        this.paymentStrategyFactory = paymentStrategyFactory;
+        this.vnPayConfig = vnPayConfig;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    public void start() {
+        gatewayPermits.put(PaymentMethod.VNPAY, new Semaphore(Math.max(1, vnpayConcurrency)));
+        gatewayPermits.put(PaymentMethod.CREDIT_CARD, new Semaphore(Math.max(1, creditCardConcurrency)));
+        jobs = Executors.newVirtualThreadPerTaskExecutor();
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bulk-cancel-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long touchEvery = Math.max(1000, staleAfterMs / 3);
+        heartbeat.scheduleWithFixedDelay(this::touchActiveJobs, touchEvery, touchEvery, TimeUnit.MILLISECONDS);
+        heartbeat.scheduleWithFixedDelay(this::recoverStale, staleAfterMs, staleAfterMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Tạo job huỷ cho danh sách order_ids hoặc cho các order pending khớp bộ lọc, job chạy nền
+     * @return job vừa tạo, client theo dõi tiến độ qua job_id
+     */
+    public CancellationJob submit(BulkCancellationRequest request, HttpServletRequest servletRequest) {
+        List<Integer> orderIds = resolveOrderIds(request);
+        if (orderIds.isEmpty()) {
+            throw new OrderCancellationException("No cancellable orders match the request");
+        }
+        String ipAddress = vnPayConfig.getIpAddress(servletRequest);
+        String leaseId = UUID.randomUUID().toString();
+        Long jobId = transactionTemplate.execute(status -> jobRepository.createJob(ipAddress, orderIds, leaseId));
+        logger.info("Bulk cancellation job {} created for {} orders", jobId, orderIds.size());
+        jobs.submit(() -> run(jobId, leaseId, ipAddress, false));
+        return jobRepository.findJob(jobId);
+    }
+
+    public CancellationJob getJob(long jobId) {
+        return jobRepository.findJob(jobId);
+    }
+
+    public List<CancellationJobItem> getItems(long jobId, String status) {
+        return jobRepository.findItems(jobId, status);
+    }
+
+    private List<Integer> resolveOrderIds(BulkCancellationRequest request) {
+        if (request.getOrder_ids() != null && !request.getOrder_ids().isEmpty()) {
+            Set<Integer> distinct = new LinkedHashSet<>(request.getOrder_ids());
+            distinct.remove(null);
+            if (distinct.size() > maxOrders) {
+                throw new OrderCancellationException("At most " + maxOrders + " orders can be cancelled in one job");
+            }
+            return new ArrayList<>(distinct);
+        }
+        if (request.getPayment_method() == null && request.getOrder_id_from() == null && request.getOrder_id_to() == null) {
+            throw new OrderCancellationException("order_ids or a filter (payment_method, order_id_from, order_id_to) is required");
+        }
+        if (request.getPayment_method() != null) {
+            PaymentMethod method = PaymentMethod.fromName(request.getPayment_method());
+            if (method == null) {
+                throw new OrderCancellationException("Unknown payment method: " + request.getPayment_method());
+            }
+            request.setPayment_method(method.name());
+        }
+        return jobRepository.findCancellableOrderIds(request, maxOrders);
+    }
+
+    private void run(long jobId, String leaseId, String ipAddress, boolean resumed) {
+        activeJobs.put(jobId, leaseId);
+        List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+        try {
+            if (resumed) {
+                int review = jobRepository.markDispatchedForReview(jobId, leaseId,
+                    "Node stopped while the refund was in flight, verify with the payment gateway before retrying");
+                List<Order> claimed = jobRepository.findClaimedOrders(jobId);
+                logger.warn("Resuming bulk cancellation job {}: {} claimed orders, {} sent to review", jobId, claimed.size(), review);
+                for (Order order : claimed) {
+                    inFlight.add(dispatch(jobId, leaseId, order, ipAddress));
+                }
+            }
+            List<Integer> batch;
+            while (!(batch = jobRepository.findQueuedOrderIds(jobId, batchSize)).isEmpty()) {
+                for (Order order : claimBatch(jobId, leaseId, batch)) {
+                    inFlight.add(dispatch(jobId, leaseId, order, ipAddress));
+                }
+            }
+            CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0])).join();
+            if (!jobRepository.finish(jobId, leaseId)) {
+                throw new LeaseLostException(jobId);
+            }
+            logger.info("Bulk cancellation job {} completed", jobId);
+        } catch (LeaseLostException e) {
+            // Node khác đã nhận job, kết quả các lời gọi hoàn tiền đã gửi vẫn được ghi vào order_refund
+            logger.warn(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Bulk cancellation job {} interrupted, it will be resumed later", jobId);
+        } catch (Exception e) {
+            // Job vẫn running, hết heartbeat sẽ được recoverStale nhận lại
+            logger.error("Bulk cancellation job {} stopped: {}", jobId, e.getMessage(), e);
+        } finally {
+            activeJobs.remove(jobId, leaseId);
+        }
+    }
+
+    /**
+     * Chuyển một lô order sang refund_pending và ghi order_refund trong cùng một transaction.
+     * Item của order không huỷ được (không còn pending, chưa có giao dịch, đang được hoàn tiền) chuyển sang skipped.
+     * Nếu node đã mất lease thì cả transaction bị rollback.
+     */
+    private List<Order> claimBatch(long jobId, String leaseId, List<Integer> batch) {
+        return transactionTemplate.execute(status -> {
+            List<Order> orders = jobRepository.claimOrders(batch);
+            List<String> methods = new ArrayList<>(orders.size());
+            for (Order order : orders) {
+                methods.add(paymentStrategyFactory.getStrategy(order).getPaymentMethodName());
+            }
+            boolean[] started = refundRepository.tryStartAll(orders, PREVIOUS_STATUS, methods);
+
+            List<Order> claimed = new ArrayList<>(orders.size());
+            List<Integer> claimedIds = new ArrayList<>(orders.size());
+            for (int i = 0; i < orders.size(); i++) {
+                Order order = orders.get(i);
+                if (started[i]) {
+                    claimed.add(order);
+                    claimedIds.add(order.getOrder_id());
+                } else {
+                    // Đã có lượt hoàn tiền khác đang chạy cho order này, trả lại trạng thái cũ
+                    statusService.updateStatus(order.getOrder_id(), PREVIOUS_STATUS);
+                }
+            }
+            List<Integer> skippedIds = new ArrayList<>(batch);
+            skippedIds.removeAll(claimedIds);
+            int marked = jobRepository.markItems(jobId, leaseId, claimedIds, CancellationJobItem.CLAIMED, null)
+                + jobRepository.markItems(jobId, leaseId, skippedIds, CancellationJobItem.SKIPPED,
+                    "Order is not pending, has no payment transaction or is already being refunded");
+            if (marked != claimedIds.size() + skippedIds.size()) {
+                throw new LeaseLostException(jobId);
+            }
+            return claimed;
+        });
+    }
+
+    /**
+     * Gửi một order đi hoàn tiền, chờ permit của cổng thanh toán trước khi gọi.
+     * Item được chuyển claimed -> dispatched (kèm lease_id) trước lời gọi để khi resume không gửi lại lần hai.
+     */
+    private CompletableFuture<Void> dispatch(long jobId, String leaseId, Order order, String ipAddress) throws InterruptedException {
+        PaymentStrategy strategy = paymentStrategyFactory.getStrategy(order);
+        Semaphore permits = gatewayPermits.get(strategy.getPaymentMethod());
+        permits.acquire();
+        boolean dispatched;
+        try {
+            dispatched = jobRepository.markDispatched(jobId, leaseId, order.getOrder_id());
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        if (!dispatched) {
+            permits.release();
+            throw new LeaseLostException(jobId);
+        }
+        CompletableFuture<RefundResult> refund;
+        try {
+            refund = refundService.processRefund(order, strategy, ipAddress);
+        } catch (RuntimeException e) {
+            refund = CompletableFuture.failedFuture(e);
+        }
+        return refund.handle((refundResult, error) -> {
+            permits.release();
+            recordResult(jobId, leaseId, order, refundResult, error);
+            return null;
+        });
+    }
+
+    private void recordResult(long jobId, String leaseId, Order order, RefundResult refundResult, Throwable error) {
+        try {
+            RefundResult outcome = cancellationService.completeRefund(order, PREVIOUS_STATUS, refundResult, error);
+            boolean marked;
+            if (outcome == null) {
+                marked = jobRepository.markItem(jobId, leaseId, order.getOrder_id(), CancellationJobItem.NEEDS_REVIEW,
+                    "Refund result could not be recorded");
+            } else {
+                marked = jobRepository.markItem(jobId, leaseId, order.getOrder_id(),
+                    outcome.isSuccess() ? CancellationJobItem.REFUNDED : CancellationJobItem.REFUND_FAILED, outcome.getMessage());
+            }
+            if (!marked) {
+                // Node mới đã chuyển item sang needs_review, kết quả vẫn nằm trong order_refund
+                logger.warn("Lease of bulk cancellation job {} lost, refund result of order {} ({}) only recorded in order_refund",
+                    jobId, order.getOrder_id(), outcome == null ? "not recorded" : outcome.isSuccess() ? "refunded" : "refund_failed");
+            }
+        } catch (Exception e) {
+            // Item vẫn dispatched, khi resume sẽ chuyển sang needs_review
+            logger.error("Failed to record bulk refund result of order {} in job {}: {}", order.getOrder_id(), jobId, e.getMessage());
+        }
+    }
+
+    private void touchActiveJobs() {
+        try {
+            for (long jobId : jobRepository.touch(Map.copyOf(activeJobs))) {
+                // Job đang chạy sẽ dừng ở lần ghi kế tiếp
+                logger.warn("Lease of bulk cancellation job {} lost, another node took it over", jobId);
+            }
+        } catch (Exception e) {
+            logger.error("Bulk cancellation heartbeat error: {}", e.getMessage());
+        }
+    }
+
+    private void recoverStale() {
+        try {
+            Integer failed = transactionTemplate.execute(status -> jobRepository.failExhausted(staleAfterMs, maxAttempts,
+                "Job failed after " + maxAttempts + " attempts, verify dispatched refunds with the payment gateway"));
+            if (failed != null && failed > 0) {
+                logger.error("{} bulk cancellation jobs failed after {} attempts", failed, maxAttempts);
+            }
+            String leaseId = UUID.randomUUID().toString();
+            for (CancellationJob job : jobRepository.claimStale(staleAfterMs, maxAttempts, 10, leaseId)) {
+                // Lần chạy cũ trên node này (nếu còn) bị chặn bởi lease_id mới
+                jobs.submit(() -> run(job.getJob_id(), leaseId, job.getRequested_ip(), true));
+            }
+        } catch (Exception e) {
+            logger.error("Bulk cancellation recovery error: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        // Job đang chạy dừng lại ở trạng thái running và được nhận lại sau stale-after-ms
+        jobs.shutdownNow();
+    }
+
+    // Node không còn giữ lease của job: dừng job, node đang giữ lease chạy tiếp
+    private static class LeaseLostException extends RuntimeException {
+        LeaseLostException(long jobId) {
+            super("Lease of bulk cancellation job " + jobId + " lost, stopping");
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package Project_ITSS.PlaceOrder.Service;
+
+import Project_ITSS.PlaceOrder.Entity.CartSession;
+import Project_ITSS.PlaceOrder.Entity.Product;
+import Project_ITSS.PlaceOrder.Exception.PlaceOrderException;
+import Project_ITSS.PlaceOrder.Repository.CartRepository_PlaceOrder;
+import Project_ITSS.PlaceOrder.Repository.ProductRepository_PlaceOrder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Cart phía server: thêm/bớt/sửa số lượng product mà không phải gửi lại cả cart.
+ * Cart được giữ trong bộ nhớ, các cart thay đổi được ghi xuống database theo lô sau mỗi flush-interval-ms (write-behind),
+ * cart không dùng tới trong idle-minutes được ghi lại rồi bỏ khỏi bộ nhớ và được nạp lại từ database khi cần.
+ * Nhiều node có thể cùng giữ một cart: mỗi lần ghi là compare-and-set trên version đã nạp, nếu node khác đã ghi trước
+ * thì cart được nạp lại và các thay đổi chưa lưu của node này được làm lại trên bản mới (thay đổi không còn hợp lệ bị bỏ).
+ * Cart bị xoá để lại tombstone nên flush muộn, kể cả của node khác, không tạo lại được cart; node khác còn giữ cart
+ * trong bộ nhớ chỉ biết cart đã bị xoá ở lần flush kế tiếp.
+ */
+@Service
+public class CartService_PlaceOrder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartService_PlaceOrder.class);
+
+    @Autowired
+    private CartRepository_PlaceOrder cartRepository;
+    @Autowired
+    private ProductRepository_PlaceOrder productRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${cart.flush-interval-ms:2000}")
+    private long flushIntervalMs;
+    @Value("${cart.idle-minutes:30}")
+    private long idleMinutes;
+    @Value("${cart.retention-days:30}")
+    private int retentionDays;
+    @Value("${cart.max-products:100}")
+    private int maxProducts;
+    @Value("${cart.max-quantity:1000}")
+    private int maxQuantity;
+
+    private final Map<String, CartSession> carts = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService writer;
+
+    @PostConstruct
+    public void start() {
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        long sweepEvery = Math.max(1, idleMinutes);
+        writer.scheduleWithFixedDelay(this::evictIdle, sweepEvery, sweepEvery, TimeUnit.MINUTES);
+    }
+
+    public CartSession createCart() {
+        CartSession cart = new CartSession(UUID.randomUUID().toString());
+        carts.put(cart.getCart_id(), cart);
+        dirty.add(cart.getCart_id());
+        return cart.copy();
+    }
+
+    // Trả về bản sao của cart, null nếu không có
+    public CartSession getCart(String cart_id) {
+        CartSession cart = load(cart_id);
+        if (cart == null) {
+            return null;
+        }
+        synchronized (cart) {
+            if (!cart.isEvicted()) {
+                cart.touch();
+                return cart.copy();
+            }
+        }
+        return getCart(cart_id);
+    }
+
+    // Thêm quantity đơn vị của product vào cart, giá lấy từ bảng product
+    public CartSession addItem(String cart_id, int product_id, int quantity) {
+        if (quantity <= 0) {
+            throw new PlaceOrderException("Quantity must be positive");
+        }
+        Product product = findProduct(product_id);
+        return update(cart_id, cart -> {
+            checkLimits(cart, product_id, cart.getQuantity(product_id) + quantity);
+            cart.setQuantity(product, cart.getQuantity(product_id) + quantity);
+        });
+    }
+
+    // Đặt lại số lượng của product, quantity = 0 là bỏ product khỏi cart
+    public CartSession updateQuantity(String cart_id, int product_id, int quantity) {
+        if (quantity < 0) {
+            throw new PlaceOrderException("Quantity must not be negative");
+        }
+        if (quantity == 0) {
+            return removeItem(cart_id, product_id);
+        }
+        Product product = findProduct(product_id);
+        return update(cart_id, cart -> {
+            checkLimits(cart, product_id, quantity);
+            cart.setQuantity(product, quantity);
+        });
+    }
+
+    public CartSession removeItem(String cart_id, int product_id) {
+        return update(cart_id, cart -> cart.remove(product_id));
+    }
+
+    public boolean deleteCart(String cart_id) {
+        CartSession cart = load(cart_id);
+        if (cart == null) {
+            return false;
+        }
+        synchronized (cart) {
+            cart.evict();
+            cart.takeUnsaved();
+        }
+        carts.remove(cart_id, cart);
+        dirty.remove(cart_id);
+        transactionTemplate.executeWithoutResult(status -> cartRepository.delete(cart_id));
+        return true;
+    }
+
+    /**
+     * Sửa cart dưới khoá của nó. Nếu cart vừa bị đẩy khỏi bộ nhớ thì nạp lại và làm lại trên bản mới.
+     */
+    private CartSession update(String cart_id, Consumer<CartSession> change) {
+        while (true) {
+            CartSession cart = load(cart_id);
+            if (cart == null) {
+                throw new PlaceOrderException("Cart not found: " + cart_id);
+            }
+            synchronized (cart) {
+                if (cart.isEvicted()) {
+                    continue;
+                }
+                long version = cart.getVersion();
+                change.accept(cart);
+                if (cart.getVersion() != version) {
+                    cart.recordChange(change);
+                }
+                dirty.add(cart_id);
+                return cart.copy();
+            }
+        }
+    }
+
+    private CartSession load(String cart_id) {
+        CartSession cart = carts.get(cart_id);
+        if (cart != null) {
+            return cart;
+        }
+        CartSession stored = cartRepository.findById(cart_id);
+        if (stored == null) {
+            return null;
+        }
+        CartSession existing = carts.putIfAbsent(cart_id, stored);
+        return existing != null ? existing : stored;
+    }
+
+    private Product findProduct(int product_id) {
+        try {
+            return productRepository.getProductById(product_id);
+        } catch (EmptyResultDataAccessException e) {
+            throw new PlaceOrderException("Product not found: " + product_id);
+        }
+    }
+
+    private void checkLimits(CartSession cart, int product_id, int quantity) {
+        if (quantity > maxQuantity) {
+            throw new PlaceOrderException("At most " + maxQuantity + " units of a product can be added to a cart");
+        }
+        if (cart.getQuantity(product_id) == 0 && cart.size() >= maxProducts) {
+            throw new PlaceOrderException("A cart can hold at most " + maxProducts + " products");
+        }
+    }
+
+    // Ghi các cart đã thay đổi xuống database trong một transaction
+    private void flush() {
+        List<String> ids = new ArrayList<>(dirty);
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<CartSession> sessions = new ArrayList<>(ids.size());
+        List<CartSession> snapshots = new ArrayList<>(ids.size());
+        for (String cart_id : ids) {
+            dirty.remove(cart_id);
+            CartSession cart = carts.get(cart_id);
+            if (cart == null) {
+                continue;
+            }
+            synchronized (cart) {
+                sessions.add(cart);
+                snapshots.add(cart.copy());
+            }
+        }
+        if (!persist(sessions, snapshots)) {
+            // Ghi lại ở lần flush sau
+            for (CartSession snapshot : snapshots) {
+                dirty.add(snapshot.getCart_id());
+            }
+        }
+    }
+
+    /**
+     * Ghi bản chụp snapshots.get(i) của cart sessions.get(i). Cart bị xung đột version được nạp lại và làm lại
+     * các thay đổi chưa lưu (rebase). Trả về false nếu không ghi được gì (lỗi database).
+     */
+    private boolean persist(List<CartSession> sessions, List<CartSession> snapshots) {
+        if (snapshots.isEmpty()) {
+            return true;
+        }
+        List<String> conflicts;
+        try {
+            conflicts = transactionTemplate.execute(status -> cartRepository.saveAll(snapshots));
+        } catch (Exception e) {
+            logger.error("Failed to write {} carts: {}", snapshots.size(), e.getMessage());
+            return false;
+        }
+        for (int i = 0; i < sessions.size(); i++) {
+            CartSession cart = sessions.get(i);
+            if (conflicts.contains(cart.getCart_id())) {
+                rebase(cart);
+            } else {
+                synchronized (cart) {
+                    cart.markStored(snapshots.get(i).getVersion());
+                }
+            }
+        }
+        return true;
+    }
+
+    // Node khác đã ghi hoặc xoá cart: bỏ bản trong bộ nhớ, làm lại các thay đổi chưa lưu trên bản nạp lại từ database
+    private void rebase(CartSession cart) {
+        String cart_id = cart.getCart_id();
+        List<Consumer<CartSession>> changes;
+        synchronized (cart) {
+            cart.evict();
+            changes = cart.takeUnsaved();
+        }
+        carts.remove(cart_id, cart);
+        int dropped = 0;
+        for (Consumer<CartSession> change : changes) {
+            try {
+                update(cart_id, change);
+            } catch (PlaceOrderException e) {
+                dropped++;
+            }
+        }
+        logger.warn("Cart {} was changed or deleted on another node, replayed {} of {} unsaved changes", cart_id, changes.size() - dropped, changes.size());
+    }
+
+    // Đẩy các cart không dùng tới khỏi bộ nhớ sau khi ghi lại, xoá các cart quá retention-days trong database
+    private void evictIdle() {
+        long idleBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleMinutes);
+        List<CartSession> evicted = new ArrayList<>();
+        List<CartSession> snapshots = new ArrayList<>();
+        int count = 0;
+        for (CartSession cart : carts.values()) {
+            synchronized (cart) {
+                if (cart.getLast_access() >= idleBefore) {
+                    continue;
+                }
+                cart.evict();
+                // Cart chưa thay đổi từ lần flush trước thì không cần ghi lại
+                if (dirty.remove(cart.getCart_id())) {
+                    evicted.add(cart);
+                    snapshots.add(cart.copy());
+                }
+            }
+            carts.remove(cart.getCart_id(), cart);
+            count++;
+        }
+        if (!persist(evicted, snapshots)) {
+            // Chưa ghi được thì giữ lại trong bộ nhớ để lần sau ghi tiếp
+            for (int i = 0; i < evicted.size(); i++) {
+                CartSession snapshot = snapshots.get(i);
+                synchronized (evicted.get(i)) {
+                    evicted.get(i).moveUnsavedTo(snapshot);
+                }
+                carts.putIfAbsent(snapshot.getCart_id(), snapshot);
+                dirty.add(snapshot.getCart_id());
+            }
+        } else if (count > 0) {
+            logger.info("Evicted {} idle carts", count);
+        }
+        try {
+            cartRepository.deleteIdle(retentionDays);
+        } catch (Exception e) {
+            logger.error("Failed to delete old carts: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Ghi nốt các thay đổi chưa kịp flush
+        flush();
+    }
+}
@@ -1,8 +1,7 @@
 package Project_ITSS.PlaceOrder.Service;
 
+import Project_ITSS.Mail.Service.MailOutboxService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
 enum Province{
@@ -25,7 +24,7 @@ enum PaymentMethod{
 @Service
 public class NonDBService_PlaceOrder {
     @Autowired
-    private JavaMailSender javaMailSender;
+    private MailOutboxService mailOutboxService;
     public void sendSuccessNotification(String customer, String message) {
         // TODO: Gửi email, SMS, hoặc notification khác
         System.out.println("Notification to " + customer + ": " + message);
@@ -47,12 +46,8 @@ public class NonDBService_PlaceOrder {
         return true;
     }
 
+    // Email được đưa vào outbox và gửi bởi thread nền, request không phải chờ SMTP
     public void SendSuccessEmail(String toEmail,String subject,String content){
-        SimpleMailMessage message = new SimpleMailMessage();
-        System.out.println(toEmail);
-        message.setTo(toEmail);
-        message.setSubject(subject);
-        message.setText(content);
-        javaMailSender.send(message);
+        mailOutboxService.enqueue(toEmail, subject, content);
     }
 } 
\ No newline at end of file
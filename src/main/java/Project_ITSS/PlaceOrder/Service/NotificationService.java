@@ -44,7 +44,7 @@ public class NotificationService implements INotificationService {
                 );
                 
                 emailService.SendSuccessEmail(deliveryInfo.getEmail(), subject, content);
-                logger.info("Cancellation notification sent to: {}", deliveryInfo.getEmail());
+                logger.info("Cancellation notification queued for: {}", deliveryInfo.getEmail());
             }
         } catch (Exception e) {
             logger.error("Error sending cancellation notification: {}", e.getMessage());
@@ -56,9 +56,9 @@ public class NotificationService implements INotificationService {
     public void sendSuccessEmail(String email, String subject, String content) {
         try {
             emailService.SendSuccessEmail(email, subject, content);
-            logger.info("Success email sent to: {}", email);
+            logger.info("Success email queued for: {}", email);
         } catch (Exception e) {
-            logger.error("Error sending success email to {}: {}", email, e.getMessage());
+            logger.error("Error queueing success email to {}: {}", email, e.getMessage());
         }
     }
 } 
\ No newline at end of file
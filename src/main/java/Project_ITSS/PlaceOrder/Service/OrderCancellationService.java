@@ -1,16 +1,18 @@
 package Project_ITSS.PlaceOrder.Service;
 
 import Project_ITSS.PlaceOrder.Entity.Order;
+import Project_ITSS.PlaceOrder.Entity.OrderRefund;
 import Project_ITSS.PlaceOrder.Factory.PaymentStrategyFactory;
 import Project_ITSS.PlaceOrder.Strategy.PaymentStrategy;
 import Project_ITSS.PlaceOrder.Strategy.PaymentStrategy.RefundResult;
 import Project_ITSS.PlaceOrder.Command.CommandResult;
 import Project_ITSS.PlaceOrder.Exception.OrderNotFoundException;
 import Project_ITSS.PlaceOrder.Exception.OrderCancellationException;
+import Project_ITSS.PlaceOrder.Repository.RefundRepository_PlaceOrder;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,9 +20,11 @@ import org.slf4j.LoggerFactory;
  * Service layer for order cancellation operations - ORCHESTRATION ONLY
  * Implements improved design patterns with low coupling and high cohesion
  * Single Responsibility: Only orchestrates the cancellation process
+ *
+ * Refund chạy bất đồng bộ trên virtual thread, ngoài mọi transaction: request chỉ chuyển order sang refund_pending
+ * rồi trả về, khi cổng thanh toán trả lời thì order_refund chuyển sang refunded hoặc refund_failed.
  */
 @Service
-@Transactional
 public class OrderCancellationService {
     
     private static final Logger logger = LoggerFactory.getLogger(OrderCancellationService.class);
@@ -31,6 +35,8 @@ public class OrderCancellationService {
     private final RefundService refundService;
     private final INotificationService notificationService;
     private final PaymentStrategyFactory paymentStrategyFactory;
+    private final RefundRepository_PlaceOrder refundRepository;
+    private final TransactionTemplate transactionTemplate;
     
     @Autowired
     public OrderCancellationService(
@@ -38,13 +44,17 @@ public class OrderCancellationService {
         OrderStatusService statusService,
         RefundService refundService,
         INotificationService notificationService,
-        PaymentStrategyFactory paymentStrategyFactory
+        PaymentStrategyFactory paymentStrategyFactory,
+        RefundRepository_PlaceOrder refundRepository,
+        TransactionTemplate transactionTemplate
     ) {
         this.validationService = validationService;
         this.statusService = statusService;
         this.refundService = refundService;
         this.notificationService = notificationService;
         this.paymentStrategyFactory = paymentStrategyFactory;
+        this.refundRepository = refundRepository;
+        this.transactionTemplate = transactionTemplate;
     }
     
     /**
@@ -63,38 +73,37 @@ public class OrderCancellationService {
             logger.info("Selected payment strategy: {} for order: {}", 
                 paymentStrategy.getPaymentMethodName(), orderId);
             
-            // Step 3: Update order status to cancelled (delegated to status service)
-            statusService.updateStatus(orderId, "cancelled");
-            
-            // Step 4: Validate transaction (delegated to strategy)
+            // Step 3: Validate transaction (delegated to strategy)
             boolean valid = paymentStrategy.validateTransaction(String.valueOf(orderId), null);
             if (!valid) {
-                // Rollback order status if validate transaction fail (delegated to status service)
-                statusService.updateStatus(orderId, order.getStatus());
                 return CommandResult.failure("Transaction validation failed. Cannot cancel/refund.", "TRANSACTION_INVALID");
             }
             
-            // Step 5: Process refund (delegated to refund service)
-            RefundResult refundResult = refundService.processRefund(order, paymentStrategy, request);
-            if (!refundResult.isSuccess()) {
-                // Rollback order status if refund fails (delegated to status service)
-                statusService.updateStatus(orderId, order.getStatus());
-                return CommandResult.failure(refundResult.getMessage(), "REFUND_FAILED");
+            // Step 4: Move order to refund_pending in one short transaction (guards against concurrent cancels)
+            String previousStatus = order.getStatus();
+            Boolean started = transactionTemplate.execute(status -> {
+                if (!refundRepository.tryStart(orderId, previousStatus, paymentStrategy.getPaymentMethodName())) {
+                    return false;
+                }
+                statusService.updateStatus(orderId, OrderRefund.PENDING);
+                return true;
+            });
+            if (!Boolean.TRUE.equals(started)) {
+                return CommandResult.failure("A refund for order " + orderId + " is already in progress or done", "REFUND_IN_PROGRESS");
             }
             
-            // Step 6: Send notification if successful (delegated to notification service)
-            notificationService.sendCancellationNotification(order, refundResult);
+            // Step 5: Process refund on a virtual thread (delegated to refund service), no DB connection held meanwhile
+            refundService.processRefund(order, paymentStrategy, request)
+                .whenComplete((refundResult, error) -> completeRefund(order, previousStatus, refundResult, error));
             
-            // Step 7: Create success result
+            // Step 6: Create pending result, the client polls /api/order/cancel/status for the outcome
             CancellationData cancellationData = new CancellationData();
             cancellationData.setOrderId(order.getOrder_id());
-            cancellationData.setRefundAmount(refundResult.getAmount());
-            cancellationData.setRefundMethod(refundResult.getMethod());
-            cancellationData.setTransactionId(refundResult.getTransactionId());
             cancellationData.setPaymentMethod(paymentStrategy.getPaymentMethodName());
+            cancellationData.setRefundStatus(OrderRefund.PENDING);
             
-            logger.info("Order cancellation orchestration completed successfully for order: {}", orderId);
-            return CommandResult.success("Order cancelled successfully", cancellationData);
+            logger.info("Order cancellation accepted, refund pending for order: {}", orderId);
+            return CommandResult.success("Order cancellation accepted, refund is being processed", cancellationData);
             
         } catch (OrderNotFoundException e) {
             logger.error("Order not found: {}", orderId);
@@ -108,6 +117,66 @@ public class OrderCancellationService {
         }
     }
     
+    /**
+     * Record the refund outcome: refunded -> order cancelled and customer notified,
+     * refund_failed -> order back to its previous status
+     * A late result for a refund that PendingRefundSweeper moved to refund_unknown is recorded the same way.
+     * @return The recorded outcome, null if it could not be recorded (refund stays refund_pending,
+     *         or already has a result)
+     */
+    public RefundResult completeRefund(Order order, String previousStatus, RefundResult refundResult, Throwable error) {
+        long orderId = order.getOrder_id();
+        RefundResult result = refundResult;
+        if (error != null || result == null) {
+            result = new RefundResult();
+            result.setSuccess(false);
+            result.setMessage("Error processing refund: " + (error != null ? error.getMessage() : "no result"));
+        }
+        RefundResult outcome = result;
+        Boolean recorded;
+        try {
+            recorded = transactionTemplate.execute(status -> {
+                if (outcome.isSuccess()) {
+                    if (!refundRepository.complete(orderId, OrderRefund.REFUNDED, outcome.getAmount(),
+                            outcome.getMethod(), outcome.getTransactionId(), outcome.getMessage())) {
+                        return false;
+                    }
+                    statusService.updateStatus(orderId, "cancelled");
+                } else {
+                    if (!refundRepository.complete(orderId, OrderRefund.FAILED, 0, null, null, outcome.getMessage())) {
+                        return false;
+                    }
+                    statusService.updateStatus(orderId, previousStatus);
+                }
+                return true;
+            });
+        } catch (Exception e) {
+            // order_refund vẫn ở refund_pending, PendingRefundSweeper sẽ chuyển sang refund_unknown sau pending-timeout
+            logger.error("Failed to record refund result for order {}: {}", orderId, e.getMessage(), e);
+            return null;
+        }
+        if (!Boolean.TRUE.equals(recorded)) {
+            // Lượt hoàn tiền đã có kết quả khác, cần đối soát với cổng thanh toán
+            logger.error("Refund result for order {} arrived after the refund already had a result (success={}, transaction={}): {}",
+                orderId, outcome.isSuccess(), outcome.getTransactionId(), outcome.getMessage());
+            return null;
+        }
+        if (outcome.isSuccess()) {
+            notificationService.sendCancellationNotification(order, outcome);
+            logger.info("Refund completed for order: {}", orderId);
+        } else {
+            logger.warn("Refund failed for order {}: {}", orderId, outcome.getMessage());
+        }
+        return outcome;
+    }
+    
+    /**
+     * Current refund state of an order, null if it was never cancelled
+     */
+    public OrderRefund getRefundStatus(long orderId) {
+        return refundRepository.findByOrderId(orderId);
+    }
+    
     /**
      * Data class for cancellation result
      */
@@ -117,6 +186,7 @@ public class OrderCancellationService {
         private String refundMethod;
         private String transactionId;
         private String paymentMethod;
+        private String refundStatus;
         
         // Getters and setters
         public long getOrderId() { return orderId; }
@@ -133,5 +203,8 @@ public class OrderCancellationService {
         
         public String getPaymentMethod() { return paymentMethod; }
         public void setPaymentMethod(String paymentMethod) { this.paymentMethod = paymentMethod; }
+        
+        public String getRefundStatus() { return refundStatus; }
+        public void setRefundStatus(String refundStatus) { this.refundStatus = refundStatus; }
     }
 } 
\ No newline at end of file
@@ -1,73 +1,165 @@
 package Project_ITSS.PlaceOrder.Service;
 
+import Project_ITSS.PlaceOrder.Delivery.DeliveryRate;
+import Project_ITSS.PlaceOrder.Delivery.DeliveryRateTable;
+import Project_ITSS.PlaceOrder.Delivery.RushSlotScheduler;
 import Project_ITSS.PlaceOrder.Entity.DeliveryInfo;
 import Project_ITSS.PlaceOrder.Entity.DeliveryInformation;
 import Project_ITSS.PlaceOrder.Entity.Order;
 import Project_ITSS.PlaceOrder.Entity.Orderline;
+import Project_ITSS.PlaceOrder.Entity.PaymentMethod;
+import Project_ITSS.PlaceOrder.Entity.ProductAvailability;
+import Project_ITSS.PlaceOrder.Entity.RushSlot;
+import Project_ITSS.PlaceOrder.Exception.PlaceOrderException;
 import Project_ITSS.PlaceOrder.Repository.OrderRepository_PlaceOrder;
+import Project_ITSS.PlaceOrder.Repository.OrderlineRepository_PlaceOrder;
+import Project_ITSS.PlaceOrder.Repository.PaymentRepository_PlaceOrder;
 import Project_ITSS.PlaceOrder.Repository.ProductRepository_PlaceOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class OrderService_PlaceOrder {
+    private static final Logger logger = LoggerFactory.getLogger(OrderService_PlaceOrder.class);
+    // Trạng thái của order có số tiền đã trả không khớp với giá, cần người quản lý kiểm tra trước khi duyệt
+    public static final String STATUS_NEEDS_REVIEW = "needs_review";
+    // Order có giá trị trên ngưỡng này được giảm thêm phí giao hàng thường
+    private static final int FREE_SHIPPING_THRESHOLD = 100000;
+    private static final int FREE_SHIPPING_DISCOUNT = 25000;
+
     @Autowired
     private OrderRepository_PlaceOrder orderRepository;
     @Autowired
     private ProductRepository_PlaceOrder productRepository;
-    public void saveRushOrder(DeliveryInfo deliveryInfo) {
-        // TODO: Lưu thông tin rush order vào DB hoặc xử lý logic liên quan
-        System.out.println("Rush order saved: " + deliveryInfo);
+    @Autowired
+    private OrderlineRepository_PlaceOrder orderlineRepository;
+    @Autowired
+    private StockReservationService_PlaceOrder reservationService;
+    @Autowired
+    private DeliveryRateTable deliveryRateTable;
+    @Autowired
+    private RushSlotScheduler rushSlotScheduler;
+    @Autowired
+    private PaymentRepository_PlaceOrder paymentRepository;
+
+    // Xếp rush order đã lưu ở /finish-order vào khung giờ giao hàng sớm nhất còn chỗ của tỉnh nhận hàng đã lưu
+    public RushSlot saveRushOrder(DeliveryInfo deliveryInfo) {
+        if(deliveryInfo.getOrderId() == null){
+            throw new PlaceOrderException("Order id is required for a rush order");
+        }
+        long order_id;
+        try{
+            order_id = Long.parseLong(deliveryInfo.getOrderId().trim());
+        }catch (NumberFormatException e){
+            throw new PlaceOrderException("Invalid order id: " + deliveryInfo.getOrderId());
+        }
+        RushSlot slot = rushSlotScheduler.assign(order_id);
+        deliveryInfo.setDeliveryDate(Timestamp.valueOf(slot.getSlot_start()));
+        return slot;
+    }
+
+    /**
+     * Đặt trạng thái ban đầu của order trước khi lưu ở /finish-order.
+     * Đã có giao dịch VNPay thì số tiền đã trả phải bằng tổng sau VAT cộng phí giao hàng (tính lại phía server),
+     * chưa có (IPN chưa tới) thì tổng tiền không được khác tổng trong price stamp mà khách đã thấy lúc thanh toán.
+     * Không khớp thì order vẫn được lưu nhưng ở trạng thái needs_review thay vì pending.
+     * stamped_total_after_VAT null khi price stamp không hợp lệ (order bị sửa sau khi định giá): order đã được định giá lại
+     * nhưng khách có thể đã trả theo tổng tiền bị sửa nên luôn needs_review.
+     */
+    public void reviewPayment(Order order, DeliveryInformation deliveryInfo, Integer stamped_total_after_VAT) {
+        Long paid = paymentRepository.getPaidAmount(order.getOrder_id());
+        boolean mismatch;
+        if (stamped_total_after_VAT == null) {
+            mismatch = true;
+            logger.warn("Order {} does not match its price stamp, repriced to {} and flagged for review (paid {})",
+                    order.getOrder_id(), order.getTotal_after_VAT(), paid);
+        } else if (paid != null) {
+            int[] delivery_fees = CalculateDeliveryFee(deliveryInfo.getProvince(), order);
+            long expected = (long) order.getTotal_after_VAT() + delivery_fees[0] + delivery_fees[1];
+            mismatch = paid != expected;
+            if (mismatch) {
+                logger.warn("Order {} paid {} but is priced at {}", order.getOrder_id(), paid, expected);
+            }
+        } else {
+            mismatch = order.getTotal_after_VAT() != stamped_total_after_VAT;
+            if (mismatch) {
+                logger.warn("Order {} repriced after payment: total after VAT {} -> {}",
+                        order.getOrder_id(), stamped_total_after_VAT, order.getTotal_after_VAT());
+            }
+        }
+        order.setStatus(mismatch ? STATUS_NEEDS_REVIEW : "pending");
     }
 
+    // Lưu delivery info, order, các orderline và trừ kho (hoặc xác nhận lượt giữ hàng) trong cùng một transaction
+    @Transactional
     public void saveOrder(Order order, DeliveryInformation deliveryInfo){
+        // Chỉ lưu order_id do /placeorder cấp, không nhận order_id client tự đặt
+        if(!reservationService.isIssued(order.getOrder_id())){
+            throw new PlaceOrderException("Unknown order id: " + order.getOrder_id());
+        }
+        // Phương thức thanh toán lấy từ giao dịch đã ghi nhận phía server, không dùng giá trị client gửi lên.
+        // PayOrder hiện chỉ thanh toán qua VNPay nên order chưa có giao dịch (IPN tới sau) cũng được coi là VNPay
+        PaymentMethod payment_method = paymentRepository.findPaymentMethod(order.getOrder_id());
+        order.setPayment_method((payment_method != null ? payment_method : PaymentMethod.VNPAY).name());
         orderRepository.saveOrder(order,deliveryInfo);
+        List<Orderline> orderlineList = order.getOrderLineList();
+        Map<Integer, Integer> quantities = new HashMap<>();
+        for (Orderline orderline : orderlineList){
+            orderline.setOrder_id(order.getOrder_id());
+            quantities.merge(orderline.getProduct_id(), orderline.getQuantity(), Integer::sum);
+        }
+        orderlineRepository.saveOrderlines(orderlineList);
+        // Hàng đã được giữ lúc /placeorder cho chính order này thì chỉ trừ kho phần orderline vượt quá lượt giữ,
+        // lượt giữ đã hết hạn (hoặc không phải của order này) thì trừ kho lại từ đầu
+        Map<Integer, Integer> remaining = order.getReservation_id() != null
+                ? reservationService.commit(order.getReservation_id(), order.getOrder_id(), quantities)
+                : quantities;
+        if(remaining.isEmpty()){
+            return;
+        }
+        List<Integer> inadequate = productRepository.decrementStock(remaining);
+        if(!inadequate.isEmpty()){
+            // Ném exception để rollback toàn bộ order
+            throw new PlaceOrderException("Inadequate stock for products: " + inadequate);
+        }
     }
 
     public int[] CalculateDeliveryFee(String province,Order order){
         List<Orderline> orderlineList = order.getOrderLineList();
-        System.out.println(orderlineList.size());
+        DeliveryRate rate = deliveryRateTable.getRate(province);
+        // Lấy cân nặng của tất cả product trong order bằng một truy vấn
+        Set<Integer> product_ids = new HashSet<>();
+        for (Orderline orderline : orderlineList){
+            product_ids.add(orderline.getProduct_id());
+        }
+        Map<Integer, ProductAvailability> products = productRepository.getProductAvailability(product_ids);
         int normal_delivery_fee = 0;
         int rush_delivery_fee = 0;
-        if(province.equals("HaNoi") || province.equals("HoChiMinhCity")){
-            for (Orderline orderline : orderlineList){
-                double weight = productRepository.getProductWeight(orderline.getProduct_id());
-                int total = 0;
-                total += 22000;
-                weight = (weight - 3);
-                while(weight > 0.5){
-                    total += 2500;
-                    weight -= 0.5;
-                }
-                if(orderline.isRush_order_using()){
-                    rush_delivery_fee += total + 10000;
-                }else{
-                    normal_delivery_fee += total;
-                }
+        for (Orderline orderline : orderlineList){
+            ProductAvailability product = products.get(orderline.getProduct_id());
+            if(product == null){
+                throw new PlaceOrderException("Product not found: " + orderline.getProduct_id());
             }
-            normal_delivery_fee = (normal_delivery_fee > 25000) ? normal_delivery_fee - 25000 : 0;
-        }else{
-            for (Orderline orderline : orderlineList){
-                double weight = productRepository.getProductWeight(orderline.getProduct_id());
-                System.out.println(weight);
-                int total = 0;
-                total += 30000;
-                weight = (weight - 0.5);
-                while(weight > 0.5){
-                    total += 2500;
-                    weight -= 0.5;
-                }
-                if(orderline.isRush_order_using()){
-                    rush_delivery_fee += total + 10000;
-                }else{
-                    normal_delivery_fee += total;
-                }
+            int fee = rate.feeFor(product.getWeight(), orderline.isRush_order_using());
+            if(orderline.isRush_order_using()){
+                rush_delivery_fee += fee;
+            }else{
+                normal_delivery_fee += fee;
             }
         }
-        if(order.getTotal_before_VAT() > 100000){
-            normal_delivery_fee = (normal_delivery_fee > 25000) ? normal_delivery_fee - 25000 : 0;
+        normal_delivery_fee = Math.max(normal_delivery_fee - rate.getNormalFeeSubsidy(), 0);
+        if(order.getTotal_before_VAT() > FREE_SHIPPING_THRESHOLD){
+            normal_delivery_fee = Math.max(normal_delivery_fee - FREE_SHIPPING_DISCOUNT, 0);
         }
         int[] delivery_fees = {normal_delivery_fee,rush_delivery_fee};
         return delivery_fees;
@@ -0,0 +1,79 @@
+package Project_ITSS.PlaceOrder.Service;
+
+import Project_ITSS.PlaceOrder.Entity.OrderRefund;
+import Project_ITSS.PlaceOrder.Repository.RefundRepository_PlaceOrder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lượt hoàn tiền nằm ở refund_pending quá pending-timeout (node chết giữa lời gọi cổng thanh toán, không ghi được kết quả)
+ * được chuyển sang refund_unknown để đối soát: tiền có thể đã được hoàn nên tryStart không mở lại lượt đó và order
+ * giữ nguyên refund_pending. Kết quả về muộn vẫn được ghi như bình thường (xem OrderCancellationService.completeRefund).
+ */
+@Service
+public class PendingRefundSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(PendingRefundSweeper.class);
+    private static final int BATCH_SIZE = 100;
+
+    @Autowired
+    private RefundRepository_PlaceOrder refundRepository;
+
+    @Value("${refund.pending-timeout-minutes:30}")
+    private int pendingTimeoutMinutes;
+    @Value("${refund.sweep-interval-seconds:60}")
+    private long sweepIntervalSeconds;
+
+    private ScheduledExecutorService sweeper;
+
+    @PostConstruct
+    public void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pending-refund-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::timeOutStale, sweepIntervalSeconds, sweepIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Chuyển lượt hoàn tiền sang refund_unknown nếu nó vẫn refund_pending quá pending-timeout.
+     * @return false nếu kết quả hoàn tiền đã được ghi trong lúc đó
+     */
+    public boolean timeOut(OrderRefund refund) {
+        return refundRepository.timeOut(refund.getOrder_id(), pendingTimeoutMinutes,
+            "Refund result not recorded within " + pendingTimeoutMinutes + " minutes, verify with the payment gateway");
+    }
+
+    private void timeOutStale() {
+        try {
+            List<OrderRefund> stale;
+            do {
+                stale = refundRepository.findStalePending(pendingTimeoutMinutes, BATCH_SIZE);
+                for (OrderRefund refund : stale) {
+                    if (timeOut(refund)) {
+                        logger.warn("Refund for order {} had no result after {} minutes, moved to {} for reconciliation",
+                            refund.getOrder_id(), pendingTimeoutMinutes, OrderRefund.UNKNOWN);
+                    }
+                }
+            } while (stale.size() == BATCH_SIZE);
+        } catch (Exception e) {
+            logger.error("Failed to time out pending refunds: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+}
@@ -0,0 +1,186 @@
+package Project_ITSS.PlaceOrder.Service;
+
+import Project_ITSS.PlaceOrder.Entity.Order;
+import Project_ITSS.PlaceOrder.Entity.Orderline;
+import Project_ITSS.PlaceOrder.Exception.PlaceOrderException;
+import Project_ITSS.PlaceOrder.Pricing.PriceTable;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Định giá order phía server: giá lấy từ PriceTable chứ không tin giá trong cart client gửi lên,
+ * tổng tiền tính bằng long rồi mới đưa về các cột int của order.
+ * Order đã định giá được gắn price stamp (version bảng giá, thời điểm, HMAC của order_id, lượt giữ hàng,
+ * phương thức thanh toán, các orderline và tổng tiền). Stamp bị sửa thì order bị từ chối,
+ * stamp chỉ hết hạn (quá stamp-ttl hoặc bảng giá đã đổi) thì order được định giá lại.
+ * Khoá HMAC lấy từ pricing.stamp-secret, phải giống nhau trên mọi node để stamp do node khác cấp vẫn kiểm tra được.
+ * Thiếu pricing.stamp-secret thì ứng dụng không khởi động, trừ profile test/h2 (dùng khoá ngẫu nhiên của riêng process).
+ */
+@Service
+public class PricingService_PlaceOrder {
+
+    private static final Logger logger = LoggerFactory.getLogger(PricingService_PlaceOrder.class);
+    private static final String ALGORITHM = "HmacSHA256";
+
+    @Autowired
+    private PriceTable priceTable;
+    @Autowired
+    private Environment environment;
+
+    @Value("${pricing.stamp-ttl-minutes:30}")
+    private long stampTtlMinutes;
+    @Value("${pricing.stamp-secret:}")
+    private String stampSecret;
+
+    private SecretKeySpec stampKey;
+    private ThreadLocal<Mac> macs;
+
+    public enum StampStatus {
+        VALID,
+        // Stamp đúng nhưng đã quá hạn hoặc bảng giá đã đổi, cần định giá lại
+        EXPIRED,
+        // Không có stamp hoặc order đã bị sửa sau khi định giá
+        INVALID
+    }
+
+    @PostConstruct
+    public void init() {
+        byte[] key;
+        if (stampSecret == null || stampSecret.isBlank()) {
+            if (environment == null || !environment.acceptsProfiles(Profiles.of("test", "h2"))) {
+                throw new IllegalStateException("pricing.stamp-secret (PRICING_STAMP_SECRET) must be set outside the test/h2 profiles");
+            }
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            logger.warn("pricing.stamp-secret is not set, price stamps issued by other nodes will be rejected");
+        } else {
+            key = stampSecret.getBytes(StandardCharsets.UTF_8);
+        }
+        stampKey = new SecretKeySpec(key, ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(stampKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot initialise " + ALGORITHM, e);
+            }
+        });
+    }
+
+    /**
+     * Định giá lại toàn bộ order: total_fee của từng orderline, tổng tiền trước/sau VAT và price stamp
+     */
+    public void priceOrder(Order order) {
+        List<Orderline> orderlines = order.getOrderLineList();
+        if (orderlines.isEmpty()) {
+            throw new PlaceOrderException("The order has no orderline");
+        }
+        Set<Integer> product_ids = new HashSet<>();
+        for (Orderline orderline : orderlines) {
+            product_ids.add(orderline.getProduct_id());
+        }
+        PriceTable.Snapshot snapshot = priceTable.getPrices(product_ids);
+        try {
+            long total_before_VAT = 0;
+            for (Orderline orderline : orderlines) {
+                Long price = snapshot.getPrices().get(orderline.getProduct_id());
+                if (price == null) {
+                    throw new PlaceOrderException("Product not found: " + orderline.getProduct_id());
+                }
+                if (orderline.getQuantity() <= 0) {
+                    throw new PlaceOrderException("The quantity of product is invalid");
+                }
+                long fee = Math.multiplyExact(price, orderline.getQuantity());
+                orderline.setTotal_fee(Math.toIntExact(fee));
+                total_before_VAT = Math.addExact(total_before_VAT, fee);
+            }
+            order.setTotal_before_VAT(Math.toIntExact(total_before_VAT));
+            order.setTotal_after_VAT(Math.toIntExact(Order.totalAfterVAT(total_before_VAT)));
+        } catch (ArithmeticException e) {
+            throw new PlaceOrderException("The order total is too large");
+        }
+        order.setPrice_stamp(stamp(snapshot.getVersion(), System.currentTimeMillis(), order));
+    }
+
+    /**
+     * Định giá lại order nếu price stamp đã hết hạn, order bị sửa sau khi định giá thì bị từ chối
+     * @return true nếu order đã được định giá lại
+     */
+    public boolean ensurePriced(Order order) {
+        StampStatus status = verifyStamp(order);
+        if (status == StampStatus.INVALID) {
+            throw new PlaceOrderException("The order does not match its price stamp");
+        }
+        if (status == StampStatus.VALID) {
+            return false;
+        }
+        int total_after_VAT = order.getTotal_after_VAT();
+        priceOrder(order);
+        if (total_after_VAT != order.getTotal_after_VAT()) {
+            logger.warn("Order {} repriced: total after VAT {} -> {}", order.getOrder_id(), total_after_VAT, order.getTotal_after_VAT());
+        }
+        return true;
+    }
+
+    public StampStatus verifyStamp(Order order) {
+        String stamp = order.getPrice_stamp();
+        if (stamp == null) {
+            return StampStatus.INVALID;
+        }
+        String[] parts = stamp.split("\\.");
+        if (parts.length != 3) {
+            return StampStatus.INVALID;
+        }
+        long version;
+        long issuedAt;
+        try {
+            version = Long.parseLong(parts[0]);
+            issuedAt = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            return StampStatus.INVALID;
+        }
+        String expected = stamp(version, issuedAt, order);
+        if (!MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII), stamp.getBytes(StandardCharsets.US_ASCII))) {
+            return StampStatus.INVALID;
+        }
+        long age = System.currentTimeMillis() - issuedAt;
+        if (version != priceTable.getVersion() || age < 0 || age > TimeUnit.MINUTES.toMillis(stampTtlMinutes)) {
+            return StampStatus.EXPIRED;
+        }
+        return StampStatus.VALID;
+    }
+
+    // version.issuedAt.hmac, hmac tính trên order_id, lượt giữ hàng, phương thức thanh toán, các orderline (đã sắp xếp) và tổng tiền
+    private String stamp(long version, long issuedAt, Order order) {
+        List<String> lines = new ArrayList<>();
+        for (Orderline orderline : order.getOrderLineList()) {
+            lines.add(orderline.getProduct_id() + ":" + orderline.getQuantity() + ":" + orderline.getTotal_fee());
+        }
+        lines.sort(null);
+        String data = version + "|" + issuedAt + "|" + order.getOrder_id() + "|" + order.getReservation_id()
+                + "|" + order.getPayment_method() + "|" + String.join(";", lines)
+                + "|" + order.getTotal_before_VAT() + "|" + order.getTotal_after_VAT();
+        byte[] hmac = macs.get().doFinal(data.getBytes(StandardCharsets.UTF_8));
+        return version + "." + issuedAt + "." + HexFormat.of().formatHex(hmac);
+    }
+}
@@ -1,16 +1,29 @@
 package Project_ITSS.PlaceOrder.Service;
 
 
+import Project_ITSS.PlaceOrder.Delivery.RushEligibilityIndex;
+import Project_ITSS.PlaceOrder.Entity.Cart;
+import Project_ITSS.PlaceOrder.Entity.CartItem;
+import Project_ITSS.PlaceOrder.Entity.CartValidationResult;
+import Project_ITSS.PlaceOrder.Entity.ProductAvailability;
 import Project_ITSS.PlaceOrder.Exception.PlaceOrderException;
 import Project_ITSS.PlaceOrder.Repository.ProductRepository_PlaceOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Service
 public class ProductService_PlaceOrder {
 
     @Autowired
     private ProductRepository_PlaceOrder productRepository;
+    @Autowired
+    private RushEligibilityIndex rushIndex;
 
     public boolean checkProductValidity(int quantity,int product_id){
         if(quantity <= 0){
@@ -21,11 +34,49 @@ public class ProductService_PlaceOrder {
         else return true;
     }
 
+    // Kiểm tra toàn bộ cart bằng một truy vấn duy nhất, trả về tất cả các product không đủ hàng
+    public CartValidationResult checkCartValidity(Cart cart){
+        // Gộp số lượng của các dòng trùng product_id trước khi so sánh
+        Map<Integer, Integer> requested = new LinkedHashMap<>();
+        for(CartItem cartItem : cart.getProducts()){
+            if(cartItem.getProduct() == null){
+                throw new PlaceOrderException("Product is null");
+            }
+            if(cartItem.getQuantity() <= 0){
+                throw new PlaceOrderException("The quantity of product is invalid");
+            }
+            requested.merge(cartItem.getProduct().getProduct_id(), cartItem.getQuantity(), Integer::sum);
+        }
+        Map<Integer, ProductAvailability> availability = productRepository.getProductAvailability(requested.keySet());
+        CartValidationResult result = new CartValidationResult();
+        for(Map.Entry<Integer, Integer> entry : requested.entrySet()){
+            ProductAvailability product = availability.get(entry.getKey());
+            int available_quantity = (product == null) ? 0 : product.getQuantity();
+            if(entry.getValue() > available_quantity){
+                result.addInadequateProduct(entry.getKey(), entry.getValue(), available_quantity);
+            }
+        }
+        return result;
+    }
+
+    // Kiểm tra rush qua RushEligibilityIndex, không truy vấn database
     public boolean checkProductRush(int product_id){
-        return productRepository.checkRushOrder(product_id);
+        return rushIndex.isEligible(product_id);
     }
     public boolean checkProducsRush(){
-        return productRepository.checkProductsRush();
+        return rushIndex.anyEligible();
+    }
+
+    // Các product trong cart không hỗ trợ rush order
+    public List<Integer> checkCartRush(Cart cart){
+        Set<Integer> product_ids = new LinkedHashSet<>();
+        for(CartItem cartItem : cart.getProducts()){
+            if(cartItem.getProduct() == null){
+                throw new PlaceOrderException("Product is null");
+            }
+            product_ids.add(cartItem.getProduct().getProduct_id());
+        }
+        return rushIndex.ineligible(product_ids);
     }
 
 
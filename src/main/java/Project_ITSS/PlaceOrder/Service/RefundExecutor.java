@@ -0,0 +1,35 @@
+package Project_ITSS.PlaceOrder.Service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor chạy các lời gọi hoàn tiền tới cổng thanh toán, mỗi lời gọi một virtual thread
+ * nên thời gian chờ cổng thanh toán không giữ thread của Tomcat hay connection của database.
+ */
+@Component
+public class RefundExecutor implements Executor {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            // Lượt hoàn tiền chưa xong vẫn ở refund_pending, có thể kiểm tra lại qua /api/order/cancel/status
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
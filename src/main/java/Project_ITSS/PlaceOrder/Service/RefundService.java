@@ -3,6 +3,7 @@ package Project_ITSS.PlaceOrder.Service;
 import Project_ITSS.PlaceOrder.Entity.Order;
 import Project_ITSS.PlaceOrder.Strategy.PaymentStrategy;
 import Project_ITSS.PlaceOrder.Strategy.PaymentStrategy.RefundResult;
+import Project_ITSS.vnpay.common.config.VNPayConfig;
 import Project_ITSS.vnpay.common.repository.TransactionRepository;
 import Project_ITSS.vnpay.common.entity.TransactionInfo;
 import Project_ITSS.vnpay.common.dto.RefundRequest;
@@ -12,6 +13,8 @@ import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Service responsible for refund operations
  * Implements Single Responsibility Principle - only handles refund processing
@@ -22,21 +25,32 @@ public class RefundService {
     private static final Logger logger = LoggerFactory.getLogger(RefundService.class);
     
     private final TransactionRepository transactionRepository;
+    private final VNPayConfig vnPayConfig;
     
     @Autowired
-    public RefundService(TransactionRepository transactionRepository) {
+    public RefundService(TransactionRepository transactionRepository, VNPayConfig vnPayConfig) {
         this.transactionRepository = transactionRepository;
+        this.vnPayConfig = vnPayConfig;
     }
     
     /**
      * Process refund using payment strategy
      * @param order The order to refund
      * @param paymentStrategy The payment strategy to use
-     * @param request The HTTP request
-     * @return Refund result
+     * @param request The HTTP request, only read before this method returns
+     * @return Refund result, completed on a virtual thread once the gateway answers
      */
-    public RefundResult processRefund(Order order, PaymentStrategy paymentStrategy, 
+    public CompletableFuture<RefundResult> processRefund(Order order, PaymentStrategy paymentStrategy, 
                                      HttpServletRequest request) {
+        return processRefund(order, paymentStrategy, vnPayConfig.getIpAddress(request));
+    }
+    
+    /**
+     * Process refund for a request that has already ended (bulk cancellation job)
+     * @param ipAddress The IP address of the client that asked for the cancellation
+     */
+    public CompletableFuture<RefundResult> processRefund(Order order, PaymentStrategy paymentStrategy, 
+                                     String ipAddress) {
         logger.info("Processing refund for order: {} using {}", 
             order.getOrder_id(), paymentStrategy.getPaymentMethodName());
         
@@ -46,7 +60,7 @@ public class RefundService {
             RefundResult result = new RefundResult();
             result.setSuccess(false);
             result.setMessage("No transaction found for this order. Cannot refund.");
-            return result;
+            return CompletableFuture.completedFuture(result);
         }
         
         // Create refund request
@@ -56,8 +70,9 @@ public class RefundService {
         refundRequest.setTransDate(transaction.getPayDate());
         refundRequest.setTranType("02"); // 02: Hoàn toàn bộ giao dịch
         refundRequest.setUser("admin");
+        refundRequest.setIpAddress(ipAddress);
         
         // Process refund through payment strategy
-        return paymentStrategy.processRefund(refundRequest, request);
+        return paymentStrategy.processRefund(refundRequest);
     }
 } 
\ No newline at end of file
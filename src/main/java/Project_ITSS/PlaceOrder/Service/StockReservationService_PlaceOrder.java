@@ -0,0 +1,170 @@
+package Project_ITSS.PlaceOrder.Service;
+
+import Project_ITSS.PlaceOrder.Entity.Cart;
+import Project_ITSS.PlaceOrder.Entity.CartItem;
+import Project_ITSS.PlaceOrder.Entity.CartValidationResult;
+import Project_ITSS.PlaceOrder.Entity.StockReservation;
+import Project_ITSS.PlaceOrder.Repository.ProductRepository_PlaceOrder;
+import Project_ITSS.PlaceOrder.Repository.StockReservationRepository_PlaceOrder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Giữ hàng cho một cart trong một khoảng thời gian.
+ * Kho được trừ ngay bằng UPDATE có điều kiện (quantity >= ?) nên hai request đồng thời không thể cùng lấy một đơn vị hàng.
+ * Lượt giữ hàng gắn với order_id được cấp ở /placeorder. Nó được commit khi chính order đó được lưu,
+ * hoặc được release (trả lại kho) khi client có release_token huỷ đặt hàng hay khi hết hạn.
+ */
+@Service
+public class StockReservationService_PlaceOrder {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationService_PlaceOrder.class);
+
+    @Autowired
+    private StockReservationRepository_PlaceOrder reservationRepository;
+    @Autowired
+    private ProductRepository_PlaceOrder productRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${stock.reservation.hold-minutes:20}")
+    private int holdMinutes;
+    @Value("${stock.reservation.sweep-interval-seconds:60}")
+    private long sweepIntervalSeconds;
+
+    private ScheduledExecutorService sweeper;
+
+    @PostConstruct
+    public void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-reservation-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::releaseExpired, sweepIntervalSeconds, sweepIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Giữ hàng cho toàn bộ cart của order order_id. Nếu có product không đủ hàng thì không giữ gì cả,
+     * các product đó được thêm vào result và trả về null.
+     */
+    public StockReservation reserve(Cart cart, CartValidationResult result, int order_id) {
+        Map<Integer, Integer> quantities = new HashMap<>();
+        for (CartItem cartItem : cart.getProducts()) {
+            quantities.merge(cartItem.getProduct().getProduct_id(), cartItem.getQuantity(), Integer::sum);
+        }
+        String release_token = UUID.randomUUID().toString();
+        return transactionTemplate.execute(status -> {
+            List<Integer> inadequate = productRepository.decrementStock(quantities);
+            if (!inadequate.isEmpty()) {
+                status.setRollbackOnly();
+                for (int product_id : inadequate) {
+                    result.addInadequateProduct(product_id, quantities.get(product_id), productRepository.getProductQuantity(product_id));
+                }
+                return null;
+            }
+            long reservation_id = reservationRepository.createReservation(order_id, release_token, holdMinutes, quantities);
+            return new StockReservation(reservation_id, release_token);
+        });
+    }
+
+    /**
+     * Xác nhận lượt giữ hàng của order_id khi order được lưu, chạy trong transaction của việc lưu order.
+     * Số lượng đã giữ được so với quantities của các orderline: phần giữ thừa được trả lại kho,
+     * phần còn thiếu được trả về để caller trừ kho. Lượt giữ hàng đã hết hạn, đã bị release
+     * hoặc không phải của order này thì không được dùng, caller phải trừ kho toàn bộ quantities.
+     * @return số lượng của từng product còn phải trừ kho (rỗng nếu lượt giữ hàng khớp hoàn toàn)
+     */
+    public Map<Integer, Integer> commit(long reservation_id, int order_id, Map<Integer, Integer> quantities) {
+        if (!reservationRepository.changeStatusForOrder(reservation_id, order_id, "held", "committed")) {
+            return quantities;
+        }
+        Map<Integer, Integer> reserved = reservationRepository.getItems(reservation_id);
+        Map<Integer, Integer> remaining = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            int missing = entry.getValue() - reserved.getOrDefault(entry.getKey(), 0);
+            if (missing > 0) {
+                remaining.put(entry.getKey(), missing);
+            }
+        }
+        Map<Integer, Integer> excess = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : reserved.entrySet()) {
+            int extra = entry.getValue() - quantities.getOrDefault(entry.getKey(), 0);
+            if (extra > 0) {
+                excess.put(entry.getKey(), extra);
+            }
+        }
+        if (!remaining.isEmpty() || !excess.isEmpty()) {
+            logger.warn("Order {} does not match stock reservation {}: missing {}, excess {}", order_id, reservation_id, remaining, excess);
+            reservationRepository.restoreStock(excess);
+        }
+        return remaining;
+    }
+
+    // order_id do /placeorder cấp thì luôn có lượt giữ hàng mang order_id đó, kể cả khi lượt giữ đã hết hạn
+    public boolean isIssued(int order_id) {
+        return reservationRepository.isOrderIdIssued(order_id);
+    }
+
+    // Client huỷ lượt giữ hàng của mình, cần release_token được trả về lúc /placeorder
+    public boolean release(long reservation_id, String release_token) {
+        if (release_token == null) {
+            return false;
+        }
+        Boolean released = transactionTemplate.execute(status -> {
+            if (!reservationRepository.changeStatusWithToken(reservation_id, release_token, "held", "released")) {
+                return false;
+            }
+            reservationRepository.restoreStock(reservation_id);
+            return true;
+        });
+        return Boolean.TRUE.equals(released);
+    }
+
+    // Trả lại kho cho lượt giữ hàng, không làm gì nếu lượt giữ hàng đã được commit hoặc release trước đó
+    private boolean release(long reservation_id) {
+        Boolean released = transactionTemplate.execute(status -> {
+            if (!reservationRepository.changeStatus(reservation_id, "held", "released")) {
+                return false;
+            }
+            reservationRepository.restoreStock(reservation_id);
+            return true;
+        });
+        return Boolean.TRUE.equals(released);
+    }
+
+    private void releaseExpired() {
+        try {
+            List<Long> expired;
+            do {
+                expired = reservationRepository.getExpiredReservations(100);
+                for (long reservation_id : expired) {
+                    if (release(reservation_id)) {
+                        logger.info("Released expired stock reservation {}", reservation_id);
+                    }
+                }
+            } while (expired.size() == 100);
+        } catch (Exception e) {
+            logger.error("Failed to release expired stock reservations: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+}
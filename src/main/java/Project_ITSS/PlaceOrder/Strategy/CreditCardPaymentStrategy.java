@@ -2,13 +2,16 @@ package Project_ITSS.PlaceOrder.Strategy;
 
 import Project_ITSS.vnpay.common.entity.TransactionInfo;
 import Project_ITSS.vnpay.common.dto.RefundRequest;
-import jakarta.servlet.http.HttpServletRequest;
+import Project_ITSS.PlaceOrder.Entity.PaymentMethod;
+import Project_ITSS.PlaceOrder.Service.RefundExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import Project_ITSS.vnpay.common.repository.TransactionRepository;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Credit Card payment strategy implementation
  * Implements Strategy Pattern for Credit Card payment method
@@ -20,9 +23,15 @@ public class CreditCardPaymentStrategy implements PaymentStrategy {
     
     @Autowired
     private TransactionRepository transactionRepository;
+    @Autowired
+    private RefundExecutor refundExecutor;
     
     @Override
-    public RefundResult processRefund(RefundRequest request, HttpServletRequest httpRequest) {
+    public CompletableFuture<RefundResult> processRefund(RefundRequest request) {
+        return CompletableFuture.supplyAsync(() -> refund(request), refundExecutor);
+    }
+
+    private RefundResult refund(RefundRequest request) {
         logger.info("Processing Credit Card refund for order: {}", request.getOrderId());
         
         RefundResult result = new RefundResult();
@@ -76,6 +85,11 @@ public class CreditCardPaymentStrategy implements PaymentStrategy {
         return "CreditCard";
     }
     
+    @Override
+    public PaymentMethod getPaymentMethod() {
+        return PaymentMethod.CREDIT_CARD;
+    }
+    
     @Override
     public boolean canHandleOrder(long orderId) {
         // Credit Card can handle orders with ID > 10000 (for demo purposes)
@@ -1,7 +1,9 @@
 package Project_ITSS.PlaceOrder.Strategy;
 
+import Project_ITSS.PlaceOrder.Entity.PaymentMethod;
 import Project_ITSS.vnpay.common.dto.RefundRequest;
-import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Strategy interface for different payment methods
@@ -10,9 +12,11 @@ import jakarta.servlet.http.HttpServletRequest;
 public interface PaymentStrategy {
     
     /**
-     * Process refund for the payment method
+     * Process refund for the payment method asynchronously (on a virtual thread, outside any DB transaction).
+     * The request must already carry everything the gateway needs (ipAddress included),
+     * since the HTTP request is gone by the time the refund runs.
      */
-    RefundResult processRefund(RefundRequest request, HttpServletRequest httpRequest);
+    CompletableFuture<RefundResult> processRefund(RefundRequest request);
     
     /**
      * Validate transaction for the payment method
@@ -24,8 +28,14 @@ public interface PaymentStrategy {
      */
     String getPaymentMethodName();
     
+    /**
+     * Payment method recorded on orders paid with this strategy
+     */
+    PaymentMethod getPaymentMethod();
+    
     /**
      * Check if this strategy can handle the given order
+     * Only used for orders created before payment_method was recorded
      */
     boolean canHandleOrder(long orderId);
     
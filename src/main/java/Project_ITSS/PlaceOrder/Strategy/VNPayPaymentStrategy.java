@@ -3,13 +3,16 @@ package Project_ITSS.PlaceOrder.Strategy;
 import Project_ITSS.vnpay.common.entity.TransactionInfo;
 import Project_ITSS.vnpay.common.dto.RefundRequest;
 import Project_ITSS.vnpay.common.service.VNPayService;
-import jakarta.servlet.http.HttpServletRequest;
+import Project_ITSS.PlaceOrder.Entity.PaymentMethod;
+import Project_ITSS.PlaceOrder.Service.RefundExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import Project_ITSS.vnpay.common.repository.TransactionRepository;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * VNPay payment strategy implementation
  * Implements Strategy Pattern for VNPay payment method
@@ -21,16 +24,22 @@ public class VNPayPaymentStrategy implements PaymentStrategy {
     
     @Autowired
     private VNPayService vnPayService;
+    @Autowired
+    private RefundExecutor refundExecutor;
 
     @Override
-    public RefundResult processRefund(RefundRequest request, HttpServletRequest httpRequest) {
+    public CompletableFuture<RefundResult> processRefund(RefundRequest request) {
+        return CompletableFuture.supplyAsync(() -> refund(request), refundExecutor);
+    }
+
+    private RefundResult refund(RefundRequest request) {
         logger.info("Processing VNPay refund for order: {}", request.getOrderId());
         
         RefundResult result = new RefundResult();
         
         try {
             // Process refund through VNPay service
-            VNPayService.RefundResponse refundResponse = vnPayService.refundTransaction(request, httpRequest);
+            VNPayService.RefundResponse refundResponse = vnPayService.refundTransaction(request, null);
             
             // Check VNPay response
             if (refundResponse != null && "00".equals(refundResponse.getVnp_ResponseCode())) {
@@ -78,6 +87,11 @@ public class VNPayPaymentStrategy implements PaymentStrategy {
         return "VNPay";
     }
     
+    @Override
+    public PaymentMethod getPaymentMethod() {
+        return PaymentMethod.VNPAY;
+    }
+    
     @Override
     public boolean canHandleOrder(long orderId) {
         // VNPay can handle orders with ID <= 10000 (for demo purposes)
@@ -81,12 +81,8 @@ public class UpdateProductController {
        Map<String, Object> json = new HashMap<>();
        System.out.println(product.getType());
        System.out.println(product.getProduct_id());
-       // Lưu lại các thông tin đó vào database
-       productService.updateProductInfo(product);
-
-       // Lưu lại các thông tin đó vào database, dựa trên loại của product đó
-       productService.updateProductDetail(product,product.getType());
-//       loggerService.saveLogger(product);
+       // Lưu lại các thông tin đó vào database (cả thông tin chung và thông tin theo loại), có kiểm tra quota trong ngày
+       productService.updateProduct(product);
        json.put("status",1);
        return json;
    }
@@ -0,0 +1,9 @@
+package Project_ITSS.UpdateProduct.Exception;
+
+
+public class UpdateProductException extends RuntimeException{
+     public UpdateProductException(String message){
+         super(message);
+     }
+
+}
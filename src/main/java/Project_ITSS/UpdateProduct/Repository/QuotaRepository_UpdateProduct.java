@@ -0,0 +1,53 @@
+package Project_ITSS.UpdateProduct.Repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Bảng update_quota lưu các product đã được cập nhật trong ngày, mỗi (ngày, product) một dòng,
+ * update_quota_day đếm số product đó của mỗi ngày.
+ * Hai bảng do Flyway tạo: update_quota trong V1__baseline.sql, update_quota_day trong V10__update_quota_counter.sql
+ */
+@Repository
+public class QuotaRepository_UpdateProduct {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public List<Long> getUpdatedProducts(LocalDate quota_date){
+        return jdbcTemplate.queryForList("SELECT product_id FROM update_quota WHERE quota_date = ?",
+                Long.class, java.sql.Date.valueOf(quota_date));
+    }
+
+    /**
+     * Ghi nhận product vào quota của ngày nếu product đã có sẵn hoặc quota còn chỗ, trả về false nếu quota đã đầy.
+     * Product mới lấy một chỗ bằng UPDATE có điều kiện trên dòng đếm của ngày (update_quota_day):
+     * dòng đó bị khoá cho tới khi transaction kết thúc nên các transaction đồng thời không thể cùng vượt limit.
+     */
+    public boolean reserve(LocalDate quota_date, long product_id, int limit){
+        java.sql.Date date = java.sql.Date.valueOf(quota_date);
+        int inserted = jdbcTemplate.update(
+                "INSERT INTO update_quota (quota_date, product_id) VALUES (?, ?) ON CONFLICT DO NOTHING",
+                date, product_id);
+        if(inserted == 0){
+            // Product đã được tính trong ngày
+            return true;
+        }
+        jdbcTemplate.update("INSERT INTO update_quota_day (quota_date, used) VALUES (?, 0) ON CONFLICT DO NOTHING", date);
+        int reserved = jdbcTemplate.update(
+                "UPDATE update_quota_day SET used = used + 1 WHERE quota_date = ? AND used < ?", date, limit);
+        if(reserved == 0){
+            jdbcTemplate.update("DELETE FROM update_quota WHERE quota_date = ? AND product_id = ?", date, product_id);
+            return false;
+        }
+        return true;
+    }
+
+    public void deleteBefore(LocalDate quota_date){
+        jdbcTemplate.update("DELETE FROM update_quota WHERE quota_date < ?", java.sql.Date.valueOf(quota_date));
+        jdbcTemplate.update("DELETE FROM update_quota_day WHERE quota_date < ?", java.sql.Date.valueOf(quota_date));
+    }
+}
@@ -1,12 +1,15 @@
 package Project_ITSS.UpdateProduct.Service;
 
 
-import Project_ITSS.AddProduct.Repository.DetailProductRepository_AddProduct;
 import Project_ITSS.UpdateProduct.Entity.Product;
+import Project_ITSS.UpdateProduct.Exception.UpdateProductException;
 import Project_ITSS.UpdateProduct.Repository.DetailProductRepository_UpdateProduct;
 import Project_ITSS.UpdateProduct.Repository.ProductRepository_UpdateProduct;
+import Project_ITSS.ViewProduct2.Event.ProductChangedEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashMap;
 import java.util.List;
@@ -24,15 +27,37 @@ public class ProductService_UpdateProduct {
     }
     @Autowired
     private ProductRepository_UpdateProduct productRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private QuotaService_UpdateProduct quotaService;
+    @Autowired
+    private LoggerService_UpdateProduct loggerService;
+
+    // Giữ quota và cập nhật product trong cùng một transaction, nếu cập nhật lỗi thì quota cũng được trả lại.
+    // Audit log được ghi bất đồng bộ và chỉ sau khi transaction commit (AuditLogService.log)
+    @Transactional
+    public void updateProduct(Product product){
+        if(repositoryMap.get(product.getType()) == null){
+            throw new UpdateProductException("The product type is invalid");
+        }
+        if(!quotaService.tryReserve(product.getProduct_id())){
+            throw new UpdateProductException("The daily limit of updated products has been reached");
+        }
+        updateProductInfo(product);
+        updateProductDetail(product, product.getType());
+        loggerService.saveLogger(product);
+    }
 
     public void updateProductInfo(Product product){
         productRepository.updateProductInfo(product);
     }
 
     public void updateProductDetail(Product product,String type){
-        System.out.println(type);
         DetailProductRepository_UpdateProduct repo = repositoryMap.get(type);
         repo.updateProductInfo(product);
+        // Báo cho cache của ViewProduct2 biết product này đã thay đổi
+        eventPublisher.publishEvent(new ProductChangedEvent(product.getProduct_id()));
     }
 
 }
@@ -0,0 +1,107 @@
+package Project_ITSS.UpdateProduct.Service;
+
+import Project_ITSS.UpdateProduct.Repository.QuotaRepository_UpdateProduct;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Giới hạn số product khác nhau được cập nhật trong một ngày.
+ * Danh sách product của ngày hiện tại được giữ trong bộ nhớ nên việc kiểm tra là O(1),
+ * bảng update_quota chỉ dùng để khôi phục lại danh sách khi khởi động.
+ */
+@Service
+public class QuotaService_UpdateProduct {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuotaService_UpdateProduct.class);
+
+    @Autowired
+    private QuotaRepository_UpdateProduct quotaRepository;
+
+    @Value("${product.update.daily-limit:30}")
+    private int dailyLimit;
+
+    private LocalDate currentDay;
+    private final Set<Long> updatedProducts = new HashSet<>();
+
+    @PostConstruct
+    public synchronized void rebuild() {
+        currentDay = LocalDate.now();
+        updatedProducts.clear();
+        try {
+            quotaRepository.deleteBefore(currentDay);
+            updatedProducts.addAll(quotaRepository.getUpdatedProducts(currentDay));
+            logger.info("Loaded {} updated products for {}", updatedProducts.size(), currentDay);
+        } catch (Exception e) {
+            logger.warn("Failed to load update quota, starting from empty: {}", e.getMessage());
+        }
+    }
+
+    public synchronized boolean hasRemaining() {
+        rollOver();
+        return updatedProducts.size() < dailyLimit;
+    }
+
+    /**
+     * Giữ một chỗ trong quota cho product, phải được gọi trong transaction của lần cập nhật.
+     * Cập nhật lại một product đã được tính trong ngày thì không tốn thêm quota.
+     * Nếu transaction rollback thì chỗ đã giữ trong bộ nhớ được trả lại.
+     */
+    public boolean tryReserve(long product_id) {
+        LocalDate day;
+        synchronized (this) {
+            rollOver();
+            if (!updatedProducts.contains(product_id)) {
+                if (updatedProducts.size() >= dailyLimit) {
+                    return false;
+                }
+                updatedProducts.add(product_id);
+                registerRelease(currentDay, product_id);
+            }
+            day = currentDay;
+        }
+        // Ghi vào DB trong cùng transaction với lệnh update, điều kiện quota được kiểm tra lại trong câu lệnh insert
+        if (!quotaRepository.reserve(day, product_id, dailyLimit)) {
+            release(day, product_id);
+            return false;
+        }
+        return true;
+    }
+
+    private void registerRelease(LocalDate day, long product_id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release(day, product_id);
+                }
+            }
+        });
+    }
+
+    private synchronized void release(LocalDate day, long product_id) {
+        if (day.equals(currentDay)) {
+            updatedProducts.remove(product_id);
+        }
+    }
+
+    private void rollOver() {
+        LocalDate today = LocalDate.now();
+        if (!today.equals(currentDay)) {
+            currentDay = today;
+            updatedProducts.clear();
+        }
+    }
+}
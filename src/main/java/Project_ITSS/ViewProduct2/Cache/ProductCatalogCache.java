@@ -0,0 +1,95 @@
+package Project_ITSS.ViewProduct2.Cache;
+
+import Project_ITSS.Cache.BoundedTtlCache;
+import Project_ITSS.ViewProduct2.Entity.Product;
+import Project_ITSS.ViewProduct2.Event.ProductChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Cache đọc xuyên (read-through) cho danh sách product và chi tiết từng product của ViewProduct2
+ */
+@Component
+public class ProductCatalogCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCatalogCache.class);
+    private static final String ALL_PRODUCTS_KEY = "all";
+
+    private final BoundedTtlCache<String, List<Product>> listCache;
+    private final BoundedTtlCache<Long, Product> basicCache;
+    private final BoundedTtlCache<Long, Product> detailCache;
+
+    public ProductCatalogCache(@Value("${product.cache.max-entries:1000}") int maxEntries,
+                               @Value("${product.cache.ttl-seconds:60}") long ttlSeconds) {
+        long ttlMillis = ttlSeconds * 1000;
+        this.listCache = new BoundedTtlCache<>(1, ttlMillis);
+        this.basicCache = new BoundedTtlCache<>(maxEntries, ttlMillis);
+        this.detailCache = new BoundedTtlCache<>(maxEntries, ttlMillis);
+    }
+
+    public List<Product> getAllProducts(Supplier<List<Product>> loader) {
+        // Lưu bản không sửa được để các request dùng chung một danh sách an toàn
+        return listCache.get(ALL_PRODUCTS_KEY, key -> List.copyOf(loader.get()));
+    }
+
+    public Product getBasicProduct(long productId, Supplier<Product> loader) {
+        return basicCache.get(productId, key -> loader.get());
+    }
+
+    public Product getFullProduct(long productId, Supplier<Product> loader) {
+        return detailCache.get(productId, key -> loader.get());
+    }
+
+    public Product getFullProductIfPresent(long productId) {
+        return detailCache.getIfPresent(productId);
+    }
+
+    // Dùng cùng putFullProduct: lấy trước khi truy vấn để không lưu product đã bị thay đổi trong lúc đó
+    public long getFullProductGeneration() {
+        return detailCache.getGeneration();
+    }
+
+    public void putFullProduct(Product product, long loadGeneration) {
+        detailCache.put((long) product.getProduct_id(), product, loadGeneration);
+    }
+
+    /**
+     * Xoá các bản ghi liên quan đến product bị thay đổi, chạy sau khi transaction ghi đã commit
+     * (hoặc ngay lập tức nếu không có transaction)
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        logger.debug("Invalidating product cache for products {}", event.getProductIds());
+        listCache.invalidateAll();
+        for (Long product_id : event.getProductIds()) {
+            basicCache.invalidate(product_id);
+            detailCache.invalidate(product_id);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("all", statsOf(listCache));
+        stats.put("detail", statsOf(basicCache));
+        stats.put("all_detail", statsOf(detailCache));
+        return stats;
+    }
+
+    private Map<String, Object> statsOf(BoundedTtlCache<?, ?> cache) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", cache.size());
+        stats.put("hits", cache.getHits());
+        stats.put("misses", cache.getMisses());
+        stats.put("evictions", cache.getEvictions());
+        return stats;
+    }
+}
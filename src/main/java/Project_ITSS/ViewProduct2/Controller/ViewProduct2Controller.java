@@ -1,22 +1,31 @@
 package Project_ITSS.ViewProduct2.Controller;
 
 import Project_ITSS.ViewProduct2.Exception.ViewProductException;
+import Project_ITSS.ViewProduct2.Service.ProductSearchService_ViewProduct;
 import Project_ITSS.ViewProduct2.Service.UserService_ViewProduct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import Project_ITSS.ViewProduct2.Entity.Product;
+import Project_ITSS.ViewProduct2.Entity.ProductPage;
+import Project_ITSS.ViewProduct2.Entity.ProductSearchPage;
 import Project_ITSS.ViewProduct2.Service.ProductService_ViewProduct;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @CrossOrigin(origins = "http://localhost:3000")
 @RequestMapping("/product")
 public class ViewProduct2Controller {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
 
     @Autowired
     ProductService_ViewProduct productService;
@@ -24,12 +33,29 @@ public class ViewProduct2Controller {
     @Autowired
     UserService_ViewProduct userService;
 
+    @Autowired
+    ProductSearchService_ViewProduct searchService;
+
     @GetMapping("/all-detail/{id}")
-    public Product getProductDetailForManager(@PathVariable("id") int id,@RequestParam("type") String type) {
+    public Product getProductDetailForManager(@PathVariable("id") int id,@RequestParam(value = "type", required = false) String type) {
+        // type được giữ lại để tương thích với client cũ, loại product được xác định từ database
         if(id <= 0){
             throw new ViewProductException("The product id is invalid");
         }
-        return productService.getFullProductDetail(id,type);
+        return productService.getFullProductDetail(id);
+    }
+
+    @GetMapping("/details")
+    public List<Product> getProductDetails(@RequestParam("ids") List<Integer> ids) {
+        if(ids.isEmpty() || ids.size() > MAX_PAGE_SIZE){
+            throw new ViewProductException("The number of product ids must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        for(int id : ids){
+            if(id <= 0){
+                throw new ViewProductException("The product id is invalid");
+            }
+        }
+        return productService.getFullProductDetails(ids);
     }
     @GetMapping("/detail/{id}")
     public Product getProductDetailForCustomer(@PathVariable("id") int id){
@@ -44,6 +70,51 @@ public class ViewProduct2Controller {
         return productService.getAllProduct();
     }
 
+    @GetMapping("/page")
+    public ProductPage getProductPage(@RequestParam(value = "cursor", required = false) Integer cursor,
+                                      @RequestParam(value = "limit", defaultValue = "20") int limit,
+                                      @RequestParam(value = "type", required = false) String type,
+                                      @RequestParam(value = "min_price", required = false) Integer min_price,
+                                      @RequestParam(value = "max_price", required = false) Integer max_price,
+                                      @RequestParam(value = "rush", required = false) Boolean rush){
+        if(limit <= 0 || limit > MAX_PAGE_SIZE){
+            throw new ViewProductException("The page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if(min_price != null && max_price != null && min_price > max_price){
+            throw new ViewProductException("The price range is invalid");
+        }
+        return productService.getProductPage(cursor, limit, type, min_price, max_price, rush);
+    }
+
+    // Xuất toàn bộ catalog (kèm chi tiết Book/CD/DVD) dạng NDJSON, mỗi dòng một product
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(){
+        StreamingResponseBody body = out -> productService.exportProducts(out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    // Tìm kiếm toàn văn trên title, giới thiệu và chi tiết Book/CD/DVD, kết quả xếp theo độ liên quan
+    @GetMapping("/search")
+    public ProductSearchPage searchProducts(@RequestParam("q") String q,
+                                            @RequestParam(value = "page", defaultValue = "0") int page,
+                                            @RequestParam(value = "size", defaultValue = "20") int size){
+        return searchService.search(q, page, size);
+    }
+
+    // Gợi ý product theo title trong lúc người dùng gõ
+    @GetMapping("/suggest")
+    public List<Product> suggestProducts(@RequestParam("prefix") String prefix,
+                                         @RequestParam(value = "limit", defaultValue = "10") int limit){
+        return searchService.suggest(prefix, limit);
+    }
+
+    @GetMapping("/cache/stats")
+    public Map<String, Object> getCacheStats(){
+        return productService.getCacheStats();
+    }
+
 
 
 }
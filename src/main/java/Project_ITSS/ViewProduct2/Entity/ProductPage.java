@@ -0,0 +1,17 @@
+package Project_ITSS.ViewProduct2.Entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// Một trang product, next_cursor là product_id cuối cùng của trang (null nếu đã hết)
+@Getter
+@Setter
+@NoArgsConstructor
+public class ProductPage {
+    private List<Product> products;
+    private Integer next_cursor;
+    private boolean has_more;
+}
@@ -0,0 +1,19 @@
+package Project_ITSS.ViewProduct2.Entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// Một trang kết quả tìm kiếm, xếp theo độ liên quan; total là tổng số product khớp
+@Getter
+@Setter
+@NoArgsConstructor
+public class ProductSearchPage {
+    private List<Product> products;
+    private long total;
+    private int page;
+    private int size;
+    private boolean has_more;
+}
@@ -0,0 +1,22 @@
+package Project_ITSS.ViewProduct2.Event;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Được phát ra mỗi khi thông tin product bị thêm mới hoặc cập nhật.
+ * Một transaction ghi nhiều product (import CSV) phát một event cho cả nhóm để listener chỉ xử lý một lần sau commit.
+ */
+public class ProductChangedEvent {
+    private final List<Long> productIds;
+
+    public ProductChangedEvent(long productId) {
+        this.productIds = List.of(productId);
+    }
+
+    public ProductChangedEvent(Collection<Long> productIds) {
+        this.productIds = List.copyOf(productIds);
+    }
+
+    public List<Long> getProductIds() { return productIds; }
+}
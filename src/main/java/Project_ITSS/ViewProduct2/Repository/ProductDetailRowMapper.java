@@ -0,0 +1,64 @@
+package Project_ITSS.ViewProduct2.Repository;
+
+import Project_ITSS.ViewProduct2.Entity.Book;
+import Project_ITSS.ViewProduct2.Entity.CD;
+import Project_ITSS.ViewProduct2.Entity.DVD;
+import Project_ITSS.ViewProduct2.Entity.Product;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Row mapper cho câu truy vấn LEFT JOIN Product với Book/CD/DVD (xem ProductRepository_ViewProduct.DETAIL_SQL).
+ * Loại product được xác định bằng bảng con nào có dữ liệu, không phụ thuộc vào tham số type của client.
+ */
+public class ProductDetailRowMapper implements RowMapper<Product> {
+    @Override
+    public Product mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Product product;
+        if (rs.getObject("book_id") != null) {
+            Book book = new Book();
+            book.setBook_id(rs.getInt("book_id"));
+            book.setAuthors(rs.getString("authors"));
+            book.setGenre(rs.getString("book_genre"));
+            book.setPublishers(rs.getString("publishers"));
+            book.setCover_type(rs.getString("cover_type"));
+            book.setPage_count(rs.getInt("page_count"));
+            book.setPublication_date(rs.getString("publication_date"));
+            product = book;
+        } else if (rs.getObject("cd_id") != null) {
+            CD cd = new CD();
+            cd.setCD_id(rs.getInt("cd_id"));
+            cd.setGenre(rs.getString("cd_genre"));
+            cd.setArtists(rs.getString("artists"));
+            cd.setTrack_list(rs.getString("track_list"));
+            cd.setRelease_date(rs.getString("cd_release_date"));
+            cd.setRecord_label(rs.getString("record_label"));
+            product = cd;
+        } else if (rs.getObject("dvd_id") != null) {
+            DVD dvd = new DVD();
+            dvd.setDVD_id(rs.getInt("dvd_id"));
+            dvd.setDirector(rs.getString("director"));
+            dvd.setStudio(rs.getString("studio"));
+            dvd.setRelease_date(rs.getString("dvd_release_date"));
+            dvd.setDvd_type(rs.getString("dvd_type"));
+            dvd.setGenre(rs.getString("dvd_genre"));
+            product = dvd;
+        } else {
+            product = new Product();
+        }
+        product.setProduct_id(rs.getInt("product_id"));
+        product.setTitle(rs.getString("title"));
+        product.setPrice(rs.getInt("price"));
+        product.setWeight(rs.getFloat("weight"));
+        product.setRush_order_supported(rs.getBoolean("rush_order_supported"));
+        product.setImage_url(rs.getString("image_url"));
+        product.setBarcode(rs.getString("barcode"));
+        product.setImport_date(rs.getString("import_date"));
+        product.setIntroduction(rs.getString("introduction"));
+        product.setQuantity(rs.getInt("quantity"));
+        product.setType(rs.getString("type"));
+        return product;
+    }
+}
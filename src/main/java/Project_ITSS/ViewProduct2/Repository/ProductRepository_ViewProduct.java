@@ -2,20 +2,44 @@ package Project_ITSS.ViewProduct2.Repository;
 
 
 import Project_ITSS.ViewProduct2.Entity.Product;
+import Project_ITSS.ViewProduct2.Entity.ProductPage;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 
 @Repository
 public  class ProductRepository_ViewProduct {
 
+    // Product kèm cột chi tiết của Book/CD/DVD, các cột trùng tên được đặt alias theo loại
+    static final String DETAIL_SQL = """
+            SELECT p.*,
+                   b.book_id, b.authors, b.genre AS book_genre, b.publishers, b.cover_type, b.page_count, b.publication_date,
+                   c.cd_id, c.genre AS cd_genre, c.artists, c.track_list, c.release_date AS cd_release_date, c.record_label,
+                   d.dvd_id, d.director, d.studio, d.release_date AS dvd_release_date, d.dvd_type, d.genre AS dvd_genre
+            FROM product p
+            LEFT JOIN book b ON b.product_id = p.product_id
+            LEFT JOIN cd c ON c.product_id = p.product_id
+            LEFT JOIN dvd d ON d.product_id = p.product_id
+            """;
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Value("${product.export.fetch-size:500}")
+    private int exportFetchSize;
+
     public int getProductQuantity(int product_id){
         return jdbcTemplate.queryForObject("SELECT quantity FROM Product WHERE product_id = ?", new Object[]{product_id}, Integer.class);
     }
@@ -46,8 +70,78 @@ public  class ProductRepository_ViewProduct {
         }
     }
 
-    
+    /**
+     * Phân trang theo keyset trên product_id: chỉ lấy các product có id lớn hơn cursor,
+     * nên trang sâu cũng tốn chi phí như trang đầu. Lấy dư một dòng để biết còn trang sau hay không.
+     */
+    public ProductPage getProductPage(Integer cursor, int limit, String type, Integer min_price, Integer max_price, Boolean rush){
+        StringBuilder sql = new StringBuilder("SELECT * FROM product WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if(cursor != null){
+            sql.append(" AND product_id > ?");
+            params.add(cursor);
+        }
+        if(type != null){
+            sql.append(" AND type = ?");
+            params.add(type);
+        }
+        if(min_price != null){
+            sql.append(" AND price >= ?");
+            params.add(min_price);
+        }
+        if(max_price != null){
+            sql.append(" AND price <= ?");
+            params.add(max_price);
+        }
+        if(rush != null){
+            sql.append(" AND rush_order_supported = ?");
+            params.add(rush);
+        }
+        sql.append(" ORDER BY product_id LIMIT ?");
+        params.add(limit + 1);
+
+        List<Product> products = jdbcTemplate.query(sql.toString(), new ProductRowMapper(), params.toArray());
+        ProductPage page = new ProductPage();
+        boolean has_more = products.size() > limit;
+        if(has_more){
+            products = products.subList(0, limit);
+        }
+        page.setProducts(products);
+        page.setHas_more(has_more);
+        page.setNext_cursor(has_more ? products.get(products.size() - 1).getProduct_id() : null);
+        return page;
+    }
 
+    // Lấy product kèm chi tiết của loại tương ứng trong một lần truy vấn, trả về null nếu không tồn tại
+    public Product findDetailById(int product_id){
+        List<Product> products = jdbcTemplate.query(DETAIL_SQL + " WHERE p.product_id = ?", new ProductDetailRowMapper(), product_id);
+        return products.isEmpty() ? null : products.get(0);
+    }
 
+    // Lấy chi tiết của nhiều product trong một lần truy vấn (dùng cho trang so sánh product)
+    public List<Product> findDetailsByIds(Collection<Integer> product_ids){
+        if(product_ids.isEmpty()){
+            return new ArrayList<>();
+        }
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(DETAIL_SQL + " WHERE p.product_id = ANY(?)");
+            ps.setArray(1, con.createArrayOf("integer", product_ids.toArray()));
+            return ps;
+        }, new ProductDetailRowMapper());
+    }
 
-}
\ No newline at end of file
+    /**
+     * Duyệt toàn bộ catalog (kèm chi tiết) bằng cursor chỉ đọc tiến, mỗi lần chỉ tải fetch-size dòng.
+     * Postgres chỉ dùng cursor khi autocommit tắt nên method phải chạy trong transaction.
+     */
+    @Transactional(readOnly = true)
+    public void streamAllProductDetails(Consumer<Product> consumer){
+        ProductDetailRowMapper rowMapper = new ProductDetailRowMapper();
+        String sql = DETAIL_SQL + " ORDER BY p.product_id";
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(exportFetchSize);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(rowMapper.mapRow(rs, rs.getRow())));
+    }
+}
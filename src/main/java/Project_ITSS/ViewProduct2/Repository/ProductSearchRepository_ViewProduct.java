@@ -0,0 +1,123 @@
+package Project_ITSS.ViewProduct2.Repository;
+
+import Project_ITSS.ViewProduct2.Entity.Product;
+import Project_ITSS.ViewProduct2.Entity.ProductSearchPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Chỉ mục tìm kiếm product trong bảng product_search (tsvector + GIN, chỉ có trên PostgreSQL).
+ * document được ghép từ product và chi tiết Book/CD/DVD theo trọng số: title (A), tác giả/nghệ sĩ/đạo diễn/nhà phát hành (B),
+ * thể loại (C), giới thiệu và danh sách bài hát (D); title_document chỉ có title, dùng cho gợi ý theo tiền tố.
+ */
+@Repository
+public class ProductSearchRepository_ViewProduct {
+
+    // Giống câu lệnh backfill trong db/vendor/postgresql/V8__product_search.sql
+    private static final String INDEX_SQL = """
+            INSERT INTO product_search (product_id, document, title_document, updated_at)
+            SELECT DISTINCT ON (p.product_id) p.product_id,
+                   setweight(to_tsvector('simple', coalesce(p.title, '')), 'A') ||
+                   setweight(to_tsvector('simple', concat_ws(' ', b.authors, b.publishers, c.artists, c.record_label, d.director, d.studio, d.title)), 'B') ||
+                   setweight(to_tsvector('simple', concat_ws(' ', b.genre, c.genre, d.genre, d.dvd_type, b.cover_type, p.type)), 'C') ||
+                   setweight(to_tsvector('simple', concat_ws(' ', p.introduction, c.track_list)), 'D'),
+                   to_tsvector('simple', coalesce(p.title, '')),
+                   now()
+            FROM product p
+            LEFT JOIN book b ON b.product_id = p.product_id
+            LEFT JOIN cd c ON c.product_id = p.product_id
+            LEFT JOIN dvd d ON d.product_id = p.product_id
+            WHERE %s
+            ORDER BY p.product_id
+            %s
+            ON CONFLICT (product_id) DO UPDATE
+            SET document = EXCLUDED.document, title_document = EXCLUDED.title_document, updated_at = EXCLUDED.updated_at
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Đánh chỉ mục lại các product (product đã bị xoá thì bỏ qua), trả về số product đã ghi
+    public int index(Collection<Integer> product_ids) {
+        if (product_ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(INDEX_SQL.formatted("p.product_id = ANY(?)", ""));
+            ps.setArray(1, con.createArrayOf("integer", product_ids.toArray()));
+            return ps;
+        });
+    }
+
+    // Đánh chỉ mục tối đa limit product chưa có trong product_search
+    public int indexMissing(int limit) {
+        String sql = INDEX_SQL.formatted("NOT EXISTS (SELECT 1 FROM product_search s WHERE s.product_id = p.product_id)", "LIMIT ?");
+        return jdbcTemplate.update(sql, limit);
+    }
+
+    /**
+     * Tìm product theo cú pháp websearch của PostgreSQL (từ khoá, "cụm từ", -loại trừ, or),
+     * xếp theo độ liên quan rồi theo product_id. total là tổng số kết quả, không chỉ của trang này;
+     * trang nằm sau kết quả cuối không có dòng nào mang COUNT(*) OVER () nên total được đếm riêng.
+     */
+    public ProductSearchPage search(String query, int page, int size) {
+        String sql = """
+                SELECT p.*, COUNT(*) OVER () AS total
+                FROM product_search s
+                JOIN product p ON p.product_id = s.product_id,
+                     websearch_to_tsquery('simple', ?) q
+                WHERE s.document @@ q
+                ORDER BY ts_rank_cd(s.document, q) DESC, p.product_id
+                LIMIT ? OFFSET ?
+                """;
+        ProductRowMapper rowMapper = new ProductRowMapper();
+        List<Product> products = new ArrayList<>();
+        long[] total = new long[1];
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            total[0] = rs.getLong("total");
+            products.add(rowMapper.mapRow(rs, rs.getRow()));
+        }, query, size, (long) page * size);
+        if (products.isEmpty() && page > 0) {
+            total[0] = count(query);
+        }
+        ProductSearchPage result = new ProductSearchPage();
+        result.setProducts(products);
+        result.setTotal(total[0]);
+        result.setPage(page);
+        result.setSize(size);
+        result.setHas_more((long) (page + 1) * size < total[0]);
+        return result;
+    }
+
+    public long count(String query) {
+        String sql = """
+                SELECT COUNT(*)
+                FROM product_search s
+                JOIN product p ON p.product_id = s.product_id,
+                     websearch_to_tsquery('simple', ?) q
+                WHERE s.document @@ q
+                """;
+        return jdbcTemplate.queryForObject(sql, Long.class, query);
+    }
+
+    // Product có title khớp tsquery (các từ đã gõ và tiền tố của từ cuối), title ngắn hơn được ưu tiên
+    public List<Product> suggest(String tsquery, int limit) {
+        String sql = """
+                SELECT p.*
+                FROM product_search s
+                JOIN product p ON p.product_id = s.product_id,
+                     to_tsquery('simple', ?) q
+                WHERE s.title_document @@ q
+                ORDER BY ts_rank(s.title_document, q) DESC, length(p.title), p.product_id
+                LIMIT ?
+                """;
+        return jdbcTemplate.query(sql, new ProductRowMapper(), tsquery, limit);
+    }
+}
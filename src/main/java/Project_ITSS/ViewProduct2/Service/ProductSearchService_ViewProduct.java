@@ -0,0 +1,165 @@
+package Project_ITSS.ViewProduct2.Service;
+
+import Project_ITSS.ViewProduct2.Entity.Product;
+import Project_ITSS.ViewProduct2.Entity.ProductSearchPage;
+import Project_ITSS.ViewProduct2.Event.ProductChangedEvent;
+import Project_ITSS.ViewProduct2.Exception.ViewProductException;
+import Project_ITSS.ViewProduct2.Repository.ProductSearchRepository_ViewProduct;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tìm kiếm toàn văn trên product và chi tiết Book/CD/DVD, dựa trên chỉ mục product_search (PostgreSQL tsvector + GIN)
+ * nên mọi node dùng chung một chỉ mục. Product được đánh chỉ mục lại ngay sau commit thêm mới/cập nhật (một câu lệnh cho mỗi ProductChangedEvent);
+ * product bị sót (ví dụ node dừng trước khi kịp xử lý event) được bổ sung sau mỗi reconcile-minutes.
+ * Tắt bằng product.search.enabled=false khi database không phải PostgreSQL.
+ */
+@Service
+public class ProductSearchService_ViewProduct {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchService_ViewProduct.class);
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SUGGESTIONS = 20;
+    private static final int MAX_PREFIX_TERMS = 5;
+    private static final int MAX_QUERY_LENGTH = 200;
+    private static final int RECONCILE_BATCH = 1000;
+
+    @Autowired
+    private ProductSearchRepository_ViewProduct searchRepository;
+
+    @Value("${product.search.enabled:true}")
+    private boolean enabled;
+    @Value("${product.search.reconcile-minutes:10}")
+    private long reconcileMinutes;
+    // Chỉ cho xem tới kết quả thứ max-results, trang sâu hơn phải tính rank cho quá nhiều dòng
+    @Value("${product.search.max-results:1000}")
+    private int maxResults;
+
+    private ScheduledExecutorService reconciler;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "product-search-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(this::reconcile, reconcileMinutes, reconcileMinutes, TimeUnit.MINUTES);
+    }
+
+    public ProductSearchPage search(String query, int page, int size) {
+        checkEnabled();
+        if (query == null || query.isBlank() || query.length() > MAX_QUERY_LENGTH) {
+            throw new ViewProductException("The search query must be between 1 and " + MAX_QUERY_LENGTH + " characters");
+        }
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new ViewProductException("The page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (page < 0 || (long) (page + 1) * size > maxResults) {
+            throw new ViewProductException("Only the first " + maxResults + " search results can be viewed");
+        }
+        return searchRepository.search(query.trim(), page, size);
+    }
+
+    // Gợi ý product theo title khi người dùng đang gõ: các từ đã gõ phải có trong title, từ cuối chỉ cần khớp tiền tố
+    public List<Product> suggest(String prefix, int limit) {
+        checkEnabled();
+        if (limit <= 0 || limit > MAX_SUGGESTIONS) {
+            throw new ViewProductException("The number of suggestions must be between 1 and " + MAX_SUGGESTIONS);
+        }
+        String tsquery = prefixQuery(prefix);
+        if (tsquery == null) {
+            return new ArrayList<>();
+        }
+        return searchRepository.suggest(tsquery, limit);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        // Mọi product thay đổi trong cùng commit (cả chunk của lần import CSV) được đánh chỉ mục bằng một câu lệnh
+        List<Integer> product_ids = new ArrayList<>();
+        for (long product_id : event.getProductIds()) {
+            product_ids.add((int) product_id);
+        }
+        try {
+            searchRepository.index(product_ids);
+        } catch (Exception e) {
+            // Product vẫn tìm được theo nội dung cũ cho tới khi được đánh chỉ mục lại
+            logger.error("Failed to index products {} for search: {}", product_ids, e.getMessage());
+        }
+    }
+
+    /**
+     * "harry pot" -> "harry & pot:*". Chỉ giữ chữ và số nên chuỗi người dùng gõ không thể làm hỏng cú pháp tsquery,
+     * trả về null nếu không còn từ nào.
+     */
+    static String prefixQuery(String prefix) {
+        if (prefix == null) {
+            return null;
+        }
+        List<String> terms = new ArrayList<>();
+        for (String term : prefix.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        if (terms.isEmpty()) {
+            return null;
+        }
+        // Giữ các từ cuối cùng, là phần người dùng đang gõ
+        if (terms.size() > MAX_PREFIX_TERMS) {
+            terms = terms.subList(terms.size() - MAX_PREFIX_TERMS, terms.size());
+        }
+        return String.join(" & ", terms) + ":*";
+    }
+
+    private void checkEnabled() {
+        if (!enabled) {
+            throw new ViewProductException("Product search is not available");
+        }
+    }
+
+    // Đánh chỉ mục các product chưa có trong product_search, theo từng lô
+    private void reconcile() {
+        try {
+            int total = 0;
+            int indexed;
+            do {
+                indexed = searchRepository.indexMissing(RECONCILE_BATCH);
+                total += indexed;
+            } while (indexed == RECONCILE_BATCH);
+            if (total > 0) {
+                logger.info("Indexed {} products missing from the search index", total);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to reconcile product search index: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+        }
+    }
+}
@@ -1,29 +1,37 @@
 package Project_ITSS.ViewProduct2.Service;
 
-import Project_ITSS.ViewProduct2.Repository.DetailProductRepository_ViewProduct;
+import Project_ITSS.ViewProduct2.Cache.ProductCatalogCache;
+import Project_ITSS.ViewProduct2.Exception.ViewProductException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import Project_ITSS.ViewProduct2.Entity.Product;
+import Project_ITSS.ViewProduct2.Entity.ProductPage;
 import Project_ITSS.ViewProduct2.Repository.ProductRepository_ViewProduct;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 @Service
 public class ProductService_ViewProduct {
-    private final Map<String, DetailProductRepository_ViewProduct> repositoryMap;
     @Autowired
     private ProductRepository_ViewProduct productRepository;
     @Autowired
-    public ProductService_ViewProduct(List<DetailProductRepository_ViewProduct> repositories){
-        repositoryMap = new HashMap<>();
-        for(DetailProductRepository_ViewProduct repo : repositories){
-            repositoryMap.put(repo.getType(),repo);
-        }
-    }
+    private ProductCatalogCache productCache;
+    @Autowired
+    private ObjectMapper objectMapper;
 
     public boolean checkProductValidity(int quantity,int product_id){
         int available_quantity = productRepository.getProductQuantity(product_id);
@@ -32,16 +40,75 @@ public class ProductService_ViewProduct {
     }
 
     public Product getBasicProductDetail(int id) {
-        return productRepository.findById(id);
+        return productCache.getBasicProduct(id, () -> productRepository.findById(id));
+    }
+
+    // Loại product được xác định ngay trong truy vấn, client không cần truyền type
+    public Product getFullProductDetail(int id) {
+        Product product = productCache.getFullProduct(id, () -> productRepository.findDetailById(id));
+        if(product == null){
+            throw new ViewProductException("The product is not found");
+        }
+        return product;
     }
 
-    public Product getFullProductDetail(int id,String type) {
-        DetailProductRepository_ViewProduct repo = repositoryMap.get(type);
-        return repo.getProductDetailInfo(id);
+    // Lấy chi tiết nhiều product, chỉ truy vấn một lần cho các product chưa có trong cache
+    public List<Product> getFullProductDetails(List<Integer> ids) {
+        Map<Integer, Product> found = new HashMap<>();
+        Set<Integer> missing = new LinkedHashSet<>();
+        for(int id : ids){
+            Product cached = productCache.getFullProductIfPresent(id);
+            if(cached != null){
+                found.put(id, cached);
+            }else{
+                missing.add(id);
+            }
+        }
+        long loadGeneration = productCache.getFullProductGeneration();
+        for(Product product : productRepository.findDetailsByIds(missing)){
+            productCache.putFullProduct(product, loadGeneration);
+            found.put(product.getProduct_id(), product);
+        }
+        // Giữ đúng thứ tự id mà client yêu cầu, bỏ qua các id không tồn tại
+        List<Product> products = new ArrayList<>();
+        for(int id : new LinkedHashSet<>(ids)){
+            Product product = found.get(id);
+            if(product != null){
+                products.add(product);
+            }
+        }
+        return products;
     }
 
     public List<Product> getAllProduct(){
 //        productRepository = new ProductRepository_ViewProduct();
-        return productRepository.getAllProduct();
+        return productCache.getAllProducts(productRepository::getAllProduct);
+    }
+
+    public ProductPage getProductPage(Integer cursor, int limit, String type, Integer min_price, Integer max_price, Boolean rush){
+        return productRepository.getProductPage(cursor, limit, type, min_price, max_price, rush);
+    }
+
+    // Ghi từng product ra dạng NDJSON ngay khi đọc được, không giữ cả catalog trong bộ nhớ.
+    // Mỗi dòng, kể cả dòng cuối, kết thúc bằng '\n' để bên đọc theo dòng không bỏ sót product cuối
+    public void exportProducts(OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            productRepository.streamAllProductDetails(product -> {
+                try {
+                    writer.writeValue(generator, product);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public Map<String, Object> getCacheStats(){
+        return productCache.getStats();
     }
 }
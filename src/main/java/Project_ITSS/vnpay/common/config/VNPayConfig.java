@@ -4,14 +4,16 @@
  */
 package Project_ITSS.vnpay.common.config;
 
+import Project_ITSS.vnpay.common.security.HmacSha512Signer;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import jakarta.servlet.http.HttpServletRequest;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Configuration
 @Data
@@ -21,6 +23,11 @@ import java.util.*;
  */
 public class VNPayConfig {
 
+    @Autowired
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private HmacSha512Signer signer;
+
     @Value("${vnpay.pay-url}")
     private String payUrl;
 
@@ -75,26 +82,10 @@ public class VNPayConfig {
     /**
      * Generates a hash of all fields in the map for VNPAY request signing
      * @param fields Map containing the parameters to be hashed
-     * @return The HMAC-SHA512 hash of all fields concatenated in sorted order
+     * @return The HMAC-SHA512 hash of HmacSha512Signer.canonicalQuery(fields)
      */
-    public String hashAllFields(Map fields) {
-        List fieldNames = new ArrayList(fields.keySet());
-        Collections.sort(fieldNames);
-        StringBuilder sb = new StringBuilder();
-        Iterator itr = fieldNames.iterator();
-        while (itr.hasNext()) {
-            String fieldName = (String) itr.next();
-            String fieldValue = (String) fields.get(fieldName);
-            if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                sb.append(fieldName);
-                sb.append("=");
-                sb.append(fieldValue);
-            }
-            if (itr.hasNext()) {
-                sb.append("&");
-            }
-        }
-        return hmacSHA512(getSecretKey(), sb.toString());
+    public String hashAllFields(Map<String, String> fields) {
+        return signer.signFields(fields);
     }
 
     /**
@@ -105,20 +96,7 @@ public class VNPayConfig {
      */
     public String hmacSHA512(final String key, final String data) {
         try {
-            if (key == null || data == null) {
-                throw new NullPointerException();
-            }
-            final Mac hmac512 = Mac.getInstance("HmacSHA512");
-            byte[] hmacKeyBytes = key.getBytes();
-            final SecretKeySpec secretKey = new SecretKeySpec(hmacKeyBytes, "HmacSHA512");
-            hmac512.init(secretKey);
-            byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
-            byte[] result = hmac512.doFinal(dataBytes);
-            StringBuilder sb = new StringBuilder(2 * result.length);
-            for (byte b : result) {
-                sb.append(String.format("%02x", b & 0xff));
-            }
-            return sb.toString();
+            return signer.sign(key, data);
         } catch (Exception ex) {
             return "";
         }
@@ -158,12 +136,12 @@ public class VNPayConfig {
 
     /**
      * Generates a random number string of specified length
-     * Used for creating unique transaction references
+     * Used for request ids; transaction references come from IdGeneratorService
      * @param len The length of the random number string
      * @return Random number string
      */
     public String getRandomNumber(int len) {
-        Random rnd = new Random();
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
         String chars = "0123456789";
         StringBuilder sb = new StringBuilder(len);
         for (int i = 0; i < len; i++) {
@@ -14,8 +14,9 @@ import Project_ITSS.vnpay.common.dto.PaymentReturnResponse;
 import Project_ITSS.vnpay.common.service.OrderService;
 import Project_ITSS.vnpay.common.dto.QueryRequest;
 import Project_ITSS.vnpay.common.dto.RefundRequest;
-import Project_ITSS.vnpay.common.observer.PaymentSubject;
 import Project_ITSS.vnpay.common.service.HashService;
+import Project_ITSS.vnpay.common.service.HttpClientService;
+import Project_ITSS.vnpay.common.service.IpnProcessingService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -47,18 +48,21 @@ public class VNPayController {
     private final PaymentService paymentService;
     private final OrderService orderService;
     private final HashService hashService;
-    private final PaymentSubject paymentSubject;
+    private final IpnProcessingService ipnProcessingService;
+    private final HttpClientService httpClientService;
 
     @Autowired
     public VNPayController(
             @Qualifier("vnpayService") PaymentService paymentService, 
             OrderService orderService,
             HashService hashService,
-            PaymentSubject paymentSubject) {
+            IpnProcessingService ipnProcessingService,
+            HttpClientService httpClientService) {
         this.paymentService = paymentService;
         this.orderService = orderService;
         this.hashService = hashService;
-        this.paymentSubject = paymentSubject;
+        this.ipnProcessingService = ipnProcessingService;
+        this.httpClientService = httpClientService;
     }
 
     /**
@@ -127,15 +131,15 @@ public class VNPayController {
                     result.put("status", "SUCCESS");
                     result.put("message", "Payment completed successfully");
                     
-                    // Process successful payment
-                    processSuccessfulPayment(orderId, fields);
+                    // Process successful payment (bỏ qua nếu IPN đã xử lý giao dịch này)
+                    ipnProcessingService.accept(fields);
                     
                 } else {
                     result.put("status", "FAILED");
                     result.put("message", "Payment failed with code: " + responseCode);
                     
                     // Process failed payment
-                    processFailedPayment(orderId, responseCode);
+                    ipnProcessingService.accept(fields);
                 }
 
             } catch (Exception e) {
@@ -161,41 +165,6 @@ public class VNPayController {
         return ResponseEntity.ok(result);
     }
 
-    /**
-     * Process successful payment using Observer Pattern
-     */
-    private void processSuccessfulPayment(String orderId, Map<String, String> fields) {
-        // Log toàn bộ fields để debug key thực tế
-        logger.info("[DEBUG] processSuccessfulPayment - orderId: {}, fields: {}", orderId, fields);
-        // Kiểm tra các trường quan trọng
-        if (fields.get("vnp_TransactionNo") == null || fields.get("vnp_Amount") == null) {
-            logger.warn("[DEBUG] Các trường quan trọng bị null. Danh sách key thực tế: {}", fields.keySet());
-        }
-        // Update order status
-        orderService.updateOrderStatus(orderId, "PAID");
-        // Save transaction info
-        orderService.saveTransactionInfo(orderId, fields);
-        // Notify observers using Observer Pattern
-        PaymentResponse response = PaymentResponse.builder()
-                .code("00")
-                .message("success")
-                .paymentUrl("")
-                .ipAddress("")
-                .build();
-        paymentSubject.notifyPaymentSuccess(orderId, response);
-    }
-
-    /**
-     * Process failed payment using Observer Pattern
-     */
-    private void processFailedPayment(String orderId, String errorCode) {
-        // Update order status
-        orderService.updateOrderStatus(orderId, "FAILED");
-        
-        // Notify observers using Observer Pattern
-        paymentSubject.notifyPaymentFailed(orderId, "Payment failed with code: " + errorCode);
-    }
-
     /**
      * Handles the VNPay return URL (alternative path)
      * Redirects VNPay return calls to the main return handler
@@ -243,11 +212,11 @@ public class VNPayController {
                 if ("00".equals(responseCode)) {
                     result.put("status", "SUCCESS");
                     result.put("message", "Payment completed successfully");
-                    processSuccessfulPayment(orderId, fields);
+                    ipnProcessingService.accept(fields);
                 } else {
                     result.put("status", "FAILED");
                     result.put("message", "Payment failed with code: " + responseCode);
-                    processFailedPayment(orderId, responseCode);
+                    ipnProcessingService.accept(fields);
                 }
 
             } catch (Exception e) {
@@ -311,6 +280,15 @@ public class VNPayController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Circuit breaker state and latency histograms of the outbound VNPay calls
+     */
+    @GetMapping("/api/payment/http-stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> httpStats() {
+        return ResponseEntity.ok(httpClientService.getStats());
+    }
+
     /**
      * Handles IPN notification
      */
@@ -327,11 +305,8 @@ public class VNPayController {
             }
         });
         
-        // TODO: Implement IPN handling logic
-        IPNResponse response = new IPNResponse();
-        response.setRspCode("00");
-        response.setMessage("Success");
-        
+        // Ghi biên nhận rồi trả lời ngay, việc cập nhật order chạy nền
+        IPNResponse response = ipnProcessingService.handleIpn(params);
         return ResponseEntity.ok(response);
     }
 }
\ No newline at end of file
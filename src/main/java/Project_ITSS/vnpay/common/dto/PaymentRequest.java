@@ -32,6 +32,10 @@ public class PaymentRequest {
     /** Payment expiry date in yyyyMMddHHmmss format */
     private String vnp_ExpireDate;
 
+    @Pattern(regexp = "^[0-9]+$", message = "Order id must be numeric")
+    /** Order being paid, used as vnp_TxnRef (optional) */
+    private String orderId;
+
     public String getAmount() {
         return amount;
     }
@@ -71,4 +75,12 @@ public class PaymentRequest {
     public void setVnp_ExpireDate(String vnp_ExpireDate) {
         this.vnp_ExpireDate = vnp_ExpireDate;
     }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
 }
\ No newline at end of file
@@ -14,6 +14,8 @@ public class RefundRequest {
     private String transDate;
     private String tranType;
     private String user;
+    /** IP of the client that asked for the refund; used when no HttpServletRequest is available */
+    private String ipAddress;
 
     public String getOrderId() {
         return orderId;
@@ -54,4 +56,12 @@ public class RefundRequest {
     public void setUser(String user) {
         this.user = user;
     }
-}
\ No newline at end of file
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public void setIpAddress(String ipAddress) {
+        this.ipAddress = ipAddress;
+    }
+}
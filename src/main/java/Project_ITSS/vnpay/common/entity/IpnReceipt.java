@@ -0,0 +1,23 @@
+package Project_ITSS.vnpay.common.entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Một dòng của bảng vnpay_ipn_receipt, payload là JSON của các tham số vnp_* đã được kiểm tra chữ ký.
+// attempts là số lần đã bắt đầu xử lý, status là pending, processed hoặc dead
+@Getter
+@Setter
+@NoArgsConstructor
+public class IpnReceipt {
+    public static final String PENDING = "pending";
+    public static final String PROCESSED = "processed";
+    public static final String DEAD = "dead";
+
+    private String txn_ref;
+    private String transaction_no;
+    private String response_code;
+    private String payload;
+    private String status;
+    private int attempts;
+}
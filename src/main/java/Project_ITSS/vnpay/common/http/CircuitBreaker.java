@@ -0,0 +1,63 @@
+package Project_ITSS.vnpay.common.http;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Circuit breaker đơn giản cho một endpoint: mở sau failureThreshold lỗi liên tiếp,
+ * sau openMillis cho đúng một request thử (half-open), thành công thì đóng lại, lỗi thì mở tiếp.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+    private volatile long openedAt = -1;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Trả về false nếu circuit đang mở (hoặc đã có một request thử đang chạy), caller không được gọi endpoint
+     */
+    public boolean tryAcquire() {
+        long opened = openedAt;
+        if (opened < 0) {
+            return true;
+        }
+        if (System.currentTimeMillis() - opened < openMillis) {
+            return false;
+        }
+        return trialInFlight.compareAndSet(false, true);
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        openedAt = -1;
+        trialInFlight.set(false);
+    }
+
+    public void recordFailure() {
+        if (openedAt >= 0 || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openedAt = System.currentTimeMillis();
+        }
+        trialInFlight.set(false);
+    }
+
+    public State getState() {
+        long opened = openedAt;
+        if (opened < 0) {
+            return State.CLOSED;
+        }
+        return System.currentTimeMillis() - opened < openMillis ? State.OPEN : State.HALF_OPEN;
+    }
+}
@@ -0,0 +1,69 @@
+package Project_ITSS.vnpay.common.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram độ trễ với các bucket cố định (ms), ghi không cần lock.
+ * Percentile được ước lượng bằng cận trên của bucket chứa nó.
+ */
+public class LatencyHistogram {
+
+    private static final long[] BOUNDS_MS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    // Bucket cuối cùng chứa các giá trị lớn hơn BOUNDS_MS[BOUNDS_MS.length - 1]
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_MS.length + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMillis = new LongAdder();
+
+    public void record(long millis) {
+        int i = 0;
+        while (i < BOUNDS_MS.length && millis > BOUNDS_MS[i]) {
+            i++;
+        }
+        buckets.incrementAndGet(i);
+        count.increment();
+        totalMillis.add(millis);
+    }
+
+    public Map<String, Object> snapshot() {
+        long[] counts = new long[buckets.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        Map<String, Object> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            histogram.put("le_" + BOUNDS_MS[i] + "ms", counts[i]);
+        }
+        histogram.put("gt_" + BOUNDS_MS[BOUNDS_MS.length - 1] + "ms", counts[BOUNDS_MS.length]);
+
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("count", total);
+        json.put("mean_ms", total == 0 ? 0 : totalMillis.sum() / (double) count.sum());
+        json.put("p50_ms", percentile(counts, total, 0.50));
+        json.put("p95_ms", percentile(counts, total, 0.95));
+        json.put("p99_ms", percentile(counts, total, 0.99));
+        json.put("buckets", histogram);
+        return json;
+    }
+
+    // Trả về -1 nếu percentile nằm trong bucket không có cận trên
+    private static long percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i < BOUNDS_MS.length ? BOUNDS_MS[i] : -1;
+            }
+        }
+        return -1;
+    }
+}
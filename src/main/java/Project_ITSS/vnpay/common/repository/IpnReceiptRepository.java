@@ -0,0 +1,74 @@
+package Project_ITSS.vnpay.common.repository;
+
+import Project_ITSS.vnpay.common.entity.IpnReceipt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public class IpnReceiptRepository {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final RowMapper<IpnReceipt> ROW_MAPPER = (rs, rowNum) -> {
+        IpnReceipt receipt = new IpnReceipt();
+        receipt.setTxn_ref(rs.getString("txn_ref"));
+        receipt.setTransaction_no(rs.getString("transaction_no"));
+        receipt.setResponse_code(rs.getString("response_code"));
+        receipt.setPayload(rs.getString("payload"));
+        receipt.setStatus(rs.getString("status"));
+        receipt.setAttempts(rs.getInt("attempts"));
+        return receipt;
+    };
+
+    /**
+     * Ghi biên nhận, trả về false nếu (txn_ref, transaction_no) đã có (khoá chính chặn bản trùng kể cả khi đến đồng thời).
+     * Dòng mới được coi là đã được instance này nhận xử lý (locked_at = now(), lần xử lý thứ nhất).
+     */
+    public boolean tryInsert(String txn_ref, String transaction_no, String response_code, String payload) {
+        return jdbcTemplate.update("INSERT INTO vnpay_ipn_receipt (txn_ref, transaction_no, response_code, payload, status, received_at, locked_at, attempts) " +
+                        "VALUES (?, ?, ?, ?, ?, now(), now(), 1) ON CONFLICT DO NOTHING",
+                txn_ref, transaction_no, response_code, payload, IpnReceipt.PENDING) == 1;
+    }
+
+    public void markProcessed(String txn_ref, String transaction_no) {
+        jdbcTemplate.update("UPDATE vnpay_ipn_receipt SET status = ?, processed_at = now(), last_error = NULL " +
+                "WHERE txn_ref = ? AND transaction_no = ?", IpnReceipt.PROCESSED, txn_ref, transaction_no);
+    }
+
+    // Biên nhận vẫn pending, được claimStale nhận lại sau stale-after-ms
+    public void markFailed(String txn_ref, String transaction_no, String error) {
+        jdbcTemplate.update("UPDATE vnpay_ipn_receipt SET last_error = ? WHERE txn_ref = ? AND transaction_no = ?",
+                error, txn_ref, transaction_no);
+    }
+
+    public void markDead(String txn_ref, String transaction_no, String error) {
+        jdbcTemplate.update("UPDATE vnpay_ipn_receipt SET status = ?, last_error = ? WHERE txn_ref = ? AND transaction_no = ?",
+                IpnReceipt.DEAD, error, txn_ref, transaction_no);
+    }
+
+    /**
+     * Nhận lại tối đa limit biên nhận chưa xử lý xong và đã bị khoá quá lâu (instance trước bị tắt hoặc xử lý lỗi),
+     * mỗi lần nhận tính là một lần xử lý. Biên nhận đã dùng hết maxAttempts lần không được nhận nữa (xem markExhaustedDead).
+     */
+    public List<IpnReceipt> claimStale(long olderThanMillis, int maxAttempts, int limit) {
+        return jdbcTemplate.query(
+                "UPDATE vnpay_ipn_receipt SET locked_at = now(), attempts = attempts + 1 " +
+                "WHERE (txn_ref, transaction_no) IN (" +
+                "    SELECT txn_ref, transaction_no FROM vnpay_ipn_receipt " +
+                "    WHERE status = ? AND attempts < ? AND locked_at < now() - ? * INTERVAL '1 millisecond' " +
+                "    ORDER BY locked_at LIMIT ? FOR UPDATE SKIP LOCKED" +
+                ") RETURNING *",
+                ROW_MAPPER, IpnReceipt.PENDING, maxAttempts, olderThanMillis, limit);
+    }
+
+    // Biên nhận đã dùng hết số lần xử lý mà lần cuối không kết thúc (instance bị tắt giữa chừng) được chuyển sang dead
+    public int markExhaustedDead(long olderThanMillis, int maxAttempts) {
+        return jdbcTemplate.update("UPDATE vnpay_ipn_receipt SET status = ? " +
+                        "WHERE status = ? AND attempts >= ? AND locked_at < now() - ? * INTERVAL '1 millisecond'",
+                IpnReceipt.DEAD, IpnReceipt.PENDING, maxAttempts, olderThanMillis);
+    }
+}
@@ -0,0 +1,135 @@
+package Project_ITSS.vnpay.common.security;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Ký HMAC-SHA512 cho mọi request/response của VNPAY.
+ * Tham số của URL thanh toán, trang return và IPN đều được ký trên cùng một chuỗi canonicalQuery (URL-encode UTF-8 như đặc tả VNPAY),
+ * chuỗi đó cũng chính là query string gửi đi nên chữ ký tạo ra và chữ ký kiểm tra luôn khớp nhau.
+ * SecretKeySpec của vnp_HashSecret chỉ được tạo một lần, các Mac được clone từ Mac mẫu rồi dùng lại qua một pool nhỏ
+ * nên không phải gọi Mac.getInstance/init cho mỗi chữ ký, kết quả được chuyển sang hex bằng bảng tra.
+ * Không dùng ThreadLocal<Mac>: IpnProcessingService xử lý mỗi IPN trên một virtual thread mới nên ThreadLocal
+ * sẽ clone Mac cho gần như mọi chữ ký và không bao giờ dùng lại.
+ */
+@Component
+public class HmacSha512Signer {
+
+    private static final String ALGORITHM = "HmacSHA512";
+    public static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    // Số Mac giữ lại, lúc cao điểm thiếu Mac thì clone thêm và bỏ đi khi pool đã đầy
+    private static final int POOL_SIZE = 32;
+
+    @Value("${vnpay.secret-key}")
+    private String secretKey;
+
+    private Mac prototype;
+    private final BlockingQueue<Mac> macs = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    @PostConstruct
+    public void init() {
+        prototype = createMac(secretKey);
+    }
+
+    /**
+     * Ký bằng vnp_HashSecret đã cấu hình
+     */
+    public String sign(String data) {
+        if (data == null) {
+            throw new NullPointerException("data");
+        }
+        Mac mac = macs.poll();
+        if (mac == null) {
+            mac = newMac();
+        }
+        // doFinal reset Mac về trạng thái vừa init nên có thể trả lại pool
+        String signature = toHex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+        macs.offer(mac);
+        return signature;
+    }
+
+    /**
+     * Ký bằng một key bất kỳ, dùng Mac đã cache nếu đó là key đã cấu hình
+     */
+    public String sign(String key, String data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        if (key.equals(secretKey)) {
+            return sign(data);
+        }
+        return toHex(createMac(key).doFinal(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Ký chuỗi canonical của các tham số (xem canonicalQuery)
+     */
+    public String signFields(Map<String, String> fields) {
+        return sign(canonicalQuery(fields));
+    }
+
+    /**
+     * Chuỗi key=value nối bằng '&', sắp xếp theo key và bỏ qua giá trị rỗng, key và value được URL-encode theo CHARSET.
+     * Tham số nhận từ VNPAY (đã được servlet decode) cho ra đúng chuỗi VNPAY đã ký.
+     */
+    public static String canonicalQuery(Map<String, String> fields) {
+        List<String> fieldNames = new ArrayList<>(fields.keySet());
+        Collections.sort(fieldNames);
+        StringBuilder sb = new StringBuilder(fieldNames.size() * 32);
+        for (String fieldName : fieldNames) {
+            String fieldValue = fields.get(fieldName);
+            if (fieldValue == null || fieldValue.isEmpty()) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append('&');
+            }
+            sb.append(URLEncoder.encode(fieldName, CHARSET)).append('=').append(URLEncoder.encode(fieldValue, CHARSET));
+        }
+        return sb.toString();
+    }
+
+    private Mac newMac() {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            // Provider không hỗ trợ clone thì tạo Mac mới, Mac đó vẫn được dùng lại qua pool
+            return createMac(secretKey);
+        }
+    }
+
+    private static Mac createMac(String key) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise " + ALGORITHM, e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xff;
+            chars[i * 2] = HEX[v >>> 4];
+            chars[i * 2 + 1] = HEX[v & 0x0f];
+        }
+        return new String(chars);
+    }
+}
@@ -10,4 +10,7 @@ public interface HttpClientService {
     <T> T callApi(String url, Map<String, String> params, Class<T> responseType);
     <T> T postRequest(String url, Object requestBody, Class<T> responseType);
     <T> T getRequest(String url, Map<String, String> params, Class<T> responseType);
+
+    // Trạng thái circuit breaker và histogram độ trễ của từng endpoint
+    Map<String, Object> getStats();
 } 
\ No newline at end of file
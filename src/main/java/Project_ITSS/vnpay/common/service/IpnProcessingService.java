@@ -0,0 +1,203 @@
+package Project_ITSS.vnpay.common.service;
+
+import Project_ITSS.Cache.BoundedTtlCache;
+import Project_ITSS.vnpay.common.dto.IPNResponse;
+import Project_ITSS.vnpay.common.entity.IpnReceipt;
+import Project_ITSS.vnpay.common.observer.PaymentSubject;
+import Project_ITSS.vnpay.common.repository.IpnReceiptRepository;
+import Project_ITSS.vnpay.common.service.VNPayService.PaymentResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Xử lý kết quả thanh toán VNPAY (IPN và trang return) đúng một lần cho mỗi cặp (vnp_TxnRef, vnp_TransactionNo).
+ * Request chỉ kiểm tra chữ ký, ghi biên nhận vào vnpay_ipn_receipt rồi trả lời ngay,
+ * cập nhật trạng thái order, lưu TransactionInfo và báo observer chạy trên virtual thread.
+ * Các key vừa gặp được giữ trong bộ nhớ để các lần VNPAY gửi lại không phải chạm tới database.
+ * Biên nhận xử lý lỗi được thử lại sau stale-after-ms, quá max-attempts lần thì chuyển sang dead để đối soát thủ công.
+ */
+@Service
+public class IpnProcessingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IpnProcessingService.class);
+    private static final TypeReference<Map<String, String>> FIELDS_TYPE = new TypeReference<>() {};
+
+    @Autowired
+    private IpnReceiptRepository receiptRepository;
+    @Autowired
+    private HashService hashService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private PaymentSubject paymentSubject;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${vnpay.ipn.recent-keys:10000}")
+    private int recentKeys;
+    @Value("${vnpay.ipn.recent-ttl-seconds:3600}")
+    private long recentTtlSeconds;
+    @Value("${vnpay.ipn.stale-after-ms:120000}")
+    private long staleAfterMs;
+    @Value("${vnpay.ipn.recovery-batch-size:50}")
+    private int recoveryBatchSize;
+    @Value("${vnpay.ipn.max-attempts:5}")
+    private int maxAttempts;
+
+    private BoundedTtlCache<String, Boolean> recent;
+    private ExecutorService workers;
+    private ScheduledExecutorService recovery;
+
+    @PostConstruct
+    public void start() {
+        recent = new BoundedTtlCache<>(recentKeys, TimeUnit.SECONDS.toMillis(recentTtlSeconds));
+        workers = Executors.newVirtualThreadPerTaskExecutor();
+        recovery = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vnpay-ipn-recovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        recovery.scheduleWithFixedDelay(this::recoverStale, staleAfterMs, staleAfterMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Xử lý một IPN: kiểm tra chữ ký và các trường bắt buộc, ghi biên nhận và trả lời VNPAY.
+     * IPN trùng được trả lời "02" để VNPAY ngừng gửi lại.
+     */
+    public IPNResponse handleIpn(Map<String, String> params) {
+        try {
+            Map<String, String> fields = new HashMap<>(params);
+            String vnp_SecureHash = fields.remove("vnp_SecureHash");
+            fields.remove("vnp_SecureHashType");
+            if (vnp_SecureHash == null) {
+                return new IPNResponse(IPNResponse.INVALID_SIGNATURE, "No signature found");
+            }
+            if (!vnp_SecureHash.equals(hashService.hashAllFields(fields))) {
+                return new IPNResponse(IPNResponse.INVALID_SIGNATURE, "Invalid signature");
+            }
+            if (fields.get("vnp_TxnRef") == null || fields.get("vnp_TransactionNo") == null
+                    || fields.get("vnp_Amount") == null || fields.get("vnp_ResponseCode") == null) {
+                return new IPNResponse(IPNResponse.INVALID_SIGNATURE, "Missing required fields");
+            }
+            if (!accept(fields)) {
+                return new IPNResponse(IPNResponse.ORDER_ALREADY_CONFIRMED, "Order already confirmed");
+            }
+            return new IPNResponse(IPNResponse.SUCCESS, "Confirm Success");
+        } catch (Exception e) {
+            logger.error("Error handling VNPay IPN: {}", e.getMessage());
+            return new IPNResponse(IPNResponse.UNKNOWN_ERROR, "Unknown error");
+        }
+    }
+
+    /**
+     * Nhận kết quả thanh toán đã được kiểm tra chữ ký (từ IPN hoặc trang return).
+     * Trả về false nếu giao dịch này đã được nhận trước đó, ngược lại việc xử lý được đưa sang virtual thread.
+     */
+    public boolean accept(Map<String, String> fields) {
+        String txnRef = fields.get("vnp_TxnRef");
+        String transactionNo = fields.get("vnp_TransactionNo");
+        if (txnRef == null || transactionNo == null) {
+            throw new IllegalArgumentException("vnp_TxnRef and vnp_TransactionNo are required");
+        }
+        String key = txnRef + ":" + transactionNo;
+        if (!recent.putIfAbsent(key, Boolean.TRUE)) {
+            return false;
+        }
+        boolean inserted;
+        try {
+            inserted = receiptRepository.tryInsert(txnRef, transactionNo, fields.get("vnp_ResponseCode"),
+                    objectMapper.writeValueAsString(fields));
+        } catch (Exception e) {
+            // Chưa ghi được biên nhận thì bỏ key để lần VNPAY gửi lại được xử lý
+            recent.invalidate(key);
+            throw new IllegalStateException("Cannot record VNPay receipt " + key, e);
+        }
+        if (inserted) {
+            Map<String, String> copy = Map.copyOf(fields);
+            workers.submit(() -> process(txnRef, transactionNo, copy, 1));
+        } else {
+            logger.info("Duplicate VNPay notification ignored: {}", key);
+        }
+        return inserted;
+    }
+
+    private void process(String txnRef, String transactionNo, Map<String, String> fields, int attempt) {
+        try {
+            String responseCode = fields.get("vnp_ResponseCode");
+            if ("00".equals(responseCode)) {
+                orderService.updateOrderStatus(txnRef, "PAID");
+                orderService.saveTransactionInfo(txnRef, fields);
+                PaymentResponse response = PaymentResponse.builder()
+                        .code("00")
+                        .message("success")
+                        .paymentUrl("")
+                        .ipAddress("")
+                        .build();
+                paymentSubject.notifyPaymentSuccess(txnRef, response);
+            } else {
+                orderService.updateOrderStatus(txnRef, "FAILED");
+                paymentSubject.notifyPaymentFailed(txnRef, "Payment failed with code: " + responseCode);
+            }
+            receiptRepository.markProcessed(txnRef, transactionNo);
+        } catch (Exception e) {
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            try {
+                if (attempt >= maxAttempts) {
+                    receiptRepository.markDead(txnRef, transactionNo, error);
+                    logger.error("VNPay receipt {}:{} moved to dead letter after {} attempts: {}", txnRef, transactionNo, attempt, error);
+                } else {
+                    // Biên nhận vẫn pending, sẽ được recoverStale nhận lại sau stale-after-ms
+                    receiptRepository.markFailed(txnRef, transactionNo, error);
+                    logger.warn("Processing VNPay receipt {}:{} failed (attempt {}): {}", txnRef, transactionNo, attempt, error);
+                }
+            } catch (Exception ex) {
+                logger.error("Failed to record error of VNPay receipt {}:{}: {}", txnRef, transactionNo, ex.getMessage());
+            }
+        }
+    }
+
+    private void recoverStale() {
+        try {
+            int dead = receiptRepository.markExhaustedDead(staleAfterMs, maxAttempts);
+            if (dead > 0) {
+                logger.error("{} VNPay receipts moved to dead letter after {} unfinished attempts", dead, maxAttempts);
+            }
+            List<IpnReceipt> receipts = receiptRepository.claimStale(staleAfterMs, maxAttempts, recoveryBatchSize);
+            for (IpnReceipt receipt : receipts) {
+                Map<String, String> fields = objectMapper.readValue(receipt.getPayload(), FIELDS_TYPE);
+                logger.warn("Retrying VNPay receipt {}:{} (attempt {})",
+                        receipt.getTxn_ref(), receipt.getTransaction_no(), receipt.getAttempts());
+                workers.submit(() -> process(receipt.getTxn_ref(), receipt.getTransaction_no(), fields, receipt.getAttempts()));
+            }
+        } catch (Exception e) {
+            logger.error("VNPay receipt recovery error: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        recovery.shutdownNow();
+        workers.shutdown();
+        try {
+            // Biên nhận chưa xử lý xong sẽ được instance khác hoặc lần khởi động sau nhận lại
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
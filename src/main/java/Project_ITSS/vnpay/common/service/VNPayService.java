@@ -4,24 +4,18 @@
  */
 package Project_ITSS.vnpay.common.service;
 
+import Project_ITSS.IdGenerator.Service.IdGeneratorService;
 import Project_ITSS.vnpay.common.config.VNPayConfig;
 import Project_ITSS.vnpay.common.dto.IPNResponse;
 import Project_ITSS.vnpay.common.dto.PaymentRequest;
 import Project_ITSS.vnpay.common.dto.PaymentReturnResponse;
 import Project_ITSS.vnpay.common.dto.QueryRequest;
 import Project_ITSS.vnpay.common.dto.RefundRequest;
+import Project_ITSS.vnpay.common.security.HmacSha512Signer;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import jakarta.servlet.http.HttpServletRequest;
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
@@ -29,12 +23,14 @@ import java.util.*;
 public class VNPayService {
 
     private final VNPayConfig vnPayConfig;
-    private final RestTemplate restTemplate;
+    @Autowired
+    private IdGeneratorService idGenerator;
+    private final HttpClientService httpClientService;
 
     @Autowired
-    public VNPayService(VNPayConfig vnPayConfig) {
+    public VNPayService(VNPayConfig vnPayConfig, HttpClientService httpClientService) {
         this.vnPayConfig = vnPayConfig;
-        this.restTemplate = new RestTemplate();
+        this.httpClientService = httpClientService;
     }
 
     /**
@@ -52,7 +48,9 @@ public class VNPayService {
         long amount = Long.parseLong(request.getAmount()) * 100;
         String bankCode = request.getBankCode();
         
-        String vnp_TxnRef = vnPayConfig.getRandomNumber(8);
+        // Thanh toán cho một order dùng order_id làm vnp_TxnRef để giao dịch ghi nhận được gắn với order
+        String vnp_TxnRef = request.getOrderId() != null && !request.getOrderId().isBlank()
+                ? request.getOrderId() : idGenerator.nextPaymentTxnRef();
         String vnp_IpAddr = vnPayConfig.getIpAddress(servletRequest);
         String vnp_TmnCode = vnPayConfig.getTmnCode();
         
@@ -169,7 +167,7 @@ public class VNPayService {
         Calendar cld = Calendar.getInstance(TimeZone.getTimeZone("Etc/GMT+7"));
         SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmss");
         String vnp_CreateDate = formatter.format(cld.getTime());
-        String vnp_IpAddr = vnPayConfig.getIpAddress(servletRequest);
+        String vnp_IpAddr = request.getIpAddress() != null ? request.getIpAddress() : vnPayConfig.getIpAddress(servletRequest);
 
         Map<String, String> vnp_Params = new HashMap<>();
         vnp_Params.put("vnp_RequestId", vnp_RequestId);
@@ -249,22 +247,7 @@ public class VNPayService {
     }
 
     public String hashAllFields(Map<String, String> params) {
-        // Sort parameters by key
-        List<String> fieldNames = new ArrayList<>(params.keySet());
-        Collections.sort(fieldNames);
-
-        // Create hash data
-        StringBuilder hashData = new StringBuilder();
-        for (String fieldName : fieldNames) {
-            String fieldValue = params.get(fieldName);
-            if (fieldValue != null && !fieldValue.isEmpty()) {
-                if (hashData.length() > 0) {
-                    hashData.append('&');
-                }
-                hashData.append(fieldName).append('=').append(fieldValue); // KHÔNG encode!
-            }
-        }
-        return vnPayConfig.hmacSHA512(vnPayConfig.getSecretKey(), hashData.toString());
+        return vnPayConfig.hashAllFields(params);
     }
 
     public String generateSecureHash(Map<String, String> params) {
@@ -272,17 +255,7 @@ public class VNPayService {
     }
 
     private <T> T callVnpayApi(Map<String, String> params, Class<T> responseType) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        HttpEntity<Map<String, String>> request = new HttpEntity<>(params, headers);
-
-        ResponseEntity<T> response = restTemplate.postForEntity(
-                vnPayConfig.getApiUrl(),
-                request,
-                responseType
-        );
-
-        return response.getBody();
+        return httpClientService.postRequest(vnPayConfig.getApiUrl(), params, responseType);
     }
 
     /**
@@ -293,40 +266,9 @@ public class VNPayService {
      * @return URL encoded query string with signature
      */
     private String generatePaymentQuery(Map<String, String> vnp_Params) {
-        try {
-            List<String> fieldNames = new ArrayList<>(vnp_Params.keySet());
-            Collections.sort(fieldNames);
-
-            // 1. Sinh chuỗi ký KHÔNG encode
-            StringBuilder hashData = new StringBuilder();
-            for (int i = 0; i < fieldNames.size(); i++) {
-                String key = fieldNames.get(i);
-                String value = vnp_Params.get(key);
-                if (value != null && value.length() > 0) {
-                    hashData.append(key).append("=").append(value);
-                    if (i < fieldNames.size() - 1) hashData.append("&");
-                }
-            }
-            String vnp_SecureHash = vnPayConfig.hmacSHA512(vnPayConfig.getSecretKey(), hashData.toString());
-
-            // 2. Tạo query string (có encode)
-            StringBuilder query = new StringBuilder();
-            for (int i = 0; i < fieldNames.size(); i++) {
-                String key = fieldNames.get(i);
-                String value = vnp_Params.get(key);
-                if (value != null && value.length() > 0) {
-                    query.append(URLEncoder.encode(key, StandardCharsets.US_ASCII.toString()))
-                         .append("=")
-                         .append(URLEncoder.encode(value, StandardCharsets.US_ASCII.toString()));
-                    if (i < fieldNames.size() - 1) query.append("&");
-                }
-            }
-            query.append("&vnp_SecureHash=").append(vnp_SecureHash);
-            return query.toString();
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-            return "";
-        }
+        // Chuỗi được ký cũng là query string gửi đi
+        String query = HmacSha512Signer.canonicalQuery(vnp_Params);
+        return query + "&vnp_SecureHash=" + vnPayConfig.hmacSHA512(vnPayConfig.getSecretKey(), query);
     }
 
     public static class PaymentResponse {
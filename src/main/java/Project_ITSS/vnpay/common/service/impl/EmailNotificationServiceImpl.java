@@ -1,9 +1,8 @@
 package Project_ITSS.vnpay.common.service.impl;
 
+import Project_ITSS.Mail.Service.MailOutboxService;
 import Project_ITSS.vnpay.common.service.NotificationService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,20 +17,16 @@ public class EmailNotificationServiceImpl implements NotificationService {
     private static final Logger logger = LoggerFactory.getLogger(EmailNotificationServiceImpl.class);
     
     @Autowired
-    private JavaMailSender mailSender;
+    private MailOutboxService mailOutboxService;
 
     @Override
     public void sendNotification(String orderId, String message) {
         try {
-            SimpleMailMessage mailMessage = new SimpleMailMessage();
-            mailMessage.setTo("customer@example.com"); // TODO: Get actual customer email from order
-            mailMessage.setSubject("Payment Notification - Order " + orderId);
-            mailMessage.setText(message);
-            
-            mailSender.send(mailMessage);
-            logger.info("Email notification sent for order {}: {}", orderId, message);
+            // TODO: Get actual customer email from order
+            mailOutboxService.enqueue("customer@example.com", "Payment Notification - Order " + orderId, message);
+            logger.info("Email notification queued for order {}: {}", orderId, message);
         } catch (Exception e) {
-            logger.error("Error sending email notification for order {}: {}", orderId, e.getMessage());
+            logger.error("Error queueing email notification for order {}: {}", orderId, e.getMessage());
         }
     }
 
@@ -1,12 +1,11 @@
 package Project_ITSS.vnpay.common.service.impl;
 
 import Project_ITSS.vnpay.common.service.HashService;
+import Project_ITSS.vnpay.common.security.HmacSha512Signer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
-import java.util.*;
+import java.util.Map;
 
 /**
  * Implementation của HashService - tách logic hash generation
@@ -15,44 +14,21 @@ import java.util.*;
 @Service
 public class HashServiceImpl implements HashService {
 
+    @Autowired
+    private HmacSha512Signer signer;
+
+    /**
+     * Ký các tham số theo thứ tự key tăng dần (giá trị được URL-encode giống lúc tạo URL thanh toán)
+     */
     @Override
     public String hashAllFields(Map<String, String> fields) {
-        List<String> fieldNames = new ArrayList<>(fields.keySet());
-        Collections.sort(fieldNames);
-        StringBuilder sb = new StringBuilder();
-        Iterator<String> itr = fieldNames.iterator();
-        while (itr.hasNext()) {
-            String fieldName = itr.next();
-            String fieldValue = fields.get(fieldName);
-            if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                sb.append(fieldName);
-                sb.append("=");
-                sb.append(fieldValue);
-            }
-            if (itr.hasNext()) {
-                sb.append("&");
-            }
-        }
-        return sb.toString();
+        return signer.signFields(fields);
     }
 
     @Override
     public String hmacSHA512(final String key, final String data) {
         try {
-            if (key == null || data == null) {
-                throw new NullPointerException();
-            }
-            final Mac hmac512 = Mac.getInstance("HmacSHA512");
-            byte[] hmacKeyBytes = key.getBytes();
-            final SecretKeySpec secretKey = new SecretKeySpec(hmacKeyBytes, "HmacSHA512");
-            hmac512.init(secretKey);
-            byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
-            byte[] result = hmac512.doFinal(dataBytes);
-            StringBuilder sb = new StringBuilder(2 * result.length);
-            for (byte b : result) {
-                sb.append(String.format("%02x", b & 0xff));
-            }
-            return sb.toString();
+            return signer.sign(key, data);
         } catch (Exception ex) {
             return "";
         }
@@ -1,82 +1,215 @@
 package Project_ITSS.vnpay.common.service.impl;
 
+import Project_ITSS.vnpay.common.http.CircuitBreaker;
+import Project_ITSS.vnpay.common.http.LatencyHistogram;
 import Project_ITSS.vnpay.common.service.HttpClientService;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Implementation của HttpClientService - tách logic HTTP communication
  * Giải quyết vấn đề low cohesion trong VNPayService
+ *
+ * Mọi request dùng chung một JDK HttpClient (giữ pool kết nối keep-alive), mỗi endpoint (querydr, refund, default)
+ * có read timeout, circuit breaker và histogram độ trễ riêng. Chỉ querydr (idempotent) được gọi lại khi lỗi mạng hoặc 5xx.
  */
 @Service
 public class HttpClientServiceImpl implements HttpClientService {
 
-    private final RestTemplate restTemplate;
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientServiceImpl.class);
 
-    public HttpClientServiceImpl() {
-        this.restTemplate = new RestTemplate();
+    static final String ENDPOINT_QUERY = "querydr";
+    static final String ENDPOINT_REFUND = "refund";
+    static final String ENDPOINT_DEFAULT = "default";
+
+    @Value("${vnpay.http.connect-timeout-ms:3000}")
+    private long connectTimeoutMs;
+    @Value("${vnpay.http.read-timeout-ms:10000}")
+    private long defaultReadTimeoutMs;
+    @Value("${vnpay.http.querydr.read-timeout-ms:5000}")
+    private long queryReadTimeoutMs;
+    @Value("${vnpay.http.refund.read-timeout-ms:20000}")
+    private long refundReadTimeoutMs;
+    @Value("${vnpay.http.querydr.max-attempts:3}")
+    private int queryMaxAttempts;
+    @Value("${vnpay.http.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+    @Value("${vnpay.http.breaker.failure-threshold:5}")
+    private int breakerFailureThreshold;
+    @Value("${vnpay.http.breaker.open-ms:30000}")
+    private long breakerOpenMs;
+
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        endpoints.put(ENDPOINT_QUERY, new Endpoint(ENDPOINT_QUERY, httpClient, queryReadTimeoutMs, queryMaxAttempts, newBreaker()));
+        endpoints.put(ENDPOINT_REFUND, new Endpoint(ENDPOINT_REFUND, httpClient, refundReadTimeoutMs, 1, newBreaker()));
+        endpoints.put(ENDPOINT_DEFAULT, new Endpoint(ENDPOINT_DEFAULT, httpClient, defaultReadTimeoutMs, 1, newBreaker()));
+    }
+
+    private CircuitBreaker newBreaker() {
+        return new CircuitBreaker(breakerFailureThreshold, breakerOpenMs);
     }
 
     @Override
     public <T> T callApi(String url, Map<String, String> params, Class<T> responseType) {
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-            
-            StringBuilder body = new StringBuilder();
-            for (Map.Entry<String, String> entry : params.entrySet()) {
-                if (body.length() > 0) {
-                    body.append("&");
-                }
-                body.append(entry.getKey()).append("=").append(entry.getValue());
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+
+        StringBuilder body = new StringBuilder();
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            if (body.length() > 0) {
+                body.append("&");
             }
-            
-            HttpEntity<String> request = new HttpEntity<>(body.toString(), headers);
-            ResponseEntity<T> response = restTemplate.postForEntity(url, request, responseType);
-            return response.getBody();
-        } catch (Exception e) {
-            throw new RuntimeException("Error calling API: " + url, e);
+            body.append(entry.getKey()).append("=").append(entry.getValue());
         }
+
+        HttpEntity<String> request = new HttpEntity<>(body.toString(), headers);
+        Endpoint endpoint = endpointFor(params.get("vnp_Command"));
+        return execute(endpoint, "Error calling API: " + url,
+                () -> endpoint.restTemplate.postForEntity(url, request, responseType));
     }
 
     @Override
     public <T> T postRequest(String url, Object requestBody, Class<T> responseType) {
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            HttpEntity<Object> request = new HttpEntity<>(requestBody, headers);
-            ResponseEntity<T> response = restTemplate.postForEntity(url, request, responseType);
-            return response.getBody();
-        } catch (Exception e) {
-            throw new RuntimeException("Error making POST request to: " + url, e);
-        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        HttpEntity<Object> request = new HttpEntity<>(requestBody, headers);
+        Object command = requestBody instanceof Map<?, ?> map ? map.get("vnp_Command") : null;
+        Endpoint endpoint = endpointFor(command != null ? command.toString() : null);
+        return execute(endpoint, "Error making POST request to: " + url,
+                () -> endpoint.restTemplate.postForEntity(url, request, responseType));
     }
 
     @Override
     public <T> T getRequest(String url, Map<String, String> params, Class<T> responseType) {
-        try {
-            StringBuilder urlWithParams = new StringBuilder(url);
-            if (params != null && !params.isEmpty()) {
-                urlWithParams.append("?");
-                for (Map.Entry<String, String> entry : params.entrySet()) {
-                    if (urlWithParams.charAt(urlWithParams.length() - 1) != '?') {
-                        urlWithParams.append("&");
-                    }
-                    urlWithParams.append(entry.getKey()).append("=").append(entry.getValue());
+        StringBuilder urlWithParams = new StringBuilder(url);
+        if (params != null && !params.isEmpty()) {
+            urlWithParams.append("?");
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                if (urlWithParams.charAt(urlWithParams.length() - 1) != '?') {
+                    urlWithParams.append("&");
                 }
+                urlWithParams.append(entry.getKey()).append("=").append(entry.getValue());
             }
-            
-            ResponseEntity<T> response = restTemplate.getForEntity(urlWithParams.toString(), responseType);
-            return response.getBody();
-        } catch (Exception e) {
-            throw new RuntimeException("Error making GET request to: " + url, e);
+        }
+
+        Endpoint endpoint = endpoints.get(ENDPOINT_DEFAULT);
+        return execute(endpoint, "Error making GET request to: " + url,
+                () -> endpoint.restTemplate.getForEntity(urlWithParams.toString(), responseType));
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        for (Endpoint endpoint : endpoints.values()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("circuit", endpoint.breaker.getState().name());
+            stats.put("latency", endpoint.latency.snapshot());
+            json.put(endpoint.name, stats);
+        }
+        return json;
+    }
+
+    private Endpoint endpointFor(String command) {
+        if (ENDPOINT_QUERY.equals(command)) {
+            return endpoints.get(ENDPOINT_QUERY);
+        }
+        if (ENDPOINT_REFUND.equals(command)) {
+            return endpoints.get(ENDPOINT_REFUND);
+        }
+        return endpoints.get(ENDPOINT_DEFAULT);
+    }
+
+    private <T> T execute(Endpoint endpoint, String errorMessage, Supplier<ResponseEntity<T>> call) {
+        for (int attempt = 1; ; attempt++) {
+            if (!endpoint.breaker.tryAcquire()) {
+                throw new RuntimeException(errorMessage + " (circuit open for " + endpoint.name + ")");
+            }
+            long start = System.nanoTime();
+            RuntimeException failure;
+            try {
+                T body = call.get().getBody();
+                endpoint.latency.record(elapsedMillis(start));
+                endpoint.breaker.recordSuccess();
+                return body;
+            } catch (CancellationException e) {
+                // Read timeout của JDK HttpClient đôi khi huỷ request trước khi RestTemplate kịp bọc thành ResourceAccessException
+                endpoint.latency.record(elapsedMillis(start));
+                failure = new ResourceAccessException("Read timed out: " + endpoint.name);
+            } catch (RuntimeException e) {
+                endpoint.latency.record(elapsedMillis(start));
+                failure = e;
+            }
+            // Lỗi mạng/timeout/5xx mới tính là VNPAY không khoẻ, 4xx là lỗi của request
+            boolean transientError = failure instanceof ResourceAccessException || failure instanceof HttpServerErrorException;
+            if (transientError) {
+                endpoint.breaker.recordFailure();
+            } else {
+                endpoint.breaker.recordSuccess();
+            }
+            if (!transientError || attempt >= endpoint.maxAttempts) {
+                throw new RuntimeException(errorMessage, failure);
+            }
+            long delay = retryBackoffMs << (attempt - 1);
+            logger.warn("{} call failed (attempt {}/{}), retrying in {} ms: {}",
+                    endpoint.name, attempt, endpoint.maxAttempts, delay, failure.getMessage());
+            sleep(delay, errorMessage, failure);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private void sleep(long millis, String errorMessage, Exception cause) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(errorMessage, cause);
+        }
+    }
+
+    private static final class Endpoint {
+        private final String name;
+        private final RestTemplate restTemplate;
+        private final int maxAttempts;
+        private final CircuitBreaker breaker;
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private Endpoint(String name, HttpClient httpClient, long readTimeoutMs, int maxAttempts, CircuitBreaker breaker) {
+            JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+            requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+            this.name = name;
+            this.restTemplate = new RestTemplate(requestFactory);
+            this.maxAttempts = Math.max(1, maxAttempts);
+            this.breaker = breaker;
         }
     }
-} 
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package Project_ITSS.vnpay.common.service.impl;
 
+import Project_ITSS.IdGenerator.Service.IdGeneratorService;
 import Project_ITSS.vnpay.common.config.VNPayConfig;
 import Project_ITSS.vnpay.common.dto.PaymentRequest;
 import Project_ITSS.vnpay.common.dto.QueryRequest;
@@ -8,14 +9,12 @@ import Project_ITSS.vnpay.common.service.*;
 import Project_ITSS.vnpay.common.service.VNPayService.PaymentResponse;
 import Project_ITSS.vnpay.common.service.VNPayService.QueryResponse;
 import Project_ITSS.vnpay.common.service.VNPayService.RefundResponse;
+import Project_ITSS.vnpay.common.security.HmacSha512Signer;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -26,6 +25,8 @@ import java.util.Map;
 public class VNPayServiceImpl implements PaymentService {
 
     private final VNPayConfig vnPayConfig;
+    @Autowired
+    private IdGeneratorService idGenerator;
     private final HashService hashService;
     private final HttpClientService httpClientService;
 
@@ -44,7 +45,9 @@ public class VNPayServiceImpl implements PaymentService {
         long amount = Long.parseLong(request.getAmount()) * 100;
         String bankCode = request.getBankCode();
         
-        String vnp_TxnRef = vnPayConfig.getRandomNumber(8);
+        // Thanh toán cho một order dùng order_id làm vnp_TxnRef để giao dịch ghi nhận được gắn với order
+        String vnp_TxnRef = request.getOrderId() != null && !request.getOrderId().isBlank()
+                ? request.getOrderId() : idGenerator.nextPaymentTxnRef();
         String vnp_IpAddr = vnPayConfig.getIpAddress(servletRequest);
         String vnp_TmnCode = vnPayConfig.getTmnCode();
         
@@ -145,7 +148,7 @@ public class VNPayServiceImpl implements PaymentService {
         java.util.Calendar cld = java.util.Calendar.getInstance(java.util.TimeZone.getTimeZone("Etc/GMT+7"));
         java.text.SimpleDateFormat formatter = new java.text.SimpleDateFormat("yyyyMMddHHmmss");
         String vnp_CreateDate = formatter.format(cld.getTime());
-        String vnp_IpAddr = vnPayConfig.getIpAddress(servletRequest);
+        String vnp_IpAddr = request.getIpAddress() != null ? request.getIpAddress() : vnPayConfig.getIpAddress(servletRequest);
 
         Map<String, String> vnp_Params = new java.util.HashMap<>();
         vnp_Params.put("vnp_RequestId", vnp_RequestId);
@@ -172,43 +175,8 @@ public class VNPayServiceImpl implements PaymentService {
     }
 
     private String generatePaymentQuery(Map<String, String> vnp_Params) {
-        try {
-            // 1. Sắp xếp key
-            List<String> fieldNames = new ArrayList<>(vnp_Params.keySet());
-            Collections.sort(fieldNames);
-
-            // 2. Tạo chuỗi dữ liệu ký (ENCODE value)
-            StringBuilder hashData = new StringBuilder();
-            for (int i = 0; i < fieldNames.size(); i++) {
-                String key = fieldNames.get(i);
-                String value = vnp_Params.get(key);
-                if (value != null && value.length() > 0) {
-                    hashData.append(key).append("=").append(java.net.URLEncoder.encode(value, "UTF-8"));
-                    if (i < fieldNames.size() - 1) hashData.append("&");
-                }
-            }
-            String hashDataStr = hashData.toString();
-            String vnp_SecureHash = hashService.hmacSHA512(vnPayConfig.getSecretKey(), hashDataStr);
-
-            // 3. Tạo query string (CÓ encode)
-            StringBuilder query = new StringBuilder();
-            for (int i = 0; i < fieldNames.size(); i++) {
-                String key = fieldNames.get(i);
-                String value = vnp_Params.get(key);
-                if (value != null && value.length() > 0) {
-                    query.append(java.net.URLEncoder.encode(key, "UTF-8"))
-                         .append("=")
-                         .append(java.net.URLEncoder.encode(value, "UTF-8"));
-                    if (i < fieldNames.size() - 1) query.append("&");
-                }
-            }
-            query.append("&vnp_SecureHash=").append(vnp_SecureHash);
-            String queryStr = query.toString();
-            System.out.println("[VNPay DEBUG] hashData: " + hashDataStr);
-            System.out.println("[VNPay DEBUG] queryString: " + queryStr);
-            return queryStr;
-        } catch (java.io.UnsupportedEncodingException e) {
-            throw new RuntimeException("Error encoding payment parameters", e);
-        }
+        // Chuỗi được ký cũng là query string gửi đi
+        String query = HmacSha512Signer.canonicalQuery(vnp_Params);
+        return query + "&vnp_SecureHash=" + hashService.hmacSHA512(vnPayConfig.getSecretKey(), query);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,10 @@
+-- Bộ đếm số product đã cập nhật của mỗi ngày (QuotaRepository_UpdateProduct.reserve).
+-- Chỗ trong quota được lấy bằng UPDATE ... WHERE used < limit trên dòng này,
+-- nên hai node cùng lấy chỗ cuối cùng thì chỉ một node thành công.
+CREATE TABLE IF NOT EXISTS update_quota_day (
+    quota_date DATE PRIMARY KEY,
+    used INT NOT NULL DEFAULT 0
+);
+
+INSERT INTO update_quota_day (quota_date, used)
+SELECT quota_date, COUNT(*) FROM update_quota GROUP BY quota_date;
@@ -0,0 +1,4 @@
+-- Lượt giữ hàng gắn với order_id được cấp ở /placeorder, release_token chỉ trả cho client đã đặt hàng
+ALTER TABLE stock_reservation ADD COLUMN IF NOT EXISTS order_id INT;
+ALTER TABLE stock_reservation ADD COLUMN IF NOT EXISTS release_token VARCHAR(36);
+CREATE UNIQUE INDEX IF NOT EXISTS ux_stock_reservation_order_id ON stock_reservation (order_id);
@@ -0,0 +1,7 @@
+-- Chỉ order đã lưu mới được xếp khung giờ giao nhanh: bỏ các lượt đặt của order không tồn tại,
+-- đếm lại booked của từng khung giờ rồi thêm khoá ngoại tới "Order"
+DELETE FROM rush_slot_booking WHERE order_id NOT IN (SELECT order_id FROM "Order");
+UPDATE rush_slot SET booked = (
+    SELECT COUNT(*) FROM rush_slot_booking b WHERE b.province = rush_slot.province AND b.slot_start = rush_slot.slot_start
+);
+ALTER TABLE rush_slot_booking ADD CONSTRAINT fk_rush_slot_booking_order FOREIGN KEY (order_id) REFERENCES "Order" (order_id);
@@ -0,0 +1,7 @@
+-- Biên nhận IPN có trạng thái pending/processed/dead: xử lý lỗi quá vnpay.ipn.max-attempts lần thì chuyển sang dead
+-- thay vì được recoverStale thử lại mãi. attempts từ nay đếm số lần bắt đầu xử lý (lần nhận đầu tiên là 1).
+ALTER TABLE vnpay_ipn_receipt ADD COLUMN IF NOT EXISTS status VARCHAR(20) NOT NULL DEFAULT 'pending';
+UPDATE vnpay_ipn_receipt SET status = 'processed' WHERE processed_at IS NOT NULL;
+UPDATE vnpay_ipn_receipt SET attempts = attempts + 1 WHERE processed_at IS NULL;
+DROP INDEX IF EXISTS idx_vnpay_ipn_receipt_pending;
+CREATE INDEX IF NOT EXISTS idx_vnpay_ipn_receipt_status ON vnpay_ipn_receipt (status, locked_at);
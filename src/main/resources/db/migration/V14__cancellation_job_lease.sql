@@ -0,0 +1,5 @@
+-- Job huỷ hàng loạt có lease_id: mỗi lần một node nhận job (tạo mới hoặc claimStale) sinh lease_id mới, mọi thao tác ghi
+-- của node đó (heartbeat, item, finish) đều kèm điều kiện lease_id nên node cũ đã mất job không ghi đè được node mới.
+-- attempts đếm số lần job được nhận, quá bulk.cancel.max-attempts thì job chuyển sang failed.
+ALTER TABLE cancellation_job ADD COLUMN IF NOT EXISTS lease_id VARCHAR(36);
+ALTER TABLE cancellation_job ADD COLUMN IF NOT EXISTS attempts INT NOT NULL DEFAULT 1;
@@ -0,0 +1,3 @@
+-- Cart bị xoá được giữ lại làm tombstone (deleted_at) tới khi hết cart.retention-days: flush muộn của node khác
+-- (compare-and-set trên version, chỉ khi deleted_at IS NULL) không tạo lại được cart đã xoá.
+ALTER TABLE cart ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP;
@@ -0,0 +1,4 @@
+-- Mỗi lần MailOutboxRepository.claimDue nhận email sẽ ghi một claim_id mới rồi đọc lại các email mang claim_id đó,
+-- thay cho UPDATE ... RETURNING mà H2 không có.
+ALTER TABLE mail_outbox ADD COLUMN IF NOT EXISTS claim_id VARCHAR(36);
+CREATE INDEX IF NOT EXISTS idx_mail_outbox_claim ON mail_outbox (claim_id);
@@ -0,0 +1,161 @@
+-- Baseline: các bảng mà repository (JdbcTemplate) và TransactionInfo (JPA) đang dùng.
+-- Dùng IF NOT EXISTS để chạy được trên database cũ đã có sẵn các bảng này (spring.flyway.baseline-version=0).
+
+CREATE TABLE IF NOT EXISTS product (
+    product_id SERIAL PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    price INT NOT NULL,
+    weight REAL,
+    rush_order_supported BOOLEAN NOT NULL DEFAULT FALSE,
+    image_url VARCHAR(500),
+    barcode VARCHAR(100),
+    import_date DATE,
+    introduction TEXT,
+    quantity INT NOT NULL DEFAULT 0,
+    type VARCHAR(20) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS book (
+    book_id SERIAL PRIMARY KEY,
+    product_id INT NOT NULL REFERENCES product (product_id),
+    genre VARCHAR(100),
+    page_count INT,
+    publication_date DATE,
+    authors VARCHAR(255),
+    publishers VARCHAR(255),
+    cover_type VARCHAR(50)
+);
+
+CREATE TABLE IF NOT EXISTS cd (
+    cd_id SERIAL PRIMARY KEY,
+    product_id INT NOT NULL REFERENCES product (product_id),
+    track_list TEXT,
+    genre VARCHAR(100),
+    record_label VARCHAR(255),
+    artists VARCHAR(255),
+    release_date DATE
+);
+
+CREATE TABLE IF NOT EXISTS dvd (
+    dvd_id SERIAL PRIMARY KEY,
+    product_id INT NOT NULL REFERENCES product (product_id),
+    title VARCHAR(255),
+    release_date DATE,
+    dvd_type VARCHAR(50),
+    genre VARCHAR(100),
+    studio VARCHAR(255),
+    director VARCHAR(255)
+);
+
+CREATE TABLE IF NOT EXISTS deliveryinformation (
+    delivery_id SERIAL PRIMARY KEY,
+    name VARCHAR(255),
+    phone VARCHAR(20),
+    email VARCHAR(255),
+    address VARCHAR(500),
+    province VARCHAR(100),
+    shipping_message TEXT,
+    shipping_fee INT
+);
+
+-- order_id do IdGeneratorService cấp nên không dùng SERIAL
+CREATE TABLE IF NOT EXISTS "Order" (
+    order_id INT PRIMARY KEY,
+    delivery_id INT REFERENCES deliveryinformation (delivery_id),
+    total_before_vat INT,
+    total_after_vat INT,
+    status VARCHAR(20),
+    vat INT
+);
+
+CREATE TABLE IF NOT EXISTS orderlines (
+    odrline_id SERIAL PRIMARY KEY,
+    order_id INT NOT NULL REFERENCES "Order" (order_id),
+    product_id INT NOT NULL REFERENCES product (product_id),
+    status VARCHAR(20),
+    rush_order_using BOOLEAN NOT NULL DEFAULT FALSE,
+    quantity INT NOT NULL,
+    total_fee INT,
+    delivery_time VARCHAR(100),
+    instructions TEXT
+);
+
+CREATE TABLE IF NOT EXISTS logger (
+    action_id SERIAL PRIMARY KEY,
+    action_name VARCHAR(100) NOT NULL,
+    recorded_at TIMESTAMP NOT NULL,
+    note TEXT
+);
+
+-- Được quản lý bởi TransactionInfo (spring.jpa.hibernate.ddl-auto=validate)
+CREATE TABLE IF NOT EXISTS vnpay_transactions (
+    id BIGSERIAL PRIMARY KEY,
+    order_id VARCHAR(255) NOT NULL,
+    transaction_no VARCHAR(255),
+    amount BIGINT,
+    bank_code VARCHAR(255),
+    response_code VARCHAR(255),
+    transaction_status VARCHAR(255),
+    pay_date VARCHAR(255),
+    created_at TIMESTAMP(6)
+);
+
+-- Các bảng phụ: quota cập nhật, mail outbox, giữ hàng, sequence cấp id, biên nhận IPN
+
+-- Danh sách product đã được cập nhật theo ngày, dùng cho giới hạn số product được cập nhật mỗi ngày
+CREATE TABLE IF NOT EXISTS update_quota (
+    quota_date DATE NOT NULL,
+    product_id BIGINT NOT NULL,
+    PRIMARY KEY (quota_date, product_id)
+);
+
+-- Outbox của email gửi đi, được gửi bởi MailOutboxService
+CREATE TABLE IF NOT EXISTS mail_outbox (
+    mail_id BIGSERIAL PRIMARY KEY,
+    to_email VARCHAR(255) NOT NULL,
+    subject VARCHAR(255),
+    content TEXT,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    last_error TEXT,
+    next_attempt_at TIMESTAMP NOT NULL,
+    locked_at TIMESTAMP,
+    created_at TIMESTAMP NOT NULL,
+    sent_at TIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_mail_outbox_due ON mail_outbox (status, next_attempt_at);
+
+-- Lượt giữ hàng tạo lúc /placeorder, quantity của product đã được trừ khi status là held hoặc committed
+CREATE TABLE IF NOT EXISTS stock_reservation (
+    reservation_id BIGSERIAL PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_stock_reservation_expiry ON stock_reservation (status, expires_at);
+
+CREATE TABLE IF NOT EXISTS stock_reservation_item (
+    reservation_id BIGINT NOT NULL REFERENCES stock_reservation (reservation_id),
+    product_id INT NOT NULL,
+    quantity INT NOT NULL,
+    PRIMARY KEY (reservation_id, product_id)
+);
+
+-- Sequence cấp id theo block cho IdGeneratorService, INCREMENT BY phải bằng IdGeneratorService.BLOCK_SIZE
+CREATE SEQUENCE IF NOT EXISTS order_id_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS payment_txn_ref_seq START WITH 10000000 INCREMENT BY 50;
+
+-- Biên nhận IPN/return của VNPAY, khoá chính (txn_ref, transaction_no) chặn việc xử lý một giao dịch hai lần
+CREATE TABLE IF NOT EXISTS vnpay_ipn_receipt (
+    txn_ref VARCHAR(50) NOT NULL,
+    transaction_no VARCHAR(50) NOT NULL,
+    response_code VARCHAR(10),
+    payload TEXT NOT NULL,
+    received_at TIMESTAMP NOT NULL,
+    locked_at TIMESTAMP NOT NULL,
+    processed_at TIMESTAMP,
+    attempts INT NOT NULL DEFAULT 0,
+    last_error TEXT,
+    PRIMARY KEY (txn_ref, transaction_no)
+);
+CREATE INDEX IF NOT EXISTS idx_vnpay_ipn_receipt_pending ON vnpay_ipn_receipt (processed_at, locked_at);
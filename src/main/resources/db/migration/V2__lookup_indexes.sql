@@ -0,0 +1,18 @@
+-- Index theo đúng các truy vấn của repository
+
+-- TransactionRepository.findByOrderId (RefundService, validateTransaction của các strategy)
+CREATE INDEX IF NOT EXISTS idx_vnpay_transactions_order_id ON vnpay_transactions (order_id);
+
+-- Join product -> book/cd/dvd trong ProductRepository_ViewProduct.DETAIL_SQL
+CREATE INDEX IF NOT EXISTS idx_book_product_id ON book (product_id);
+CREATE INDEX IF NOT EXISTS idx_cd_product_id ON cd (product_id);
+CREATE INDEX IF NOT EXISTS idx_dvd_product_id ON dvd (product_id);
+
+-- ProductRepository_ViewProduct.getProductPage lọc theo type rồi duyệt theo product_id
+CREATE INDEX IF NOT EXISTS idx_product_type_id ON product (type, product_id);
+
+-- OrderlineRepository_PlaceOrder.getOrderLinebyOrderId
+CREATE INDEX IF NOT EXISTS idx_orderlines_order_id ON orderlines (order_id);
+
+-- Join "Order" -> DeliveryInformation
+CREATE INDEX IF NOT EXISTS idx_order_delivery_id ON "Order" (delivery_id);
@@ -0,0 +1,13 @@
+-- Trạng thái hoàn tiền của order bị huỷ: refund_pending -> refunded | refund_failed
+CREATE TABLE IF NOT EXISTS order_refund (
+    order_id INT PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    previous_order_status VARCHAR(20),
+    payment_method VARCHAR(50),
+    amount DOUBLE PRECISION,
+    refund_method VARCHAR(50),
+    transaction_id VARCHAR(100),
+    message TEXT,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,2 @@
+-- Phương thức thanh toán của order (PaymentMethod.name()), NULL với các order tạo trước migration này
+ALTER TABLE "Order" ADD COLUMN IF NOT EXISTS payment_method VARCHAR(20);
@@ -0,0 +1,24 @@
+-- Job huỷ hàng loạt order (BulkCancellationService). locked_at là heartbeat của node đang chạy job,
+-- job running có heartbeat quá cũ được node khác (hoặc chính node đó sau khi khởi động lại) nhận chạy tiếp.
+CREATE TABLE IF NOT EXISTS cancellation_job (
+    job_id BIGSERIAL PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    requested_ip VARCHAR(64),
+    total INT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    locked_at TIMESTAMP NOT NULL,
+    finished_at TIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_cancellation_job_running ON cancellation_job (status, locked_at);
+
+-- Trạng thái của từng order trong job: queued -> claimed -> dispatched -> refunded | refund_failed,
+-- hoặc skipped (order không còn pending), needs_review (node dừng khi đang gọi cổng thanh toán)
+CREATE TABLE IF NOT EXISTS cancellation_job_item (
+    job_id BIGINT NOT NULL REFERENCES cancellation_job (job_id),
+    order_id INT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    message TEXT,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (job_id, order_id)
+);
+CREATE INDEX IF NOT EXISTS idx_cancellation_job_item_status ON cancellation_job_item (job_id, status);
@@ -0,0 +1,20 @@
+-- Cart phía server (CartService_PlaceOrder). Cart được giữ trong bộ nhớ và ghi xuống đây theo kiểu write-behind,
+-- version tăng theo mỗi thay đổi nên bản ghi cũ hơn không ghi đè được bản mới hơn.
+CREATE TABLE IF NOT EXISTS cart (
+    cart_id VARCHAR(36) PRIMARY KEY,
+    version BIGINT NOT NULL,
+    total_before_vat INT NOT NULL,
+    total_after_vat INT NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_cart_updated_at ON cart (updated_at);
+
+-- price là giá của product lúc được thêm vào cart, tổng tiền của cart tính theo giá này
+CREATE TABLE IF NOT EXISTS cart_item (
+    cart_id VARCHAR(36) NOT NULL REFERENCES cart (cart_id) ON DELETE CASCADE,
+    product_id INT NOT NULL,
+    quantity INT NOT NULL,
+    price INT NOT NULL,
+    position INT NOT NULL,
+    PRIMARY KEY (cart_id, product_id)
+);
@@ -0,0 +1,19 @@
+-- Khung giờ giao hàng nhanh theo tỉnh (RushSlotScheduler). Dòng của một khung giờ được tạo khi có lượt đặt đầu tiên,
+-- booked chỉ tăng khi còn chỗ nên nhiều node cùng đặt cũng không vượt capacity.
+CREATE TABLE IF NOT EXISTS rush_slot (
+    province VARCHAR(100) NOT NULL,
+    slot_start TIMESTAMP NOT NULL,
+    capacity INT NOT NULL,
+    booked INT NOT NULL,
+    PRIMARY KEY (province, slot_start),
+    CHECK (booked <= capacity)
+);
+CREATE INDEX IF NOT EXISTS idx_rush_slot_start ON rush_slot (slot_start);
+
+-- Mỗi rush order được xếp vào đúng một khung giờ
+CREATE TABLE IF NOT EXISTS rush_slot_booking (
+    order_id INT PRIMARY KEY,
+    province VARCHAR(100) NOT NULL,
+    slot_start TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
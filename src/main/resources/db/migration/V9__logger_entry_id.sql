@@ -0,0 +1,4 @@
+-- Mỗi audit entry có một entry_id duy nhất (AuditLogService), ghi lại entry từ spill file
+-- sau một batch lỗi giữa chừng không tạo ra dòng trùng. Các dòng cũ để entry_id NULL.
+ALTER TABLE logger ADD COLUMN IF NOT EXISTS entry_id VARCHAR(36);
+CREATE UNIQUE INDEX IF NOT EXISTS ux_logger_entry_id ON logger (entry_id);
@@ -0,0 +1,173 @@
+package Project_ITSS.AddProduct.Service;
+
+import Project_ITSS.AddProduct.Entity.ImportReport;
+import Project_ITSS.AddProduct.Exception.AddProductException;
+import Project_ITSS.AddProduct.Repository.BookRepository_AddProduct;
+import Project_ITSS.AddProduct.Repository.CDRepository_AddProduct;
+import Project_ITSS.AddProduct.Repository.DVDRepository_AddProduct;
+import Project_ITSS.AddProduct.Repository.DetailProductRepository_AddProduct;
+import Project_ITSS.AddProduct.Repository.ProductRepository_AddProduct;
+import Project_ITSS.ViewProduct2.Event.ProductChangedEvent;
+import Project_ITSS.support.TestDatabase;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Import CSV trên H2 với chunk-size 2: product_id sinh ra được gắn đúng vào dòng book/cd/dvd, chunk lỗi được ghi lại từng dòng,
+ * lỗi được báo theo dòng bắt đầu bản ghi, giá trị trong ngoặc kép có thể chứa dấu phẩy, "" và xuống dòng.
+ */
+class ProductImportService_AddProductTest {
+
+    private static final String HEADER = "type,title,price,weight,quantity,import_date,introduction,genre,publication_date,authors,artists,releaseDate,studio\n";
+
+    private JdbcTemplate jdbcTemplate;
+    private ApplicationEventPublisher eventPublisher;
+    private LoggerService_AddProduct loggerService;
+    private ProductImportService_AddProduct importService;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = TestDatabase.h2();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        ProductRepository_AddProduct productRepository = new ProductRepository_AddProduct();
+        ReflectionTestUtils.setField(productRepository, "jdbcTemplate", jdbcTemplate);
+        List<DetailProductRepository_AddProduct> repositories = List.of(
+                new BookRepository_AddProduct(), new CDRepository_AddProduct(), new DVDRepository_AddProduct());
+        for (DetailProductRepository_AddProduct repository : repositories) {
+            ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+        }
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        loggerService = mock(LoggerService_AddProduct.class);
+        importService = new ProductImportService_AddProduct(repositories);
+        ReflectionTestUtils.setField(importService, "productRepository", productRepository);
+        ReflectionTestUtils.setField(importService, "loggerService", loggerService);
+        ReflectionTestUtils.setField(importService, "transactionTemplate", new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(importService, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(importService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(importService, "chunkSize", 2);
+    }
+
+    @Test
+    void rowsAreImportedInChunksIntoTheirDetailTables() throws IOException {
+        ImportReport report = importCsv(HEADER
+                + "book,Dế Mèn phiêu lưu ký,50000,0.3,10,2024-01-01,,Thiếu nhi,1941-01-01,Tô Hoài,,,\n"
+                + "cd,Abbey Road,200000,0.1,5,2024-01-01,,Rock,,,The Beatles,1969-09-26,\n"
+                + "dvd,Spirited Away,150000,0.2,3,2024-01-01,,Animation,,,,2001-07-20,Ghibli\n"
+                + "book,Số đỏ,60000,0.3,10,2024-01-01,,Văn học,1936-01-01,Vũ Trọng Phụng,,,\n"
+                + "cd,Kind of Blue,180000,0.1,5,2024-01-01,,Jazz,,,Miles Davis,1959-08-17,\n");
+
+        assertThat(report.getTotal_rows()).isEqualTo(5);
+        assertThat(report.getImported()).isEqualTo(5);
+        assertThat(report.getErrors()).isEmpty();
+        // product_id sinh ra trong batch được gắn đúng vào chi tiết của từng loại
+        assertThat(titlesIn("book")).containsExactly("Dế Mèn phiêu lưu ký", "Số đỏ");
+        assertThat(titlesIn("cd")).containsExactly("Abbey Road", "Kind of Blue");
+        assertThat(titlesIn("dvd")).containsExactly("Spirited Away");
+        assertThat(jdbcTemplate.queryForObject("SELECT b.authors FROM book b JOIN product p ON p.product_id = b.product_id WHERE p.title = 'Số đỏ'",
+                String.class)).isEqualTo("Vũ Trọng Phụng");
+        // 3 chunk: mỗi chunk một event và một dòng log
+        verify(eventPublisher, times(3)).publishEvent(any(ProductChangedEvent.class));
+        verify(loggerService, times(3)).saveImportLogger(any());
+    }
+
+    @Test
+    void failedChunkIsRetriedRowByRow() throws IOException {
+        String tooLongGenre = "x".repeat(101);
+        ImportReport report = importCsv(HEADER
+                + "book,First,50000,0.3,10,2024-01-01,," + tooLongGenre + ",2000-01-01,A,,,\n"
+                + "book,Second,50000,0.3,10,2024-01-01,,Novel,2000-01-01,B,,,\n");
+
+        assertThat(report.getImported()).isEqualTo(1);
+        assertThat(report.getErrors()).extracting(ImportReport.RowError::getLine).containsExactly(2);
+        assertThat(titlesIn("book")).containsExactly("Second");
+        // Product của dòng lỗi được rollback cùng chi tiết của nó
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM product", Integer.class)).isEqualTo(1);
+        verify(loggerService).saveLogger(any());
+    }
+
+    @Test
+    void quotedValuesMayContainCommasEscapedQuotesAndNewlines() throws IOException {
+        ImportReport report = importCsv(HEADER
+                + "book,\"Truyện Kiều, bản \"\"chú giải\"\"\",50000,0.3,10,2024-01-01,\"Dòng một,\n"
+                + "dòng hai\n"
+                + "\",Thơ,1820-01-01,Nguyễn Du,,,\n"
+                + "book,,50000,0.3,10,2024-01-01,,Thơ,1820-01-01,Nguyễn Du,,,\n");
+
+        assertThat(report.getImported()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForMap("SELECT title, introduction FROM product"))
+                .containsEntry("title", "Truyện Kiều, bản \"chú giải\"")
+                .containsEntry("introduction", "Dòng một,\ndòng hai\n");
+        // Bản ghi trước chiếm dòng 2-4 nên dòng thiếu title là dòng 5
+        assertThat(report.getErrors()).extracting(ImportReport.RowError::getLine).containsExactly(5);
+    }
+
+    @Test
+    void invalidRowsAreReportedByLine() throws IOException {
+        ImportReport report = importCsv(HEADER
+                + "book,Valid,50000,0.3,10,2024-01-01,,Novel,2000-01-01,A,,,\n"
+                + "book,,50000,0.3,10,2024-01-01,,Novel,2000-01-01,A,,,\n"
+                + "\n"
+                + "book,Negative,-1,0.3,10,2024-01-01,,Novel,2000-01-01,A,,,\n"
+                + "vinyl,Unknown type,1000,0.3,10,2024-01-01,,,,,,,\n"
+                + "book,Bad date,50000,0.3,10,01/01/2024,,Novel,2000-01-01,A,,,\n"
+                + "book,Too,many,columns,0.3,10,2024-01-01,,Novel,2000-01-01,A,,,,\n");
+
+        assertThat(report.getTotal_rows()).isEqualTo(6);
+        assertThat(report.getImported()).isEqualTo(1);
+        assertThat(report.getFailed()).isEqualTo(5);
+        assertThat(report.getErrors()).extracting(ImportReport.RowError::getLine).containsExactly(3, 5, 6, 7, 8);
+        assertThat(report.getErrors().get(0).getMessage()).isEqualTo("The title is required");
+        assertThat(report.getErrors().get(3).getMessage()).isEqualTo("import_date must be in yyyy-MM-dd format");
+    }
+
+    @Test
+    void unterminatedQuoteAtTheEndOfTheFileIsRejected() throws IOException {
+        ImportReport report = importCsv(HEADER
+                + "book,Valid,50000,0.3,10,2024-01-01,,Novel,2000-01-01,A,,,\n"
+                + "book,\"Never closed,50000,0.3,10,2024-01-01,,Novel,2000-01-01,A,,,\n"
+                + "book,Swallowed,50000,0.3,10,2024-01-01,,Novel,2000-01-01,A,,,\n");
+
+        assertThat(report.getTotal_rows()).isEqualTo(2);
+        assertThat(report.getImported()).isEqualTo(1);
+        assertThat(report.getErrors()).singleElement().satisfies(error -> {
+            assertThat(error.getLine()).isEqualTo(3);
+            assertThat(error.getMessage()).isEqualTo("Unterminated quoted value");
+        });
+    }
+
+    @Test
+    void unterminatedQuoteInTheHeaderRejectsTheFile() {
+        assertThatThrownBy(() -> importCsv("type,\"title\n"))
+                .isInstanceOf(AddProductException.class)
+                .hasMessage("Unterminated quoted value");
+    }
+
+    private ImportReport importCsv(String csv) throws IOException {
+        return importService.importProducts(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                ProductImportService_AddProduct.FORMAT_CSV);
+    }
+
+    private List<String> titlesIn(String detailTable) {
+        return jdbcTemplate.queryForList("SELECT p.title FROM " + detailTable + " d JOIN product p ON p.product_id = d.product_id ORDER BY p.product_id",
+                String.class);
+    }
+}
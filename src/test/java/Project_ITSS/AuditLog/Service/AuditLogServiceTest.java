@@ -0,0 +1,163 @@
+package Project_ITSS.AuditLog.Service;
+
+import Project_ITSS.AuditLog.Entity.AuditEntry;
+import Project_ITSS.AuditLog.Repository.AuditLogRepository;
+import Project_ITSS.support.TestDatabase;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuditLogServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private JdbcTemplate jdbcTemplate;
+    private AuditLogService auditLogService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(TestDatabase.h2());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (auditLogService != null) {
+            auditLogService.shutdown();
+        }
+    }
+
+    @Test
+    void savingTheSameEntriesTwiceInsertsThemOnce() {
+        AuditLogRepository repository = repository();
+        List<AuditEntry> entries = List.of(
+                new AuditEntry("update product", "1", LocalDate.now()),
+                new AuditEntry("update product", "2", LocalDate.now()));
+
+        repository.saveBatch(entries);
+        repository.saveBatch(entries);
+
+        assertThat(count()).isEqualTo(2);
+    }
+
+    @Test
+    void partiallyWrittenBatchIsReplayedWithoutDuplicates() throws Exception {
+        AtomicBoolean failNext = new AtomicBoolean(true);
+        // Batch đầu tiên chỉ ghi được nửa đầu rồi lỗi, giống một batch bị đứt kết nối giữa chừng
+        AuditLogRepository flaky = new AuditLogRepository() {
+            @Override
+            public void saveBatch(List<AuditEntry> entries) {
+                if (failNext.getAndSet(false)) {
+                    super.saveBatch(entries.subList(0, entries.size() / 2));
+                    throw new IllegalStateException("connection reset");
+                }
+                super.saveBatch(entries);
+            }
+        };
+        ReflectionTestUtils.setField(flaky, "jdbcTemplate", jdbcTemplate);
+        Path spillFile = tempDir.resolve("audit-spill.ndjson");
+        // 10 entry đã bị spill từ trước (DB lỗi), được replay thành một batch khi writer khởi động
+        ObjectMapper objectMapper = objectMapper();
+        StringBuilder spilled = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            spilled.append(objectMapper.writeValueAsString(new AuditEntry("add product", String.valueOf(i), LocalDate.now()))).append('\n');
+        }
+        Files.writeString(spillFile, spilled);
+        auditLogService = service(flaky, spillFile);
+        auditLogService.start();
+
+        // Lần replay đầu ghi được 5 entry rồi lỗi, cả batch được spill lại; lần ghi thành công tiếp theo replay tiếp
+        awaitTrue(() -> !failNext.get() && Files.exists(spillFile));
+        assertThat(count()).isEqualTo(5);
+        auditLogService.log("add product", "10");
+        awaitTrue(() -> count() == 11 && !Files.exists(spillFile));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT note) FROM Logger", Integer.class)).isEqualTo(11);
+        assertThat(count()).isEqualTo(11);
+    }
+
+    @Test
+    void shutdownDrainsQueue() {
+        auditLogService = service(repository(), tempDir.resolve("audit-spill.ndjson"));
+        auditLogService.start();
+        for (int i = 0; i < 50; i++) {
+            auditLogService.log("update product", String.valueOf(i));
+        }
+
+        auditLogService.shutdown();
+        auditLogService = null;
+
+        assertThat(count()).isEqualTo(50);
+    }
+
+    @Test
+    void entryLoggedInsideTransactionIsQueuedOnlyOnCommit() {
+        auditLogService = service(repository(), tempDir.resolve("audit-spill.ndjson"));
+        auditLogService.start();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            auditLogService.log("update product", "rolled back");
+            status.setRollbackOnly();
+        });
+        transactionTemplate.executeWithoutResult(status -> auditLogService.log("update product", "committed"));
+        auditLogService.shutdown();
+        auditLogService = null;
+
+        assertThat(jdbcTemplate.queryForList("SELECT note FROM Logger", String.class)).containsExactly("committed");
+    }
+
+    private AuditLogRepository repository() {
+        AuditLogRepository repository = new AuditLogRepository();
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+        return repository;
+    }
+
+    private AuditLogService service(AuditLogRepository repository, Path spillFile) {
+        AuditLogService service = new AuditLogService();
+        ReflectionTestUtils.setField(service, "auditLogRepository", repository);
+        ReflectionTestUtils.setField(service, "objectMapper", objectMapper());
+        ReflectionTestUtils.setField(service, "queueCapacity", 100);
+        ReflectionTestUtils.setField(service, "batchSize", 20);
+        ReflectionTestUtils.setField(service, "flushIntervalMs", 20L);
+        ReflectionTestUtils.setField(service, "enqueueTimeoutMs", 50L);
+        ReflectionTestUtils.setField(service, "spillFile", spillFile.toString());
+        return service;
+    }
+
+    private static ObjectMapper objectMapper() {
+        return new ObjectMapper().registerModule(new JavaTimeModule());
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Logger", Integer.class);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Condition not met within 10s");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
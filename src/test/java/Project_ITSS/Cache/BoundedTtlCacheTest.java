@@ -0,0 +1,111 @@
+package Project_ITSS.Cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedTtlCacheTest {
+
+    @Test
+    void loadsOnceThenServesFromCache() {
+        BoundedTtlCache<Integer, String> cache = new BoundedTtlCache<>(10, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get(1, key -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+        assertThat(cache.get(1, key -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void loadOverlappingInvalidateIsReturnedButNotCached() {
+        BoundedTtlCache<Integer, String> cache = new BoundedTtlCache<>(10, 60_000);
+
+        // Product bị sửa (và cache bị invalidate) trong lúc loader đang đọc bản cũ
+        String loaded = cache.get(1, key -> {
+            cache.invalidate(key);
+            return "stale";
+        });
+
+        assertThat(loaded).isEqualTo("stale");
+        assertThat(cache.getIfPresent(1)).isNull();
+        assertThat(cache.get(1, key -> "fresh")).isEqualTo("fresh");
+        assertThat(cache.getIfPresent(1)).isEqualTo("fresh");
+    }
+
+    @Test
+    void invalidateAllDuringLoadAlsoDiscardsTheLoad() {
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(1, 60_000);
+
+        cache.get("all", key -> {
+            cache.invalidateAll();
+            return "stale";
+        });
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void putWithOldGenerationIsIgnored() {
+        BoundedTtlCache<Integer, String> cache = new BoundedTtlCache<>(10, 60_000);
+        long generation = cache.getGeneration();
+        cache.invalidate(2);
+
+        assertThat(cache.put(1, "stale", generation)).isFalse();
+        assertThat(cache.put(1, "fresh", cache.getGeneration())).isTrue();
+        assertThat(cache.getIfPresent(1)).isEqualTo("fresh");
+    }
+
+    @Test
+    void concurrentLoadBlockedPastInvalidateDoesNotResurrectOldValue() throws Exception {
+        BoundedTtlCache<Integer, String> cache = new BoundedTtlCache<>(10, 60_000);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> reader = executor.submit(() -> cache.get(1, key -> {
+                loading.countDown();
+                try {
+                    invalidated.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "old";
+            }));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            cache.invalidate(1);
+            invalidated.countDown();
+
+            assertThat(reader.get(5, TimeUnit.SECONDS)).isEqualTo("old");
+            assertThat(cache.getIfPresent(1)).isNull();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedAndExpiredEntries() throws InterruptedException {
+        BoundedTtlCache<Integer, String> lru = new BoundedTtlCache<>(2, 60_000);
+        lru.put(1, "a");
+        lru.put(2, "b");
+        lru.getIfPresent(1);
+        lru.put(3, "c");
+        assertThat(lru.getIfPresent(2)).isNull();
+        assertThat(lru.getIfPresent(1)).isEqualTo("a");
+        assertThat(lru.getEvictions()).isEqualTo(1);
+
+        BoundedTtlCache<Integer, String> ttl = new BoundedTtlCache<>(2, 20);
+        ttl.put(1, "a");
+        Thread.sleep(40);
+        assertThat(ttl.getIfPresent(1)).isNull();
+    }
+}
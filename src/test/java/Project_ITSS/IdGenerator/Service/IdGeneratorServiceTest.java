@@ -0,0 +1,122 @@
+package Project_ITSS.IdGenerator.Service;
+
+import Project_ITSS.IdGenerator.Repository.IdSequenceRepository;
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Nhiều IdGeneratorService (mỗi instance là một node) dùng chung một sequence không bao giờ cấp trùng id,
+ * kể cả khi nhiều thread trên mỗi node cùng lấy id và các block liên tục hết.
+ */
+class IdGeneratorServiceTest {
+
+    static final int NODES = 4;
+    static final int THREADS_PER_NODE = 8;
+    static final int IDS_PER_THREAD = 2_000;
+
+    // Sequence trong bộ nhớ giống sequence Postgres INCREMENT BY BLOCK_SIZE: mỗi nextval trả về đầu một block mới
+    static class InMemorySequenceRepository extends IdSequenceRepository {
+        private final AtomicLong next = new AtomicLong(1);
+
+        @Override
+        public long nextBlockStart(String sequence) {
+            return next.getAndAdd(IdGeneratorService.BLOCK_SIZE);
+        }
+    }
+
+    abstract static class Contract {
+
+        abstract IdSequenceRepository sequenceRepository();
+
+        @Test
+        void nodesSharingASequenceNeverIssueTheSameId() throws Exception {
+            IdSequenceRepository sequenceRepository = sequenceRepository();
+            List<IdGeneratorService> nodes = new ArrayList<>();
+            for (int i = 0; i < NODES; i++) {
+                nodes.add(node(sequenceRepository));
+            }
+            Set<Integer> ids = ConcurrentHashMap.newKeySet();
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(NODES * THREADS_PER_NODE);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (IdGeneratorService node : nodes) {
+                for (int t = 0; t < THREADS_PER_NODE; t++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        int duplicates = 0;
+                        for (int i = 0; i < IDS_PER_THREAD; i++) {
+                            if (!ids.add(node.nextOrderId())) {
+                                duplicates++;
+                            }
+                        }
+                        return duplicates;
+                    }));
+                }
+            }
+            start.countDown();
+            int duplicates = 0;
+            for (Future<Integer> future : futures) {
+                duplicates += future.get(1, TimeUnit.MINUTES);
+            }
+            executor.shutdown();
+
+            assertThat(duplicates).isZero();
+            assertThat(ids).hasSize(NODES * THREADS_PER_NODE * IDS_PER_THREAD);
+        }
+
+        @Test
+        void restartedNodeContinuesAfterTheBlocksAlreadyHandedOut() {
+            IdSequenceRepository sequenceRepository = sequenceRepository();
+            IdGeneratorService before = node(sequenceRepository);
+            int last = 0;
+            for (int i = 0; i < 10; i++) {
+                last = before.nextOrderId();
+            }
+            // Node khởi động lại bỏ phần còn lại của block cũ chứ không cấp lại
+            IdGeneratorService after = node(sequenceRepository);
+            assertThat(after.nextOrderId()).isGreaterThan(last);
+        }
+    }
+
+    static IdGeneratorService node(IdSequenceRepository sequenceRepository) {
+        IdGeneratorService node = new IdGeneratorService();
+        ReflectionTestUtils.setField(node, "sequenceRepository", sequenceRepository);
+        return node;
+    }
+
+    @Nested
+    class InMemory extends Contract {
+        @Override
+        IdSequenceRepository sequenceRepository() {
+            return new InMemorySequenceRepository();
+        }
+    }
+
+    @Nested
+    @Testcontainers(disabledWithoutDocker = true)
+    class OnPostgres extends Contract {
+        @Override
+        IdSequenceRepository sequenceRepository() {
+            IdSequenceRepository sequenceRepository = new IdSequenceRepository();
+            ReflectionTestUtils.setField(sequenceRepository, "jdbcTemplate", new JdbcTemplate(TestDatabase.postgres()));
+            return sequenceRepository;
+        }
+    }
+}
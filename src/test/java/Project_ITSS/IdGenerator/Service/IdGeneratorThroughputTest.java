@@ -0,0 +1,72 @@
+package Project_ITSS.IdGenerator.Service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Số id/giây một node cấp được với 1/8/32 thread. Mỗi lần lấy block mới giả lập một round trip 1 ms tới Postgres,
+ * nên thông lượng bị chặn ở khoảng BLOCK_SIZE id mỗi round trip bất kể số thread.
+ * Chạy bằng: mvn test -Pbenchmark -Dtest=IdGeneratorThroughputTest
+ */
+@Tag("benchmark")
+class IdGeneratorThroughputTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdGeneratorThroughputTest.class);
+    private static final int IDS = 200_000;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 8, 32})
+    void idsPerSecond(int threads) throws Exception {
+        IdGeneratorService node = IdGeneratorServiceTest.node(new IdGeneratorServiceTest.InMemorySequenceRepository() {
+            @Override
+            public long nextBlockStart(String sequence) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.nextBlockStart(sequence);
+            }
+        });
+        for (int i = 0; i < 10_000; i++) {
+            node.nextOrderId();
+        }
+
+        int perThread = IDS / threads;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                int last = 0;
+                for (int i = 0; i < perThread; i++) {
+                    last = node.nextOrderId();
+                }
+                return last;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<Integer> future : futures) {
+            assertThat(future.get()).isPositive();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        executor.shutdown();
+
+        logger.info("{} threads: {} ids in {} ms, {} ids/s", threads, perThread * threads,
+                Math.round(seconds * 1000), Math.round(perThread * threads / seconds));
+    }
+}
@@ -0,0 +1,168 @@
+package Project_ITSS.Mail.Service;
+
+import Project_ITSS.Mail.Entity.OutboxMail;
+import Project_ITSS.Mail.Repository.MailOutboxRepository;
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Outbox trên H2 với JavaMailSender giả: email được gửi rồi chuyển sang sent, gửi lỗi thì thử lại với backoff tăng dần,
+ * quá max-attempts thì chuyển sang dead, email kẹt ở sending quá stuck-timeout được trả lại pending.
+ */
+class MailOutboxServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private MailOutboxRepository outboxRepository;
+    private JavaMailSender mailSender;
+    private MailOutboxService outboxService;
+    private boolean started;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(TestDatabase.h2());
+        outboxRepository = new MailOutboxRepository();
+        ReflectionTestUtils.setField(outboxRepository, "jdbcTemplate", jdbcTemplate);
+        mailSender = mock(JavaMailSender.class);
+        outboxService = new MailOutboxService();
+        ReflectionTestUtils.setField(outboxService, "outboxRepository", outboxRepository);
+        ReflectionTestUtils.setField(outboxService, "javaMailSender", mailSender);
+        ReflectionTestUtils.setField(outboxService, "pollIntervalMs", 50L);
+        ReflectionTestUtils.setField(outboxService, "batchSize", 10);
+        ReflectionTestUtils.setField(outboxService, "maxConcurrency", 4);
+        ReflectionTestUtils.setField(outboxService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(outboxService, "initialBackoffMs", 30_000L);
+        ReflectionTestUtils.setField(outboxService, "maxBackoffMs", 3_600_000L);
+        ReflectionTestUtils.setField(outboxService, "stuckTimeoutMs", 600_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (started) {
+            outboxService.shutdown();
+        }
+    }
+
+    @Test
+    void enqueuedMailIsSentByTheDispatcher() throws InterruptedException {
+        outboxService.start();
+        started = true;
+
+        outboxService.enqueue("customer@example.com", "Đơn hàng", "Bạn đã đặt hàng thành công");
+
+        awaitTrue(() -> OutboxMail.STATUS_SENT.equals(status(1)));
+        ArgumentCaptor<SimpleMailMessage> message = ArgumentCaptor.forClass(SimpleMailMessage.class);
+        verify(mailSender).send(message.capture());
+        assertThat(message.getValue().getTo()).containsExactly("customer@example.com");
+        assertThat(message.getValue().getSubject()).isEqualTo("Đơn hàng");
+        assertThat(message.getValue().getText()).isEqualTo("Bạn đã đặt hàng thành công");
+        assertThat(attempts(1)).isEqualTo(1);
+    }
+
+    @Test
+    void failedMailIsRetriedWithExponentialBackoff() {
+        doThrow(new MailSendException("SMTP unavailable")).when(mailSender).send(any(SimpleMailMessage.class));
+        outboxRepository.enqueue("customer@example.com", "Đơn hàng", "Nội dung");
+
+        sendDue();
+        assertThat(status(1)).isEqualTo(OutboxMail.STATUS_PENDING);
+        assertThat(attempts(1)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT last_error FROM mail_outbox WHERE mail_id = 1", String.class))
+                .isEqualTo("SMTP unavailable");
+        assertThat(delayMillis(1)).isBetween(25_000L, 30_000L);
+        // Chưa đến hạn thì không được nhận lại
+        assertThat(outboxRepository.claimDue(10)).isEmpty();
+
+        makeDue(1);
+        sendDue();
+        assertThat(attempts(1)).isEqualTo(2);
+        assertThat(delayMillis(1)).isBetween(55_000L, 60_000L);
+    }
+
+    @Test
+    void mailIsMovedToDeadLetterAfterMaxAttempts() {
+        doThrow(new MailSendException("Mailbox unavailable")).when(mailSender).send(any(SimpleMailMessage.class));
+        outboxRepository.enqueue("customer@example.com", "Đơn hàng", "Nội dung");
+
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            makeDue(1);
+            assertThat(sendDue()).isEqualTo(1);
+        }
+
+        assertThat(status(1)).isEqualTo(OutboxMail.STATUS_DEAD);
+        assertThat(attempts(1)).isEqualTo(3);
+        makeDue(1);
+        assertThat(outboxRepository.claimDue(10)).isEmpty();
+    }
+
+    @Test
+    void mailStuckInSendingIsReleased() {
+        outboxRepository.enqueue("first@example.com", "Đơn hàng", "Nội dung");
+        outboxRepository.enqueue("second@example.com", "Đơn hàng", "Nội dung");
+        assertThat(outboxRepository.claimDue(10)).extracting(OutboxMail::getMail_id).containsExactlyInAnyOrder(1L, 2L);
+        // Mail 1 được nhận từ 20 phút trước bởi một instance đã dừng
+        jdbcTemplate.update("UPDATE mail_outbox SET locked_at = ? WHERE mail_id = 1",
+                new Timestamp(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(20)));
+
+        assertThat(outboxRepository.releaseStuck(600_000)).isEqualTo(1);
+
+        assertThat(status(1)).isEqualTo(OutboxMail.STATUS_PENDING);
+        assertThat(status(2)).isEqualTo(OutboxMail.STATUS_SENDING);
+        assertThat(outboxRepository.claimDue(10)).extracting(OutboxMail::getMail_id).containsExactly(1L);
+    }
+
+    // Nhận và gửi các email đến hạn trên thread hiện tại, giống một vòng của dispatcher
+    private int sendDue() {
+        List<OutboxMail> mails = outboxRepository.claimDue(10);
+        for (OutboxMail mail : mails) {
+            ReflectionTestUtils.invokeMethod(outboxService, "send", mail);
+        }
+        return mails.size();
+    }
+
+    private void makeDue(long mail_id) {
+        jdbcTemplate.update("UPDATE mail_outbox SET next_attempt_at = ? WHERE mail_id = ?",
+                new Timestamp(System.currentTimeMillis() - 1000), mail_id);
+    }
+
+    private long delayMillis(long mail_id) {
+        Timestamp next = jdbcTemplate.queryForObject("SELECT next_attempt_at FROM mail_outbox WHERE mail_id = ?", Timestamp.class, mail_id);
+        return next.getTime() - System.currentTimeMillis();
+    }
+
+    private String status(long mail_id) {
+        return jdbcTemplate.queryForObject("SELECT status FROM mail_outbox WHERE mail_id = ?", String.class, mail_id);
+    }
+
+    private int attempts(long mail_id) {
+        return jdbcTemplate.queryForObject("SELECT attempts FROM mail_outbox WHERE mail_id = ?", Integer.class, mail_id);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Condition not met within 10s");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
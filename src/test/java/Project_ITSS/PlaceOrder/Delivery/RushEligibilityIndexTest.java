@@ -0,0 +1,92 @@
+package Project_ITSS.PlaceOrder.Delivery;
+
+import Project_ITSS.PlaceOrder.Repository.ProductRepository_PlaceOrder;
+import Project_ITSS.ViewProduct2.Event.ProductChangedEvent;
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Mỗi ProductChangedEvent chỉ đọc lại database một lần cho mọi product trong event,
+ * lần nạp lại toàn bộ bắt đầu trước một thay đổi lẻ thì bị bỏ để không ghi đè thay đổi đó.
+ */
+class RushEligibilityIndexTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private ProductRepository_PlaceOrder productRepository;
+    private RushEligibilityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(TestDatabase.h2());
+        ProductRepository_PlaceOrder repository = new ProductRepository_PlaceOrder();
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+        productRepository = spy(repository);
+        index = new RushEligibilityIndex();
+        ReflectionTestUtils.setField(index, "productRepository", productRepository);
+    }
+
+    @Test
+    void changedProductsAreReadBackWithOneQuery() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+        int cd = TestDatabase.insertProduct(jdbcTemplate, "CD", 1000, 5, true);
+        rebuild();
+        assertThat(index.isEligible(book)).isFalse();
+        assertThat(index.isEligible(cd)).isTrue();
+
+        setRush(book, true);
+        setRush(cd, false);
+        index.onProductChanged(new ProductChangedEvent(List.of((long) book, (long) cd)));
+
+        assertThat(index.isEligible(book)).isTrue();
+        assertThat(index.isEligible(cd)).isFalse();
+        verify(productRepository, times(1)).findRushOrderSupported(any());
+    }
+
+    @Test
+    void rebuildThatOverlapsAnUpdateIsDropped() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, true);
+        rebuild();
+        // Product bị bỏ rush order trong lúc lần nạp lại đang đọc danh sách cũ
+        doAnswer(invocation -> {
+            Object stale = invocation.callRealMethod();
+            setRush(book, false);
+            index.onProductChanged(new ProductChangedEvent(book));
+            return stale;
+        }).when(productRepository).getRushProductIds();
+
+        rebuild();
+
+        assertThat(index.isEligible(book)).isFalse();
+    }
+
+    @Test
+    void ineligibleListsProductsWithoutRushSupport() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, true);
+        int cd = TestDatabase.insertProduct(jdbcTemplate, "CD", 1000, 5, false);
+        rebuild();
+
+        assertThat(index.ineligible(List.of(book, cd, -1, 999_999))).containsExactly(cd, -1, 999_999);
+        assertThat(index.ineligible(List.of(book))).isEmpty();
+        assertThat(index.anyEligible()).isTrue();
+    }
+
+    private void rebuild() {
+        ReflectionTestUtils.invokeMethod(index, "rebuild");
+    }
+
+    private void setRush(int product_id, boolean rush) {
+        jdbcTemplate.update("UPDATE product SET rush_order_supported = ? WHERE product_id = ?", rush, product_id);
+    }
+}
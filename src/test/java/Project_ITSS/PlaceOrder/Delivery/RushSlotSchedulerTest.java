@@ -0,0 +1,133 @@
+package Project_ITSS.PlaceOrder.Delivery;
+
+import Project_ITSS.PlaceOrder.Entity.RushSlot;
+import Project_ITSS.PlaceOrder.Exception.PlaceOrderException;
+import Project_ITSS.PlaceOrder.Repository.RushSlotRepository_PlaceOrder;
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Chỉ order đã lưu và có orderline rush mới được xếp khung giờ, theo tỉnh nhận hàng đã lưu cùng order.
+ * tryBook dùng ON CONFLICT (province, slot_start) DO UPDATE mà H2 không hỗ trợ nên được thay bằng spy luôn còn chỗ.
+ */
+class RushSlotSchedulerTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private RushSlotRepository_PlaceOrder slotRepository;
+    private RushSlotScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = TestDatabase.h2();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        RushSlotRepository_PlaceOrder repository = new RushSlotRepository_PlaceOrder();
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+        slotRepository = spy(repository);
+        doReturn(true).when(slotRepository).tryBook(anyString(), any(LocalDateTime.class), anyInt());
+        scheduler = new RushSlotScheduler();
+        ReflectionTestUtils.setField(scheduler, "slotRepository", slotRepository);
+        ReflectionTestUtils.setField(scheduler, "transactionTemplate", new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(scheduler, "environment", new MockEnvironment());
+        ReflectionTestUtils.setField(scheduler, "openHour", 0);
+        ReflectionTestUtils.setField(scheduler, "closeHour", 23);
+        ReflectionTestUtils.setField(scheduler, "slotMinutes", 60);
+        ReflectionTestUtils.setField(scheduler, "horizonDays", 2);
+        ReflectionTestUtils.setField(scheduler, "leadMinutes", 0);
+        ReflectionTestUtils.setField(scheduler, "defaultCapacity", 5);
+        ReflectionTestUtils.setField(scheduler, "provinces", new String[]{"Hà Nội"});
+    }
+
+    @Test
+    void rushOrderIsBookedInTheStoredProvince() {
+        saveOrder(1, "Hà Nội", true);
+
+        RushSlot slot = scheduler.assign(1);
+
+        assertThat(slot.getProvince()).isEqualTo("Hà Nội");
+        verify(slotRepository).tryBook(eq("Hà Nội"), eq(slot.getSlot_start()), anyInt());
+        assertThat(jdbcTemplate.queryForObject("SELECT province FROM rush_slot_booking WHERE order_id = 1", String.class))
+                .isEqualTo("Hà Nội");
+        assertThat(jdbcTemplate.queryForObject("SELECT delivery_time FROM orderlines WHERE order_id = 1", String.class))
+                .startsWith(slot.getSlot_start().toString());
+        // Gọi lại trả về khung giờ cũ, không đặt thêm chỗ
+        assertThat(scheduler.assign(1).getSlot_start()).isEqualTo(slot.getSlot_start());
+    }
+
+    @Test
+    void unknownOrderIsRejected() {
+        assertThatThrownBy(() -> scheduler.assign(42))
+                .isInstanceOf(PlaceOrderException.class)
+                .hasMessageContaining("42");
+
+        verify(slotRepository, never()).tryBook(anyString(), any(LocalDateTime.class), anyInt());
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rush_slot_booking", Integer.class)).isZero();
+    }
+
+    @Test
+    void unknownProvinceHasNoSlotsAndCreatesNoCounters() {
+        assertThat(scheduler.getAvailability("Hà Nội")).isNotEmpty();
+
+        assertThat(scheduler.getAvailability("Atlantis")).isEmpty();
+
+        assertThat((Map<String, ?>) ReflectionTestUtils.getField(scheduler, "slotsByProvince")).containsOnlyKeys("Hà Nội");
+        assertThat((Map<String, ?>) ReflectionTestUtils.getField(scheduler, "capacities")).containsOnlyKeys("Hà Nội");
+    }
+
+    @Test
+    void orderToAProvinceWithoutRushDeliveryIsRejected() {
+        saveOrder(1, "Atlantis", true);
+
+        assertThatThrownBy(() -> scheduler.assign(1))
+                .isInstanceOf(PlaceOrderException.class)
+                .hasMessageContaining("No rush delivery slot");
+
+        verify(slotRepository, never()).tryBook(anyString(), any(LocalDateTime.class), anyInt());
+    }
+
+    @Test
+    void orderWithoutRushOrderlineIsRejected() {
+        saveOrder(1, "Hà Nội", false);
+
+        assertThatThrownBy(() -> scheduler.assign(1))
+                .isInstanceOf(PlaceOrderException.class)
+                .hasMessageContaining("rush orderline");
+
+        verify(slotRepository, never()).tryBook(anyString(), any(LocalDateTime.class), anyInt());
+    }
+
+    @Test
+    void bookingOfMissingOrderViolatesTheForeignKey() {
+        assertThatThrownBy(() -> slotRepository.saveBooking(42, "Hà Nội", LocalDateTime.now()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    private void saveOrder(int order_id, String province, boolean rush) {
+        int product_id = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, rush);
+        jdbcTemplate.update("INSERT INTO deliveryinformation (delivery_id, name, province) VALUES (?, 'Nguyen Van A', ?)", order_id, province);
+        jdbcTemplate.update("INSERT INTO \"Order\" (order_id, delivery_id, status) VALUES (?, ?, 'pending')", order_id, order_id);
+        jdbcTemplate.update("INSERT INTO orderlines (order_id, product_id, rush_order_using, quantity, total_fee) VALUES (?, ?, ?, 1, 1000)",
+                order_id, product_id, rush);
+    }
+}
@@ -0,0 +1,169 @@
+package Project_ITSS.PlaceOrder.Factory;
+
+import Project_ITSS.PlaceOrder.Entity.DeliveryInformation;
+import Project_ITSS.PlaceOrder.Entity.Order;
+import Project_ITSS.PlaceOrder.Entity.PaymentMethod;
+import Project_ITSS.PlaceOrder.Repository.IOrderRepository;
+import Project_ITSS.PlaceOrder.Strategy.PaymentStrategy;
+import Project_ITSS.vnpay.common.dto.RefundRequest;
+import Project_ITSS.vnpay.common.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chi phí chọn PaymentStrategy cho một order: cách cũ (tải order rồi hỏi canHandleOrder từng strategy)
+ * so với EnumMap theo payment_method và cache theo order_id.
+ * Mỗi lần tải order giả lập một round trip 200 µs tới database.
+ * Chạy bằng: mvn test -Pbenchmark -Dtest=PaymentStrategyResolutionBenchmarkTest
+ */
+@Tag("benchmark")
+class PaymentStrategyResolutionBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentStrategyResolutionBenchmarkTest.class);
+    private static final int ORDERS = 1_000;
+    private static final long ROUND_TRIP_NANOS = 200_000;
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final List<PaymentStrategy> strategies = List.of(
+            new StubStrategy(PaymentMethod.CREDIT_CARD, "CreditCard", false),
+            new StubStrategy(PaymentMethod.VNPAY, "VNPay", true));
+    private PaymentStrategyFactory factory;
+    private IOrderRepository orderRepository;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository = new StubOrderRepository();
+        factory = new PaymentStrategyFactory();
+        ReflectionTestUtils.setField(factory, "paymentStrategies", strategies);
+        ReflectionTestUtils.setField(factory, "orderRepository", orderRepository);
+        ReflectionTestUtils.setField(factory, "cacheMaxEntries", 10_000);
+        ReflectionTestUtils.setField(factory, "cacheTtlSeconds", 3600L);
+        factory.init();
+    }
+
+    @Test
+    void resolutionCost() {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 1; i <= ORDERS; i++) {
+            orders.add(order(i));
+        }
+
+        // Cách cũ: mỗi lần chọn strategy là một lần tải order và duyệt danh sách strategy
+        Result legacy = measure(orderId -> {
+            orderRepository.findById(orderId);
+            for (PaymentStrategy strategy : strategies) {
+                if (strategy.canHandleOrder(orderId)) {
+                    return strategy;
+                }
+            }
+            return null;
+        }, 3);
+        Result loadedOrder = measure(orderId -> factory.getStrategy(orders.get((int) orderId - 1)), 200);
+        Result cachedOrderId = measure(orderId -> factory.getStrategy(orderId), 200);
+
+        logger.info("legacy findById + canHandleOrder: {} ns/op, {} loads/op", legacy.nanosPerOp, legacy.loadsPerOp);
+        logger.info("getStrategy(Order):                {} ns/op, {} loads/op", loadedOrder.nanosPerOp, loadedOrder.loadsPerOp);
+        logger.info("getStrategy(orderId), cached:      {} ns/op, {} loads/op", cachedOrderId.nanosPerOp, cachedOrderId.loadsPerOp);
+        assertThat(loadedOrder.loadsPerOp).isZero();
+        assertThat(cachedOrderId.loadsPerOp).isZero();
+        assertThat(legacy.loadsPerOp).isEqualTo(1.0);
+    }
+
+    private Result measure(LongFunction<PaymentStrategy> resolve, int rounds) {
+        // Lượt đầu để JIT và cache ấm lên
+        run(resolve);
+        loads.set(0);
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            run(resolve);
+        }
+        long ops = (long) rounds * ORDERS;
+        return new Result((System.nanoTime() - start) / ops, (double) loads.get() / ops);
+    }
+
+    private void run(LongFunction<PaymentStrategy> resolve) {
+        for (long orderId = 1; orderId <= ORDERS; orderId++) {
+            assertThat(resolve.apply(orderId).getPaymentMethod()).isEqualTo(PaymentMethod.VNPAY);
+        }
+    }
+
+    private static Order order(int order_id) {
+        Order order = new Order();
+        order.setOrder_id(order_id);
+        order.setPayment_method(PaymentMethod.VNPAY.name());
+        return order;
+    }
+
+    private record Result(long nanosPerOp, double loadsPerOp) {
+    }
+
+    private final class StubOrderRepository implements IOrderRepository {
+        @Override
+        public Order findById(long orderId) {
+            loads.incrementAndGet();
+            long until = System.nanoTime() + ROUND_TRIP_NANOS;
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+            return order((int) orderId);
+        }
+
+        @Override
+        public void updateStatus(long orderId, String status) {
+        }
+
+        @Override
+        public DeliveryInformation getDeliveryInfo(long deliveryId) {
+            return null;
+        }
+
+        @Override
+        public boolean existsById(long orderId) {
+            return true;
+        }
+
+        @Override
+        public String getOrderStatus(long orderId) {
+            return "pending";
+        }
+    }
+
+    private record StubStrategy(PaymentMethod method, String name, boolean handlesEveryOrder) implements PaymentStrategy {
+        @Override
+        public CompletableFuture<RefundResult> processRefund(RefundRequest request) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public boolean validateTransaction(String orderId, TransactionRepository transactionRepository) {
+            return true;
+        }
+
+        @Override
+        public String getPaymentMethodName() {
+            return name;
+        }
+
+        @Override
+        public PaymentMethod getPaymentMethod() {
+            return method;
+        }
+
+        @Override
+        public boolean canHandleOrder(long orderId) {
+            return handlesEveryOrder;
+        }
+    }
+}
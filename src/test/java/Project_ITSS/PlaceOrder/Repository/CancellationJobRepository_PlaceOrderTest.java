@@ -0,0 +1,156 @@
+package Project_ITSS.PlaceOrder.Repository;
+
+import Project_ITSS.PlaceOrder.Entity.CancellationJob;
+import Project_ITSS.PlaceOrder.Entity.CancellationJobItem;
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mọi thao tác ghi của một node lên job huỷ hàng loạt kèm lease_id: node đã mất job (node khác claimStale) không ghi được nữa.
+ * claimStale/failExhausted dùng RETURNING và INTERVAL '1 millisecond' nên chỉ chạy trên PostgreSQL.
+ */
+class CancellationJobRepository_PlaceOrderTest {
+
+    // Database Postgres dùng chung cho cả lần chạy nên mỗi test dùng job_id riêng, tránh trùng với sequence
+    private static final AtomicLong jobIds = new AtomicLong(1_000_000_000L + System.nanoTime() % 1_000_000);
+
+    abstract static class Contract {
+        JdbcTemplate jdbcTemplate;
+        CancellationJobRepository_PlaceOrder jobRepository;
+        long jobId;
+
+        abstract DataSource dataSource();
+
+        @BeforeEach
+        void setUp() {
+            jdbcTemplate = new JdbcTemplate(dataSource());
+            jobRepository = new CancellationJobRepository_PlaceOrder();
+            ReflectionTestUtils.setField(jobRepository, "jdbcTemplate", jdbcTemplate);
+            jobId = jobIds.incrementAndGet();
+        }
+
+        @Test
+        void leaseHolderMovesItemsThroughTheirStates() {
+            insertJob(jobId, "lease-a", 1, 0);
+            insertItem(jobId, 1, CancellationJobItem.QUEUED);
+            insertItem(jobId, 2, CancellationJobItem.QUEUED);
+
+            assertThat(jobRepository.markItems(jobId, "lease-a", List.of(1, 2), CancellationJobItem.CLAIMED, null)).isEqualTo(2);
+            assertThat(jobRepository.markDispatched(jobId, "lease-a", 1)).isTrue();
+            // Item không còn claimed thì không gửi lại lần hai
+            assertThat(jobRepository.markDispatched(jobId, "lease-a", 1)).isFalse();
+            assertThat(jobRepository.markItem(jobId, "lease-a", 1, CancellationJobItem.REFUNDED, "ok")).isTrue();
+            assertThat(jobRepository.touch(Map.of(jobId, "lease-a"))).isEmpty();
+            assertThat(jobRepository.finish(jobId, "lease-a")).isTrue();
+
+            assertThat(itemStatus(jobId, 1)).isEqualTo(CancellationJobItem.REFUNDED);
+            assertThat(itemStatus(jobId, 2)).isEqualTo(CancellationJobItem.CLAIMED);
+            assertThat(jobRepository.findJob(jobId).getStatus()).isEqualTo(CancellationJob.COMPLETED);
+        }
+
+        @Test
+        void nodeThatLostTheLeaseCannotWrite() {
+            insertJob(jobId, "lease-a", 1, 0);
+            insertItem(jobId, 1, CancellationJobItem.CLAIMED);
+            insertItem(jobId, 2, CancellationJobItem.DISPATCHED);
+            insertItem(jobId, 3, CancellationJobItem.QUEUED);
+            // Node khác nhận job
+            jdbcTemplate.update("UPDATE cancellation_job SET lease_id = 'lease-b', attempts = 2 WHERE job_id = ?", jobId);
+
+            assertThat(jobRepository.touch(Map.of(jobId, "lease-a"))).containsExactly(jobId);
+            assertThat(jobRepository.markDispatched(jobId, "lease-a", 1)).isFalse();
+            assertThat(jobRepository.markItem(jobId, "lease-a", 2, CancellationJobItem.REFUNDED, "ok")).isFalse();
+            assertThat(jobRepository.markItems(jobId, "lease-a", List.of(3), CancellationJobItem.CLAIMED, null)).isZero();
+            assertThat(jobRepository.markDispatchedForReview(jobId, "lease-a", "review")).isZero();
+            assertThat(jobRepository.finish(jobId, "lease-a")).isFalse();
+
+            assertThat(itemStatus(jobId, 1)).isEqualTo(CancellationJobItem.CLAIMED);
+            assertThat(itemStatus(jobId, 2)).isEqualTo(CancellationJobItem.DISPATCHED);
+            assertThat(itemStatus(jobId, 3)).isEqualTo(CancellationJobItem.QUEUED);
+            assertThat(jobRepository.findJob(jobId).getStatus()).isEqualTo(CancellationJob.RUNNING);
+            // Node mới vẫn ghi được
+            assertThat(jobRepository.markDispatchedForReview(jobId, "lease-b", "review")).isEqualTo(1);
+        }
+
+        void insertJob(long job_id, String lease_id, int attempts, int lockedSecondsAgo) {
+            jdbcTemplate.update("INSERT INTO cancellation_job (job_id, status, requested_ip, total, created_at, locked_at, lease_id, attempts) " +
+                            "VALUES (?, ?, '127.0.0.1', 0, now(), now() - CAST(? AS INT) * INTERVAL '1' SECOND, ?, ?)",
+                    job_id, CancellationJob.RUNNING, lockedSecondsAgo, lease_id, attempts);
+        }
+
+        void insertItem(long job_id, int order_id, String status) {
+            jdbcTemplate.update("INSERT INTO cancellation_job_item (job_id, order_id, status, updated_at) VALUES (?, ?, ?, now())",
+                    job_id, order_id, status);
+        }
+
+        String itemStatus(long job_id, int order_id) {
+            return jdbcTemplate.queryForObject("SELECT status FROM cancellation_job_item WHERE job_id = ? AND order_id = ?",
+                    String.class, job_id, order_id);
+        }
+    }
+
+    @Nested
+    class OnH2 extends Contract {
+        private final DataSource dataSource = TestDatabase.h2();
+
+        @Override
+        DataSource dataSource() {
+            return dataSource;
+        }
+    }
+
+    @Nested
+    @Testcontainers(disabledWithoutDocker = true)
+    class OnPostgres extends Contract {
+        @Override
+        DataSource dataSource() {
+            return TestDatabase.postgres();
+        }
+
+        @Test
+        void staleJobIsTakenOverWithANewLeaseUntilMaxAttempts() {
+            insertJob(jobId, "lease-a", 1, 120);
+
+            List<CancellationJob> claimed = jobRepository.claimStale(60_000, 2, 1000, "lease-b");
+
+            CancellationJob job = claimed.stream().filter(j -> j.getJob_id() == jobId).findFirst().orElseThrow();
+            assertThat(job.getLease_id()).isEqualTo("lease-b");
+            assertThat(job.getAttempts()).isEqualTo(2);
+            // Heartbeat mới: không bị nhận lại ngay
+            assertThat(jobRepository.claimStale(60_000, 5, 1000, "lease-c")).noneMatch(j -> j.getJob_id() == jobId);
+            jdbcTemplate.update("UPDATE cancellation_job SET locked_at = now() - INTERVAL '2 minutes' WHERE job_id = ?", jobId);
+            // Đã chạy đủ max-attempts lần
+            assertThat(jobRepository.claimStale(60_000, 2, 1000, "lease-c")).noneMatch(j -> j.getJob_id() == jobId);
+        }
+
+        @Test
+        void exhaustedJobFailsAndItsOpenItemsAreClosed() {
+            insertJob(jobId, "lease-a", 3, 120);
+            insertItem(jobId, 1, CancellationJobItem.QUEUED);
+            insertItem(jobId, 2, CancellationJobItem.CLAIMED);
+            insertItem(jobId, 3, CancellationJobItem.DISPATCHED);
+            insertItem(jobId, 4, CancellationJobItem.REFUNDED);
+
+            assertThat(jobRepository.failExhausted(60_000, 3, "failed")).isGreaterThanOrEqualTo(1);
+
+            assertThat(jobRepository.findJob(jobId).getStatus()).isEqualTo(CancellationJob.FAILED);
+            assertThat(itemStatus(jobId, 1)).isEqualTo(CancellationJobItem.SKIPPED);
+            assertThat(itemStatus(jobId, 2)).isEqualTo(CancellationJobItem.SKIPPED);
+            assertThat(itemStatus(jobId, 3)).isEqualTo(CancellationJobItem.NEEDS_REVIEW);
+            assertThat(itemStatus(jobId, 4)).isEqualTo(CancellationJobItem.REFUNDED);
+            assertThat(jobRepository.claimStale(60_000, 5, 1000, "lease-b")).noneMatch(j -> j.getJob_id() == jobId);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package Project_ITSS.PlaceOrder.Repository;
+
+import Project_ITSS.PlaceOrder.Entity.ProductAvailability;
+import Project_ITSS.support.CountingDataSource;
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductRepository_PlaceOrderTest {
+
+    private CountingDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ProductRepository_PlaceOrder productRepository;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new CountingDataSource(TestDatabase.h2());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        productRepository = new ProductRepository_PlaceOrder();
+        ReflectionTestUtils.setField(productRepository, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @Test
+    void loadsAvailabilityOfManyProductsInOneStatement() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 100, 4, true);
+        int cd = TestDatabase.insertProduct(jdbcTemplate, "CD", 250, 0, false);
+        dataSource.reset();
+
+        Map<Integer, ProductAvailability> availability = productRepository.getProductAvailability(List.of(book, cd, 999_999));
+
+        assertThat(dataSource.getStatements()).isEqualTo(1);
+        assertThat(availability).containsOnlyKeys(book, cd);
+        assertThat(availability.get(book).getQuantity()).isEqualTo(4);
+        assertThat(availability.get(book).getPrice()).isEqualTo(100);
+        assertThat(availability.get(book).isRush_order_supported()).isTrue();
+        assertThat(availability.get(cd).getQuantity()).isZero();
+    }
+
+    @Test
+    void emptyCartDoesNotQuery() {
+        dataSource.reset();
+
+        assertThat(productRepository.getProductAvailability(List.of())).isEmpty();
+        assertThat(dataSource.getStatements()).isZero();
+    }
+}
@@ -0,0 +1,120 @@
+package Project_ITSS.PlaceOrder.Service;
+
+import Project_ITSS.PlaceOrder.Entity.CartSession;
+import Project_ITSS.PlaceOrder.Repository.CartRepository_PlaceOrder;
+import Project_ITSS.PlaceOrder.Repository.ProductRepository_PlaceOrder;
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hai node dùng chung database: ghi cart là compare-and-set trên version nên thay đổi của node ghi sau được làm lại
+ * trên bản mới thay vì mất, và cart đã xoá không bị flush muộn tạo lại.
+ */
+class CartService_PlaceOrderTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private CartRepository_PlaceOrder cartRepository;
+    private int book;
+    private int cd;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = TestDatabase.h2();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        cartRepository = new CartRepository_PlaceOrder();
+        ReflectionTestUtils.setField(cartRepository, "jdbcTemplate", jdbcTemplate);
+        book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 10, false);
+        cd = TestDatabase.insertProduct(jdbcTemplate, "CD", 2000, 10, false);
+    }
+
+    @Test
+    void concurrentEditsOnTwoNodesAreBothKept() {
+        CartService_PlaceOrder nodeA = newNode();
+        CartService_PlaceOrder nodeB = newNode();
+        String cart_id = nodeA.createCart().getCart_id();
+        flush(nodeA);
+        assertThat(nodeB.getCart(cart_id)).isNotNull();
+
+        // Cả hai node cùng sửa từ version 0
+        nodeA.addItem(cart_id, book, 1);
+        nodeB.addItem(cart_id, cd, 2);
+        flush(nodeA);
+        flush(nodeB);
+        flush(nodeB);
+
+        CartSession stored = cartRepository.findById(cart_id);
+        assertThat(stored.getQuantity(book)).isEqualTo(1);
+        assertThat(stored.getQuantity(cd)).isEqualTo(2);
+        assertThat(stored.getTotal_before_VAT()).isEqualTo(5000);
+        assertThat(stored.getVersion()).isEqualTo(2);
+        assertThat(nodeB.getCart(cart_id).getQuantity(book)).isEqualTo(1);
+    }
+
+    @Test
+    void deletedCartIsNotRecreatedByAnotherNode() {
+        CartService_PlaceOrder nodeA = newNode();
+        CartService_PlaceOrder nodeB = newNode();
+        String cart_id = nodeA.createCart().getCart_id();
+        nodeA.addItem(cart_id, book, 1);
+        flush(nodeA);
+        nodeB.addItem(cart_id, cd, 1);
+
+        assertThat(nodeA.deleteCart(cart_id)).isTrue();
+        flush(nodeB);
+
+        assertThat(cartRepository.findById(cart_id)).isNull();
+        assertThat(nodeB.getCart(cart_id)).isNull();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart_item WHERE cart_id = ?", Integer.class, cart_id)).isZero();
+    }
+
+    @Test
+    void flushInFlightDuringDeleteDoesNotRecreateTheCart() {
+        CartService_PlaceOrder node = newNode();
+        String stored_id = node.createCart().getCart_id();
+        node.addItem(stored_id, book, 1);
+        flush(node);
+        String unsaved_id = node.createCart().getCart_id();
+        node.addItem(unsaved_id, book, 1);
+        // Bản chụp flush đã lấy trước khi xoá nhưng ghi sau khi xoá
+        CartSession storedSnapshot = node.addItem(stored_id, cd, 1);
+        CartSession unsavedSnapshot = node.getCart(unsaved_id);
+
+        node.deleteCart(stored_id);
+        node.deleteCart(unsaved_id);
+        List<String> conflicts = transactionTemplate.execute(status -> cartRepository.saveAll(List.of(storedSnapshot, unsavedSnapshot)));
+
+        assertThat(conflicts).containsExactlyInAnyOrder(stored_id, unsaved_id);
+        assertThat(cartRepository.findById(stored_id)).isNull();
+        assertThat(cartRepository.findById(unsaved_id)).isNull();
+        assertThat(node.getCart(stored_id)).isNull();
+    }
+
+    private CartService_PlaceOrder newNode() {
+        ProductRepository_PlaceOrder productRepository = new ProductRepository_PlaceOrder();
+        ReflectionTestUtils.setField(productRepository, "jdbcTemplate", jdbcTemplate);
+        CartService_PlaceOrder service = new CartService_PlaceOrder();
+        ReflectionTestUtils.setField(service, "cartRepository", cartRepository);
+        ReflectionTestUtils.setField(service, "productRepository", productRepository);
+        ReflectionTestUtils.setField(service, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(service, "maxProducts", 100);
+        ReflectionTestUtils.setField(service, "maxQuantity", 1000);
+        return service;
+    }
+
+    // Write-behind chạy trên thread riêng, test gọi flush trực tiếp
+    private static void flush(CartService_PlaceOrder node) {
+        ReflectionTestUtils.invokeMethod(node, "flush");
+    }
+}
@@ -0,0 +1,88 @@
+package Project_ITSS.PlaceOrder.Service;
+
+import Project_ITSS.PlaceOrder.Entity.Cart;
+import Project_ITSS.PlaceOrder.Entity.CartItem;
+import Project_ITSS.PlaceOrder.Entity.Product;
+import Project_ITSS.PlaceOrder.Repository.ProductRepository_PlaceOrder;
+import Project_ITSS.support.CountingDataSource;
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * So sánh số round trip và độ trễ khi kiểm tra kho cho cart 1/10/100 dòng:
+ * trước đây mỗi dòng một truy vấn (checkProductValidity), nay cả cart một truy vấn (checkCartValidity).
+ */
+class CartValidationRoundTripTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartValidationRoundTripTest.class);
+    private static final int ITERATIONS = 50;
+
+    private CountingDataSource dataSource;
+    private ProductService_PlaceOrder productService;
+    private final List<Integer> product_ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new CountingDataSource(TestDatabase.h2());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        for (int i = 0; i < 100; i++) {
+            product_ids.add(TestDatabase.insertProduct(jdbcTemplate, "Product " + i, 1000, 50, false));
+        }
+        ProductRepository_PlaceOrder productRepository = new ProductRepository_PlaceOrder();
+        ReflectionTestUtils.setField(productRepository, "jdbcTemplate", jdbcTemplate);
+        productService = new ProductService_PlaceOrder();
+        ReflectionTestUtils.setField(productService, "productRepository", productRepository);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100})
+    void batchedCheckCostsOneRoundTripWhateverTheCartSize(int lines) {
+        Cart cart = cart(lines);
+
+        dataSource.reset();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (CartItem item : cart.getProducts()) {
+                productService.checkProductValidity(item.getQuantity(), item.getProduct().getProduct_id());
+            }
+        }
+        long perLineNanos = (System.nanoTime() - start) / ITERATIONS;
+        int perLineRoundTrips = dataSource.getStatements() / ITERATIONS;
+
+        dataSource.reset();
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertThat(productService.checkCartValidity(cart).isValid()).isTrue();
+        }
+        long batchedNanos = (System.nanoTime() - start) / ITERATIONS;
+        int batchedRoundTrips = dataSource.getStatements() / ITERATIONS;
+
+        logger.info("{} lines: per-line {} round trips {} us, batched {} round trips {} us",
+                lines, perLineRoundTrips, perLineNanos / 1000, batchedRoundTrips, batchedNanos / 1000);
+        assertThat(perLineRoundTrips).isEqualTo(lines);
+        assertThat(batchedRoundTrips).isEqualTo(1);
+    }
+
+    private Cart cart(int lines) {
+        List<CartItem> items = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            Product product = new Product();
+            product.setProduct_id(product_ids.get(i));
+            items.add(new CartItem(product, 1));
+        }
+        Cart cart = new Cart();
+        cart.addProducts(items);
+        return cart;
+    }
+}
@@ -0,0 +1,90 @@
+package Project_ITSS.PlaceOrder.Service;
+
+import Project_ITSS.PlaceOrder.Entity.Order;
+import Project_ITSS.PlaceOrder.Entity.Orderline;
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Số order/giây mà saveOrder lưu được với order 1/10/100 dòng, THREADS luồng đặt hàng cùng lúc trên cùng các product.
+ * Chạy bằng: mvn test -Pbenchmark -Dtest=OrderPlacementLoadTest
+ */
+@Tag("benchmark")
+class OrderPlacementLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderPlacementLoadTest.class);
+    private static final int THREADS = 8;
+    private static final int ORDERS = 400;
+    private static final int WARMUP_ORDERS = 50;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100})
+    void ordersPerSecond(int lines) throws Exception {
+        DataSource dataSource = TestDatabase.h2();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        OrderService_PlaceOrder orderService = OrderService_PlaceOrderTest.newOrderService(jdbcTemplate, transactionTemplate);
+        List<Integer> product_ids = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            product_ids.add(TestDatabase.insertProduct(jdbcTemplate, "Product " + i, 1000, 1_000_000, false));
+        }
+        AtomicInteger nextOrderId = new AtomicInteger(1);
+        for (int order_id = 1; order_id <= WARMUP_ORDERS + ORDERS; order_id++) {
+            OrderService_PlaceOrderTest.issue(jdbcTemplate, order_id);
+        }
+
+        run(WARMUP_ORDERS, orderService, transactionTemplate, product_ids, nextOrderId);
+        long start = System.nanoTime();
+        run(ORDERS, orderService, transactionTemplate, product_ids, nextOrderId);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        logger.info("{} lines: {} orders in {} ms, {} orders/s ({} threads)",
+                lines, ORDERS, Math.round(seconds * 1000), Math.round(ORDERS / seconds), THREADS);
+        int sold = ORDERS + WARMUP_ORDERS;
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM \"Order\"", Integer.class)).isEqualTo(sold);
+        assertThat(jdbcTemplate.queryForObject("SELECT MIN(quantity) FROM product", Integer.class)).isEqualTo(1_000_000 - sold);
+    }
+
+    private void run(int orders, OrderService_PlaceOrder orderService, TransactionTemplate transactionTemplate,
+                     List<Integer> product_ids, AtomicInteger nextOrderId) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < orders; i++) {
+                futures.add(executor.submit(() -> {
+                    Orderline[] lines = new Orderline[product_ids.size()];
+                    for (int j = 0; j < lines.length; j++) {
+                        lines[j] = OrderService_PlaceOrderTest.line(product_ids.get(j), 1);
+                    }
+                    Order order = OrderService_PlaceOrderTest.order(nextOrderId.getAndIncrement(), lines);
+                    transactionTemplate.executeWithoutResult(status ->
+                            orderService.saveOrder(order, OrderService_PlaceOrderTest.deliveryInfo()));
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+}
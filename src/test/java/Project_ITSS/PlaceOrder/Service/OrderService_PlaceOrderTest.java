@@ -0,0 +1,242 @@
+package Project_ITSS.PlaceOrder.Service;
+
+import Project_ITSS.PlaceOrder.Delivery.ProvinceDeliveryRateTable;
+import Project_ITSS.PlaceOrder.Entity.DeliveryInformation;
+import Project_ITSS.PlaceOrder.Entity.Order;
+import Project_ITSS.PlaceOrder.Entity.Orderline;
+import Project_ITSS.PlaceOrder.Exception.PlaceOrderException;
+import Project_ITSS.PlaceOrder.Repository.OrderRepository_PlaceOrder;
+import Project_ITSS.PlaceOrder.Repository.OrderlineRepository_PlaceOrder;
+import Project_ITSS.PlaceOrder.Repository.PaymentRepository_PlaceOrder;
+import Project_ITSS.PlaceOrder.Repository.ProductRepository_PlaceOrder;
+import Project_ITSS.PlaceOrder.Repository.StockReservationRepository_PlaceOrder;
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * saveOrder ghi delivery info, order, orderline và trừ kho trong một transaction:
+ * thiếu hàng ở bất kỳ dòng nào thì không còn dấu vết nào của order trong database.
+ * saveOrder được gọi trong TransactionTemplate, tương đương @Transactional khi chạy trong Spring.
+ */
+class OrderService_PlaceOrderTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private OrderService_PlaceOrder orderService;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = TestDatabase.h2();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        orderService = newOrderService(jdbcTemplate, transactionTemplate);
+        issue(jdbcTemplate, 1);
+    }
+
+    @Test
+    void savesOrderOrderlinesAndDecrementsStock() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+        int cd = TestDatabase.insertProduct(jdbcTemplate, "CD", 2000, 3, false);
+
+        transactionTemplate.executeWithoutResult(status ->
+                orderService.saveOrder(order(1, line(book, 2), line(cd, 3)), deliveryInfo()));
+
+        assertThat(count("\"Order\"")).isEqualTo(1);
+        assertThat(count("orderlines")).isEqualTo(2);
+        assertThat(count("deliveryinformation")).isEqualTo(1);
+        assertThat(quantity(book)).isEqualTo(3);
+        assertThat(quantity(cd)).isZero();
+    }
+
+    @Test
+    void stockShortageRollsBackDeliveryOrderAndOrderlines() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+        int cd = TestDatabase.insertProduct(jdbcTemplate, "CD", 2000, 1, false);
+
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status ->
+                orderService.saveOrder(order(1, line(book, 2), line(cd, 2)), deliveryInfo())))
+                .isInstanceOf(PlaceOrderException.class)
+                .hasMessageContaining(String.valueOf(cd));
+
+        assertThat(count("\"Order\"")).isZero();
+        assertThat(count("orderlines")).isZero();
+        assertThat(count("deliveryinformation")).isZero();
+        // Dòng đủ hàng đã bị trừ trước khi phát hiện thiếu cũng được hoàn lại
+        assertThat(quantity(book)).isEqualTo(5);
+        assertThat(quantity(cd)).isEqualTo(1);
+    }
+
+    @Test
+    void failedOrderlineInsertRollsBackTheOrderAndKeepsStock() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+
+        // Product không tồn tại làm orderline vi phạm khoá ngoại
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status ->
+                orderService.saveOrder(order(1, line(book, 1), line(book + 1000, 1)), deliveryInfo())))
+                .isInstanceOf(RuntimeException.class);
+
+        assertThat(count("\"Order\"")).isZero();
+        assertThat(count("deliveryinformation")).isZero();
+        assertThat(quantity(book)).isEqualTo(5);
+    }
+
+    @Test
+    void paymentMethodIsTakenFromTheServerNotFromTheClient() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+        Order order = order(1, line(book, 1));
+        order.setPayment_method("CREDIT_CARD");
+        pay(1, 1000);
+
+        transactionTemplate.executeWithoutResult(status -> orderService.saveOrder(order, deliveryInfo()));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT payment_method FROM \"Order\" WHERE order_id = 1", String.class))
+                .isEqualTo("VNPAY");
+    }
+
+    @Test
+    void orderIdNotIssuedByPlaceOrderIsRejected() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status ->
+                orderService.saveOrder(order(999, line(book, 1)), deliveryInfo())))
+                .isInstanceOf(PlaceOrderException.class)
+                .hasMessageContaining("999");
+
+        assertThat(count("\"Order\"")).isZero();
+        assertThat(quantity(book)).isEqualTo(5);
+    }
+
+    @Test
+    void orderPaidInFullStaysPending() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+        Order order = order(1, line(book, 2));
+        int delivery_fee = deliveryFee(order);
+        pay(1, order.getTotal_after_VAT() + delivery_fee);
+
+        orderService.reviewPayment(order, deliveryInfo(), order.getTotal_after_VAT());
+
+        assertThat(order.getStatus()).isEqualTo("pending");
+    }
+
+    @Test
+    void paidAmountDifferentFromThePriceFlagsTheOrder() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+        Order order = order(1, line(book, 2));
+        pay(1, order.getTotal_after_VAT() + deliveryFee(order) - 1000);
+
+        orderService.reviewPayment(order, deliveryInfo(), order.getTotal_after_VAT());
+
+        assertThat(order.getStatus()).isEqualTo(OrderService_PlaceOrder.STATUS_NEEDS_REVIEW);
+    }
+
+    @Test
+    void repricedTotalWithoutRecordedPaymentFlagsTheOrder() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+        Order order = order(1, line(book, 2));
+        // Giao dịch chưa thành công không được tính là đã trả
+        jdbcTemplate.update("INSERT INTO vnpay_transactions (order_id, amount, response_code) VALUES ('1', 999999, '24')");
+
+        orderService.reviewPayment(order, deliveryInfo(), order.getTotal_after_VAT());
+        assertThat(order.getStatus()).isEqualTo("pending");
+
+        orderService.reviewPayment(order, deliveryInfo(), order.getTotal_after_VAT() - 100);
+        assertThat(order.getStatus()).isEqualTo(OrderService_PlaceOrder.STATUS_NEEDS_REVIEW);
+    }
+
+    @Test
+    void orderThatDoesNotMatchItsPriceStampIsFlaggedEvenWhenPaidInFull() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+        Order order = order(1, line(book, 2));
+        pay(1, order.getTotal_after_VAT() + deliveryFee(order));
+
+        orderService.reviewPayment(order, deliveryInfo(), null);
+
+        assertThat(order.getStatus()).isEqualTo(OrderService_PlaceOrder.STATUS_NEEDS_REVIEW);
+    }
+
+    static OrderService_PlaceOrder newOrderService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        OrderRepository_PlaceOrder orderRepository = new OrderRepository_PlaceOrder();
+        ReflectionTestUtils.setField(orderRepository, "jdbcTemplate", jdbcTemplate);
+        OrderlineRepository_PlaceOrder orderlineRepository = new OrderlineRepository_PlaceOrder();
+        ReflectionTestUtils.setField(orderlineRepository, "jdbcTemplate", jdbcTemplate);
+        ProductRepository_PlaceOrder productRepository = new ProductRepository_PlaceOrder();
+        ReflectionTestUtils.setField(productRepository, "jdbcTemplate", jdbcTemplate);
+        StockReservationRepository_PlaceOrder reservationRepository = new StockReservationRepository_PlaceOrder();
+        ReflectionTestUtils.setField(reservationRepository, "jdbcTemplate", jdbcTemplate);
+        StockReservationService_PlaceOrder reservationService = new StockReservationService_PlaceOrder();
+        ReflectionTestUtils.setField(reservationService, "reservationRepository", reservationRepository);
+        ReflectionTestUtils.setField(reservationService, "productRepository", productRepository);
+        ReflectionTestUtils.setField(reservationService, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(reservationService, "holdMinutes", 20);
+        PaymentRepository_PlaceOrder paymentRepository = new PaymentRepository_PlaceOrder();
+        ReflectionTestUtils.setField(paymentRepository, "jdbcTemplate", jdbcTemplate);
+        OrderService_PlaceOrder orderService = new OrderService_PlaceOrder();
+        ReflectionTestUtils.setField(orderService, "orderRepository", orderRepository);
+        ReflectionTestUtils.setField(orderService, "orderlineRepository", orderlineRepository);
+        ReflectionTestUtils.setField(orderService, "productRepository", productRepository);
+        ReflectionTestUtils.setField(orderService, "reservationService", reservationService);
+        ReflectionTestUtils.setField(orderService, "paymentRepository", paymentRepository);
+        ReflectionTestUtils.setField(orderService, "deliveryRateTable", new ProvinceDeliveryRateTable());
+        return orderService;
+    }
+
+    // Ghi lại order_id như /placeorder đã cấp (lượt giữ hàng đã hết hạn, không giữ gì)
+    static void issue(JdbcTemplate jdbcTemplate, int order_id) {
+        jdbcTemplate.update("INSERT INTO stock_reservation (status, order_id, release_token, created_at, expires_at) " +
+                "VALUES ('released', ?, 'token', now(), now())", order_id);
+    }
+
+    static Order order(int order_id, Orderline... lines) {
+        Order order = new Order();
+        order.setOrder_id(order_id);
+        order.setStatus("pending");
+        int total = 0;
+        for (Orderline line : lines) {
+            order.getOrderLineList().add(line);
+            total += line.getTotal_fee();
+        }
+        order.setTotal_before_VAT(total);
+        order.setTotal_after_VAT(Math.toIntExact(Order.totalAfterVAT(total)));
+        return order;
+    }
+
+    static Orderline line(int product_id, int quantity) {
+        Orderline orderline = new Orderline();
+        orderline.createOrderline(product_id, quantity, 1000);
+        return orderline;
+    }
+
+    static DeliveryInformation deliveryInfo() {
+        DeliveryInformation deliveryInformation = new DeliveryInformation();
+        deliveryInformation.createDeliveryInfo("Nguyen Van A", "0900000000", "a@example.com", "1 Dai Co Viet", "Hà Nội", "", 30000);
+        return deliveryInformation;
+    }
+
+    private int deliveryFee(Order order) {
+        int[] delivery_fees = orderService.CalculateDeliveryFee(deliveryInfo().getProvince(), order);
+        return delivery_fees[0] + delivery_fees[1];
+    }
+
+    private void pay(int order_id, long amount) {
+        jdbcTemplate.update("INSERT INTO vnpay_transactions (order_id, amount, response_code) VALUES (?, ?, '00')",
+                String.valueOf(order_id), amount);
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+
+    private int quantity(int product_id) {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM product WHERE product_id = ?", Integer.class, product_id);
+    }
+}
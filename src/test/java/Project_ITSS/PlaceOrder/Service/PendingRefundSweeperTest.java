@@ -0,0 +1,184 @@
+package Project_ITSS.PlaceOrder.Service;
+
+import Project_ITSS.PlaceOrder.Entity.Order;
+import Project_ITSS.PlaceOrder.Entity.OrderRefund;
+import Project_ITSS.PlaceOrder.Repository.RefundRepository_PlaceOrder;
+import Project_ITSS.PlaceOrder.Strategy.PaymentStrategy.RefundResult;
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Lượt hoàn tiền kẹt ở refund_pending quá pending-timeout được chuyển sang refund_unknown: không huỷ lại được
+ * (tránh hoàn tiền hai lần) cho tới khi có kết quả thật từ cổng thanh toán, kể cả kết quả về muộn.
+ */
+class PendingRefundSweeperTest {
+
+    // Database Postgres dùng chung cho cả lần chạy nên mỗi test dùng order_id riêng
+    private static final AtomicInteger orderIds = new AtomicInteger((int) (System.nanoTime() % 1_000_000));
+
+    abstract static class Contract {
+        JdbcTemplate jdbcTemplate;
+        RefundRepository_PlaceOrder refundRepository;
+        TransactionTemplate transactionTemplate;
+        PendingRefundSweeper sweeper;
+        OrderStatusService statusService;
+        OrderCancellationService cancellationService;
+        int first;
+        int second;
+
+        abstract DataSource dataSource();
+
+        @BeforeEach
+        void setUp() {
+            DataSource dataSource = dataSource();
+            jdbcTemplate = new JdbcTemplate(dataSource);
+            transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            refundRepository = new RefundRepository_PlaceOrder();
+            ReflectionTestUtils.setField(refundRepository, "jdbcTemplate", jdbcTemplate);
+            sweeper = new PendingRefundSweeper();
+            ReflectionTestUtils.setField(sweeper, "refundRepository", refundRepository);
+            ReflectionTestUtils.setField(sweeper, "pendingTimeoutMinutes", 30);
+            statusService = mock(OrderStatusService.class);
+            cancellationService = new OrderCancellationService(null, statusService, null,
+                    mock(INotificationService.class), null, refundRepository, transactionTemplate);
+            first = orderIds.incrementAndGet();
+            second = orderIds.incrementAndGet();
+        }
+
+        @Test
+        void stalePendingRefundIsMovedToUnknown() {
+            startRefund(first, 45);
+            startRefund(second, 5);
+
+            ReflectionTestUtils.invokeMethod(sweeper, "timeOutStale");
+
+            OrderRefund stale = refundRepository.findByOrderId(first);
+            assertThat(stale.getStatus()).isEqualTo(OrderRefund.UNKNOWN);
+            assertThat(stale.getMessage()).contains("30 minutes");
+            // Order không được trả về trạng thái huỷ được
+            assertThat(orderStatus(first)).isEqualTo(OrderRefund.PENDING);
+            // Lượt hoàn tiền chưa quá hạn không bị động tới
+            assertThat(refundRepository.findByOrderId(second).getStatus()).isEqualTo(OrderRefund.PENDING);
+        }
+
+        @Test
+        void timedOutRefundCannotBeStartedAgain() {
+            startRefund(first, 45);
+            ReflectionTestUtils.invokeMethod(sweeper, "timeOutStale");
+
+            assertThat(refundRepository.tryStart(first, "pending", "vnpay")).isFalse();
+            assertThat(refundRepository.tryStartAll(List.of(order(first)), "pending", List.of("vnpay"))).containsExactly(false);
+            assertThat(refundRepository.findByOrderId(first).getStatus()).isEqualTo(OrderRefund.UNKNOWN);
+        }
+
+        @Test
+        void failedRefundCanBeStartedAgain() {
+            startRefund(first, 0);
+            assertThat(refundRepository.tryStart(first, "pending", "vnpay")).isFalse();
+            assertThat(refundRepository.complete(first, OrderRefund.FAILED, 0, null, null, "declined")).isTrue();
+
+            assertThat(refundRepository.tryStartAll(List.of(order(first), order(second)), "pending", List.of("vnpay", "vnpay")))
+                    .containsExactly(true, true);
+            assertThat(refundRepository.findByOrderId(first).getStatus()).isEqualTo(OrderRefund.PENDING);
+        }
+
+        @Test
+        void refundCompletedBeforeTheSweepIsNotTimedOut() {
+            startRefund(first, 45);
+            OrderRefund stale = refundRepository.findStalePending(30, 100).stream()
+                    .filter(refund -> refund.getOrder_id() == first).findFirst().orElseThrow();
+            assertThat(refundRepository.complete(first, OrderRefund.REFUNDED, 1000, "vnpay", "T1", "ok")).isTrue();
+
+            assertThat(sweeper.timeOut(stale)).isFalse();
+
+            assertThat(refundRepository.findByOrderId(first).getStatus()).isEqualTo(OrderRefund.REFUNDED);
+        }
+
+        @Test
+        void lateSuccessIsRecordedAsRefunded() {
+            startRefund(first, 45);
+            ReflectionTestUtils.invokeMethod(sweeper, "timeOutStale");
+            RefundResult late = new RefundResult();
+            late.setSuccess(true);
+                        late.setTransactionId("T1");
+
+            assertThat(cancellationService.completeRefund(order(first), "pending", late, null)).isSameAs(late);
+
+            OrderRefund refund = refundRepository.findByOrderId(first);
+            assertThat(refund.getStatus()).isEqualTo(OrderRefund.REFUNDED);
+            assertThat(refund.getTransaction_id()).isEqualTo("T1");
+            verify(statusService).updateStatus(first, "cancelled");
+        }
+
+        @Test
+        void secondResultForTheSameRefundIsNotRecorded() {
+            startRefund(first, 0);
+            RefundResult success = new RefundResult();
+            success.setSuccess(true);
+            success.setTransactionId("T1");
+            cancellationService.completeRefund(order(first), "pending", success, null);
+            RefundResult failure = new RefundResult();
+            failure.setSuccess(false);
+
+            assertThat(cancellationService.completeRefund(order(first), "pending", failure, null)).isNull();
+
+            assertThat(refundRepository.findByOrderId(first).getStatus()).isEqualTo(OrderRefund.REFUNDED);
+            verify(statusService, never()).updateStatus(anyLong(), eq("pending"));
+        }
+
+        // Lượt hoàn tiền refund_pending, cập nhật lần cuối minutesAgo phút trước
+        void startRefund(int order_id, int minutesAgo) {
+            jdbcTemplate.update("INSERT INTO \"Order\" (order_id, status) VALUES (?, ?)", order_id, OrderRefund.PENDING);
+            assertThat(refundRepository.tryStart(order_id, "pending", "vnpay")).isTrue();
+            jdbcTemplate.update("UPDATE order_refund SET updated_at = now() - CAST(? AS INT) * INTERVAL '1' MINUTE WHERE order_id = ?",
+                    minutesAgo, order_id);
+        }
+
+        String orderStatus(int order_id) {
+            return jdbcTemplate.queryForObject("SELECT status FROM \"Order\" WHERE order_id = ?", String.class, order_id);
+        }
+
+        static Order order(int order_id) {
+            Order order = new Order();
+            order.setOrder_id(order_id);
+            return order;
+        }
+    }
+
+    @Nested
+    class OnH2 extends Contract {
+        private final DataSource dataSource = TestDatabase.h2();
+
+        @Override
+        DataSource dataSource() {
+            return dataSource;
+        }
+    }
+
+    @Nested
+    @Testcontainers(disabledWithoutDocker = true)
+    class OnPostgres extends Contract {
+        @Override
+        DataSource dataSource() {
+            return TestDatabase.postgres();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package Project_ITSS.PlaceOrder.Service;
+
+import Project_ITSS.PlaceOrder.Entity.Order;
+import Project_ITSS.PlaceOrder.Entity.Orderline;
+import Project_ITSS.PlaceOrder.Exception.PlaceOrderException;
+import Project_ITSS.PlaceOrder.Pricing.PriceTable;
+import Project_ITSS.PlaceOrder.Service.PricingService_PlaceOrder.StampStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PricingService_PlaceOrderTest {
+
+    private PriceTable priceTable;
+    private PricingService_PlaceOrder pricingService;
+
+    @BeforeEach
+    void setUp() {
+        priceTable = mock(PriceTable.class);
+        when(priceTable.getVersion()).thenReturn(1L);
+        when(priceTable.getPrices(any())).thenAnswer(invocation -> new PriceTable.Snapshot(priceTable.getVersion(), Map.of(1, 1000L, 2, 2500L)));
+        pricingService = newPricingService("shared-secret");
+    }
+
+    @Test
+    void stampIssuedByAnotherNodeWithTheSameSecretIsValid() {
+        Order order = pricedOrder();
+
+        assertThat(newPricingService("shared-secret").verifyStamp(order)).isEqualTo(StampStatus.VALID);
+        assertThat(newPricingService("other-secret").verifyStamp(order)).isEqualTo(StampStatus.INVALID);
+    }
+
+    @Test
+    void stampCoversOrderIdReservationAndPaymentMethod() {
+        Order order = pricedOrder();
+        order.setOrder_id(43);
+        assertThat(pricingService.verifyStamp(order)).isEqualTo(StampStatus.INVALID);
+
+        order = pricedOrder();
+        order.setReservation_id(8L);
+        assertThat(pricingService.verifyStamp(order)).isEqualTo(StampStatus.INVALID);
+
+        order = pricedOrder();
+        order.setPayment_method("CREDIT_CARD");
+        assertThat(pricingService.verifyStamp(order)).isEqualTo(StampStatus.INVALID);
+
+        order = pricedOrder();
+        order.setTotal_after_VAT(1);
+        assertThat(pricingService.verifyStamp(order)).isEqualTo(StampStatus.INVALID);
+    }
+
+    @Test
+    void authenticStampBecomesExpiredWhenThePriceTableChanges() {
+        Order order = pricedOrder();
+
+        when(priceTable.getVersion()).thenReturn(2L);
+
+        assertThat(pricingService.verifyStamp(order)).isEqualTo(StampStatus.EXPIRED);
+        assertThat(pricingService.ensurePriced(order)).isTrue();
+        assertThat(pricingService.verifyStamp(order)).isEqualTo(StampStatus.VALID);
+    }
+
+    @Test
+    void ensurePricedRejectsATamperedOrderInsteadOfRepricingIt() {
+        Order order = pricedOrder();
+        order.getOrderLineList().get(0).setQuantity(100);
+
+        assertThatThrownBy(() -> pricingService.ensurePriced(order)).isInstanceOf(PlaceOrderException.class);
+    }
+
+    @Test
+    void missingSecretFailsStartupOutsideTheTestAndH2Profiles() {
+        MockEnvironment production = new MockEnvironment();
+        production.setActiveProfiles("prod");
+        assertThatThrownBy(() -> newPricingService("", production)).isInstanceOf(IllegalStateException.class);
+
+        MockEnvironment h2 = new MockEnvironment();
+        h2.setActiveProfiles("h2");
+        PricingService_PlaceOrder service = newPricingService("", h2);
+        // Khoá ngẫu nhiên của riêng process: stamp của node khác không còn hợp lệ
+        assertThat(service.verifyStamp(pricedOrder())).isEqualTo(StampStatus.INVALID);
+    }
+
+    private PricingService_PlaceOrder newPricingService(String secret) {
+        return newPricingService(secret, new MockEnvironment());
+    }
+
+    private PricingService_PlaceOrder newPricingService(String secret, MockEnvironment environment) {
+        PricingService_PlaceOrder service = new PricingService_PlaceOrder();
+        ReflectionTestUtils.setField(service, "priceTable", priceTable);
+        ReflectionTestUtils.setField(service, "environment", environment);
+        ReflectionTestUtils.setField(service, "stampTtlMinutes", 30L);
+        ReflectionTestUtils.setField(service, "stampSecret", secret);
+        service.init();
+        return service;
+    }
+
+    private Order pricedOrder() {
+        Order order = new Order();
+        order.setOrder_id(42);
+        order.setReservation_id(7L);
+        order.setPayment_method("VNPAY");
+        Orderline book = new Orderline();
+        book.createOrderline(1, 2, 0);
+        Orderline cd = new Orderline();
+        cd.createOrderline(2, 1, 0);
+        order.getOrderLineList().add(book);
+        order.getOrderLineList().add(cd);
+        pricingService.priceOrder(order);
+        assertThat(order.getTotal_before_VAT()).isEqualTo(4500);
+        return order;
+    }
+}
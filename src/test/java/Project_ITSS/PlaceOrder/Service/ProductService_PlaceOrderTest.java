@@ -0,0 +1,112 @@
+package Project_ITSS.PlaceOrder.Service;
+
+import Project_ITSS.PlaceOrder.Delivery.RushEligibilityIndex;
+import Project_ITSS.PlaceOrder.Entity.Cart;
+import Project_ITSS.PlaceOrder.Entity.CartItem;
+import Project_ITSS.PlaceOrder.Entity.CartValidationResult;
+import Project_ITSS.PlaceOrder.Entity.Product;
+import Project_ITSS.PlaceOrder.Entity.ProductAvailability;
+import Project_ITSS.PlaceOrder.Exception.PlaceOrderException;
+import Project_ITSS.PlaceOrder.Repository.ProductRepository_PlaceOrder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.assertj.core.groups.Tuple;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductService_PlaceOrderTest {
+
+    @Mock
+    private ProductRepository_PlaceOrder productRepository;
+    @Mock
+    private RushEligibilityIndex rushIndex;
+    @InjectMocks
+    private ProductService_PlaceOrder productService;
+
+    @Test
+    void checksWholeCartWithOneQueryAndReportsEveryShortItem() {
+        when(productRepository.getProductAvailability(any())).thenReturn(Map.of(
+                1, availability(1, 5),
+                2, availability(2, 1),
+                3, availability(3, 10)));
+
+        CartValidationResult result = productService.checkCartValidity(cart(item(1, 6), item(2, 2), item(3, 10), item(4, 1)));
+
+        assertThat(result.isValid()).isFalse();
+        assertThat(result.getInadequateProducts())
+                .extracting(CartValidationResult.ShortItem::getProduct_id, CartValidationResult.ShortItem::getRequested, CartValidationResult.ShortItem::getAvailable)
+                .containsExactly(
+                        Tuple.tuple(1, 6, 5),
+                        Tuple.tuple(2, 2, 1),
+                        // Product không tồn tại được báo là còn 0
+                        Tuple.tuple(4, 1, 0));
+        verify(productRepository, times(1)).getProductAvailability(any());
+        verify(productRepository, never()).getProductQuantity(anyInt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void mergesDuplicateLinesBeforeComparing() {
+        when(productRepository.getProductAvailability(any())).thenReturn(Map.of(7, availability(7, 5)));
+
+        CartValidationResult result = productService.checkCartValidity(cart(item(7, 3), item(7, 3)));
+
+        ArgumentCaptor<Collection<Integer>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(productRepository).getProductAvailability(ids.capture());
+        assertThat(ids.getValue()).containsExactly(7);
+        assertThat(result.getInadequateProducts()).singleElement()
+                .satisfies(item -> {
+                    assertThat(item.getRequested()).isEqualTo(6);
+                    assertThat(item.getAvailable()).isEqualTo(5);
+                });
+    }
+
+    @Test
+    void acceptsCartWhenEveryProductHasStock() {
+        when(productRepository.getProductAvailability(any())).thenReturn(Map.of(1, availability(1, 2), 2, availability(2, 9)));
+
+        assertThat(productService.checkCartValidity(cart(item(1, 2), item(2, 9))).isValid()).isTrue();
+    }
+
+    @Test
+    void rejectsNonPositiveQuantityWithoutQuerying() {
+        assertThatThrownBy(() -> productService.checkCartValidity(cart(item(1, 1), item(2, 0))))
+                .isInstanceOf(PlaceOrderException.class);
+        verify(productRepository, never()).getProductAvailability(any());
+    }
+
+    private static Cart cart(CartItem... items) {
+        Cart cart = new Cart();
+        cart.addProducts(List.of(items));
+        return cart;
+    }
+
+    private static CartItem item(int product_id, int quantity) {
+        Product product = new Product();
+        product.setProduct_id(product_id);
+        return new CartItem(product, quantity);
+    }
+
+    private static ProductAvailability availability(int product_id, int quantity) {
+        ProductAvailability availability = new ProductAvailability();
+        availability.setProduct_id(product_id);
+        availability.setQuantity(quantity);
+        return availability;
+    }
+}
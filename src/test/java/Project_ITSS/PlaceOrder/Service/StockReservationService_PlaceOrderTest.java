@@ -0,0 +1,206 @@
+package Project_ITSS.PlaceOrder.Service;
+
+import Project_ITSS.PlaceOrder.Entity.Cart;
+import Project_ITSS.PlaceOrder.Entity.CartItem;
+import Project_ITSS.PlaceOrder.Entity.CartValidationResult;
+import Project_ITSS.PlaceOrder.Entity.Order;
+import Project_ITSS.PlaceOrder.Entity.Product;
+import Project_ITSS.PlaceOrder.Entity.StockReservation;
+import Project_ITSS.PlaceOrder.Exception.PlaceOrderException;
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static Project_ITSS.PlaceOrder.Service.OrderService_PlaceOrderTest.deliveryInfo;
+import static Project_ITSS.PlaceOrder.Service.OrderService_PlaceOrderTest.line;
+import static Project_ITSS.PlaceOrder.Service.OrderService_PlaceOrderTest.order;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Lượt giữ hàng gắn với order_id: saveOrder chỉ dùng lượt giữ của chính order đó và chỉ trừ kho phần chênh lệch,
+ * release cần release_token. Kho không bao giờ bị bán quá số lượng, kể cả khi nhiều order chạy đồng thời.
+ */
+class StockReservationService_PlaceOrderTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private StockReservationService_PlaceOrder reservationService;
+    private OrderService_PlaceOrder orderService;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = TestDatabase.h2();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        orderService = OrderService_PlaceOrderTest.newOrderService(jdbcTemplate, transactionTemplate);
+        reservationService = (StockReservationService_PlaceOrder) ReflectionTestUtils.getField(orderService, "reservationService");
+    }
+
+    @Test
+    void matchingOrderCommitsTheReservationWithoutTouchingStockAgain() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+        StockReservation reservation = reserve(1, book, 2);
+        assertThat(quantity(book)).isEqualTo(3);
+
+        save(order(1, line(book, 2)), reservation);
+
+        assertThat(quantity(book)).isEqualTo(3);
+        assertThat(status(reservation)).isEqualTo("committed");
+    }
+
+    @Test
+    void orderlinesAboveTheReservationAreTakenFromStock() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+        int cd = TestDatabase.insertProduct(jdbcTemplate, "CD", 1000, 5, false);
+        StockReservation reservation = reserve(1, book, 1);
+
+        save(order(1, line(book, 3), line(cd, 2)), reservation);
+
+        assertThat(quantity(book)).isEqualTo(2);
+        assertThat(quantity(cd)).isEqualTo(3);
+    }
+
+    @Test
+    void reservedQuantityAboveTheOrderlinesIsReturnedToStock() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+        int cd = TestDatabase.insertProduct(jdbcTemplate, "CD", 1000, 5, false);
+        StockReservation reservation = reserve(1, book, 4, cd, 2);
+
+        save(order(1, line(book, 1)), reservation);
+
+        assertThat(quantity(book)).isEqualTo(4);
+        assertThat(quantity(cd)).isEqualTo(5);
+    }
+
+    @Test
+    void remainderShortageRollsBackTheCommit() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 3, false);
+        StockReservation reservation = reserve(1, book, 2);
+
+        assertThatThrownBy(() -> save(order(1, line(book, 5)), reservation)).isInstanceOf(PlaceOrderException.class);
+
+        assertThat(status(reservation)).isEqualTo("held");
+        assertThat(quantity(book)).isEqualTo(1);
+    }
+
+    @Test
+    void reservationOfAnotherOrderIsNotUsed() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+        int cd = TestDatabase.insertProduct(jdbcTemplate, "CD", 1000, 5, false);
+        StockReservation reservation = reserve(1, book, 2);
+        StockReservation other = reserve(2, cd, 1);
+
+        // Order 2 gửi reservation_id của order 1: phải trừ kho riêng, lượt giữ của order 1 vẫn còn
+        save(order(2, line(book, 2)), reservation);
+
+        assertThat(quantity(book)).isEqualTo(1);
+        assertThat(status(reservation)).isEqualTo("held");
+        assertThat(status(other)).isEqualTo("held");
+    }
+
+    @Test
+    void releaseNeedsTheReleaseToken() {
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, 5, false);
+        StockReservation reservation = reserve(1, book, 2);
+
+        assertThat(reservationService.release(reservation.getReservation_id(), "guessed")).isFalse();
+        assertThat(reservationService.release(reservation.getReservation_id(), null)).isFalse();
+        assertThat(quantity(book)).isEqualTo(3);
+
+        assertThat(reservationService.release(reservation.getReservation_id(), reservation.getRelease_token())).isTrue();
+        assertThat(reservationService.release(reservation.getReservation_id(), reservation.getRelease_token())).isFalse();
+        assertThat(quantity(book)).isEqualTo(5);
+    }
+
+    @Test
+    void concurrentReserveCommitAndReleaseNeverOversell() throws Exception {
+        int stock = 20;
+        int book = TestDatabase.insertProduct(jdbcTemplate, "Book", 1000, stock, false);
+        int threads = 32;
+        int attempts = 200;
+        AtomicInteger nextOrderId = new AtomicInteger(1);
+        AtomicInteger sold = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < attempts; i++) {
+            int attempt = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                int order_id = nextOrderId.getAndIncrement();
+                StockReservation reservation = reserve(order_id, book, 1);
+                if (reservation == null) {
+                    return null;
+                }
+                switch (attempt % 4) {
+                    case 0 -> reservationService.release(reservation.getReservation_id(), reservation.getRelease_token());
+                    // Order sửa số lượng lên 2: phần vượt quá lượt giữ phải lấy từ kho, thiếu thì cả order bị rollback
+                    case 1 -> {
+                        try {
+                            save(order(order_id, line(book, 2)), reservation);
+                            sold.addAndGet(2);
+                        } catch (PlaceOrderException e) {
+                            reservationService.release(reservation.getReservation_id(), reservation.getRelease_token());
+                        }
+                    }
+                    default -> {
+                        save(order(order_id, line(book, 1)), reservation);
+                        sold.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        int orderlines = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(quantity), 0) FROM orderlines", Integer.class);
+        assertThat(orderlines).isEqualTo(sold.get());
+        assertThat(quantity(book)).isGreaterThanOrEqualTo(0);
+        assertThat(quantity(book) + orderlines).isEqualTo(stock);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_reservation WHERE status = 'held'", Integer.class)).isZero();
+    }
+
+    private StockReservation reserve(int order_id, int... productQuantities) {
+        List<CartItem> items = new ArrayList<>();
+        for (int i = 0; i < productQuantities.length; i += 2) {
+            Product product = new Product();
+            product.setProduct_id(productQuantities[i]);
+            items.add(new CartItem(product, productQuantities[i + 1]));
+        }
+        Cart cart = new Cart();
+        cart.addProducts(items);
+        return reservationService.reserve(cart, new CartValidationResult(), order_id);
+    }
+
+    private void save(Order order, StockReservation reservation) {
+        order.setReservation_id(reservation.getReservation_id());
+        transactionTemplate.executeWithoutResult(status -> orderService.saveOrder(order, deliveryInfo()));
+    }
+
+    private String status(StockReservation reservation) {
+        return jdbcTemplate.queryForObject("SELECT status FROM stock_reservation WHERE reservation_id = ?", String.class, reservation.getReservation_id());
+    }
+
+    private int quantity(int product_id) {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM product WHERE product_id = ?", Integer.class, product_id);
+    }
+}
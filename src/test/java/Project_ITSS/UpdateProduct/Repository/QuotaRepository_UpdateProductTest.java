@@ -0,0 +1,131 @@
+package Project_ITSS.UpdateProduct.Repository;
+
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QuotaRepository_UpdateProductTest {
+
+    // Mỗi test dùng một ngày riêng để chạy được trên database dùng chung
+    private static final AtomicLong days = new AtomicLong();
+
+    abstract static class Contract {
+        private JdbcTemplate jdbcTemplate;
+        private TransactionTemplate transactionTemplate;
+        private QuotaRepository_UpdateProduct quotaRepository;
+        private LocalDate day;
+
+        abstract DataSource dataSource();
+
+        @BeforeEach
+        void setUp() {
+            DataSource dataSource = dataSource();
+            jdbcTemplate = new JdbcTemplate(dataSource);
+            transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            quotaRepository = new QuotaRepository_UpdateProduct();
+            ReflectionTestUtils.setField(quotaRepository, "jdbcTemplate", jdbcTemplate);
+            day = LocalDate.of(2000, 1, 1).plusDays(days.incrementAndGet() + System.nanoTime() % 100_000);
+        }
+
+        @Test
+        void reservesUpToTheLimitAndReupdatesAreFree() {
+            for (long product_id = 1; product_id <= 3; product_id++) {
+                assertThat(reserve(product_id, 3)).isTrue();
+            }
+            assertThat(reserve(4, 3)).isFalse();
+            // Product đã được tính trong ngày không tốn thêm quota
+            assertThat(reserve(2, 3)).isTrue();
+            assertThat(quotaRepository.getUpdatedProducts(day)).containsExactlyInAnyOrder(1L, 2L, 3L);
+            assertThat(used()).isEqualTo(3);
+        }
+
+        @Test
+        void rolledBackReservationFreesItsSlot() {
+            transactionTemplate.executeWithoutResult(status -> {
+                assertThat(quotaRepository.reserve(day, 1, 1)).isTrue();
+                status.setRollbackOnly();
+            });
+
+            assertThat(reserve(2, 1)).isTrue();
+            assertThat(reserve(3, 1)).isFalse();
+        }
+
+        @Test
+        void concurrentReservationsNeverExceedTheLimit() throws Exception {
+            int limit = 5;
+            int threads = 32;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            try {
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    long product_id = 100 + i;
+                    Callable<Boolean> task = () -> {
+                        start.await();
+                        return reserve(product_id, limit);
+                    };
+                    results.add(executor.submit(task));
+                }
+                start.countDown();
+                int granted = 0;
+                for (Future<Boolean> result : results) {
+                    if (result.get()) {
+                        granted++;
+                    }
+                }
+                assertThat(granted).isEqualTo(limit);
+                assertThat(quotaRepository.getUpdatedProducts(day)).hasSize(limit);
+                assertThat(used()).isEqualTo(limit);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        // Mỗi lần giữ chỗ là một transaction riêng, như một request cập nhật product
+        private boolean reserve(long product_id, int limit) {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> quotaRepository.reserve(day, product_id, limit)));
+        }
+
+        private int used() {
+            return jdbcTemplate.queryForObject("SELECT used FROM update_quota_day WHERE quota_date = ?", Integer.class, java.sql.Date.valueOf(day));
+        }
+    }
+
+    @Nested
+    class OnH2 extends Contract {
+        private final DataSource dataSource = TestDatabase.h2();
+
+        @Override
+        DataSource dataSource() {
+            return dataSource;
+        }
+    }
+
+    @Nested
+    @Testcontainers(disabledWithoutDocker = true)
+    class OnPostgres extends Contract {
+        @Override
+        DataSource dataSource() {
+            return TestDatabase.postgres();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package Project_ITSS.ViewProduct2.Service;
+
+import Project_ITSS.ViewProduct2.Entity.ProductSearchPage;
+import Project_ITSS.ViewProduct2.Repository.ProductSearchRepository_ViewProduct;
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Độ trễ của /product/search và /product/suggest trên 100 000 rồi 1 000 000 product (p50/p95/p99 từng loại truy vấn).
+ * tsvector chỉ có trên PostgreSQL nên benchmark dùng container riêng, không làm bẩn database dùng chung của các test khác.
+ * Title của product thứ i là FIRST[1 + i % 50] SECOND[1 + (i / 50) % 50] nên số kết quả của từng truy vấn biết trước:
+ * "harry" khớp 1/50 số product, "harry potter" khớp 1/2500, "book" (type) khớp tất cả, là trường hợp phải tính rank
+ * cho mọi dòng khớp dù max-results chỉ là 1000.
+ * Chạy bằng: mvn test -Pbenchmark -Dtest=ProductSearchBenchmarkTest (cần Docker)
+ */
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class ProductSearchBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchBenchmarkTest.class);
+    private static final int[] SIZES = {100_000, 1_000_000};
+    private static final int RUNS = 200;
+    // Từ thứ nhất và thứ hai của title, hai danh sách không có từ chung
+    private static final String FIRST = "'{harry,ocean,river,mountain,forest,winter,summer,dragon,castle,silent,"
+            + "golden,shadow,crystal,empire,garden,midnight,thunder,velvet,harbor,lantern,"
+            + "falcon,meadow,canyon,glacier,orchard,ember,willow,compass,saga,voyage,"
+            + "island,prairie,tempest,beacon,citadel,horizon,aurora,cobalt,monsoon,nomad,"
+            + "oracle,phoenix,quartz,raven,sierra,tundra,utopia,zephyr,atlas,comet}'::text[]";
+    private static final String SECOND = "'{potter,legend,chronicle,journey,secret,promise,kingdom,letter,mirror,storm,"
+            + "whisper,signal,harvest,frontier,voice,treasure,riddle,archive,bridge,circle,"
+            + "dawn,echo,fable,gate,hollow,iron,jewel,keeper,labyrinth,mask,"
+            + "night,orbit,pilgrim,quest,relic,spirit,throne,union,vessel,wander,"
+            + "yard,zenith,anthem,ballad,canvas,delta,elegy,fortune,granite,hymn}'::text[]";
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static JdbcTemplate jdbcTemplate;
+    private static ProductSearchRepository_ViewProduct searchRepository;
+    private static ProductSearchService_ViewProduct searchService;
+
+    @BeforeAll
+    static void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        TestDatabase.migrate(dataSource, "postgresql");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        searchRepository = new ProductSearchRepository_ViewProduct();
+        ReflectionTestUtils.setField(searchRepository, "jdbcTemplate", jdbcTemplate);
+        searchService = new ProductSearchService_ViewProduct();
+        ReflectionTestUtils.setField(searchService, "searchRepository", searchRepository);
+        ReflectionTestUtils.setField(searchService, "enabled", true);
+        ReflectionTestUtils.setField(searchService, "maxResults", 1000);
+    }
+
+    @Test
+    void searchLatency() {
+        int seeded = 0;
+        for (int size : SIZES) {
+            seed(seeded + 1, size);
+            seeded = size;
+            int products = size;
+
+            measure(size, "one term", () -> searchService.search("harry", 0, 20), products / 50);
+            measure(size, "two terms", () -> searchService.search("harry potter", 0, 20), products / 2500);
+            measure(size, "phrase", () -> searchService.search("\"harry potter\"", 0, 20), products / 2500);
+            measure(size, "exclusion", () -> searchService.search("harry -potter", 0, 20), products / 50 - products / 2500);
+            measure(size, "all rows", () -> searchService.search("book", 0, 20), products);
+            measure(size, "last page", () -> searchService.search("harry", 49, 20), products / 50);
+            measureSuggest(size, "suggest prefix", "harry pot");
+            measureSuggest(size, "suggest short", "h");
+        }
+    }
+
+    // Thêm product from..to cùng chi tiết book và đánh chỉ mục bằng đúng đường reconcile của service
+    private static void seed(int from, int to) {
+        long start = System.nanoTime();
+        jdbcTemplate.update("INSERT INTO product (product_id, title, price, weight, quantity, type, introduction) " +
+                        "SELECT i, (" + FIRST + ")[1 + i % 50] || ' ' || (" + SECOND + ")[1 + (i / 50) % 50] || ' volume ' || i, " +
+                        "1000 + i % 500, 0.5, 10, 'book', 'Introduction of volume ' || i " +
+                        "FROM generate_series(?, ?) AS i",
+                from, to);
+        jdbcTemplate.update("INSERT INTO book (product_id, genre, authors, publishers, cover_type) " +
+                        "SELECT i, 'novel', 'Author ' || (i % 1000), 'Publisher ' || (i % 100), 'paperback' FROM generate_series(?, ?) AS i",
+                from, to);
+        jdbcTemplate.execute("SELECT setval(pg_get_serial_sequence('product', 'product_id'), " + to + ")");
+        int indexed;
+        do {
+            indexed = searchRepository.indexMissing(50_000);
+        } while (indexed > 0);
+        jdbcTemplate.execute("ANALYZE product");
+        jdbcTemplate.execute("ANALYZE product_search");
+        logger.info("Seeded and indexed products {}..{} in {} ms", from, to, (System.nanoTime() - start) / 1_000_000);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM product_search", Integer.class)).isEqualTo(to);
+    }
+
+    private static void measure(int size, String name, Supplier<ProductSearchPage> search, long expectedTotal) {
+        ProductSearchPage page = search.get();
+        assertThat(page.getTotal()).isEqualTo(expectedTotal);
+        assertThat(page.getProducts()).isNotEmpty();
+        report(size, name, time(search::get));
+    }
+
+    private static void measureSuggest(int size, String name, String prefix) {
+        assertThat(searchService.suggest(prefix, 10)).isNotEmpty();
+        report(size, name, time(() -> searchService.suggest(prefix, 10)));
+    }
+
+    // Vài lượt đầu để JIT, cache của PostgreSQL ấm lên rồi mới đo
+    private static long[] time(Runnable query) {
+        for (int i = 0; i < 20; i++) {
+            query.run();
+        }
+        long[] micros = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            query.run();
+            micros[i] = (System.nanoTime() - start) / 1_000;
+        }
+        Arrays.sort(micros);
+        return micros;
+    }
+
+    private static void report(int size, String name, long[] micros) {
+        logger.info("{} products, {}: p50 {} µs, p95 {} µs, p99 {} µs", size, String.format("%-14s", name),
+                percentile(micros, 50), percentile(micros, 95), percentile(micros, 99));
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+}
@@ -0,0 +1,169 @@
+package Project_ITSS.ViewProduct2.Service;
+
+import Project_ITSS.ViewProduct2.Entity.Product;
+import Project_ITSS.ViewProduct2.Entity.ProductSearchPage;
+import Project_ITSS.ViewProduct2.Event.ProductChangedEvent;
+import Project_ITSS.ViewProduct2.Repository.ProductSearchRepository_ViewProduct;
+import Project_ITSS.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * prefixQuery chỉ giữ chữ và số của chuỗi người dùng gõ; các product thay đổi trong một commit được đánh chỉ mục bằng một câu lệnh.
+ * OnPostgres chạy trên chỉ mục product_search thật (tsvector chỉ có trên PostgreSQL), mỗi test dùng một từ khoá riêng
+ * vì database được dùng chung cho cả lần chạy.
+ */
+class ProductSearchService_ViewProductTest {
+
+    @Test
+    void prefixQueryKeepsOnlyLettersAndDigits() {
+        assertThat(ProductSearchService_ViewProduct.prefixQuery("harry pot")).isEqualTo("harry & pot:*");
+        assertThat(ProductSearchService_ViewProduct.prefixQuery("Harry's <&|!:*> (Pot)")).isEqualTo("harry & s & pot:*");
+        assertThat(ProductSearchService_ViewProduct.prefixQuery("Dế Mèn 2")).isEqualTo("dế & mèn & 2:*");
+    }
+
+    @Test
+    void prefixQueryWithoutAnyTermIsNull() {
+        assertThat(ProductSearchService_ViewProduct.prefixQuery(null)).isNull();
+        assertThat(ProductSearchService_ViewProduct.prefixQuery("   ")).isNull();
+        assertThat(ProductSearchService_ViewProduct.prefixQuery("&|!():*'\\")).isNull();
+    }
+
+    @Test
+    void prefixQueryKeepsTheLastTermsBeingTyped() {
+        assertThat(ProductSearchService_ViewProduct.prefixQuery("a b c d e f g")).isEqualTo("c & d & e & f & g:*");
+    }
+
+    @Test
+    void productsChangedInOneCommitAreIndexedTogether() {
+        ProductSearchRepository_ViewProduct searchRepository = mock(ProductSearchRepository_ViewProduct.class);
+        ProductSearchService_ViewProduct searchService = newSearchService(searchRepository, true);
+
+        searchService.onProductChanged(new ProductChangedEvent(List.of(1L, 2L, 3L)));
+
+        verify(searchRepository).index(List.of(1, 2, 3));
+    }
+
+    @Test
+    void nothingIsIndexedWhenSearchIsDisabled() {
+        ProductSearchRepository_ViewProduct searchRepository = mock(ProductSearchRepository_ViewProduct.class);
+
+        newSearchService(searchRepository, false).onProductChanged(new ProductChangedEvent(1L));
+
+        verify(searchRepository, never()).index(any());
+    }
+
+    static ProductSearchService_ViewProduct newSearchService(ProductSearchRepository_ViewProduct searchRepository, boolean enabled) {
+        ProductSearchService_ViewProduct searchService = new ProductSearchService_ViewProduct();
+        ReflectionTestUtils.setField(searchService, "searchRepository", searchRepository);
+        ReflectionTestUtils.setField(searchService, "enabled", enabled);
+        ReflectionTestUtils.setField(searchService, "maxResults", 1000);
+        return searchService;
+    }
+
+    @Nested
+    @Testcontainers(disabledWithoutDocker = true)
+    class OnPostgres {
+        private JdbcTemplate jdbcTemplate;
+        private ProductSearchService_ViewProduct searchService;
+        private String tag;
+
+        @BeforeEach
+        void setUp() {
+            jdbcTemplate = new JdbcTemplate(TestDatabase.postgres());
+            ProductSearchRepository_ViewProduct searchRepository = new ProductSearchRepository_ViewProduct();
+            ReflectionTestUtils.setField(searchRepository, "jdbcTemplate", jdbcTemplate);
+            searchService = newSearchService(searchRepository, true);
+            tag = "s" + Long.toString(System.nanoTime(), 36);
+        }
+
+        @Test
+        void titleMatchesRankAboveIntroductionMatches() {
+            int inIntroduction = product("Other book", tag + " is mentioned here");
+            int inTitle = product(tag + " Harry Potter", null);
+            index(inIntroduction, inTitle);
+
+            ProductSearchPage page = searchService.search(tag, 0, 10);
+
+            assertThat(ids(page.getProducts())).containsExactly(inTitle, inIntroduction);
+            assertThat(page.getTotal()).isEqualTo(2);
+        }
+
+        @Test
+        void pagesReportTheTotalAndWhetherThereIsMore() {
+            int first = product(tag + " One", null);
+            int second = product(tag + " Two", null);
+            int third = product(tag + " Three", null);
+            index(first, second, third);
+
+            ProductSearchPage page = searchService.search(tag, 0, 2);
+            assertThat(ids(page.getProducts())).containsExactly(first, second);
+            assertThat(page.getTotal()).isEqualTo(3);
+            assertThat(page.isHas_more()).isTrue();
+
+            page = searchService.search(tag, 1, 2);
+            assertThat(ids(page.getProducts())).containsExactly(third);
+            assertThat(page.getTotal()).isEqualTo(3);
+            assertThat(page.isHas_more()).isFalse();
+
+            // Trang sau kết quả cuối vẫn có total đúng
+            page = searchService.search(tag, 2, 2);
+            assertThat(page.getProducts()).isEmpty();
+            assertThat(page.getTotal()).isEqualTo(3);
+            assertThat(page.isHas_more()).isFalse();
+        }
+
+        @Test
+        void excludedWordsRemoveMatches() {
+            int harry = product(tag + " Harry Potter", null);
+            int rings = product(tag + " Lord of the Rings", null);
+            index(harry, rings);
+
+            assertThat(ids(searchService.search(tag + " -harry", 0, 10).getProducts())).containsExactly(rings);
+            assertThat(ids(searchService.search(tag + " \"lord of\"", 0, 10).getProducts())).containsExactly(rings);
+        }
+
+        @Test
+        void suggestionsMatchThePrefixOfTheLastTerm() {
+            int longTitle = product(tag + " Harry Potter and the Chamber of Secrets", null);
+            int shortTitle = product(tag + " Harry", null);
+            int hamlet = product(tag + " Hamlet", null);
+            index(longTitle, shortTitle, hamlet);
+
+            assertThat(ids(searchService.suggest(tag + " har", 5))).containsExactly(shortTitle, longTitle);
+            assertThat(ids(searchService.suggest(tag + " ha", 5))).containsExactlyInAnyOrder(shortTitle, longTitle, hamlet);
+            assertThat(searchService.suggest("<&|!>", 5)).isEmpty();
+        }
+
+        private int product(String title, String introduction) {
+            int product_id = TestDatabase.insertProduct(jdbcTemplate, title, 1000, 5, false);
+            jdbcTemplate.update("UPDATE product SET introduction = ? WHERE product_id = ?", introduction, product_id);
+            return product_id;
+        }
+
+        private void index(int... product_ids) {
+            List<Long> ids = new ArrayList<>();
+            for (int product_id : product_ids) {
+                ids.add((long) product_id);
+            }
+            searchService.onProductChanged(new ProductChangedEvent(ids));
+        }
+
+        private List<Integer> ids(List<Product> products) {
+            return products.stream().map(Product::getProduct_id).toList();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package Project_ITSS.ViewProduct2.Service;
+
+import Project_ITSS.ViewProduct2.Entity.Product;
+import Project_ITSS.ViewProduct2.Repository.ProductRepository_ViewProduct;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+class ProductService_ViewProductTest {
+
+    @Mock
+    private ProductRepository_ViewProduct productRepository;
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+    @InjectMocks
+    private ProductService_ViewProduct productService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportEndsEveryRecordWithNewline() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(0);
+            consumer.accept(product(1, "Dế Mèn phiêu lưu ký"));
+            consumer.accept(product(2, "Abbey Road"));
+            return null;
+        }).when(productRepository).streamAllProductDetails(any(Consumer.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        productService.exportProducts(out);
+
+        String body = out.toString(StandardCharsets.UTF_8);
+        assertThat(body).endsWith("\n");
+        String[] lines = body.split("\n", -1);
+        // Hai bản ghi, phần sau '\n' cuối cùng rỗng
+        assertThat(lines).hasSize(3);
+        assertThat(lines[2]).isEmpty();
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("product_id").asInt()).isEqualTo(1);
+        assertThat(first.get("title").asText()).isEqualTo("Dế Mèn phiêu lưu ký");
+        assertThat(objectMapper.readTree(lines[1]).get("product_id").asInt()).isEqualTo(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void emptyCatalogExportsNothing() throws Exception {
+        doAnswer(invocation -> null).when(productRepository).streamAllProductDetails(any(Consumer.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        productService.exportProducts(out);
+
+        assertThat(out.size()).isZero();
+    }
+
+    private static Product product(int product_id, String title) {
+        Product product = new Product();
+        product.setProduct_id(product_id);
+        product.setTitle(title);
+        return product;
+    }
+}
@@ -0,0 +1,47 @@
+package Project_ITSS.support;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource đếm số câu lệnh gửi tới database (số round trip), dùng để so sánh các cách truy vấn.
+ */
+public class CountingDataSource extends DelegatingDataSource {
+
+    private final AtomicInteger statements = new AtomicInteger();
+
+    public CountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    public int getStatements() {
+        return statements.get();
+    }
+
+    public void reset() {
+        statements.set(0);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = super.getConnection();
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("prepareStatement") || name.equals("createStatement") || name.equals("prepareCall")) {
+                        statements.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
@@ -0,0 +1,71 @@
+package Project_ITSS.support;
+
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.util.UUID;
+
+/**
+ * Database cho test, đã chạy đủ các migration của Flyway.
+ * h2(): H2 ở chế độ PostgreSQL (giống profile h2), mỗi lần gọi là một database mới.
+ * postgres(): PostgreSQL thật trong container (Testcontainers), dùng chung cho cả lần chạy test;
+ * test dùng nó phải có @Testcontainers(disabledWithoutDocker = true) để được bỏ qua khi không có Docker.
+ */
+public final class TestDatabase {
+
+    private static PostgreSQLContainer<?> postgres;
+    private static DataSource postgresDataSource;
+
+    private TestDatabase() {
+    }
+
+    public static DataSource h2() {
+        JdbcConnectionPool dataSource = JdbcConnectionPool.create(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        dataSource.setMaxConnections(64);
+        migrate(dataSource, "h2");
+        return dataSource;
+    }
+
+    public static synchronized DataSource postgres() {
+        if (postgresDataSource == null) {
+            postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+            postgres.start();
+            DriverManagerDataSource dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+            migrate(dataSource, "postgresql");
+            postgresDataSource = dataSource;
+        }
+        return postgresDataSource;
+    }
+
+    public static void migrate(DataSource dataSource, String vendor) {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration", "classpath:db/vendor/" + vendor)
+                .load()
+                .migrate();
+    }
+
+    // Thêm một product đơn giản, trả về product_id
+    public static int insertProduct(JdbcTemplate jdbcTemplate, String title, int price, int quantity, boolean rush) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "INSERT INTO product (title, price, weight, rush_order_supported, quantity, type) VALUES (?, ?, 0.5, ?, ?, 'book')",
+                    new String[]{"product_id"});
+            ps.setString(1, title);
+            ps.setInt(2, price);
+            ps.setBoolean(3, rush);
+            ps.setInt(4, quantity);
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().intValue();
+    }
+}
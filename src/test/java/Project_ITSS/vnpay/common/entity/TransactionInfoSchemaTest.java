@@ -0,0 +1,55 @@
+package Project_ITSS.vnpay.common.entity;
+
+import Project_ITSS.support.TestDatabase;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Bảng vnpay_transactions do Flyway tạo (V1__baseline.sql) phải khớp với TransactionInfo,
+ * vì ứng dụng chạy với spring.jpa.hibernate.ddl-auto=validate.
+ */
+class TransactionInfoSchemaTest {
+
+    @Test
+    void migratedSchemaPassesHibernateValidation() {
+        DataSource dataSource = TestDatabase.h2();
+
+        EntityManagerFactory entityManagerFactory = validate(dataSource);
+        try {
+            assertThat(entityManagerFactory.getMetamodel().entity(TransactionInfo.class).getName()).isEqualTo("TransactionInfo");
+        } finally {
+            entityManagerFactory.close();
+        }
+    }
+
+    @Test
+    void missingColumnFailsValidation() {
+        DataSource dataSource = TestDatabase.h2();
+        new JdbcTemplate(dataSource).execute("ALTER TABLE vnpay_transactions DROP COLUMN pay_date");
+
+        assertThatThrownBy(() -> validate(dataSource))
+                .hasStackTraceContaining("pay_date");
+    }
+
+    private static EntityManagerFactory validate(DataSource dataSource) {
+        HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setJpaVendorAdapter(vendorAdapter);
+        factoryBean.setPackagesToScan(TransactionInfo.class.getPackageName());
+        factoryBean.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", "validate",
+                "hibernate.dialect", "org.hibernate.dialect.H2Dialect"));
+        factoryBean.afterPropertiesSet();
+        return factoryBean.getObject();
+    }
+}
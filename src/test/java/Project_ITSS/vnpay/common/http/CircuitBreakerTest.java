@@ -0,0 +1,62 @@
+package Project_ITSS.vnpay.common.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    @Test
+    void successResetsTheFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60_000);
+
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.recordFailure();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void halfOpenLetsExactlyOneConcurrentTrialThrough() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 100);
+        breaker.recordFailure();
+        Thread.sleep(150);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> acquired = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            acquired.add(executor.submit(() -> {
+                start.await();
+                return breaker.tryAcquire();
+            }));
+        }
+        start.countDown();
+        int trials = 0;
+        for (Future<Boolean> future : acquired) {
+            trials += future.get(10, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        executor.shutdown();
+
+        assertThat(trials).isEqualTo(1);
+        breaker.recordSuccess();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+}
@@ -0,0 +1,133 @@
+package Project_ITSS.vnpay.common.security;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chi phí ký một IPN: cách cũ (Mac.getInstance/init và String.format cho từng byte ở mỗi lần ký)
+ * so với HmacSha512Signer (Mac clone sẵn, dùng lại qua pool, hex bằng bảng tra).
+ * Đo số chữ ký mỗi giây và số byte cấp phát cho mỗi chữ ký trên một platform thread,
+ * và số chữ ký mỗi giây khi mỗi chữ ký chạy trên một virtual thread mới như IpnProcessingService.
+ * Chạy bằng: mvn test -Pbenchmark -Dtest=HmacSha512SignerBenchmarkTest
+ */
+@Tag("benchmark")
+class HmacSha512SignerBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(HmacSha512SignerBenchmarkTest.class);
+    private static final String SECRET = "benchmark-secret-0123456789";
+    private static final int LEGACY_OPS = 50_000;
+    private static final int SIGNER_OPS = 500_000;
+    private static final int VIRTUAL_THREAD_OPS = 100_000;
+
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private long sink;
+
+    @Test
+    void signingCost() throws Exception {
+        HmacSha512Signer signer = new HmacSha512Signer();
+        ReflectionTestUtils.setField(signer, "secretKey", SECRET);
+        signer.init();
+        String data = HmacSha512Signer.canonicalQuery(ipnFields());
+        assertThat(signer.sign(data)).isEqualTo(legacySign(SECRET, data));
+
+        Result legacy = measure(() -> legacySign(SECRET, data), LEGACY_OPS);
+        Result pooled = measure(() -> signer.sign(data), SIGNER_OPS);
+        long legacyVirtual = virtualThreadThroughput(() -> legacySign(SECRET, data));
+        long pooledVirtual = virtualThreadThroughput(() -> signer.sign(data));
+
+        logger.info("legacy Mac.getInstance + String.format: {} signatures/s, {} bytes/op", legacy.opsPerSecond, legacy.bytesPerOp);
+        logger.info("HmacSha512Signer:                       {} signatures/s, {} bytes/op", pooled.opsPerSecond, pooled.bytesPerOp);
+        logger.info("virtual thread per signature: legacy {} signatures/s, HmacSha512Signer {} signatures/s", legacyVirtual, pooledVirtual);
+        assertThat(pooled.bytesPerOp).isLessThan(legacy.bytesPerOp);
+        assertThat(pooled.opsPerSecond).isGreaterThan(legacy.opsPerSecond);
+    }
+
+    private Result measure(Supplier<String> sign, int ops) {
+        // Lượt đầu để JIT ấm lên
+        run(sign, ops / 5);
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        run(sign, ops);
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        return new Result(ops * 1_000_000_000L / elapsed, allocated / ops);
+    }
+
+    private void run(Supplier<String> sign, int ops) {
+        for (int i = 0; i < ops; i++) {
+            sink += sign.get().length();
+        }
+    }
+
+    private long virtualThreadThroughput(Supplier<String> sign) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            submitAll(executor, sign, VIRTUAL_THREAD_OPS / 5);
+            long start = System.nanoTime();
+            submitAll(executor, sign, VIRTUAL_THREAD_OPS);
+            return VIRTUAL_THREAD_OPS * 1_000_000_000L / (System.nanoTime() - start);
+        }
+    }
+
+    private void submitAll(ExecutorService executor, Supplier<String> sign, int ops) throws Exception {
+        List<Future<String>> futures = new ArrayList<>(ops);
+        for (int i = 0; i < ops; i++) {
+            futures.add(executor.submit(sign::get));
+        }
+        for (Future<String> future : futures) {
+            sink += future.get().length();
+        }
+    }
+
+    // Cách ký cũ của VNPayConfig.hmacSHA512
+    private static String legacySign(String key, String data) {
+        try {
+            Mac hmac512 = Mac.getInstance("HmacSHA512");
+            hmac512.init(new SecretKeySpec(key.getBytes(), "HmacSHA512"));
+            byte[] result = hmac512.doFinal(data.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(2 * result.length);
+            for (byte b : result) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, String> ipnFields() {
+        Map<String, String> fields = new TreeMap<>();
+        fields.put("vnp_Amount", "125000000");
+        fields.put("vnp_BankCode", "NCB");
+        fields.put("vnp_BankTranNo", "VNP14422574");
+        fields.put("vnp_CardType", "ATM");
+        fields.put("vnp_OrderInfo", "Thanh toán đơn hàng:100234");
+        fields.put("vnp_PayDate", "20261018103000");
+        fields.put("vnp_ResponseCode", "00");
+        fields.put("vnp_TmnCode", "BENCHTMN");
+        fields.put("vnp_TransactionNo", "14422574");
+        fields.put("vnp_TransactionStatus", "00");
+        fields.put("vnp_TxnRef", "10000050");
+        return fields;
+    }
+
+    private record Result(long opsPerSecond, long bytesPerOp) {
+    }
+}
@@ -0,0 +1,157 @@
+package Project_ITSS.vnpay.common.security;
+
+import Project_ITSS.vnpay.common.config.VNPayConfig;
+import Project_ITSS.vnpay.common.dto.PaymentRequest;
+import Project_ITSS.vnpay.common.service.HashService;
+import Project_ITSS.vnpay.common.service.impl.HashServiceImpl;
+import Project_ITSS.vnpay.common.service.impl.VNPayServiceImpl;
+import Project_ITSS.vnpay.common.strategy.VNPayStrategy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mọi đường ký và kiểm tra chữ ký VNPAY dùng cùng một chuỗi canonicalQuery (URL-encode UTF-8):
+ * URL thanh toán do VNPayServiceImpl/VNPayStrategy tạo phải qua được bước kiểm tra của trang return và IPN.
+ */
+class HmacSha512SignerTest {
+
+    private HmacSha512Signer signer;
+    private HashService hashService;
+    private VNPayConfig vnPayConfig;
+
+    @BeforeEach
+    void setUp() {
+        signer = newSigner("test-secret");
+        hashService = new HashServiceImpl();
+        ReflectionTestUtils.setField(hashService, "signer", signer);
+        vnPayConfig = new VNPayConfig();
+        ReflectionTestUtils.setField(vnPayConfig, "signer", signer);
+        vnPayConfig.setSecretKey("test-secret");
+        vnPayConfig.setTmnCode("TESTTMN1");
+        vnPayConfig.setPayUrl("https://sandbox.vnpayment.vn/paymentv2/vpcpay.html");
+        vnPayConfig.setReturnUrl("http://localhost:8080/vnpay/return?from=checkout");
+    }
+
+    @Test
+    void signsWithHmacSha512() {
+        assertThat(newSigner("key").sign("The quick brown fox jumps over the lazy dog")).isEqualTo(
+                "b42af09057bac1e2d41708e48a902e09b5ff7f12ab428a4fe86653c73dd248fb"
+                        + "82f948a549f7b791a5b41915ee4d1ec3935357e4e2317250d0372afa2ebeeb3a");
+    }
+
+    @Test
+    void concurrentSignaturesOnVirtualThreadsShareThePooledMacs() throws Exception {
+        String expected = signer.sign("vnp_Amount=1000000&vnp_TxnRef=1");
+        List<Future<String>> signatures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 1_000; i++) {
+                signatures.add(executor.submit(() -> signer.sign("vnp_Amount=1000000&vnp_TxnRef=1")));
+            }
+        }
+        for (Future<String> signature : signatures) {
+            assertThat(signature.get()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void canonicalQueryIsSortedUtf8EncodedAndSkipsEmptyValues() {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("vnp_TxnRef", "1");
+        fields.put("vnp_BankCode", "");
+        fields.put("vnp_OrderInfo", "Đơn hàng 1: sách & đĩa");
+        fields.put("vnp_Amount", "1000000");
+
+        assertThat(HmacSha512Signer.canonicalQuery(fields)).isEqualTo(
+                "vnp_Amount=1000000&vnp_OrderInfo=%C4%90%C6%A1n+h%C3%A0ng+1%3A+s%C3%A1ch+%26+%C4%91%C4%A9a&vnp_TxnRef=1");
+    }
+
+    @Test
+    void hashServiceAndConfigSignTheSameString() {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("vnp_Amount", "1000000");
+        fields.put("vnp_OrderInfo", "Thanh toán đơn hàng:1");
+        fields.put("vnp_ReturnUrl", "http://localhost:8080/vnpay/return?from=checkout");
+
+        assertThat(hashService.hashAllFields(fields))
+                .isEqualTo(vnPayConfig.hashAllFields(fields))
+                .isEqualTo(hashService.generateSecureHash(fields))
+                .isEqualTo(signer.sign(HmacSha512Signer.canonicalQuery(fields)));
+    }
+
+    @Test
+    void paymentUrlFromVNPayServiceImplPassesReturnVerification() {
+        VNPayServiceImpl service = new VNPayServiceImpl(vnPayConfig, hashService, null);
+
+        assertVerifies(service.createPayment(paymentRequest(), new MockHttpServletRequest()).getPaymentUrl());
+    }
+
+    @Test
+    void paymentUrlFromVNPayStrategyPassesReturnVerification() {
+        VNPayStrategy strategy = new VNPayStrategy(vnPayConfig, hashService, null);
+
+        assertVerifies(strategy.createPayment(paymentRequest(), new MockHttpServletRequest()).getPaymentUrl());
+    }
+
+    @Test
+    void tamperedParameterFailsVerification() {
+        VNPayStrategy strategy = new VNPayStrategy(vnPayConfig, hashService, null);
+        Map<String, String> params = decode(strategy.createPayment(paymentRequest(), new MockHttpServletRequest()).getPaymentUrl());
+        String vnp_SecureHash = params.remove("vnp_SecureHash");
+
+        params.put("vnp_Amount", "100");
+
+        assertThat(hashService.hashAllFields(params)).isNotEqualTo(vnp_SecureHash);
+    }
+
+    // Giống VNPayController/IpnProcessingService: servlet đã decode tham số, bỏ vnp_SecureHash rồi ký lại
+    private void assertVerifies(String paymentUrl) {
+        Map<String, String> params = decode(paymentUrl);
+        String vnp_SecureHash = params.remove("vnp_SecureHash");
+        params.remove("vnp_SecureHashType");
+
+        assertThat(params).containsEntry("vnp_OrderInfo", "Thanh toan don hang:1");
+        assertThat(params).containsEntry("vnp_ReturnUrl", "http://localhost:8080/vnpay/return?from=checkout");
+        assertThat(hashService.hashAllFields(params)).isEqualTo(vnp_SecureHash);
+        assertThat(vnPayConfig.hashAllFields(params)).isEqualTo(vnp_SecureHash);
+    }
+
+    private static Map<String, String> decode(String paymentUrl) {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : URI.create(paymentUrl).getRawQuery().split("&")) {
+            int eq = pair.indexOf('=');
+            params.put(URLDecoder.decode(pair.substring(0, eq), HmacSha512Signer.CHARSET),
+                    URLDecoder.decode(pair.substring(eq + 1), HmacSha512Signer.CHARSET));
+        }
+        return params;
+    }
+
+    private static PaymentRequest paymentRequest() {
+        PaymentRequest request = new PaymentRequest();
+        request.setAmount("10000");
+        request.setLanguage("vn");
+        request.setOrderId("1");
+        return request;
+    }
+
+    private static HmacSha512Signer newSigner(String secretKey) {
+        HmacSha512Signer signer = new HmacSha512Signer();
+        ReflectionTestUtils.setField(signer, "secretKey", secretKey);
+        signer.init();
+        return signer;
+    }
+}
@@ -0,0 +1,261 @@
+package Project_ITSS.vnpay.common.service;
+
+import Project_ITSS.support.TestDatabase;
+import Project_ITSS.vnpay.common.dto.IPNResponse;
+import Project_ITSS.vnpay.common.entity.IpnReceipt;
+import Project_ITSS.vnpay.common.observer.PaymentSubject;
+import Project_ITSS.vnpay.common.repository.IpnReceiptRepository;
+import Project_ITSS.vnpay.common.security.HmacSha512Signer;
+import Project_ITSS.vnpay.common.service.impl.HashServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Mỗi cặp (vnp_TxnRef, vnp_TransactionNo) được xử lý đúng một lần dù VNPAY gửi lại bao nhiêu lần và tới node nào,
+ * biên nhận xử lý lỗi được thử lại nhiều nhất max-attempts lần rồi chuyển sang dead.
+ */
+class IpnProcessingServiceTest {
+
+    // Database Postgres dùng chung cho cả lần chạy nên mỗi test dùng txn_ref riêng
+    private static final AtomicInteger txnRefs = new AtomicInteger((int) (System.nanoTime() % 1_000_000));
+
+    abstract static class Contract {
+        JdbcTemplate jdbcTemplate;
+        HashService hashService;
+        OrderService orderService;
+        List<IpnProcessingService> nodes = new ArrayList<>();
+        String txnRef;
+
+        abstract DataSource dataSource();
+
+        @BeforeEach
+        void setUp() {
+            jdbcTemplate = new JdbcTemplate(dataSource());
+            HmacSha512Signer signer = new HmacSha512Signer();
+            ReflectionTestUtils.setField(signer, "secretKey", "test-secret");
+            signer.init();
+            hashService = new HashServiceImpl();
+            ReflectionTestUtils.setField(hashService, "signer", signer);
+            orderService = mock(OrderService.class);
+            txnRef = String.valueOf(txnRefs.incrementAndGet());
+        }
+
+        @AfterEach
+        void tearDown() {
+            nodes.forEach(IpnProcessingService::shutdown);
+        }
+
+        @Test
+        void concurrentReplayOfOneThousandIdenticalIpnsIsProcessedOnce() throws Exception {
+            // Hai node dùng chung database: bản trùng được chặn bởi cache của từng node và khoá chính của biên nhận
+            List<IpnProcessingService> services = List.of(newNode(5), newNode(5));
+            Map<String, String> params = signedIpn("00");
+            Map<String, AtomicInteger> responses = new ConcurrentHashMap<>();
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(32);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                IpnProcessingService service = services.get(i % services.size());
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    IPNResponse response = service.handleIpn(params);
+                    responses.computeIfAbsent(response.getRspCode(), key -> new AtomicInteger()).incrementAndGet();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+            executor.shutdown();
+
+            assertThat(responses.get(IPNResponse.SUCCESS)).hasValue(1);
+            assertThat(responses.get(IPNResponse.ORDER_ALREADY_CONFIRMED)).hasValue(999);
+            assertThat(awaitStatus()).isEqualTo(IpnReceipt.PROCESSED);
+            verify(orderService, times(1)).updateOrderStatus(txnRef, "PAID");
+            verify(orderService, times(1)).saveTransactionInfo(eq(txnRef), anyMap());
+            assertThat(jdbcTemplate.queryForObject("SELECT attempts FROM vnpay_ipn_receipt WHERE txn_ref = ?", Integer.class, txnRef))
+                    .isEqualTo(1);
+        }
+
+        @Test
+        void tamperedIpnIsRejectedWithoutReceipt() {
+            Map<String, String> params = signedIpn("00");
+            params.put("vnp_Amount", "100");
+
+            assertThat(newNode(5).handleIpn(params).getRspCode()).isEqualTo(IPNResponse.INVALID_SIGNATURE);
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM vnpay_ipn_receipt WHERE txn_ref = ?", Integer.class, txnRef))
+                    .isZero();
+        }
+
+        @Test
+        void failedProcessingStaysPendingWithTheError() {
+            doThrow(new IllegalStateException("database down")).when(orderService).updateOrderStatus(anyString(), anyString());
+
+            assertThat(newNode(3).handleIpn(signedIpn("00")).getRspCode()).isEqualTo(IPNResponse.SUCCESS);
+
+            awaitLastError();
+            assertThat(status()).isEqualTo(IpnReceipt.PENDING);
+            assertThat(lastError()).isEqualTo("database down");
+        }
+
+        @Test
+        void failureOnTheLastAttemptMovesTheReceiptToDeadLetter() {
+            doThrow(new IllegalStateException("database down")).when(orderService).updateOrderStatus(anyString(), anyString());
+
+            newNode(1).handleIpn(signedIpn("00"));
+
+            assertThat(awaitStatus()).isEqualTo(IpnReceipt.DEAD);
+            assertThat(lastError()).isEqualTo("database down");
+        }
+
+        IpnProcessingService newNode(int maxAttempts) {
+            IpnReceiptRepository receiptRepository = new IpnReceiptRepository();
+            ReflectionTestUtils.setField(receiptRepository, "jdbcTemplate", jdbcTemplate);
+            IpnProcessingService service = new IpnProcessingService();
+            ReflectionTestUtils.setField(service, "receiptRepository", receiptRepository);
+            ReflectionTestUtils.setField(service, "hashService", hashService);
+            ReflectionTestUtils.setField(service, "orderService", orderService);
+            ReflectionTestUtils.setField(service, "paymentSubject", new PaymentSubject());
+            ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+            ReflectionTestUtils.setField(service, "recentKeys", 10_000);
+            ReflectionTestUtils.setField(service, "recentTtlSeconds", 3600L);
+            // Recovery chỉ chạy khi test gọi recoverStale
+            ReflectionTestUtils.setField(service, "staleAfterMs", TimeUnit.HOURS.toMillis(1));
+            ReflectionTestUtils.setField(service, "recoveryBatchSize", 50);
+            ReflectionTestUtils.setField(service, "maxAttempts", maxAttempts);
+            service.start();
+            nodes.add(service);
+            return service;
+        }
+
+        Map<String, String> signedIpn(String responseCode) {
+            Map<String, String> params = new HashMap<>();
+            params.put("vnp_TxnRef", txnRef);
+            params.put("vnp_TransactionNo", "1400" + txnRef);
+            params.put("vnp_Amount", "1000000");
+            params.put("vnp_ResponseCode", responseCode);
+            params.put("vnp_TransactionStatus", responseCode);
+            params.put("vnp_OrderInfo", "Thanh toan don hang:" + txnRef);
+            params.put("vnp_SecureHash", hashService.hashAllFields(params));
+            return params;
+        }
+
+        String awaitStatus() {
+            long deadline = System.currentTimeMillis() + 10_000;
+            String status = status();
+            while ((status == null || IpnReceipt.PENDING.equals(status)) && System.currentTimeMillis() < deadline) {
+                sleep();
+                status = status();
+            }
+            return status;
+        }
+
+        void awaitLastError() {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (lastError() == null && System.currentTimeMillis() < deadline) {
+                sleep();
+            }
+        }
+
+        String status() {
+            List<String> statuses = jdbcTemplate.queryForList("SELECT status FROM vnpay_ipn_receipt WHERE txn_ref = ?", String.class, txnRef);
+            return statuses.isEmpty() ? null : statuses.get(0);
+        }
+
+        String lastError() {
+            List<String> errors = jdbcTemplate.queryForList("SELECT last_error FROM vnpay_ipn_receipt WHERE txn_ref = ?", String.class, txnRef);
+            return errors.isEmpty() ? null : errors.get(0);
+        }
+
+        private static void sleep() {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Nested
+    class OnH2 extends Contract {
+        private final DataSource dataSource = TestDatabase.h2();
+
+        @Override
+        DataSource dataSource() {
+            return dataSource;
+        }
+    }
+
+    @Nested
+    @Testcontainers(disabledWithoutDocker = true)
+    class OnPostgres extends Contract {
+        @Override
+        DataSource dataSource() {
+            return TestDatabase.postgres();
+        }
+
+        // claimStale dùng UPDATE ... RETURNING nên phần thử lại chỉ chạy trên PostgreSQL
+        @Test
+        void staleReceiptIsRetriedUntilMaxAttemptsThenDeadLettered() {
+            doThrow(new IllegalStateException("database down")).when(orderService).updateOrderStatus(anyString(), anyString());
+            IpnProcessingService service = newNode(3);
+            ReflectionTestUtils.setField(service, "staleAfterMs", 0L);
+            service.handleIpn(signedIpn("00"));
+            awaitLastError();
+
+            for (int attempt = 2; attempt <= 3; attempt++) {
+                jdbcTemplate.update("UPDATE vnpay_ipn_receipt SET last_error = NULL WHERE txn_ref = ?", txnRef);
+                ReflectionTestUtils.invokeMethod(service, "recoverStale");
+                awaitLastError();
+            }
+
+            assertThat(awaitStatus()).isEqualTo(IpnReceipt.DEAD);
+            assertThat(jdbcTemplate.queryForObject("SELECT attempts FROM vnpay_ipn_receipt WHERE txn_ref = ?", Integer.class, txnRef))
+                    .isEqualTo(3);
+            // Biên nhận dead không được nhận lại nữa
+            ReflectionTestUtils.invokeMethod(service, "recoverStale");
+            verify(orderService, times(3)).updateOrderStatus(txnRef, "PAID");
+        }
+
+        @Test
+        void receiptAbandonedOnTheLastAttemptIsDeadLettered() {
+            jdbcTemplate.update("INSERT INTO vnpay_ipn_receipt (txn_ref, transaction_no, payload, status, received_at, locked_at, attempts) " +
+                    "VALUES (?, 'abandoned', '{}', 'pending', now(), now() - INTERVAL '1 hour', 3)", txnRef);
+            IpnProcessingService service = newNode(3);
+            ReflectionTestUtils.setField(service, "staleAfterMs", 1000L);
+
+            ReflectionTestUtils.invokeMethod(service, "recoverStale");
+
+            assertThat(status()).isEqualTo(IpnReceipt.DEAD);
+        }
+    }
+}
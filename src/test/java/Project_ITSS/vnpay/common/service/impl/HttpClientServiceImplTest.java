@@ -0,0 +1,219 @@
+package Project_ITSS.vnpay.common.service.impl;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * HttpClientServiceImpl gọi một stub VNPAY chạy trên cổng cục bộ (com.sun.net.httpserver):
+ * read timeout, querydr gọi lại với backoff, circuit breaker mở/half-open và 4xx không bị tính là lỗi của VNPAY.
+ */
+class HttpClientServiceImplTest {
+
+    private static final Map<String, String> OK = Map.of("vnp_ResponseCode", "00");
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String url;
+    // Các response stub sẽ trả theo thứ tự, hết thì trả 200
+    private final Queue<StubResponse> responses = new ConcurrentLinkedQueue<>();
+    private final List<Long> requestNanos = new CopyOnWriteArrayList<>();
+    private HttpClientServiceImpl httpClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/merchant_webapi/api/transaction", exchange -> {
+            requestNanos.add(System.nanoTime());
+            exchange.getRequestBody().readAllBytes();
+            StubResponse response = responses.poll();
+            if (response == null) {
+                response = new StubResponse(200, 0);
+            }
+            sleep(response.delayMs);
+            byte[] body = response.status == 200 ? "{\"vnp_ResponseCode\":\"00\"}".getBytes(StandardCharsets.UTF_8)
+                    : ("{\"error\":" + response.status + "}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            try {
+                exchange.sendResponseHeaders(response.status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (IOException e) {
+                // Client đã bỏ request do timeout
+            }
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/merchant_webapi/api/transaction";
+        httpClient = newHttpClient(5, 30_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void slowResponseTimesOutAtTheReadTimeout() {
+        responses.add(new StubResponse(200, 2_000));
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> httpClient.callApi(url, Map.of("vnp_Command", "refund"), Map.class))
+                .hasCauseInstanceOf(ResourceAccessException.class);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1_500);
+        assertThat(requestNanos).hasSize(1);
+    }
+
+    @Test
+    void querydrIsRetriedOnServerErrorsWithExponentialBackoff() {
+        responses.add(new StubResponse(503, 0));
+        responses.add(new StubResponse(502, 0));
+
+        Map<?, ?> result = httpClient.postRequest(url, Map.of("vnp_Command", "querydr"), Map.class);
+
+        assertThat(result).isEqualTo(OK);
+        assertThat(requestNanos).hasSize(3);
+        // retry-backoff-ms = 100: chờ 100 ms rồi 200 ms
+        assertThat(gapMillis(0)).isGreaterThanOrEqualTo(100);
+        assertThat(gapMillis(1)).isGreaterThanOrEqualTo(200);
+    }
+
+    @Test
+    void querydrGivesUpAfterMaxAttempts() {
+        for (int i = 0; i < 5; i++) {
+            responses.add(new StubResponse(500, 0));
+        }
+
+        assertThatThrownBy(() -> httpClient.postRequest(url, Map.of("vnp_Command", "querydr"), Map.class))
+                .hasCauseInstanceOf(HttpServerErrorException.class);
+
+        assertThat(requestNanos).hasSize(3);
+    }
+
+    @Test
+    void refundIsNotRetried() {
+        responses.add(new StubResponse(503, 0));
+
+        assertThatThrownBy(() -> httpClient.postRequest(url, Map.of("vnp_Command", "refund"), Map.class))
+                .hasCauseInstanceOf(HttpServerErrorException.class);
+
+        assertThat(requestNanos).hasSize(1);
+    }
+
+    @Test
+    void breakerOpensAfterConsecutiveFailuresThenHalfOpensAndCloses() throws Exception {
+        httpClient = newHttpClient(2, 300);
+        responses.add(new StubResponse(500, 0));
+        responses.add(new StubResponse(500, 0));
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> httpClient.postRequest(url, Map.of("vnp_Command", "refund"), Map.class))
+                    .hasCauseInstanceOf(HttpServerErrorException.class);
+        }
+        assertThat(circuit("refund")).isEqualTo("OPEN");
+        // Circuit mở: không gửi request tới VNPAY
+        assertThatThrownBy(() -> httpClient.postRequest(url, Map.of("vnp_Command", "refund"), Map.class))
+                .hasMessageContaining("circuit open");
+        assertThat(requestNanos).hasSize(2);
+        // Endpoint khác có breaker riêng
+        assertThat(httpClient.postRequest(url, Map.of("vnp_Command", "querydr"), Map.class)).isEqualTo(OK);
+
+        Thread.sleep(350);
+        assertThat(circuit("refund")).isEqualTo("HALF_OPEN");
+        assertThat(httpClient.postRequest(url, Map.of("vnp_Command", "refund"), Map.class)).isEqualTo(OK);
+        assertThat(circuit("refund")).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void failedHalfOpenTrialOpensTheBreakerAgain() throws Exception {
+        httpClient = newHttpClient(1, 300);
+        responses.add(new StubResponse(500, 0));
+        responses.add(new StubResponse(500, 0));
+
+        assertThatThrownBy(() -> httpClient.postRequest(url, Map.of("vnp_Command", "refund"), Map.class))
+                .hasCauseInstanceOf(HttpServerErrorException.class);
+        Thread.sleep(350);
+        assertThatThrownBy(() -> httpClient.postRequest(url, Map.of("vnp_Command", "refund"), Map.class))
+                .hasCauseInstanceOf(HttpServerErrorException.class);
+
+        assertThat(circuit("refund")).isEqualTo("OPEN");
+        assertThatThrownBy(() -> httpClient.postRequest(url, Map.of("vnp_Command", "refund"), Map.class))
+                .hasMessageContaining("circuit open");
+        assertThat(requestNanos).hasSize(2);
+    }
+
+    @Test
+    void clientErrorsAreNotRetriedAndDoNotOpenTheBreaker() {
+        httpClient = newHttpClient(2, 30_000);
+        for (int i = 0; i < 5; i++) {
+            responses.add(new StubResponse(400, 0));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> httpClient.postRequest(url, Map.of("vnp_Command", "querydr"), Map.class))
+                    .hasCauseInstanceOf(HttpClientErrorException.class);
+        }
+
+        assertThat(requestNanos).hasSize(5);
+        assertThat(circuit("querydr")).isEqualTo("CLOSED");
+    }
+
+    private HttpClientServiceImpl newHttpClient(int failureThreshold, long openMs) {
+        HttpClientServiceImpl client = new HttpClientServiceImpl();
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 1_000L);
+        ReflectionTestUtils.setField(client, "defaultReadTimeoutMs", 500L);
+        ReflectionTestUtils.setField(client, "queryReadTimeoutMs", 500L);
+        ReflectionTestUtils.setField(client, "refundReadTimeoutMs", 500L);
+        ReflectionTestUtils.setField(client, "queryMaxAttempts", 3);
+        ReflectionTestUtils.setField(client, "retryBackoffMs", 100L);
+        ReflectionTestUtils.setField(client, "breakerFailureThreshold", failureThreshold);
+        ReflectionTestUtils.setField(client, "breakerOpenMs", openMs);
+        client.init();
+        return client;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String circuit(String endpoint) {
+        return (String) ((Map<String, Object>) httpClient.getStats().get(endpoint)).get("circuit");
+    }
+
+    private long gapMillis(int index) {
+        return TimeUnit.NANOSECONDS.toMillis(requestNanos.get(index + 1) - requestNanos.get(index));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record StubResponse(int status, long delayMs) {
+    }
+}